@@ -126,6 +126,30 @@ public class ImageInstruction extends Transition2DInstruction {
 
     @Override
     public void paint(Graphics2D g, BufferedImage frameA, BufferedImage frameB) {
+        Shape oldClipping = null;
+        if (clipping != null) {
+            oldClipping = g.getClip();
+            Clipper.clip(g, clipping);
+        }
+
+        drawImage(g, frameA, frameB);
+
+        if (clipping != null) {
+            g.setClip(oldClipping);
+        }
+    }
+
+    /**
+     * Paints this instruction with the given clip, which
+     * must already contain the clipping of this instruction.
+     * The clip of the graphics is not restored.
+     */
+    public void paint(Graphics2D g, BufferedImage frameA, BufferedImage frameB, Shape clip) {
+        g.setClip(clip);
+        drawImage(g, frameA, frameB);
+    }
+
+    private void drawImage(Graphics2D g, BufferedImage frameA, BufferedImage frameB) {
         // Laszlo: In Pixelitor frameB is always transparent, the following
         // code will work only in that case - but the original code used to work
         // only with opaque images, see http://javagraphics.blogspot.hu/2008/06/crossfades-what-is-and-isnt-possible.html
@@ -149,18 +173,8 @@ public class ImageInstruction extends Transition2DInstruction {
 
         //}
 
-        Shape oldClipping = null;
-        if (clipping != null) {
-            oldClipping = g.getClip();
-            Clipper.clip(g, clipping);
-        }
-
         g.drawImage(img, transform, null);
 
-        if (clipping != null) {
-            g.setClip(oldClipping);
-        }
-
         if (opacity != 1) {
             g.setComposite(oldComposite);
         }
@@ -267,6 +267,11 @@ public class PerspectiveFilter extends TransformFilter {
         return dstPt;
     }
 
+    @Override
+    protected boolean hasSmoothMapping() {
+        return true;
+    }
+
     @Override
     protected void transformInverse(int x, int y, float[] out) {
         out[0] = srcWidth * (A * x + B * y + C) / (G * x + H * y + I);
@@ -23,6 +23,7 @@ import java.awt.Shape;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
+import java.util.List;
 
 /**
  * A filter which performs the popular whirl-and-pinch distortion effect.
@@ -231,6 +232,12 @@ public class PinchFilter extends TransformFilter implements SwirlMethod {
         }
     }
 
+    @Override
+    protected Object getGeometryState() {
+        return List.of(icentreX, icentreY, radius, angle,
+                pinchBulgeAmount, zoom, rotateResultAngle);
+    }
+
     @Override
     public void setZoom(float zoom) {
         this.zoom = zoom;
@@ -19,6 +19,7 @@ package com.jhlabs.image;
 import net.jafama.FastMath;
 
 import java.awt.image.BufferedImage;
+import java.util.List;
 
 /**
  * A filter which distorts and image by performing coordinate conversions between rectangular and polar coordinates.
@@ -238,6 +239,12 @@ public class PolarFilter extends TransformFilter {
 //        out[1] *= divideFactor;
     }
 
+    @Override
+    protected Object getGeometryState() {
+        return List.of(type, zoom, angle,
+                width, height, centreX, centreY, radius);
+    }
+
     public void setZoom(float zoom) {
         this.zoom = zoom;
     }
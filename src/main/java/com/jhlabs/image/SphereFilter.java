@@ -22,6 +22,7 @@ import java.awt.Shape;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
+import java.util.List;
 
 /**
  * A filter which simulates a lens placed over an image.
@@ -202,6 +203,11 @@ public class SphereFilter extends TransformFilter {
         }
     }
 
+    @Override
+    protected Object getGeometryState() {
+        return List.of(icentreX, icentreY, a, b, refractionIndex);
+    }
+
     @Override
     public String toString() {
         return "Distort/Sphere...";
@@ -18,6 +18,8 @@ package com.jhlabs.image;
 
 import com.jhlabs.math.Noise;
 
+import java.util.List;
+
 /**
  * A filter which distorts an image as if it were underwater.
  */
@@ -165,6 +167,12 @@ public class SwimFilter extends TransformFilter {
         out[1] = y + amount * noise3y;
     }
 
+    @Override
+    protected Object getGeometryState() {
+        return List.of(m00, m01, m10, m11, scale, stretch,
+                amount, time, Noise.getSeedVersion());
+    }
+
     @Override
     public String toString() {
         return "Distort/Swim...";
@@ -18,10 +18,12 @@ package com.jhlabs.image;
 
 import net.jafama.FastMath;
 import pixelitor.ThreadPool;
+import pixelitor.utils.ProgressTracker;
 
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 
@@ -69,6 +71,23 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
     public static final int BILINEAR = 1;
     public static final int BILINEAR_OLD = 3;
 
+    /**
+     * Use bicubic (Catmull-Rom) interpolation.
+     */
+    public static final int BICUBIC = 4;
+
+    /**
+     * Use elliptical weighted average filtering where the mapping shrinks
+     * the image, which avoids aliasing. The footprint of each output pixel
+     * is estimated from the local Jacobian of the mapping.
+     * Where the image is not shrunk, it's the same as bilinear.
+     */
+    public static final int EWA = 5;
+
+    // the EWA footprint is limited to this radius (in source pixels),
+    // so that extreme minifications don't become very slow
+    private static final double MAX_EWA_RADIUS = 12;
+
     /**
      * The action to take for pixels off the image edge.
      */
@@ -88,6 +107,39 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
      * The input image rectangle.
      */
 //    protected Rectangle originalSpace;
+
+    // The cached output of transformInverse for every pixel
+    // (interleaved x and y), together with the geometry state
+    // and image size that it was calculated for.
+    private float[] mappingField;
+    private List<Object> mappingFieldState;
+
+    // larger mapping fields are not cached
+    private static final long MAX_MAPPING_FIELD_BYTES = Runtime.getRuntime().maxMemory() / 16;
+
+    // The settings of the approximation of smooth mappings: the mapping is
+    // calculated exactly only at the corners of grid cells, and interpolated
+    // inside the cells where the error at the test points is small enough.
+    protected static final int GRID_CELL_SIZE = 16;
+    private static final int MIN_GRID_CELL_SIZE = 4;
+    private static final float GRID_TOLERANCE = 0.25f;
+
+    // a bigger difference between the mapping of two neighboring
+    // border pixels and the average difference means a discontinuity
+    private static final float MAX_STEP_ERROR = 1.0f;
+
+    // the results of checking a grid cell
+    private static final int CELL_ACCURATE = 0;
+    private static final int CELL_INACCURATE = 1;
+    private static final int CELL_DISCONTINUOUS = 2;
+
+    // whether the smooth mappings can be approximated on the current thread
+    private static final ThreadLocal<Boolean> approximationAllowed =
+            ThreadLocal.withInitial(() -> false);
+    // whether a mapping was approximated since the last allowApproximation call
+    private static final ThreadLocal<Boolean> approximationUsed =
+            ThreadLocal.withInitial(() -> false);
+
     protected TransformFilter(String filterName) {
         super(filterName);
     }
@@ -141,6 +193,48 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
      */
     protected abstract void transformInverse(int x, int y, float[] out);
 
+    /**
+     * Returns the state of the settings that affect the result of
+     * {@link #transformInverse}, or null if the mapping should not be cached.
+     * If it's not null, then the mapping is calculated only once for
+     * each state and image size, and the filter runs that change
+     * only the edge action or the interpolation reuse it.
+     * It's called after the subclasses calculated their derived fields.
+     */
+    protected Object getGeometryState() {
+        return null;
+    }
+
+    /**
+     * Returns true if the result of {@link #transformInverse} changes
+     * smoothly enough to be approximated by interpolating it on a grid.
+     * The mapping can have discontinuities (such as the edge of an
+     * affected area), because the cells crossed by them are calculated
+     * exactly, but it must not have a discontinuity that fits
+     * inside a grid cell of {@link #GRID_CELL_SIZE} pixels.
+     */
+    protected boolean hasSmoothMapping() {
+        return false;
+    }
+
+    /**
+     * Sets whether the filters with smooth mappings can use a faster,
+     * approximated mapping on the current thread (for example
+     * in previews), and resets the result of {@link #wasApproximated()}.
+     */
+    public static void allowApproximation(boolean allow) {
+        approximationAllowed.set(allow);
+        approximationUsed.set(false);
+    }
+
+    /**
+     * Returns true if a filter approximated its mapping on the current
+     * thread since the last {@link #allowApproximation} call.
+     */
+    public static boolean wasApproximated() {
+        return approximationUsed.get();
+    }
+
     /**
      * Forward transform a rectangle. Used to determine the size of the output image.
      *
@@ -149,6 +243,233 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
     protected void transformSpace(Rectangle rect) {
     }
 
+    /**
+     * Returns the mapping field for the current geometry if it's already
+     * calculated or if it can be approximated, otherwise null.
+     */
+    private float[] getValidMappingField(List<Object> state, boolean approximate,
+                                         int width, int height) {
+        if (state != null && state.equals(mappingFieldState)) {
+            if (approximate) {
+                approximationUsed.set(true);
+            }
+            return mappingField;
+        }
+        if (approximate) {
+            return calcApproximatedField(state, width, height);
+        }
+        return null;
+    }
+
+    /**
+     * Returns an array where the mapping field can be calculated for the given
+     * state, or null if the mapping should not be cached.
+     */
+    private float[] startMappingField(List<Object> state, int width, int height) {
+        mappingFieldState = null;
+        if (state == null || 8L * width * height > MAX_MAPPING_FIELD_BYTES) {
+            mappingField = null;
+            return null;
+        }
+        int length = 2 * width * height;
+        if (mappingField == null || mappingField.length != length) {
+            mappingField = new float[length];
+        }
+        return mappingField;
+    }
+
+    private List<Object> createMappingFieldState(int width, int height, boolean approximate) {
+        Object geometryState = getGeometryState();
+        if (geometryState == null) {
+            return null;
+        }
+        return List.of(geometryState, width, height, approximate);
+    }
+
+    private boolean shouldApproximate() {
+        return approximationAllowed.get() && hasSmoothMapping();
+    }
+
+    /**
+     * Returns the mapping field for the whole image calculated
+     * on an adaptive grid, or null if it would need too much memory.
+     */
+    private float[] calcApproximatedField(List<Object> state, int width, int height) {
+        float[] field = startMappingField(state, width, height);
+        boolean cached = field != null;
+        if (!cached) {
+            if (8L * width * height > MAX_MAPPING_FIELD_BYTES) {
+                return null;
+            }
+            field = new float[2 * width * height];
+        }
+
+        // each task calculates a row of grid cells
+        int numBands = (height + GRID_CELL_SIZE - 1) / GRID_CELL_SIZE;
+        Future<?>[] futures = new Future[numBands];
+        for (int band = 0; band < numBands; band++) {
+            int y0 = band * GRID_CELL_SIZE;
+            int y1 = Math.min(y0 + GRID_CELL_SIZE, height);
+            float[] fieldArray = field;
+            futures[band] = ThreadPool.submit(() -> {
+                float[] out = new float[2];
+                for (int x0 = 0; x0 < width; x0 += GRID_CELL_SIZE) {
+                    int x1 = Math.min(x0 + GRID_CELL_SIZE, width);
+                    approximateCell(fieldArray, width, x0, y0, x1, y1, out);
+                }
+            });
+        }
+        ThreadPool.waitFor(futures, ProgressTracker.NULL_TRACKER);
+
+        if (cached) {
+            mappingFieldState = state;
+        }
+        approximationUsed.set(true);
+        return field;
+    }
+
+    /**
+     * Fills the mapping field for the pixels in the [x0, x1) x [y0, y1)
+     * cell by interpolating between the exact mappings of the corner pixels,
+     * or subdivides the cell if the interpolation is not accurate enough,
+     * or calculates it exactly if the mapping is discontinuous in it.
+     */
+    private void approximateCell(float[] field, int width,
+                                 int x0, int y0, int x1, int y1, float[] out) {
+        int lastX = x1 - 1;
+        int lastY = y1 - 1;
+        int cellWidth = x1 - x0;
+        int cellHeight = y1 - y0;
+        if (cellWidth <= MIN_GRID_CELL_SIZE && cellHeight <= MIN_GRID_CELL_SIZE) {
+            calcCellExactly(field, width, x0, y0, x1, y1, out);
+            return;
+        }
+
+        transformInverse(x0, y0, out);
+        float nwX = out[0], nwY = out[1];
+        transformInverse(lastX, y0, out);
+        float neX = out[0], neY = out[1];
+        transformInverse(x0, lastY, out);
+        float swX = out[0], swY = out[1];
+        transformInverse(lastX, lastY, out);
+        float seX = out[0], seY = out[1];
+
+        float dx = lastX == x0 ? 0 : 1.0f / (lastX - x0);
+        float dy = lastY == y0 ? 0 : 1.0f / (lastY - y0);
+
+        // Every pixel of the border is checked, because a discontinuity
+        // that crosses the cell also crosses its border, where it's
+        // a jump between the mappings of two neighboring pixels.
+        int check = checkEdge(x0, y0, 1, 0, cellWidth, nwX, nwY, neX, neY, out);
+        if (check == CELL_ACCURATE) {
+            check = checkEdge(x0, lastY, 1, 0, cellWidth, swX, swY, seX, seY, out);
+        }
+        if (check == CELL_ACCURATE) {
+            check = checkEdge(x0, y0, 0, 1, cellHeight, nwX, nwY, swX, swY, out);
+        }
+        if (check == CELL_ACCURATE) {
+            check = checkEdge(lastX, y0, 0, 1, cellHeight, neX, neY, seX, seY, out);
+        }
+        if (check == CELL_ACCURATE) {
+            // the center is the farthest from the checked pixels
+            int midX = (x0 + lastX) / 2;
+            int midY = (y0 + lastY) / 2;
+            float u = (midX - x0) * dx;
+            float v = (midY - y0) * dy;
+            transformInverse(midX, midY, out);
+            if (!isClose(out, bilerp(u, v, nwX, neX, swX, seX),
+                    bilerp(u, v, nwY, neY, swY, seY), GRID_TOLERANCE)) {
+                check = CELL_INACCURATE;
+            }
+        }
+
+        if (check == CELL_DISCONTINUOUS) {
+            // subdividing wouldn't help the cells along the discontinuity
+            calcCellExactly(field, width, x0, y0, x1, y1, out);
+            return;
+        }
+        if (check == CELL_INACCURATE) {
+            int splitX = x0 + (cellWidth + 1) / 2;
+            int splitY = y0 + (cellHeight + 1) / 2;
+            approximateCell(field, width, x0, y0, splitX, splitY, out);
+            approximateCell(field, width, splitX, y0, x1, splitY, out);
+            approximateCell(field, width, x0, splitY, splitX, y1, out);
+            approximateCell(field, width, splitX, splitY, x1, y1, out);
+            return;
+        }
+
+        for (int y = y0; y < y1; y++) {
+            float v = (y - y0) * dy;
+            int index = 2 * (y * width + x0);
+            for (int x = x0; x < x1; x++, index += 2) {
+                float u = (x - x0) * dx;
+                field[index] = bilerp(u, v, nwX, neX, swX, seX);
+                field[index + 1] = bilerp(u, v, nwY, neY, swY, seY);
+            }
+        }
+    }
+
+    /**
+     * Compares the exact mapping of the pixels of a cell edge, which starts at
+     * (x, y) and has the given length and direction, with the linear
+     * interpolation between the mappings of its end points.
+     */
+    private int checkEdge(int x, int y, int stepX, int stepY, int length,
+                          float startX, float startY, float endX, float endY,
+                          float[] out) {
+        if (length < 3) {
+            return CELL_ACCURATE;
+        }
+        float avgStepX = (endX - startX) / (length - 1);
+        float avgStepY = (endY - startY) / (length - 1);
+        float prevX = startX;
+        float prevY = startY;
+        int result = CELL_ACCURATE;
+        for (int i = 1; i < length; i++) {
+            if (i == length - 1) {
+                out[0] = endX;
+                out[1] = endY;
+            } else {
+                transformInverse(x + i * stepX, y + i * stepY, out);
+            }
+            if (!isClose(out, prevX + avgStepX, prevY + avgStepY, MAX_STEP_ERROR)) {
+                return CELL_DISCONTINUOUS;
+            }
+            if (result == CELL_ACCURATE && !isClose(out,
+                    startX + i * avgStepX, startY + i * avgStepY, GRID_TOLERANCE)) {
+                // the whole edge is still checked for jumps
+                result = CELL_INACCURATE;
+            }
+            prevX = out[0];
+            prevY = out[1];
+        }
+        return result;
+    }
+
+    private static boolean isClose(float[] out, float x, float y, float tolerance) {
+        // also rejects NaN and infinite coordinates
+        return Math.abs(out[0] - x) <= tolerance
+                && Math.abs(out[1] - y) <= tolerance;
+    }
+
+    private void calcCellExactly(float[] field, int width,
+                                 int x0, int y0, int x1, int y1, float[] out) {
+        for (int y = y0; y < y1; y++) {
+            int index = 2 * (y * width + x0);
+            for (int x = x0; x < x1; x++, index += 2) {
+                transformInverse(x, y, out);
+                field[index] = out[0];
+                field[index + 1] = out[1];
+            }
+        }
+    }
+
+    private static float bilerp(float u, float v, float nw, float ne, float sw, float se) {
+        float top = nw + u * (ne - nw);
+        float bottom = sw + u * (se - sw);
+        return top + v * (bottom - top);
+    }
+
     @Override
     public BufferedImage filter(BufferedImage src, BufferedImage dst) {
         srcWidth = src.getWidth();
@@ -180,6 +501,10 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
             return filterPixelsBilinearOLD(dst, srcWidth, srcHeight, inPixels);
         } else if (interpolation == NEAREST_NEIGHBOUR_OLD) {
             return filterPixelsNNOLD(dst, srcWidth, srcHeight, inPixels);
+        } else if (interpolation == BICUBIC) {
+            return filterPixelsHighQuality(dst, srcWidth, srcHeight, inPixels, false);
+        } else if (interpolation == EWA) {
+            return filterPixelsHighQuality(dst, srcWidth, srcHeight, inPixels, true);
         }
 
         throw new IllegalStateException("should not get here");
@@ -259,6 +584,11 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
         int outWidth = width;
         int outHeight = height;
 
+        boolean approximate = shouldApproximate();
+        List<Object> state = createMappingFieldState(width, height, approximate);
+        float[] validField = getValidMappingField(state, approximate, width, height);
+        float[] newField = validField == null ? startMappingField(state, width, height) : null;
+
         pt = createProgressTracker(outHeight);
 
         @SuppressWarnings("unchecked")
@@ -270,9 +600,10 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
             Callable<int[]> calculateLineTask = () -> {
                 int srcX, srcY;
                 int[] outPixels = new int[outWidth];
+                int fieldIndex = 2 * finalY * outWidth;
 
-                for (int x = 0; x < outWidth; x++) {
-                    transformInverse(x, finalY, out);
+                for (int x = 0; x < outWidth; x++, fieldIndex += 2) {
+                    mapPixel(x, finalY, out, validField, newField, fieldIndex);
                     srcX = (int) out[0];
                     srcY = (int) out[1];
                     // int casting rounds towards zero, so we check out[0] < 0, not srcX < 0
@@ -287,6 +618,9 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
         ThreadPool.waitFor2(resultLines, dst, width, pt);
         finishProgressTracker();
 
+        if (newField != null) {
+            mappingFieldState = state;
+        }
         return dst;
     }
 
@@ -300,6 +634,11 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
 //        int outX, outY;
 //		int index = 0;
 
+        boolean approximate = shouldApproximate();
+        List<Object> state = createMappingFieldState(width, height, approximate);
+        float[] validField = getValidMappingField(state, approximate, width, height);
+        float[] newField = validField == null ? startMappingField(state, width, height) : null;
+
         pt = createProgressTracker(outHeight);
 
         @SuppressWarnings("unchecked")
@@ -310,8 +649,9 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
             int finalY = y;
             Callable<int[]> calculateLineTask = () -> {
                 int[] outPixels = new int[outWidth];
-                for (int x = 0; x < outWidth; x++) {
-                    transformInverse(x, finalY, out);
+                int fieldIndex = 2 * finalY * outWidth;
+                for (int x = 0; x < outWidth; x++, fieldIndex += 2) {
+                    mapPixel(x, finalY, out, validField, newField, fieldIndex);
                     int srcX = (int) FastMath.floor(out[0]);
                     int srcY = (int) FastMath.floor(out[1]);
                     float xWeight = out[0] - srcX;
@@ -342,9 +682,223 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
         ThreadPool.waitFor2(resultLines, dst, width, pt);
         finishProgressTracker();
 
+        if (newField != null) {
+            mappingFieldState = state;
+        }
         return dst;
     }
 
+    private BufferedImage filterPixelsHighQuality(BufferedImage dst, int width, int height,
+                                                  int[] inPixels, boolean ewa) {
+        boolean approximate = shouldApproximate();
+        List<Object> state = createMappingFieldState(width, height, approximate);
+        float[] validField = getValidMappingField(state, approximate, width, height);
+        float[] newField = validField == null ? startMappingField(state, width, height) : null;
+
+        pt = createProgressTracker(height);
+
+        @SuppressWarnings("unchecked")
+        Future<int[]>[] resultLines = new Future[height];
+
+        for (int y = 0; y < height; y++) {
+            int finalY = y;
+            Callable<int[]> calculateLineTask = () -> {
+                int[] outPixels = new int[width];
+                float[] out = new float[2];
+
+                // the mapping of this line and of the next one, with an
+                // extra column, for estimating the Jacobian of the mapping
+                float[] line = null;
+                float[] nextLine = null;
+                if (ewa) {
+                    line = new float[2 * (width + 1)];
+                    nextLine = new float[2 * (width + 1)];
+                    int fieldIndex = 2 * finalY * width;
+                    for (int x = 0; x < width; x++, fieldIndex += 2) {
+                        mapPixel(x, finalY, out, validField, newField, fieldIndex);
+                        line[2 * x] = out[0];
+                        line[2 * x + 1] = out[1];
+                    }
+                    transformInverse(width, finalY, out);
+                    line[2 * width] = out[0];
+                    line[2 * width + 1] = out[1];
+                    int nextIndex = 2 * (finalY + 1) * width;
+                    for (int x = 0; x < width; x++, nextIndex += 2) {
+                        if (validField != null && finalY + 1 < height) {
+                            nextLine[2 * x] = validField[nextIndex];
+                            nextLine[2 * x + 1] = validField[nextIndex + 1];
+                        } else {
+                            transformInverse(x, finalY + 1, out);
+                            nextLine[2 * x] = out[0];
+                            nextLine[2 * x + 1] = out[1];
+                        }
+                    }
+                }
+
+                int fieldIndex = 2 * finalY * width;
+                for (int x = 0; x < width; x++, fieldIndex += 2) {
+                    if (ewa) {
+                        float u = line[2 * x];
+                        float v = line[2 * x + 1];
+                        // the partial derivatives of the mapping
+                        double ux = line[2 * x + 2] - u;
+                        double vx = line[2 * x + 3] - v;
+                        double uy = nextLine[2 * x] - u;
+                        double vy = nextLine[2 * x + 1] - v;
+                        outPixels[x] = sampleEWA(inPixels, width, height, u, v, ux, vx, uy, vy);
+                    } else {
+                        mapPixel(x, finalY, out, validField, newField, fieldIndex);
+                        outPixels[x] = sampleBicubic(inPixels, width, height, out[0], out[1]);
+                    }
+                }
+                return outPixels;
+            };
+            resultLines[finalY] = ThreadPool.submit2(calculateLineTask);
+        }
+        ThreadPool.waitFor2(resultLines, dst, width, pt);
+        finishProgressTracker();
+
+        if (newField != null) {
+            mappingFieldState = state;
+        }
+        return dst;
+    }
+
+    private int sampleBicubic(int[] pixels, int width, int height, float u, float v) {
+        int srcX = (int) FastMath.floor(u);
+        int srcY = (int) FastMath.floor(v);
+        float tx = u - srcX;
+        float ty = v - srcY;
+
+        float[] wx = catmullRomWeights(tx);
+        float[] wy = catmullRomWeights(ty);
+        boolean inside = srcX >= 1 && srcX < width - 2 && srcY >= 1 && srcY < height - 2;
+
+        float a = 0, r = 0, g = 0, b = 0;
+        for (int j = 0; j < 4; j++) {
+            int py = srcY - 1 + j;
+            for (int i = 0; i < 4; i++) {
+                int px = srcX - 1 + i;
+                int rgb = inside ? pixels[py * width + px] : getPixelBL(pixels, px, py, width, height);
+                float w = wx[i] * wy[j];
+                a += w * (rgb >>> 24);
+                r += w * ((rgb >> 16) & 0xFF);
+                g += w * ((rgb >> 8) & 0xFF);
+                b += w * (rgb & 0xFF);
+            }
+        }
+        return ImageMath.clamp((int) (a + 0.5f), 0, 255) << 24
+                | ImageMath.clamp((int) (r + 0.5f), 0, 255) << 16
+                | ImageMath.clamp((int) (g + 0.5f), 0, 255) << 8
+                | ImageMath.clamp((int) (b + 0.5f), 0, 255);
+    }
+
+    private static float[] catmullRomWeights(float t) {
+        float t2 = t * t;
+        float t3 = t2 * t;
+        return new float[]{
+                0.5f * (-t3 + 2 * t2 - t),
+                0.5f * (3 * t3 - 5 * t2 + 2),
+                0.5f * (-3 * t3 + 4 * t2 + t),
+                0.5f * (t3 - t2)
+        };
+    }
+
+    /**
+     * Samples the source with a Gaussian elliptical weighted average
+     * filter (Heckbert), the ellipse being the image of the output pixel.
+     */
+    private int sampleEWA(int[] pixels, int width, int height, float u, float v,
+                          double ux, double vx, double uy, double vy) {
+        double maxDerivative = Math.max(Math.max(Math.abs(ux), Math.abs(vx)),
+                Math.max(Math.abs(uy), Math.abs(vy)));
+        if (!(maxDerivative > 1)) {
+            // not shrunk (or not finite): the bilinear interpolation is enough
+            return sampleBilinear(pixels, width, height, u, v);
+        }
+        if (maxDerivative > MAX_EWA_RADIUS) {
+            double scale = MAX_EWA_RADIUS / maxDerivative;
+            ux *= scale;
+            vx *= scale;
+            uy *= scale;
+            vy *= scale;
+        }
+
+        // the implicit ellipse equation A*du^2 + B*du*dv + C*dv^2 = F,
+        // enlarged by 1 pixel for the reconstruction filter
+        double ellipseA = vx * vx + vy * vy + 1;
+        double ellipseB = -2 * (ux * vx + uy * vy);
+        double ellipseC = ux * ux + uy * uy + 1;
+        double ellipseF = ellipseA * ellipseC - ellipseB * ellipseB / 4;
+
+        double radiusU = Math.sqrt(ellipseC);
+        double radiusV = Math.sqrt(ellipseA);
+        int minX = (int) Math.ceil(u - radiusU);
+        int maxX = (int) Math.floor(u + radiusU);
+        int minY = (int) Math.ceil(v - radiusV);
+        int maxY = (int) Math.floor(v + radiusV);
+
+        // accumulate with premultiplied alpha,
+        // so that transparent pixels don't bleed their color
+        double sumW = 0, a = 0, r = 0, g = 0, b = 0;
+        for (int py = minY; py <= maxY; py++) {
+            double dv = py - v;
+            for (int px = minX; px <= maxX; px++) {
+                double du = px - u;
+                double q = (ellipseA * du * du + ellipseB * du * dv + ellipseC * dv * dv) / ellipseF;
+                if (q < 1) {
+                    double w = Math.exp(-2 * q);
+                    int rgb = getPixelBL(pixels, px, py, width, height);
+                    double alpha = (rgb >>> 24) * w;
+                    sumW += w;
+                    a += alpha;
+                    r += alpha * ((rgb >> 16) & 0xFF);
+                    g += alpha * ((rgb >> 8) & 0xFF);
+                    b += alpha * (rgb & 0xFF);
+                }
+            }
+        }
+        if (sumW == 0 || a == 0) {
+            return sumW == 0 ? sampleBilinear(pixels, width, height, u, v) : 0;
+        }
+        int outA = (int) (a / sumW + 0.5);
+        return ImageMath.clamp(outA, 0, 255) << 24
+                | ImageMath.clamp((int) (r / a + 0.5), 0, 255) << 16
+                | ImageMath.clamp((int) (g / a + 0.5), 0, 255) << 8
+                | ImageMath.clamp((int) (b / a + 0.5), 0, 255);
+    }
+
+    private int sampleBilinear(int[] pixels, int width, int height, float u, float v) {
+        int srcX = (int) FastMath.floor(u);
+        int srcY = (int) FastMath.floor(v);
+        float xWeight = u - srcX;
+        float yWeight = v - srcY;
+        int nw = getPixelBL(pixels, srcX, srcY, width, height);
+        int ne = getPixelBL(pixels, srcX + 1, srcY, width, height);
+        int sw = getPixelBL(pixels, srcX, srcY + 1, width, height);
+        int se = getPixelBL(pixels, srcX + 1, srcY + 1, width, height);
+        return ImageMath.bilinearInterpolate(xWeight, yWeight, nw, ne, sw, se);
+    }
+
+    /**
+     * Puts the source position of the given output pixel into out,
+     * reading it from the valid mapping field if there is one, otherwise
+     * calculating it, and saving it into the new mapping field.
+     */
+    private void mapPixel(int x, int y, float[] out,
+                          float[] validField, float[] newField, int fieldIndex) {
+        if (validField != null) {
+            out[0] = validField[fieldIndex];
+            out[1] = validField[fieldIndex + 1];
+        } else {
+            transformInverse(x, y, out);
+            if (newField != null) {
+                newField[fieldIndex] = out[0];
+                newField[fieldIndex + 1] = out[1];
+            }
+        }
+    }
+
     private int getPixelBL(int[] pixels, int x, int y, int width, int height) {
         if ((x < 0) || (x >= width)) {  // x out of range
             if ((y < 0) || (y >= height)) { // y also out of range {
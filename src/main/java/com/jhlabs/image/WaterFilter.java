@@ -22,6 +22,7 @@ import java.awt.Shape;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
+import java.util.List;
 
 /**
  * A filter which produces a water ripple distortion.
@@ -215,6 +216,12 @@ public class WaterFilter extends TransformFilter {
         }
     }
 
+    @Override
+    protected Object getGeometryState() {
+        return List.of(icentreX, icentreY, radius,
+                wavelength, amplitude, phase);
+    }
+
     @Override
     public String toString() {
         return "Distort/Water Ripples...";
@@ -26,9 +26,20 @@ import java.util.Random;
 public class Noise implements Function1D, Function2D, Function3D {
     private static final Random randomGenerator = new Random();
 
+    // incremented when the noise is reseeded
+    private static volatile int seedVersion = 0;
+
     public static void reseed() {
         randomGenerator.setSeed(System.nanoTime());
         init();
+        seedVersion++;
+    }
+
+    /**
+     * Returns a number that changes every time the noise is reseeded
+     */
+    public static int getSeedVersion() {
+        return seedVersion;
     }
 
     private static final int B = 0x100;
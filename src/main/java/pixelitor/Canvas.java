@@ -18,6 +18,7 @@
 package pixelitor;
 
 import pixelitor.gui.View;
+import pixelitor.selection.SelectionMask;
 import pixelitor.tools.Symmetry;
 
 import java.awt.Dimension;
@@ -154,6 +155,18 @@ public class Canvas implements Serializable {
             return ((Rectangle2D) shape).createIntersection(canvasBounds);
         }
 
+        if (SelectionMask.isComplex(shape)) {
+            // avoid the very slow Area operations for complex shapes
+            if (canvasBounds.contains(shape.getBounds2D())) {
+                return shape;
+            }
+            Rectangle clipBounds = shape.getBounds().intersection(getImBounds());
+            if (clipBounds.isEmpty()) {
+                return new Area();
+            }
+            return SelectionMask.fromShape(shape, clipBounds).getOutline();
+        }
+
         Area canvasArea = new Area(canvasBounds);
         Area shapeArea = new Area(shape);
         shapeArea.intersect(canvasArea);
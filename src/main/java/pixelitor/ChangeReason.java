@@ -21,20 +21,22 @@ package pixelitor;
  * The reason for an image change
  */
 public enum ChangeReason {
-    FILTER_WITHOUT_DIALOG(true, false) {
-    }, REPEAT_LAST(true, false) {
+    FILTER_WITHOUT_DIALOG(true, false, false) {
+    }, REPEAT_LAST(true, false, false) {
     },
 
     // Can't be called "PREVIEW", because it gets
     // confused with the ImageLayer's PREVIEW state
     // after static imports...
-    PREVIEWING(false, true) {
+    PREVIEWING(false, true, true) {
 
-    }, PERFORMANCE_TEST(false, false) {
-    }, NORMAL_TEST(true, true) { 
+    }, FINAL_PREVIEW(false, true, false) {
+        // the preview that is accepted at the end of a dialog session
+    }, PERFORMANCE_TEST(false, false, false) {
+    }, NORMAL_TEST(true, true, false) {
 
-    }, TWEEN_PREVIEW(false, true) {
-    }, BATCH_AUTOMATE(false, false) {
+    }, TWEEN_PREVIEW(false, true, true) {
+    }, BATCH_AUTOMATE(false, false, false) {
     };
 
     private final boolean makeUndoBackup;
@@ -42,6 +44,9 @@ public enum ChangeReason {
     // whether this is only a preview during a dialog session
     private final boolean preview;
 
+    // whether the result can be a faster approximation
+    private final boolean approximate;
+
     public boolean needsUndo() {
         return makeUndoBackup;
     }
@@ -50,9 +55,13 @@ public enum ChangeReason {
         return preview;
     }
 
-    ChangeReason(boolean makeUndoBackup, boolean preview) {
+    public boolean allowsApproximation() {
+        return approximate;
+    }
+
+    ChangeReason(boolean makeUndoBackup, boolean preview, boolean approximate) {
         this.makeUndoBackup = makeUndoBackup;
         this.preview = preview;
+        this.approximate = approximate;
     }
 }
-
@@ -35,7 +35,7 @@ import pixelitor.history.NewSelectionEdit;
 import pixelitor.history.NotUndoableEdit;
 import pixelitor.history.PixelitorEdit;
 import pixelitor.history.SelectionShapeChangeEdit;
-import pixelitor.io.IOThread;
+import pixelitor.io.IOTasks;
 import pixelitor.io.OutputFormat;
 import pixelitor.io.SaveSettings;
 import pixelitor.layers.ContentLayer;
@@ -50,7 +50,9 @@ import pixelitor.menus.file.RecentFilesMenu;
 import pixelitor.selection.Selection;
 import pixelitor.selection.SelectionActions;
 import pixelitor.selection.ShapeCombination;
+import pixelitor.tools.StrokeRenderer;
 import pixelitor.tools.Tools;
+import pixelitor.tools.brushes.SymmetryBrush;
 import pixelitor.tools.move.MoveMode;
 import pixelitor.tools.pen.Path;
 import pixelitor.tools.pen.Paths;
@@ -58,6 +60,7 @@ import pixelitor.tools.util.PPoint;
 import pixelitor.tools.util.PRectangle;
 import pixelitor.utils.ImageUtils;
 import pixelitor.utils.Messages;
+import pixelitor.utils.Timings;
 import pixelitor.utils.VisibleForTesting;
 
 import javax.swing.*;
@@ -98,6 +101,9 @@ public class Composition implements Serializable {
     // serialization is used for saving in the pxc format
     private static final long serialVersionUID = 1L;
 
+    private static final Timings.Key COMPOSITE_TIMINGS_KEY
+            = Timings.key(Timings.Category.COMPOSITE, "Composite Image");
+
     // a counter for the names of new layers
     private int newLayerCount = 1;
 
@@ -117,6 +123,9 @@ public class Composition implements Serializable {
 
     private transient BufferedImage compositeImage;
 
+    // speeds up the composite image calculation while a layer is moved
+    private transient LayerMoveCache layerMoveCache;
+
     private transient View view;
 
     private transient Selection selection;
@@ -401,6 +410,7 @@ public class Composition implements Serializable {
         }
         g.dispose();
 
+        bellowLayer.pixelsChanged();
         bellowLayer.updateIconImage();
 
         deleteLayer(layer, false, updateGUI);
@@ -636,6 +646,10 @@ public class Composition implements Serializable {
 
             Layer layer = getActiveMaskOrLayer();
             layer.startMovement();
+
+            if (layer == activeLayer) {
+                layerMoveCache = LayerMoveCache.create(this, layer, getCompositeImage());
+            }
         }
         if (mode.movesTheSelection()) {
             if (selection != null) {
@@ -655,10 +669,24 @@ public class Composition implements Serializable {
                 selection.moveWhileDragging(relImX, relImY);
             }
         }
-        imageChanged();
+
+        if (layerMoveCache != null && layerMoveCache.isBasedOn(compositeImage)) {
+            // only the old and new areas of the moved layer are recalculated
+            Rectangle dirty = layerMoveCache.calcDirtyArea();
+            compositeImage = layerMoveCache.recalcComposite(dirty);
+            if (view != null) {
+                view.repaint();
+                view.repaintNavigator(false);
+            }
+            HistogramsPanel.INSTANCE.updateFrom(this, dirty);
+        } else {
+            imageChanged();
+        }
     }
 
     public void endMovement(MoveMode mode) {
+        layerMoveCache = null;
+
         PixelitorEdit layerEdit = null;
         if (mode.movesTheLayer()) {
             Layer layer = getActiveMaskOrLayer();
@@ -692,7 +720,7 @@ public class Composition implements Serializable {
         }
 
         int numLayers = getNumLayers();
-        BufferedImage bi = getCompositeImage();
+        BufferedImage bi = calculateCompositeImage();
 
         Layer flattened = new ImageLayer(this, bi, "flattened");
         new LayerAdder(this)
@@ -813,12 +841,18 @@ public class Composition implements Serializable {
 
 //        BufferedImage imageSoFar = ImageUtils.createCompatibleImage(getCanvasWidth(), getCanvasHeight());
 
-        BufferedImage imageSoFar = new BufferedImage(
-                canvas.getImWidth(), canvas.getImHeight(), TYPE_INT_ARGB_PRE);
+        return blendLayers(layerList, canvas.getImWidth(), canvas.getImHeight());
+    }
+
+    /**
+     * Blends the visible layers of the given list into a new image
+     */
+    static BufferedImage blendLayers(List<Layer> layers, int width, int height) {
+        BufferedImage imageSoFar = new BufferedImage(width, height, TYPE_INT_ARGB_PRE);
         Graphics2D g = imageSoFar.createGraphics();
 
         boolean firstVisibleLayer = true;
-        for (Layer layer : layerList) {
+        for (Layer layer : layers) {
             if (layer.isVisible()) {
                 BufferedImage result = layer.applyLayer(g, imageSoFar, firstVisibleLayer);
                 if (result != null) { // adjustment layer or watermarking text layer
@@ -844,6 +878,17 @@ public class Composition implements Serializable {
     }
 
     public void repaintRegion(PPoint start, PPoint end, double thickness) {
+        if (SymmetryBrush.isDrawingInParallel()) {
+            // the symmetry brush repaints the merged region
+            return;
+        }
+        if (StrokeRenderer.isRenderingThread()) {
+            // the composite cache is invalidated later, on the EDT
+            if (view != null) {
+                view.repaintRegionLater(start, end, thickness);
+            }
+            return;
+        }
         invalidateCompositeCache();
         if (view != null) { // during reload image it can be null
             view.repaintRegion(start, end, thickness);
@@ -852,6 +897,15 @@ public class Composition implements Serializable {
     }
 
     public void repaintRegion(PRectangle area) {
+        if (SymmetryBrush.isDrawingInParallel()) {
+            return;
+        }
+        if (StrokeRenderer.isRenderingThread()) {
+            if (view != null) {
+                view.repaintRegionLater(area);
+            }
+            return;
+        }
         invalidateCompositeCache();
         if (view != null) { // during reload image it can be null
             view.repaintRegion(area);
@@ -868,7 +922,7 @@ public class Composition implements Serializable {
 
     public void addNewLayerFromComposite() {
         ImageLayer newLayer = new ImageLayer(this,
-                getCompositeImage(), "Composite");
+                calculateCompositeImage(), "Composite");
 
         new LayerAdder(this)
                 .withHistory("New Layer from Composite")
@@ -1138,14 +1192,29 @@ public class Composition implements Serializable {
 
     /**
      * Returns the composite image, which has the same dimensions as the canvas.
+     * The returned image is cached, and it must not be modified, because
+     * it can be used in other threads, for example by the histograms.
+     * While a layer is dragged, it can be a reused buffer, see
+     * {@link #isCompositeImageReused()}.
      */
     public BufferedImage getCompositeImage() {
         if(compositeImage == null) {
+            long startTime = System.nanoTime();
             compositeImage = calculateCompositeImage();
+            Timings.record(COMPOSITE_TIMINGS_KEY, name, startTime);
         }
         return compositeImage;
     }
 
+    /**
+     * Returns true if the composite image is a buffer that is reused
+     * while a layer is dragged. Such an image can be painted on the EDT,
+     * but other threads should work on a copy.
+     */
+    public boolean isCompositeImageReused() {
+        return layerMoveCache != null && layerMoveCache.isReusedBuffer(compositeImage);
+    }
+
     public void imageChanged() {
         imageChanged(FULL);
     }
@@ -1170,6 +1239,30 @@ public class Composition implements Serializable {
 
         if (actions.histogramChanged()) {
             HistogramsPanel.INSTANCE.updateFrom(this);
+        } else {
+            HistogramsPanel.INSTANCE.contentChanged(this);
+        }
+    }
+
+    /**
+     * Similar to {@link #imageChanged(ImageChangeActions)}, but it is known
+     * that only the given region (in canvas coordinates) has changed,
+     * which allows the histograms to be updated incrementally.
+     */
+    public void imageChanged(ImageChangeActions actions, Rectangle dirtyRect) {
+        invalidateCompositeCache();
+
+        if (actions.repaintNeeded()) {
+            if (view != null) {
+                view.repaint();
+                view.repaintNavigator(false);
+            }
+        }
+
+        if (actions.histogramChanged()) {
+            HistogramsPanel.INSTANCE.updateFrom(this, dirtyRect);
+        } else {
+            HistogramsPanel.INSTANCE.contentChanged(this);
         }
     }
 
@@ -1178,6 +1271,9 @@ public class Composition implements Serializable {
             compositeImage.flush();
         }
         compositeImage = null;
+
+        // something else has also changed
+        layerMoveCache = null;
     }
 
     public boolean isActive() {
@@ -1314,20 +1410,18 @@ public class Composition implements Serializable {
         assert EventQueue.isDispatchThread() : "not EDT thread";
 
         // prevents starting a new save on the EDT while an asynchronous
-        // save is already scheduled or running on the IO thread
+        // save is already scheduled or running for the same file
         String path = file.getAbsolutePath();
-        if (IOThread.isProcessing(path)) {
+        if (IOTasks.isProcessing(path)) {
             return CompletableFuture.completedFuture(null);
         }
-        IOThread.markWriteProcessing(path);
 
         // set to not dirty already at the beginning of the saving process,
         // so that subsequent closing does not trigger another, parallel save
         boolean wasDirty = isDirty();
         setDirty(false);
 
-        return CompletableFuture
-            .runAsync(saveTask, IOThread.getExecutor())
+        return IOTasks.submitWrite(file, saveTask)
             .handle((v, e) -> {
                 if (e != null) {
                     Messages.showExceptionOnEDT(e);
@@ -1335,7 +1429,6 @@ public class Composition implements Serializable {
                 } else {
                     EventQueue.invokeLater(() -> afterSuccessfulSaveActions(file, addToRecentMenus));
                 }
-                EventQueue.invokeLater(() -> IOThread.writingFinishedFor(path));
                 return null;
             });
     }
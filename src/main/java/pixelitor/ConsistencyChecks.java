@@ -175,7 +175,7 @@ public final class ConsistencyChecks {
             return true;
         }
 
-        var image = dr.getImage();
+        var image = dr.getImageForReading();
 
         int txAbs = -dr.getTx();
         if (image.getWidth() < txAbs + canvas.getImWidth()) {
@@ -192,7 +192,7 @@ public final class ConsistencyChecks {
 
     private static boolean throwImageDoesNotCoverCanvasException(Drawable dr) {
         var canvas = dr.getComp().getCanvas();
-        var img = dr.getImage();
+        var img = dr.getImageForReading();
 
         String msg = format("canvas width = %d, canvas height = %d, " +
                         "image width = %d, image height = %d, " +
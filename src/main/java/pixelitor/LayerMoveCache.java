@@ -0,0 +1,201 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor;
+
+import pixelitor.layers.ImageLayer;
+import pixelitor.layers.Layer;
+import pixelitor.utils.ImageUtils;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Speeds up the recalculation of the composite image while an image
+ * layer is dragged: the layers below the moved layer are blended only
+ * once, and for each mouse event only the old and new areas of the
+ * moved layer are blended again.
+ *
+ * The composite images are double-buffered: each event updates the back
+ * buffer, which then becomes the new composite image. The back buffer
+ * is one event behind, so the area that changed in the previous event
+ * is repainted into it together with the current dirty area.
+ */
+class LayerMoveCache {
+    private final ImageLayer movedLayer;
+
+    // the visible layers from the moved layer upwards
+    private final List<Layer> blendedLayers;
+
+    // the blended layers below the moved layer
+    private final BufferedImage below;
+    private final boolean visibleLayersBelow;
+
+    private final Rectangle canvasBounds;
+
+    // the last composite image and the moved layer's bounds in it
+    private BufferedImage lastComposite;
+    private Rectangle lastLayerBounds;
+
+    // false while the last composite is the initial composite image
+    private boolean lastCompositeReused;
+
+    // the buffer that will be updated next, created lazily,
+    // and the area where it differs from the last composite
+    private BufferedImage backBuffer;
+    private Rectangle backBufferStale;
+
+    private LayerMoveCache(ImageLayer movedLayer, List<Layer> blendedLayers,
+                           BufferedImage below, boolean visibleLayersBelow,
+                           Rectangle canvasBounds, BufferedImage composite) {
+        this.movedLayer = movedLayer;
+        this.blendedLayers = blendedLayers;
+        this.below = below;
+        this.visibleLayersBelow = visibleLayersBelow;
+        this.canvasBounds = canvasBounds;
+        lastComposite = composite;
+        lastLayerBounds = calcLayerBounds();
+    }
+
+    /**
+     * Returns a new cache for the movement of the given layer, or null if
+     * the composite image can't be updated incrementally, because
+     * an adjustment layer above the moved layer changes every pixel.
+     */
+    static LayerMoveCache create(Composition comp, Layer moved, BufferedImage composite) {
+        if (!(moved instanceof ImageLayer) || !moved.isVisible() || moved.isAdjustment()) {
+            return null;
+        }
+
+        List<Layer> layersBelow = new ArrayList<>();
+        List<Layer> blendedLayers = new ArrayList<>();
+        boolean movedFound = false;
+        for (int i = 0; i < comp.getNumLayers(); i++) {
+            Layer layer = comp.getLayer(i);
+            if (layer == moved) {
+                movedFound = true;
+            }
+            if (!layer.isVisible()) {
+                continue;
+            }
+            if (movedFound) {
+                if (layer.isAdjustment()) {
+                    return null;
+                }
+                blendedLayers.add(layer);
+            } else {
+                layersBelow.add(layer);
+            }
+        }
+        assert movedFound;
+
+        Canvas canvas = comp.getCanvas();
+        BufferedImage below = Composition.blendLayers(layersBelow,
+                canvas.getImWidth(), canvas.getImHeight());
+        return new LayerMoveCache((ImageLayer) moved, blendedLayers, below,
+                !layersBelow.isEmpty(), canvas.getImBounds(), composite);
+    }
+
+    /**
+     * Returns true if the given image is the last composite
+     * image calculated with the help of this cache.
+     */
+    boolean isBasedOn(BufferedImage composite) {
+        return composite == lastComposite;
+    }
+
+    /**
+     * Returns the area of the canvas that changed since the
+     * last composite image, because the layer has moved.
+     */
+    Rectangle calcDirtyArea() {
+        Rectangle dirty = lastLayerBounds.union(calcLayerBounds());
+        return dirty.intersection(canvasBounds);
+    }
+
+    /**
+     * Returns true if the given image is one of the composite buffers
+     * that are overwritten by the next events of this movement.
+     */
+    boolean isReusedBuffer(BufferedImage composite) {
+        return lastCompositeReused && composite == lastComposite;
+    }
+
+    /**
+     * Returns the updated composite image, where only the given dirty
+     * area is recalculated. The returned image is one of the two reused
+     * buffers, the composite image of the movement start isn't modified.
+     */
+    BufferedImage recalcComposite(Rectangle dirty) {
+        BufferedImage composite;
+        Rectangle repaintArea;
+        if (backBuffer == null) {
+            composite = ImageUtils.copyImage(lastComposite);
+            repaintArea = dirty;
+        } else {
+            composite = backBuffer;
+            repaintArea = union(backBufferStale, dirty);
+        }
+
+        if (!repaintArea.isEmpty()) {
+            Graphics2D g = composite.createGraphics();
+            g.setClip(repaintArea);
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(below, 0, 0, null);
+
+            boolean firstVisibleLayer = !visibleLayersBelow;
+            for (Layer layer : blendedLayers) {
+                BufferedImage result = layer.applyLayer(g, composite, firstVisibleLayer);
+                assert result == null : "adjustment layer " + layer.getName();
+                firstVisibleLayer = false;
+            }
+            g.dispose();
+        }
+
+        // the previous composite becomes the back buffer, unless it is
+        // the initial composite, which could be used in other threads
+        if (lastCompositeReused) {
+            backBuffer = lastComposite;
+            backBufferStale = dirty;
+        }
+        lastCompositeReused = true;
+
+        lastComposite = composite;
+        lastLayerBounds = calcLayerBounds();
+        return composite;
+    }
+
+    private static Rectangle union(Rectangle r1, Rectangle r2) {
+        if (r1.isEmpty()) {
+            return r2;
+        }
+        if (r2.isEmpty()) {
+            return r1;
+        }
+        return r1.union(r2);
+    }
+
+    private Rectangle calcLayerBounds() {
+        BufferedImage image = movedLayer.getImageForReading();
+        return new Rectangle(movedLayer.getTx(), movedLayer.getTy(),
+                image.getWidth(), image.getHeight());
+    }
+}
@@ -24,7 +24,7 @@ import pixelitor.gui.PixelitorWindow;
 import pixelitor.gui.View;
 import pixelitor.gui.utils.Dialogs;
 import pixelitor.history.History;
-import pixelitor.io.IOThread;
+import pixelitor.io.IOTasks;
 import pixelitor.io.OpenSave;
 import pixelitor.layers.Drawable;
 import pixelitor.layers.ImageLayer;
@@ -374,16 +374,14 @@ public class OpenImages {
         }
 
         // prevents starting a new reload on the EDT while an asynchronous
-        // reload is already scheduled or running on the IO thread
-        if (IOThread.isProcessing(path)) {
+        // reload or save of the same file is already scheduled or running
+        if (IOTasks.isProcessing(path)) {
             return;
         }
-        IOThread.markReadProcessing(path);
 
         OpenSave.loadCompAsync(file)
                 .thenAcceptAsync(view::replaceJustReloadedComp,
                         EventQueue::invokeLater)
-                .whenComplete((v, e) -> IOThread.readingFinishedFor(path))
                 .exceptionally(Messages::showExceptionOnEDT);
     }
 
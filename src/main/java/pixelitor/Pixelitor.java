@@ -26,7 +26,7 @@ import pixelitor.gui.PixelitorWindow;
 import pixelitor.gui.View;
 import pixelitor.gui.utils.Dialogs;
 import pixelitor.gui.utils.GUIUtils;
-import pixelitor.io.IOThread;
+import pixelitor.io.IOTasks;
 import pixelitor.io.OpenSave;
 import pixelitor.layers.AddLayerMaskAction;
 import pixelitor.layers.AddTextLayerAction;
@@ -38,6 +38,7 @@ import pixelitor.tools.pen.Path;
 import pixelitor.tools.util.DragDisplay;
 import pixelitor.utils.AppPreferences;
 import pixelitor.utils.Messages;
+import pixelitor.utils.ScratchImage;
 import pixelitor.utils.Shapes;
 import pixelitor.utils.Utils;
 
@@ -118,6 +119,7 @@ public class Pixelitor {
 //        GlobalKeyboardWatch.showEventsSlowerThan(100, TimeUnit.MILLISECONDS);
 
         setLookAndFeel();
+        ScratchImage.setEnabled(AppPreferences.loadScratchFiles());
 
         var pw = PixelitorWindow.getInstance();
         Dialogs.setMainWindowInitialized(true);
@@ -135,7 +137,7 @@ public class Pixelitor {
         openCLFilesAsync(args)
                 .thenAcceptAsync(v -> afterStartTestActions(pw), EventQueue::invokeLater)
                 .thenRunAsync(Utils::preloadFontNames,
-                        IOThread.getExecutor())
+                        IOTasks.getBackgroundExecutor())
                 .exceptionally(Messages::showExceptionOnEDT);
     }
 
@@ -178,7 +180,7 @@ public class Pixelitor {
 
     public static void exitApp(PixelitorWindow pw) {
         assert EventQueue.isDispatchThread();
-        var paths = IOThread.getCurrentWritePaths();
+        var paths = IOTasks.getCurrentWritePaths();
         if (!paths.isEmpty()) {
             String msg = "<html>The writing of the following files is not finished yet. Exit anyway?<br><ul>";
             for (String path : paths) {
@@ -188,7 +190,7 @@ public class Pixelitor {
                     msg,
                     "Warning", new String[]{"Wait 10 seconds", "Exit now"},
                     0);
-            if (wait && IOThread.isBusyWriting()) {
+            if (wait && IOTasks.isBusyWriting()) {
                 // wait on another thread so that the status bar
                 // can be updated while waiting
                 new Thread(() -> {
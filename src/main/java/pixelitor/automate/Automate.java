@@ -102,7 +102,9 @@ public class Automate {
     }
 
     private static void processFile(File file, CompAction action, File saveDir) {
-        OpenSave.openFileAsync(file)
+        // if the action shrinks the images anyway, then
+        // there is no need to decode all the pixels of large files
+        OpenSave.openFileAsync(file, action.getTargetBox())
                 .thenComposeAsync(
                         comp -> process(comp, action),
                         EventQueue::invokeLater)
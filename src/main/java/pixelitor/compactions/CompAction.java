@@ -18,6 +18,7 @@ package pixelitor.compactions;
 
 import pixelitor.Composition;
 
+import java.awt.Dimension;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -25,4 +26,12 @@ import java.util.concurrent.CompletableFuture;
  */
 public interface CompAction {
     CompletableFuture<Composition> process(Composition comp);
+
+    /**
+     * Returns the box into which this action shrinks the images, or null.
+     * Batch processing uses it to subsample large input files while decoding.
+     */
+    default Dimension getTargetBox() {
+        return null;
+    }
 }
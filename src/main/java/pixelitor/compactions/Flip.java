@@ -82,7 +82,7 @@ public class Flip extends SimpleCompAction {
             @Override
             public AffineTransform createImageTransform(ImageLayer layer) {
                 var at = new AffineTransform();
-                at.translate(layer.getImage().getWidth(), 0);
+                at.translate(layer.getImageForReading().getWidth(), 0);
                 at.scale(-1, 1);
                 return at;
             }
@@ -103,7 +103,7 @@ public class Flip extends SimpleCompAction {
             @Override
             public AffineTransform createImageTransform(ImageLayer layer) {
                 var at = new AffineTransform();
-                at.translate(0, layer.getImage().getHeight());
+                at.translate(0, layer.getImageForReading().getHeight());
                 at.scale(1, -1);
                 return at;
             }
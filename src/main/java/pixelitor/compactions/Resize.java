@@ -56,6 +56,14 @@ public class Resize implements CompAction {
         this.resizeInBox = resizeInBox;
     }
 
+    @Override
+    public Dimension getTargetBox() {
+        if (resizeInBox) {
+            return new Dimension(targetWidth, targetHeight);
+        }
+        return null;
+    }
+
     @Override
     public CompletableFuture<Composition> process(Composition comp) {
         Canvas oldCanvas = comp.getCanvas();
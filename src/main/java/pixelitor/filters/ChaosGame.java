@@ -290,6 +290,12 @@ public class ChaosGame extends ParametrizedFilter {
         return false;
     }
 
+    @Override
+    protected Object getCacheableState() {
+        // the result is random, and reseeding keeps the settings
+        return null;
+    }
+
     /**
      * A point with double precision and an associated color
      */
@@ -23,6 +23,7 @@ import pixelitor.filters.gui.IntChoiceParam.Value;
 import pixelitor.filters.gui.LogZoomParam;
 import pixelitor.filters.gui.RangeParam;
 import pixelitor.filters.gui.ShowOriginal;
+import pixelitor.utils.ImageUtils;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
@@ -82,7 +83,7 @@ public abstract class ComplexFractal extends ParametrizedFilter {
         } else if (aa == AA_2x2) {
             // transform an image with double size, then scale it down
             BufferedImage bigSrc = new BufferedImage(
-                    src.getWidth() * 2, src.getHeight() * 2, src.getType());
+                    src.getWidth() * 2, src.getHeight() * 2, ImageUtils.getStandardType(src));
             BufferedImage bigDest = doTransformAA(bigSrc, null);
             bigSrc.flush();
             Graphics2D g2 = dest.createGraphics();
@@ -65,6 +65,12 @@ public class Fade extends ParametrizedFilter {
         return dest;
     }
 
+    @Override
+    protected Object getCacheableState() {
+        // the result also depends on the history
+        return null;
+    }
+
     public void setOpacity(int newOpacity) {
         opacityParam.setValue(newOpacity);
     }
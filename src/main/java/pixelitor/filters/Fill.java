@@ -51,6 +51,7 @@ public class Fill extends Filter {
         int fillColor = c.getRGB();
 
         Arrays.fill(pixels, fillColor);
+        ImageUtils.setPixelsFromArray(img, pixels);
     }
 
     @Override
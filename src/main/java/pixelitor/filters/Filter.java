@@ -17,6 +17,7 @@
 
 package pixelitor.filters;
 
+import com.jhlabs.image.TransformFilter;
 import pixelitor.ChangeReason;
 import pixelitor.gui.PixelitorWindow;
 import pixelitor.gui.utils.Dialogs;
@@ -26,6 +27,8 @@ import pixelitor.layers.Layer;
 import pixelitor.layers.LayerMask;
 import pixelitor.utils.ImageUtils;
 import pixelitor.utils.Messages;
+import pixelitor.utils.Timings;
+import pixelitor.utils.VisibleForTesting;
 import pixelitor.utils.test.RandomGUITest;
 
 import java.awt.Component;
@@ -34,6 +37,8 @@ import java.io.Serializable;
 
 import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
 import static pixelitor.ChangeReason.FILTER_WITHOUT_DIALOG;
+import static pixelitor.ChangeReason.PERFORMANCE_TEST;
+import static pixelitor.ChangeReason.TWEEN_PREVIEW;
 
 /**
  * The superclass of all Pixelitor filters and color adjustments
@@ -43,6 +48,14 @@ public abstract class Filter implements Serializable {
 
     private transient FilterAction filterAction;
 
+    // the content version of the drawable while the filter
+    // is running on it, or 0 if the source is not known
+    private transient long sourceVersion;
+
+    // true if the last preview was an approximation,
+    // which must not become the final result
+    private transient boolean lastPreviewApproximated;
+
     // used for making sure that there are no
     // unnecessary filter executions triggered
     public static long runCount = 0;
@@ -87,6 +100,10 @@ public abstract class Filter implements Serializable {
 
         long totalTime = (System.nanoTime() - startTime) / 1_000_000;
         Messages.showPerformanceMessage(getName(), totalTime);
+        if (dr != null) {
+            Timings.record(Timings.Category.FILTER, getClass().getSimpleName(),
+                    dr.getComp().getName(), startTime);
+        }
 
         FilterUtils.setLastFilter(this);
     }
@@ -100,7 +117,40 @@ public abstract class Filter implements Serializable {
             }
 
             BufferedImage src = dr.getFilterSourceImage();
-            dest = transformImage(src);
+            FilterResultCache.Key cacheKey = createCacheKey(dr, src, cr);
+            dest = cacheKey == null ? null : FilterResultCache.get(cacheKey);
+            if (dest != null) {
+                if (cr.isPreview()) {
+                    dest = copyIntoReusableDest(dest, dr);
+                }
+                // count it as a run, as if the filter was executed
+                runCount++;
+                // only the exact results are cached
+                lastPreviewApproximated = false;
+            } else {
+                // the smooth distortions can be approximated in previews
+                TransformFilter.allowApproximation(cr.allowsApproximation());
+                boolean approximated;
+                try {
+                    BufferedImage reusable = cr.isPreview() ? dr.getReusableFilterDest() : null;
+                    dest = transformImage(src, reusable, dr.getContentVersion());
+                } finally {
+                    approximated = TransformFilter.wasApproximated();
+                    TransformFilter.allowApproximation(false);
+                }
+                // an approximated preview must not be reused as the final result
+                if (cacheKey != null && dest != src && !approximated) {
+                    if (cr.isPreview()) {
+                        // the preview buffer must remain reusable by the layer
+                        FilterResultCache.putCopy(cacheKey, dest);
+                    } else {
+                        dest = FilterResultCache.put(cacheKey, dest);
+                    }
+                }
+                if (cr.isPreview()) {
+                    lastPreviewApproximated = approximated;
+                }
+            }
 
             assert dest != null;
 
@@ -110,6 +160,7 @@ public abstract class Filter implements Serializable {
                 dr.filterWithoutDialogFinished(dest, cr, getName());
             }
         } catch (OutOfMemoryError e) {
+            FilterResultCache.clear();
             Dialogs.showOutOfMemoryDialog(e);
         } catch (Throwable e) {
             Layer layer = (Layer) dr;
@@ -137,7 +188,83 @@ public abstract class Filter implements Serializable {
         }
     }
 
+    /**
+     * Copies a cached result into the reused preview buffer of the
+     * drawable, so that the layer doesn't display an image owned by the cache.
+     */
+    private static BufferedImage copyIntoReusableDest(BufferedImage cached, Drawable dr) {
+        BufferedImage reusable = dr.getReusableFilterDest();
+        if (reusable == null || reusable == cached
+                || !ImageUtils.canBeReusedAsDestFor(reusable, cached)) {
+            return cached;
+        }
+        reusable.getRaster().setDataElements(0, 0, cached.getRaster());
+        return reusable;
+    }
+
+    private FilterResultCache.Key createCacheKey(Drawable dr, BufferedImage src, ChangeReason cr) {
+        if (cr == TWEEN_PREVIEW || cr == PERFORMANCE_TEST) {
+            // the settings are never repeated, or the timing matters
+            return null;
+        }
+        Object state = getCacheableState();
+        if (state == null) {
+            return null;
+        }
+        return new FilterResultCache.Key(this, state, dr.getContentVersion(), src);
+    }
+
+    /**
+     * Returns true if the last preview calculated by this
+     * filter was a faster approximation of the real result.
+     */
+    public boolean wasLastPreviewApproximated() {
+        return lastPreviewApproximated;
+    }
+
+    /**
+     * Returns an immutable value object that, together with the source
+     * image, determines the output of this filter, or null if the
+     * output can't be cached (the default).
+     */
+    protected Object getCacheableState() {
+        return null;
+    }
+
+    /**
+     * Returns a number identifying the pixels of the source image
+     * of the current run, or 0 if the source is not known.
+     * Filters can use it to keep intermediate results.
+     */
+    protected long getSourceVersion() {
+        return sourceVersion;
+    }
+
     public BufferedImage transformImage(BufferedImage src) {
+        return transformImage(src, null);
+    }
+
+    /**
+     * Runs the filter on a source image whose pixels are identified by
+     * the given content version (see {@link #getSourceVersion()}).
+     */
+    @VisibleForTesting
+    public BufferedImage transformImage(BufferedImage src, BufferedImage dest, long srcVersion) {
+        sourceVersion = srcVersion;
+        try {
+            return transformImage(src, dest);
+        } finally {
+            sourceVersion = 0;
+        }
+    }
+
+    /**
+     * Runs the filter, writing the result into the given reusable
+     * destination image if it is not null and it is compatible
+     * with the source. This avoids allocating a new image
+     * for each preview in a dialog session.
+     */
+    public BufferedImage transformImage(BufferedImage src, BufferedImage reusableDest) {
         boolean convertFromGray = false;
         if (src.getType() == TYPE_BYTE_GRAY) { // editing a mask
             if (!supportsGray()) {
@@ -148,7 +275,13 @@ public abstract class Filter implements Serializable {
 
         BufferedImage dest = null;
         if (createDefaultDestImg()) {
-            dest = ImageUtils.createImageWithSameCM(src);
+            if (reusableDest != null && reusableDest != src
+                    && ImageUtils.canBeReusedAsDestFor(reusableDest, src)) {
+                ImageUtils.clearPixels(reusableDest);
+                dest = reusableDest;
+            } else {
+                dest = ImageUtils.createImageWithSameCM(src);
+            }
         }
 
         dest = transform(src, dest);
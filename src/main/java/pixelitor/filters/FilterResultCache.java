@@ -0,0 +1,249 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters;
+
+import pixelitor.layers.SharedImages;
+import pixelitor.utils.ScratchImage;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A bounded, least-recently-used cache of filter results,
+ * so that running a filter again with the same settings
+ * on the same image content returns immediately.
+ *
+ * The cache is an owner of the cached images (see {@link SharedImages}),
+ * therefore a layer copies them before modifying them. The preview
+ * results are cached as copies, because they are written into the
+ * reused preview buffers of the layer. If the scratch files are enabled,
+ * then the large final results are cached in scratch files
+ * (see {@link ScratchImage}) instead of the heap.
+ */
+public final class FilterResultCache {
+    // the total size of the cached heap images is limited
+    // to this fraction of the maximum heap size
+    private static final int HEAP_FRACTION_DIVISOR = 8;
+    private static final int MAX_ENTRIES = 16;
+
+    // the owner of the cached images
+    private static final Object OWNER = new Object();
+
+    private static final Map<Key, BufferedImage> cache =
+            new LinkedHashMap<>(MAX_ENTRIES, 0.75f, true);
+
+    // the heap and the scratch file images have separate budgets
+    private static long heapBytes = 0;
+    private static long maxHeapBytes = Runtime.getRuntime().maxMemory() / HEAP_FRACTION_DIVISOR;
+    private static long scratchBytes = 0;
+    private static long maxScratchBytes = 2L * 1024 * 1024 * 1024; // of disk space
+
+    private FilterResultCache() {
+        // only static utility methods
+    }
+
+    /**
+     * Returns the cached result for the given key, or null
+     */
+    public static synchronized BufferedImage get(Key key) {
+        return cache.get(key);
+    }
+
+    /**
+     * Caches the given final result, and returns the image that should be
+     * used instead of it, which is a copy in a scratch file if the result
+     * is large and the scratch files are enabled.
+     */
+    public static synchronized BufferedImage put(Key key, BufferedImage result) {
+        if (ScratchImage.shouldStore(result)) {
+            try {
+                result = ScratchImage.copyOf(result);
+            } catch (IOException e) {
+                // don't keep a large result on the heap
+                return result;
+            }
+        }
+        long maxBytes = ScratchImage.isStored(result) ? maxScratchBytes : maxHeapBytes;
+        // caching a too large result would evict almost everything else
+        if (sizeInBytes(result) <= maxBytes / 2) {
+            add(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Caches a copy of the given preview result, which
+     * remains owned by the caller. The copy is always on the heap,
+     * so that the previews don't have to wait for the disk.
+     */
+    public static synchronized void putCopy(Key key, BufferedImage result) {
+        if (sizeInBytes(result) > maxHeapBytes / 2) {
+            return;
+        }
+        BufferedImage copy;
+        try {
+            copy = new BufferedImage(result.getColorModel(), result.copyData(null),
+                    result.isAlphaPremultiplied(), null);
+        } catch (OutOfMemoryError e) {
+            // the cache is only an optimization
+            clear();
+            return;
+        }
+        add(key, copy);
+    }
+
+    private static void add(Key key, BufferedImage img) {
+        SharedImages.addOwner(img, OWNER);
+
+        BufferedImage old = cache.put(key, img);
+        if (old != null) {
+            updateSize(old, -1);
+            release(old);
+        }
+        updateSize(img, 1);
+
+        Iterator<BufferedImage> it = cache.values().iterator();
+        while (it.hasNext() && (heapBytes > maxHeapBytes
+                || scratchBytes > maxScratchBytes || cache.size() > MAX_ENTRIES)) {
+            // the iteration order is the least recently accessed first
+            BufferedImage candidate = it.next();
+            boolean overBudget = ScratchImage.isStored(candidate)
+                    ? scratchBytes > maxScratchBytes
+                    : heapBytes > maxHeapBytes;
+            if (overBudget || cache.size() > MAX_ENTRIES) {
+                it.remove();
+                updateSize(candidate, -1);
+                release(candidate);
+            }
+        }
+    }
+
+    private static void updateSize(BufferedImage img, int sign) {
+        if (ScratchImage.isStored(img)) {
+            scratchBytes += sign * sizeInBytes(img);
+        } else {
+            heapBytes += sign * sizeInBytes(img);
+        }
+    }
+
+    private static void release(BufferedImage img) {
+        // the same result can be cached with different keys
+        if (!cache.containsValue(img)) {
+            SharedImages.removeOwner(img, OWNER);
+        }
+    }
+
+    /**
+     * Removes all cached results, for example because
+     * a filter's randomness was reseeded.
+     */
+    public static synchronized void clear() {
+        for (BufferedImage img : cache.values()) {
+            SharedImages.removeOwner(img, OWNER);
+        }
+        cache.clear();
+        heapBytes = 0;
+        scratchBytes = 0;
+    }
+
+    public static synchronized int size() {
+        return cache.size();
+    }
+
+    public static synchronized void setMaxBytes(long maxBytes) {
+        maxHeapBytes = maxBytes;
+        if (heapBytes > maxBytes) {
+            clear();
+        }
+    }
+
+    public static synchronized void setMaxScratchBytes(long maxBytes) {
+        maxScratchBytes = maxBytes;
+        if (scratchBytes > maxBytes) {
+            clear();
+        }
+    }
+
+    private static long sizeInBytes(BufferedImage img) {
+        DataBuffer buffer = img.getRaster().getDataBuffer();
+        long bytesPerElement = DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+        return buffer.getSize() * (long) buffer.getNumBanks() * bytesPerElement;
+    }
+
+    /**
+     * Identifies a filter result by the filter, its settings,
+     * the content version of the drawable and the area
+     * of the drawable's image that was filtered.
+     */
+    public static final class Key {
+        private final Filter filter;
+        private final Object filterState;
+        private final long contentVersion;
+        private final int width;
+        private final int height;
+        private final int translateX;
+        private final int translateY;
+        private final int hash;
+
+        public Key(Filter filter, Object filterState, long contentVersion, BufferedImage src) {
+            this.filter = filter;
+            this.filterState = filterState;
+            this.contentVersion = contentVersion;
+
+            // if there is a selection, the source is a view
+            // into the image, identified by its size and offset
+            WritableRaster raster = src.getRaster();
+            width = raster.getWidth();
+            height = raster.getHeight();
+            translateX = raster.getSampleModelTranslateX();
+            translateY = raster.getSampleModelTranslateY();
+
+            hash = Objects.hash(System.identityHashCode(filter), filterState,
+                    contentVersion, width, height, translateX, translateY);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return filter == key.filter &&
+                    contentVersion == key.contentVersion &&
+                    width == key.width &&
+                    height == key.height &&
+                    translateX == key.translateX &&
+                    translateY == key.translateY &&
+                    filterState.equals(key.filterState);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
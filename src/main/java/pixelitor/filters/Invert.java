@@ -99,6 +99,7 @@ public class Invert extends Filter {
         for (int i = 0, pixelsLength = pixels.length; i < pixelsLength; i++) {
             pixels[i] ^= 0x00FFFFFF;
         }
+        ImageUtils.setPixelsFromArray(dest, pixels);
     }
 
     @Override
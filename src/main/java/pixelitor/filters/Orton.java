@@ -17,16 +17,18 @@
 
 package pixelitor.filters;
 
-import com.jhlabs.composite.MultiplyComposite;
-import com.jhlabs.image.BoxBlurFilter;
+import pixelitor.filters.graph.BlendNode;
+import pixelitor.filters.graph.BoxBlurNode;
+import pixelitor.filters.graph.ImageGraph;
 import pixelitor.filters.gui.RangeParam;
 import pixelitor.filters.gui.ShowOriginal;
-import pixelitor.utils.ImageUtils;
 import pixelitor.utils.StatusBarProgressTracker;
 
-import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 
+import static pixelitor.layers.BlendingMode.MULTIPLY;
+import static pixelitor.layers.BlendingMode.SCREEN;
+
 /**
  * Orton effect - based on http://pcin.net/update/2006/11/01/the-orton-effect-digital-photography-tip-of-the-week/
  */
@@ -36,6 +38,12 @@ public class Orton extends ParametrizedFilter {
     private final RangeParam blurRadius = new RangeParam("Blur Radius", 0, 3, 10);
     private final RangeParam amount = new RangeParam("Amount (%)", 0, 100, 100);
 
+    // the screened image is multiplied with its blurred version
+    private transient ImageGraph graph;
+    private transient BlendNode screened;
+    private transient BoxBlurNode blurred;
+    private transient BlendNode multiplied;
+
     public Orton() {
         super(ShowOriginal.YES);
 
@@ -45,45 +53,45 @@ public class Orton extends ParametrizedFilter {
         );
     }
 
-    @Override
-    public BufferedImage doTransform(BufferedImage src, BufferedImage dest) {
-        float radius = blurRadius.getValueAsFloat();
-        float opacity = amount.getPercentageValF();
-
-        int width = src.getWidth();
-        int height = src.getHeight();
+    private void createGraph() {
+        graph = new ImageGraph();
 
-        // the blur takes approx the same time as the screen + multiply together
-        int blurWorkUnits = 3 * (width + height);
-        int totalWorkUnits = 2 * blurWorkUnits;
+        screened = new BlendNode(graph.getSource(), graph.getSource());
+        screened.setBlendingMode(SCREEN);
 
-        var pt = new StatusBarProgressTracker(NAME, totalWorkUnits);
+        blurred = new BoxBlurNode(screened, NAME);
 
-        dest = ImageUtils.copyImage(src);
-        ImageUtils.screenWithItself(dest, opacity);
-        BufferedImage blurredMultiplied = ImageUtils.copyImage(dest);
-
-        pt.unitsDone(blurWorkUnits / 2);
+        multiplied = new BlendNode(blurred, screened);
+        multiplied.setBlendingMode(MULTIPLY);
+    }
 
-        if (radius > 0) {
-            if (width == 1 || height == 1) {
-                // otherwise we get ArrayIndexOutOfBoundsException in BoxBlurFilter
-                return src;
-            }
+    @Override
+    public BufferedImage doTransform(BufferedImage src, BufferedImage dest) {
+        float radius = blurRadius.getValueAsFloat();
+        float opacity = amount.getPercentageValF();
 
-            var boxBlur = new BoxBlurFilter(radius, radius, 3, NAME);
-            boxBlur.setProgressTracker(pt);
-            blurredMultiplied = boxBlur.filter(blurredMultiplied, blurredMultiplied);
+        if (radius > 0 && (src.getWidth() == 1 || src.getHeight() == 1)) {
+            // otherwise we get ArrayIndexOutOfBoundsException in BoxBlurFilter
+            return src;
         }
 
-        Graphics2D g = dest.createGraphics();
-        g.setComposite(new MultiplyComposite(opacity));
-        g.drawImage(blurredMultiplied, 0, 0, null);
-        g.dispose();
-
-        pt.finished();
-
-        return dest;
+        if (graph == null) {
+            createGraph();
+        }
+        screened.setOpacity(opacity);
+        blurred.setRadius(radius);
+        multiplied.setOpacity(opacity);
+
+        // only the blur is tracked, the blending passes are fused
+        int blurWorkUnits = 3 * (src.getWidth() + src.getHeight());
+        var pt = new StatusBarProgressTracker(NAME, blurWorkUnits);
+        blurred.setProgressTracker(pt);
+        try {
+            return graph.evaluate(multiplied, src, getSourceVersion(), dest);
+        } finally {
+            blurred.setProgressTracker(null);
+            pt.finished();
+        }
     }
 
     @Override
@@ -29,6 +29,11 @@ import pixelitor.utils.ImageUtils;
 
 import java.awt.Shape;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import static pixelitor.colors.FgBgColors.getBGColor;
+import static pixelitor.colors.FgBgColors.getFGColor;
 
 /**
  * A filter that keeps its settings in a ParamSet object
@@ -76,6 +81,24 @@ public abstract class ParametrizedFilter extends FilterWithGUI {
         return dest;
     }
 
+    @Override
+    protected Object getCacheableState() {
+        if (paramSet.hasGradient()) {
+            // the param value of a gradient doesn't contain the thumb positions
+            return null;
+        }
+        List<Object> state = new ArrayList<>();
+        for (FilterParam param : paramSet.getParams()) {
+            state.add(param.getParamValue());
+        }
+        state.add(hasAffectedAreaShapeParam && showAffectedAreaParam.isChecked());
+
+        // some filters also use the global colors
+        state.add(getFGColor());
+        state.add(getBGColor());
+        return state;
+    }
+
     public abstract BufferedImage doTransform(BufferedImage src, BufferedImage dest);
 
     private void setParamSet(ParamSet paramSet) {
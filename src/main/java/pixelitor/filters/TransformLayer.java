@@ -72,6 +72,12 @@ public class TransformLayer extends ParametrizedFilter {
         return dest;
     }
 
+    @Override
+    protected Object getCacheableState() {
+        // the result also depends on the layer's translation
+        return null;
+    }
+
     private static Graphics2D createDestGraphics(BufferedImage dest) {
         Graphics2D g = dest.createGraphics();
         g.setRenderingHint(KEY_ANTIALIASING, VALUE_ANTIALIAS_ON);
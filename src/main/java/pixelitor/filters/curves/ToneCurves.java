@@ -17,6 +17,8 @@
 
 package pixelitor.filters.curves;
 
+import pixelitor.utils.Histogram;
+
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.GradientPaint;
@@ -46,6 +48,8 @@ public class ToneCurves {
     private static final int AXIS_PADDING = 20;
     private static final int AXIS_SIZE = 10;
     private static final int GRID_DENSITY = 4;
+    private static final Color HISTOGRAM_COLOR = new Color(0, 0, 0, 40);
+    private Histogram histogram;
 
     public ToneCurves() {
         curve.put(ToneCurveType.RGB, new ToneCurve(ToneCurveType.RGB));
@@ -69,6 +73,14 @@ public class ToneCurves {
         activeCurveType = curveType;
     }
 
+    /**
+     * Sets the histogram of the filtered image, which
+     * is shown in the background of the active curve
+     */
+    public void setHistogram(Histogram histogram) {
+        this.histogram = histogram;
+    }
+
     public void setSize(int width, int height) {
         this.width = width;
         this.height = height;
@@ -116,6 +128,7 @@ public class ToneCurves {
         curveTransform.scale(1.0, -1.0);
         gr.setTransform(curveTransform);
 
+        drawHistogram();
         drawGrid();
         drawDiagonal();
         drawScales();
@@ -151,6 +164,44 @@ public class ToneCurves {
         gr.draw(darkPath2D);
     }
 
+    private void drawHistogram() {
+        if (histogram == null) {
+            return;
+        }
+        int[] values;
+        switch (activeCurveType) {
+            case RED:
+                values = histogram.getReds();
+                break;
+            case GREEN:
+                values = histogram.getGreens();
+                break;
+            case BLUE:
+                values = histogram.getBlues();
+                break;
+            default:
+                values = histogram.getLuminosities();
+        }
+        int max = 0;
+        for (int value : values) {
+            max = Math.max(max, value);
+        }
+        if (max == 0) {
+            return;
+        }
+
+        Path2D bars = new Path2D.Float();
+        float barWidth = curveWidth / 255.0f;
+        for (int i = 0; i < values.length; i++) {
+            float barHeight = (float) values[i] * curveHeight / max;
+            if (barHeight > 0) {
+                bars.append(new Rectangle.Float(i * barWidth, 0, barWidth, barHeight), false);
+            }
+        }
+        gr.setColor(HISTOGRAM_COLOR);
+        gr.fill(bars);
+    }
+
     private void drawScales() {
         // draw horizontal
         var rectH = new Rectangle.Float(0, -AXIS_PADDING, curveWidth, AXIS_SIZE);
@@ -20,6 +20,7 @@ package pixelitor.filters.curves;
 import pixelitor.filters.Filter;
 import pixelitor.filters.gui.FilterGUI;
 import pixelitor.layers.Drawable;
+import pixelitor.utils.Histogram;
 import pixelitor.utils.Icons;
 
 import javax.swing.*;
@@ -43,6 +44,8 @@ public class ToneCurvesGUI extends FilterGUI {
             ((ToneCurvesFilter) filter).setCurves(curvesPanel.toneCurves);
             runFilterPreview();
         });
+        // the histogram is calculated outside the EDT
+        Histogram.calcAsync(dr, curvesPanel::setHistogram);
 
         JPanel chartPanel = new JPanel(new FlowLayout(LEFT));
         chartPanel.add(curvesPanel);
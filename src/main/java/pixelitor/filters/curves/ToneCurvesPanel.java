@@ -17,6 +17,8 @@
 
 package pixelitor.filters.curves;
 
+import pixelitor.utils.Histogram;
+
 import javax.swing.*;
 import javax.swing.event.EventListenerList;
 import java.awt.Cursor;
@@ -58,6 +60,12 @@ public class ToneCurvesPanel extends JPanel implements MouseMotionListener, Mous
         toneCurves.draw();
     }
 
+    public void setHistogram(Histogram histogram) {
+        toneCurves.setHistogram(histogram);
+        toneCurves.draw();
+        repaint();
+    }
+
     public void addActionListener(ActionListener actionListener) {
         actionListenerList.add(ActionListener.class, actionListener);
     }
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters.graph;
+
+import pixelitor.utils.VisibleForTesting;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A node whose output pixels depend on a neighborhood of
+ * input pixels (for example a blur). It always works with full
+ * images, and its result is cached between evaluations.
+ */
+public abstract class AreaNode extends Node {
+    // used for making sure that the cached results are reused
+    private static final AtomicLong calcCount = new AtomicLong();
+
+    protected AreaNode(Node... inputs) {
+        super(inputs);
+        setMaterialized(true);
+    }
+
+    @Override
+    BufferedImage calcResult(BufferedImage[] inputImages, BufferedImage reusable) {
+        calcCount.incrementAndGet();
+        return calc(inputImages, reusable);
+    }
+
+    /**
+     * Returns the number of area node calculations so far
+     */
+    @VisibleForTesting
+    static long getCalcCount() {
+        return calcCount.get();
+    }
+
+    /**
+     * Calculates the result from the input images, which must not
+     * be modified. The reusable image can be overwritten, or it can be null.
+     * The result can also be one of the inputs, if there is nothing to do.
+     */
+    protected abstract BufferedImage calc(BufferedImage[] inputs, BufferedImage reusable);
+
+    /**
+     * Returns the reusable image if it has the same size as the
+     * source (after a resize it doesn't), otherwise null.
+     */
+    protected static BufferedImage checkReusable(BufferedImage reusable, BufferedImage src) {
+        if (reusable != null && reusable.getWidth() == src.getWidth()
+                && reusable.getHeight() == src.getHeight()) {
+            return reusable;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters.graph;
+
+import com.jhlabs.composite.RGBComposite;
+import com.jhlabs.composite.RGBComposite.RGBCompositeContext;
+import pixelitor.layers.BlendingMode;
+
+import java.awt.Composite;
+
+/**
+ * Blends the top input onto the bottom input with a blending mode,
+ * giving the same result as drawing the top image onto the bottom
+ * image with the blending mode's composite.
+ */
+public class BlendNode extends PixelNode {
+    private BlendingMode blendingMode = BlendingMode.MULTIPLY;
+    private float opacity = 1.0f;
+    private RGBCompositeContext context;
+
+    // the rows unpacked into separate r, g, b, a samples
+    private static final ThreadLocal<int[][]> unpackedRows = new ThreadLocal<>();
+
+    public BlendNode(Node top, Node bottom) {
+        super(top, bottom);
+    }
+
+    /**
+     * Only the blending modes implemented by an
+     * {@link RGBComposite} are supported.
+     */
+    public void setBlendingMode(BlendingMode blendingMode) {
+        if (blendingMode != this.blendingMode) {
+            this.blendingMode = blendingMode;
+            context = null;
+            settingsChanged();
+        }
+    }
+
+    public void setOpacity(float opacity) {
+        if (opacity != this.opacity) {
+            this.opacity = opacity;
+            context = null;
+            settingsChanged();
+        }
+    }
+
+    private RGBCompositeContext getContext() {
+        RGBCompositeContext c = context;
+        if (c == null) {
+            Composite composite = blendingMode.getComposite(opacity);
+            if (!(composite instanceof RGBComposite)) {
+                throw new IllegalArgumentException("unsupported blending mode: " + blendingMode);
+            }
+            c = (RGBCompositeContext) composite.createContext(null, null, null);
+            context = c;
+        }
+        return c;
+    }
+
+    @Override
+    protected void calcRow(int[][] inputRows, int[] outRow) {
+        int[] top = inputRows[0];
+        int[] bottom = inputRows[1];
+        int width = outRow.length;
+
+        int[][] rows = unpackedRows.get();
+        if (rows == null || rows[0].length != 4 * width) {
+            rows = new int[2][4 * width];
+            unpackedRows.set(rows);
+        }
+        int[] src = rows[0];
+        int[] dst = rows[1];
+        unpack(top, src);
+        unpack(bottom, dst);
+
+        getContext().composeRGB(src, dst, opacity);
+
+        for (int x = 0, i = 0; x < width; x++, i += 4) {
+            outRow[x] = (dst[i + 3] & 0xFF) << 24
+                    | (dst[i] & 0xFF) << 16
+                    | (dst[i + 1] & 0xFF) << 8
+                    | (dst[i + 2] & 0xFF);
+        }
+    }
+
+    private static void unpack(int[] packed, int[] samples) {
+        for (int x = 0, i = 0; x < packed.length; x++, i += 4) {
+            int argb = packed[x];
+            samples[i] = (argb >>> 16) & 0xFF;
+            samples[i + 1] = (argb >>> 8) & 0xFF;
+            samples[i + 2] = argb & 0xFF;
+            samples[i + 3] = argb >>> 24;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters.graph;
+
+import com.jhlabs.image.BoxBlurFilter;
+import pixelitor.utils.ProgressTracker;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * A three-iteration box blur, which approximates a Gaussian blur
+ */
+public class BoxBlurNode extends AreaNode {
+    private final String filterName;
+    private float radius;
+    private ProgressTracker pt;
+
+    public BoxBlurNode(Node input, String filterName) {
+        super(input);
+        this.filterName = filterName;
+    }
+
+    public void setRadius(float radius) {
+        if (radius != this.radius) {
+            this.radius = radius;
+            settingsChanged();
+        }
+    }
+
+    /**
+     * Sets the progress tracker used if the blur runs, or null
+     */
+    public void setProgressTracker(ProgressTracker pt) {
+        this.pt = pt;
+    }
+
+    @Override
+    protected BufferedImage calc(BufferedImage[] inputs, BufferedImage reusable) {
+        BufferedImage src = inputs[0];
+        if (radius <= 0 || src.getWidth() == 1 || src.getHeight() == 1) {
+            // BoxBlurFilter throws ArrayIndexOutOfBoundsException for 1-pixel wide images
+            return src;
+        }
+        var blur = new BoxBlurFilter(radius, radius, 3, filterName);
+        if (pt != null) {
+            blur.setProgressTracker(pt);
+        }
+        return blur.filter(src, checkReusable(reusable, src));
+    }
+}
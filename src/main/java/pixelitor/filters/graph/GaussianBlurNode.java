@@ -0,0 +1,52 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters.graph;
+
+import com.jhlabs.image.GaussianFilter;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * A Gaussian blur
+ */
+public class GaussianBlurNode extends AreaNode {
+    private final GaussianFilter filter;
+    private float radius;
+
+    public GaussianBlurNode(Node input, String filterName) {
+        super(input);
+        filter = new GaussianFilter(filterName);
+    }
+
+    public void setRadius(float radius) {
+        if (radius != this.radius) {
+            this.radius = radius;
+            settingsChanged();
+        }
+    }
+
+    @Override
+    protected BufferedImage calc(BufferedImage[] inputs, BufferedImage reusable) {
+        BufferedImage src = inputs[0];
+        if (radius <= 0) {
+            return src;
+        }
+        filter.setRadius(radius);
+        return filter.filter(src, checkReusable(reusable, src));
+    }
+}
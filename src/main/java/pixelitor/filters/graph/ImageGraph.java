@@ -0,0 +1,92 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters.graph;
+
+import pixelitor.utils.ImageUtils;
+
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * A small engine for filters that are built from simpler image
+ * operations (blurs, transforms, lookup tables, blending, masking).
+ * The nodes declare their inputs, forming a directed acyclic graph.
+ *
+ * The area nodes and their inputs are cached between the evaluations,
+ * so that for example changing only the opacity of the final
+ * blending doesn't re-run a blur. The adjacent pixel nodes are fused
+ * and calculated in parallel, without intermediate images.
+ */
+public class ImageGraph {
+    private final SourceNode source = new SourceNode();
+    private long evaluationCount = 0;
+
+    /**
+     * Returns the node representing the source image of the evaluations
+     */
+    public Node getSource() {
+        return source;
+    }
+
+    /**
+     * Evaluates the given output node. The source version identifies
+     * the pixels of the source image (see Filter.getSourceVersion),
+     * the cached intermediate results are reused only if it didn't change.
+     * The result is written into the given destination image if
+     * it's not null and it has the right size.
+     */
+    public synchronized BufferedImage evaluate(Node output, BufferedImage src,
+                                               long srcVersion, BufferedImage dest) {
+        source.setImage(src, srcVersion);
+        try {
+            markMaterialized(output, Collections.newSetFromMap(new IdentityHashMap<>()));
+            output.validate(++evaluationCount);
+
+            if (output instanceof PixelNode && !output.isMaterialized()) {
+                if (dest != null && (dest.getWidth() != src.getWidth()
+                        || dest.getHeight() != src.getHeight())) {
+                    dest = null;
+                }
+                return RowEvaluator.evaluate((PixelNode) output, dest);
+            }
+
+            // the cached result must not be given out,
+            // because it could be modified by the caller
+            return ImageUtils.copyImage(output.getResult());
+        } finally {
+            source.releaseImage();
+        }
+    }
+
+    /**
+     * A pixel node is materialized if an area node needs its full image
+     */
+    private static void markMaterialized(Node node, Set<Node> visited) {
+        if (!visited.add(node)) {
+            return;
+        }
+        for (Node input : node.getInputs()) {
+            if (input instanceof PixelNode && node instanceof AreaNode) {
+                input.setMaterialized(true);
+            }
+            markMaterialized(input, visited);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters.graph;
+
+import java.awt.image.ShortLookupTable;
+
+/**
+ * Maps the red, green and blue values of the
+ * input through a lookup table (curves, levels, etc.).
+ * The alpha values are not changed.
+ */
+public class LutNode extends PixelNode {
+    private short[] redLUT;
+    private short[] greenLUT;
+    private short[] blueLUT;
+
+    public LutNode(Node input) {
+        super(input);
+    }
+
+    /**
+     * The table must have one component (used for all three
+     * colors), or at least three (red, green and blue).
+     */
+    public void setLookupTable(ShortLookupTable lut) {
+        assert lut.getOffset() == 0;
+        short[][] table = lut.getTable();
+        short[] r = table[0];
+        short[] g = table.length >= 3 ? table[1] : r;
+        short[] b = table.length >= 3 ? table[2] : r;
+        if (r != redLUT || g != greenLUT || b != blueLUT) {
+            redLUT = r;
+            greenLUT = g;
+            blueLUT = b;
+            settingsChanged();
+        }
+    }
+
+    @Override
+    protected void calcRow(int[][] inputRows, int[] outRow) {
+        if (redLUT == null) {
+            throw new IllegalStateException("no lookup table");
+        }
+        int[] in = inputRows[0];
+        for (int x = 0; x < outRow.length; x++) {
+            int argb = in[x];
+            int r = redLUT[(argb >>> 16) & 0xFF] & 0xFF;
+            int g = greenLUT[(argb >>> 8) & 0xFF] & 0xFF;
+            int b = blueLUT[argb & 0xFF] & 0xFF;
+            outRow[x] = (argb & 0xFF_00_00_00) | r << 16 | g << 8 | b;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters.graph;
+
+import com.jhlabs.image.PixelUtils;
+
+/**
+ * Multiplies the alpha of the image input with the brightness
+ * of the mask input, like a layer mask: the white areas of the
+ * mask are kept, and the black areas become transparent.
+ */
+public class MaskNode extends PixelNode {
+    private boolean inverted;
+
+    public MaskNode(Node image, Node mask) {
+        super(image, mask);
+    }
+
+    /**
+     * If inverted, then the black areas of the mask are kept instead
+     */
+    public void setInverted(boolean inverted) {
+        if (inverted != this.inverted) {
+            this.inverted = inverted;
+            settingsChanged();
+        }
+    }
+
+    @Override
+    protected void calcRow(int[][] inputRows, int[] outRow) {
+        int[] image = inputRows[0];
+        int[] mask = inputRows[1];
+        for (int x = 0; x < outRow.length; x++) {
+            int argb = image[x];
+            int maskValue = PixelUtils.brightness(mask[x]);
+            if (inverted) {
+                maskValue = 255 - maskValue;
+            }
+            // the rounded (alpha * maskValue) / 255
+            int product = (argb >>> 24) * maskValue + 128;
+            int a = (product + (product >>> 8)) >>> 8;
+            outRow[x] = a << 24 | (argb & 0x00_FF_FF_FF);
+        }
+    }
+}
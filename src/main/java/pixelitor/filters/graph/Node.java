@@ -0,0 +1,154 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters.graph;
+
+import java.awt.image.BufferedImage;
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An image operation in an {@link ImageGraph}.
+ *
+ * Every node has a version, which changes only if its settings or
+ * the versions of its inputs change. A materialized node keeps its
+ * last result (softly referenced), and recalculates it only if its
+ * version changed.
+ */
+public abstract class Node {
+    private static final AtomicLong versionCounter = new AtomicLong();
+
+    private final Node[] inputs;
+
+    private long version;
+    private long[] lastInputVersions;
+    private boolean settingsChanged = true;
+    private long lastEvaluation = -1;
+
+    // whether the full result image is calculated,
+    // otherwise the node is fused into its consumers
+    private boolean materialized;
+
+    // a soft reference, so that the cached result
+    // is released if the memory is needed
+    private SoftReference<BufferedImage> resultRef;
+    private long resultVersion = -1;
+
+    // false if the result is one of the input images,
+    // which must not be overwritten by the next calculation
+    private boolean ownsResult;
+
+    protected Node(Node... inputs) {
+        this.inputs = inputs;
+    }
+
+    Node[] getInputs() {
+        return inputs;
+    }
+
+    /**
+     * Must be called by the subclasses when a setting that
+     * affects the result was changed.
+     */
+    protected void settingsChanged() {
+        settingsChanged = true;
+    }
+
+    static long nextVersion() {
+        return versionCounter.incrementAndGet();
+    }
+
+    /**
+     * Updates the version of this node and its inputs
+     * without calculating any pixels.
+     */
+    long validate(long evaluation) {
+        if (lastEvaluation == evaluation) {
+            // shared input, already validated
+            return version;
+        }
+        lastEvaluation = evaluation;
+
+        long[] inputVersions = new long[inputs.length];
+        for (int i = 0; i < inputs.length; i++) {
+            inputVersions[i] = inputs[i].validate(evaluation);
+        }
+        if (settingsChanged || !Arrays.equals(inputVersions, lastInputVersions)) {
+            version = nextVersion();
+            lastInputVersions = inputVersions;
+            settingsChanged = false;
+        }
+        return version;
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    void setVersion(long version) {
+        this.version = version;
+    }
+
+    boolean isMaterialized() {
+        return materialized;
+    }
+
+    void setMaterialized(boolean materialized) {
+        this.materialized = materialized;
+    }
+
+    /**
+     * Returns the full result image of this node, which is
+     * recalculated only if the version changed since the last call.
+     * The returned image must not be modified.
+     */
+    BufferedImage getResult() {
+        BufferedImage cached = resultRef == null ? null : resultRef.get();
+        if (cached != null && resultVersion == version) {
+            return cached;
+        }
+
+        BufferedImage[] inputImages = new BufferedImage[inputs.length];
+        for (int i = 0; i < inputs.length; i++) {
+            if (isFusedInput(inputs[i])) {
+                // the pixel nodes calculate their fused inputs row by row
+                continue;
+            }
+            inputImages[i] = inputs[i].getResult();
+        }
+
+        BufferedImage reusable = ownsResult ? cached : null;
+        BufferedImage result = calcResult(inputImages, reusable);
+
+        ownsResult = !Arrays.asList(inputImages).contains(result);
+        resultRef = new SoftReference<>(result);
+        resultVersion = version;
+        return result;
+    }
+
+    boolean isFusedInput(Node input) {
+        return false;
+    }
+
+    /**
+     * Calculates the full result image from the full images of the
+     * non-fused inputs. The reusable image is the previous result
+     * that can be overwritten, or null.
+     */
+    abstract BufferedImage calcResult(BufferedImage[] inputImages, BufferedImage reusable);
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters.graph;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * A node whose output pixels depend only on the input
+ * pixels at the same position (point operations, blending).
+ * The adjacent pixel nodes are fused: they are calculated together,
+ * row by row, without allocating intermediate images. A pixel
+ * node is materialized (and cached) only if an area node uses it.
+ */
+public abstract class PixelNode extends Node {
+    protected PixelNode(Node... inputs) {
+        super(inputs);
+    }
+
+    /**
+     * Calculates a row of packed ARGB pixels from the rows of the
+     * inputs at the same position. The input rows must not be modified.
+     */
+    protected abstract void calcRow(int[][] inputRows, int[] outRow);
+
+    @Override
+    boolean isFusedInput(Node input) {
+        return input instanceof PixelNode && !input.isMaterialized();
+    }
+
+    @Override
+    BufferedImage calcResult(BufferedImage[] inputImages, BufferedImage reusable) {
+        return RowEvaluator.evaluate(this, reusable);
+    }
+}
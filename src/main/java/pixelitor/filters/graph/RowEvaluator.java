@@ -0,0 +1,168 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters.graph;
+
+import com.jhlabs.image.AbstractBufferedImageOp;
+import pixelitor.ThreadPool;
+import pixelitor.utils.ImageUtils;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Calculates a pixel node together with its fused
+ * pixel node inputs, in parallel bands of rows.
+ */
+final class RowEvaluator {
+    private static final int MIN_BAND_HEIGHT = 32;
+
+    // the materialized inputs of the fused nodes
+    private final List<Node> leaves = new ArrayList<>();
+
+    // the fused nodes, every node after its inputs
+    private final List<PixelNode> fusedNodes = new ArrayList<>();
+
+    // the indices of the nodes' rows, the leaves come first
+    private final Map<Node, Integer> rowIndices = new IdentityHashMap<>();
+
+    private final int[][] inputIndices;
+
+    private RowEvaluator(PixelNode root) {
+        collect(root);
+        int numLeaves = leaves.size();
+        for (int i = 0; i < fusedNodes.size(); i++) {
+            rowIndices.put(fusedNodes.get(i), numLeaves + i);
+        }
+        inputIndices = new int[fusedNodes.size()][];
+        for (int i = 0; i < fusedNodes.size(); i++) {
+            Node[] inputs = fusedNodes.get(i).getInputs();
+            inputIndices[i] = new int[inputs.length];
+            for (int j = 0; j < inputs.length; j++) {
+                inputIndices[i][j] = rowIndices.get(inputs[j]);
+            }
+        }
+    }
+
+    private void collect(PixelNode node) {
+        if (rowIndices.containsKey(node)) {
+            return;
+        }
+        for (Node input : node.getInputs()) {
+            if (node.isFusedInput(input)) {
+                collect((PixelNode) input);
+            } else if (!rowIndices.containsKey(input)) {
+                rowIndices.put(input, leaves.size());
+                leaves.add(input);
+            }
+        }
+        // the real indices of the fused nodes are set later,
+        // here it only marks the node as visited
+        rowIndices.put(node, -1);
+        fusedNodes.add(node);
+    }
+
+    /**
+     * Evaluates the given pixel node into the given
+     * image, or into a new image if it is null.
+     */
+    static BufferedImage evaluate(PixelNode root, BufferedImage dest) {
+        return new RowEvaluator(root).run(dest);
+    }
+
+    private BufferedImage run(BufferedImage dest) {
+        assert !leaves.isEmpty();
+
+        int numLeaves = leaves.size();
+        int[][] leafPixels = new int[numLeaves][];
+        BufferedImage firstLeaf = null;
+        for (int i = 0; i < numLeaves; i++) {
+            BufferedImage leafImage = leaves.get(i).getResult();
+            assert ImageUtils.hasPackedIntArray(leafImage);
+            if (firstLeaf == null) {
+                firstLeaf = leafImage;
+            }
+            leafPixels[i] = ImageUtils.getPixelsAsArray(leafImage);
+        }
+
+        int width = firstLeaf.getWidth();
+        int height = firstLeaf.getHeight();
+        if (dest == null || dest.getWidth() != width || dest.getHeight() != height) {
+            dest = ImageUtils.createImageWithSameCM(firstLeaf);
+        }
+
+        int numBands = Math.max(1, Math.min(
+                Runtime.getRuntime().availableProcessors(),
+                height / MIN_BAND_HEIGHT));
+        int bandHeight = (height + numBands - 1) / numBands;
+
+        BufferedImage finalDest = dest;
+        List<Future<?>> futures = new ArrayList<>(numBands);
+        for (int startY = 0; startY < height; startY += bandHeight) {
+            int bandStart = startY;
+            int bandEnd = Math.min(height, startY + bandHeight);
+            futures.add(ThreadPool.submit(() ->
+                    calcBand(leafPixels, finalDest, width, bandStart, bandEnd)));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        return dest;
+    }
+
+    private void calcBand(int[][] leafPixels, BufferedImage dest,
+                          int width, int startY, int endY) {
+        int numLeaves = leafPixels.length;
+        int numFused = fusedNodes.size();
+
+        // the rows are reused for every line of the band
+        int[][] rows = new int[numLeaves + numFused][width];
+        int[][][] inputRows = new int[numFused][][];
+        for (int i = 0; i < numFused; i++) {
+            int[] indices = inputIndices[i];
+            inputRows[i] = new int[indices.length][];
+            for (int j = 0; j < indices.length; j++) {
+                inputRows[i][j] = rows[indices[j]];
+            }
+        }
+        int[] outRow = rows[numLeaves + numFused - 1];
+
+        for (int y = startY; y < endY; y++) {
+            int offset = y * width;
+            for (int i = 0; i < numLeaves; i++) {
+                System.arraycopy(leafPixels[i], offset, rows[i], 0, width);
+            }
+            for (int i = 0; i < numFused; i++) {
+                fusedNodes.get(i).calcRow(inputRows[i], rows[numLeaves + i]);
+            }
+            AbstractBufferedImageOp.setRGB(dest, 0, y, width, 1, outRow);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters.graph;
+
+import java.awt.image.BufferedImage;
+import java.lang.ref.WeakReference;
+
+/**
+ * The input image of an {@link ImageGraph}
+ */
+public final class SourceNode extends Node {
+    // set only during an evaluation, the filters are singletons,
+    // and they shouldn't keep the source images alive
+    private BufferedImage image;
+
+    // the source image of the last evaluation,
+    // used only for recognizing the same image
+    private WeakReference<BufferedImage> lastImageRef;
+    private long contentVersion;
+    private boolean changed;
+
+    SourceNode() {
+        setMaterialized(true);
+    }
+
+    /**
+     * Sets the source image. The content version identifies the pixels
+     * of the image, or it is 0 if unknown, and then all cached results
+     * depending on the source are recalculated.
+     */
+    void setImage(BufferedImage image, long contentVersion) {
+        BufferedImage lastImage = lastImageRef == null ? null : lastImageRef.get();
+        changed = contentVersion == 0
+                || image != lastImage
+                || contentVersion != this.contentVersion;
+        this.image = image;
+        lastImageRef = new WeakReference<>(image);
+        this.contentVersion = contentVersion;
+    }
+
+    /**
+     * Called at the end of an evaluation
+     */
+    void releaseImage() {
+        image = null;
+    }
+
+    @Override
+    long validate(long evaluation) {
+        if (changed) {
+            setVersion(nextVersion());
+            changed = false;
+        }
+        return getVersion();
+    }
+
+    @Override
+    BufferedImage getResult() {
+        return image;
+    }
+
+    @Override
+    BufferedImage calcResult(BufferedImage[] inputImages, BufferedImage reusable) {
+        return image;
+    }
+}
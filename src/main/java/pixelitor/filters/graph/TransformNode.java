@@ -0,0 +1,69 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters.graph;
+
+import pixelitor.utils.ImageUtils;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+/**
+ * Transforms the input with an affine transform, with bilinear
+ * interpolation. The result has the size of the input, and the
+ * areas that are not covered by the transformed input are transparent.
+ */
+public class TransformNode extends AreaNode {
+    private final AffineTransform transform = new AffineTransform();
+
+    public TransformNode(Node input) {
+        super(input);
+    }
+
+    public void setTransform(AffineTransform transform) {
+        if (!transform.equals(this.transform)) {
+            this.transform.setTransform(transform);
+            settingsChanged();
+        }
+    }
+
+    @Override
+    protected BufferedImage calc(BufferedImage[] inputs, BufferedImage reusable) {
+        BufferedImage src = inputs[0];
+        if (transform.isIdentity()) {
+            return src;
+        }
+        BufferedImage dest = checkReusable(reusable, src);
+        if (dest == null) {
+            dest = ImageUtils.createImageWithSameCM(src);
+        }
+
+        Graphics2D g = dest.createGraphics();
+        // clear the previous result
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(0, 0, dest.getWidth(), dest.getHeight());
+        g.setComposite(AlphaComposite.Src);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(src, transform, null);
+        g.dispose();
+        return dest;
+    }
+}
@@ -18,6 +18,7 @@
 package pixelitor.filters.gui;
 
 import com.jhlabs.image.ImageMath;
+import pixelitor.utils.Rnd;
 import pixelitor.utils.Utils;
 
 import javax.swing.*;
@@ -146,7 +147,7 @@ public class AngleParam extends AbstractFilterParam {
 
     @Override
     protected void doRandomize() {
-        double random = Math.random();
+        double random = Rnd.nextDouble();
         setValue(random * 2 * Math.PI - Math.PI, false);
     }
 
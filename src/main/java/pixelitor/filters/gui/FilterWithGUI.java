@@ -21,6 +21,8 @@ import pixelitor.filters.Filter;
 import pixelitor.gui.utils.DialogBuilder;
 import pixelitor.layers.Drawable;
 
+import static pixelitor.ChangeReason.FINAL_PREVIEW;
+
 /**
  * A filter that has a GUI for customization
  */
@@ -48,8 +50,19 @@ public abstract class FilterWithGUI extends Filter {
                 .name("filterDialog")
                 .content(gui)
                 .withScrollbars()
-                .okAction(() -> dr.onFilterDialogAccepted(getName()))
+                .okAction(() -> acceptDialog(dr))
                 .cancelAction(dr::onFilterDialogCanceled)
                 .show();
     }
+
+    /**
+     * Accepts the result of the dialog session on the given drawable
+     */
+    public void acceptDialog(Drawable dr) {
+        if (wasLastPreviewApproximated()) {
+            // the accepted image must be the exact result
+            startOn(dr, FINAL_PREVIEW);
+        }
+        dr.onFilterDialogAccepted(getName());
+    }
 }
@@ -18,6 +18,7 @@
 package pixelitor.filters.gui;
 
 import com.jhlabs.image.ImageMath;
+import pixelitor.utils.Rnd;
 
 import javax.swing.*;
 import java.awt.geom.Point2D;
@@ -77,8 +78,8 @@ public class ImagePositionParam extends AbstractFilterParam {
 
     @Override
     protected void doRandomize() {
-        float rx = (float) Math.random();
-        float ry = (float) Math.random();
+        float rx = (float) Rnd.nextDouble();
+        float ry = (float) Rnd.nextDouble();
 
         setRelativeValues(rx, ry, true, false, false);
     }
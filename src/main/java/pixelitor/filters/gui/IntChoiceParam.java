@@ -201,6 +201,8 @@ public class IntChoiceParam extends AbstractMultipleChoiceParam<IntChoiceParam.V
     private static final IntChoiceParam.Value[] interpolationChoices = {
             new Value("Bilinear (Better)", TransformFilter.BILINEAR),
             new Value("Nearest Neighbour (Faster)", TransformFilter.NEAREST_NEIGHBOUR),
+            new Value("Bicubic (Sharper)", TransformFilter.BICUBIC),
+            new Value("Anti-Aliased (Slower)", TransformFilter.EWA),
 //            new Value("Nearest Neighbour (OLD)", TransformFilter.NEAREST_NEIGHBOUR_OLD),
 //            new Value("Bilinear (OLD)", TransformFilter.BILINEAR_OLD),
     };
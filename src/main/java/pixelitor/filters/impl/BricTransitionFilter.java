@@ -19,13 +19,36 @@ package pixelitor.filters.impl;
 
 import com.bric.image.transition.*;
 import com.jhlabs.image.AbstractBufferedImageOp;
+import pixelitor.ThreadPool;
 import pixelitor.utils.ImageUtils;
+import pixelitor.utils.VisibleForTesting;
 
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Dimension;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
 
 /**
- * A transition filter based on the com.bric.image.transition classes
+ * A transition filter based on the com.bric.image.transition classes.
+ *
+ * The instructions of the transitions are replayed in parallel
+ * horizontal bands, each painting into its own subimage of the destination.
  */
 public class BricTransitionFilter extends AbstractBufferedImageOp {
     public static final int BARS_HORIZONTAL = 1;
@@ -64,13 +87,35 @@ public class BricTransitionFilter extends AbstractBufferedImageOp {
     public static final int TOSS_IN = 34;
     public static final int WAVE = 35;
 
+    // below this number of pixels it is not worth to split the work
+    private static final int MIN_PARALLEL_PIXELS = 256 * 256;
+    private static final int NUM_CORES = Runtime.getRuntime().availableProcessors();
+    private static final int MAX_CACHED_INSTRUCTIONS = 64;
+    private static final int SCALE_AND_TRANSLATE = AffineTransform.TYPE_TRANSLATION
+            | AffineTransform.TYPE_UNIFORM_SCALE | AffineTransform.TYPE_GENERAL_SCALE;
+
     private int type;
     private float progress;
+    private int numBands = NUM_CORES;
 
     // these have to be cached
     private GooTransition2D gooTransition2D;
     private SquaresTransition2D squaresTransition2D;
 
+    // the instructions depend only on the type, the progress and the size,
+    // so they can be reused when the same frame of a tween is rendered again
+    private final Map<List<Object>, Transition2DInstruction[]> instructionsCache =
+            new LinkedHashMap<>(MAX_CACHED_INSTRUCTIONS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<List<Object>, Transition2DInstruction[]> eldest) {
+                    return size() > MAX_CACHED_INSTRUCTIONS;
+                }
+            };
+
+    // the second frame is always transparent, it's never modified
+    private BufferedImage transparentFrame;
+
     public BricTransitionFilter(String filterName) {
         super(filterName);
     }
@@ -78,10 +123,14 @@ public class BricTransitionFilter extends AbstractBufferedImageOp {
     @Override
     public BufferedImage filter(BufferedImage src, BufferedImage dest) {
         var frameA = src;
-        var frameB = ImageUtils.createImageWithSameCM(src);
+        var frameB = getTransparentFrame(src);
+        // the field is not modified, because the filter can run
+        // again with the same settings (for example in a tween)
+        float frameProgress = progress;
 
-        Graphics2D g2 = dest.createGraphics();
-        Transition transition;
+        Transition2D transition;
+        // a reversed transition paints the frames swapped, and backwards
+        boolean reversed = false;
 
         switch (type) {
             case BARS_HORIZONTAL:
@@ -192,12 +241,14 @@ public class BricTransitionFilter extends AbstractBufferedImageOp {
                 transition = new StarsTransition2D();
                 break;
             case TOSS_IN:
-                transition = new ReversedTransition(new TossTransition2D());
-                progress = 1.0f - progress;
+                transition = new TossTransition2D();
+                reversed = true;
+                frameProgress = 1.0f - frameProgress;
                 break;
             case WAVE:
 //                transition = new WaveTransition2D();
-                transition = new ReversedTransition(new WaveTransition2D(Transition.LEFT));
+                transition = new WaveTransition2D(Transition.LEFT);
+                reversed = true;
 //                progress = 1.0f - progress;
                 break;
 
@@ -205,19 +256,273 @@ public class BricTransitionFilter extends AbstractBufferedImageOp {
                 throw new IllegalStateException("Unexpected type = " + type);
         }
 
-        if(progress < 0.0f) {
-            progress = 0.0f;
+        if(frameProgress < 0.0f) {
+            frameProgress = 0.0f;
         }
-        if(progress > 1.0f) {
-            progress = 1.0f;
+        if(frameProgress > 1.0f) {
+            frameProgress = 1.0f;
+        }
+
+        float paintedProgress = frameProgress;
+        if (reversed) {
+            var tmp = frameA;
+            frameA = frameB;
+            frameB = tmp;
+            paintedProgress = 1 - frameProgress;
         }
 
-        transition.paint(g2, frameA, frameB, progress);
-        g2.dispose();
+        var instructions = getInstructions(transition, paintedProgress,
+                new Dimension(src.getWidth(), src.getHeight()));
+        paintInBands(instructions, dest, frameA, frameB, numBands);
 
         return dest;
     }
 
+    private BufferedImage getTransparentFrame(BufferedImage src) {
+        if (transparentFrame == null
+                || transparentFrame.getWidth() != src.getWidth()
+                || transparentFrame.getHeight() != src.getHeight()
+                || !transparentFrame.getColorModel().equals(src.getColorModel())) {
+            transparentFrame = ImageUtils.createImageWithSameCM(src);
+        }
+        return transparentFrame;
+    }
+
+    private Transition2DInstruction[] getInstructions(Transition2D transition,
+                                                      float progress, Dimension size) {
+        List<Object> key = List.of(type, progress, size);
+        var instructions = instructionsCache.get(key);
+        if (instructions == null) {
+            instructions = transition.getInstructions(progress, size);
+            instructionsCache.put(key, instructions);
+        }
+        return instructions;
+    }
+
+    /**
+     * Paints the instructions like Transition2D.doPaint would do,
+     * but in parallel horizontal bands, each with its own graphics
+     * that can't paint outside its band. The result is the same as
+     * in a single-threaded painting, pixel for pixel.
+     */
+    private static void paintInBands(Transition2DInstruction[] instructions,
+                                     BufferedImage dest,
+                                     BufferedImage frameA, BufferedImage frameB,
+                                     int numBands) {
+        int width = dest.getWidth();
+        int height = dest.getHeight();
+        long numPixels = (long) width * height;
+        int numBanded = countBandable(instructions);
+        if (numBands == 1 || numPixels < MIN_PARALLEL_PIXELS
+                || height < numBands || numBanded == 0) {
+            paintInstructions(instructions, 0, dest.createGraphics(), frameA, frameB);
+            return;
+        }
+
+        // Intersecting a clipping shape with the band would change
+        // its geometry (and Java2D's float rounding), therefore the
+        // clipping shapes are rasterized once, and only their pixels
+        // are divided between the bands.
+        List<List<Rectangle>> clipPixels = new ArrayList<>(numBanded);
+        BufferedImage mask = null;
+        for (int i = 0; i < numBanded; i++) {
+            List<Rectangle> pixels = null;
+            if (instructions[i] instanceof ImageInstruction) {
+                Shape clipping = ((ImageInstruction) instructions[i]).clipping;
+                if (clipping != null && !(clipping instanceof Rectangle2D)) {
+                    if (mask == null) {
+                        mask = new BufferedImage(width, height, TYPE_BYTE_GRAY);
+                    }
+                    pixels = rasterizeClipping(clipping, mask);
+                }
+            }
+            clipPixels.add(pixels);
+        }
+
+        @SuppressWarnings("unchecked")
+        Future<Composite>[] futures = new Future[numBands];
+        int bandHeight = height / numBands;
+        for (int i = 0; i < numBands; i++) {
+            int startY = i * bandHeight;
+            int endY = i == numBands - 1 ? height : startY + bandHeight;
+            Rectangle band = new Rectangle(0, startY, width, endY - startY);
+            futures[i] = ThreadPool.submit2(() ->
+                    paintBand(instructions, numBanded, clipPixels,
+                            band, dest, frameA, frameB));
+        }
+
+        Composite composite = null;
+        try {
+            for (Future<Composite> future : futures) {
+                composite = future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+
+        if (numBanded < instructions.length) {
+            Graphics2D g = dest.createGraphics();
+            // the image instructions don't always restore the composite
+            g.setComposite(composite);
+            paintInstructions(instructions, numBanded, g, frameA, frameB);
+        }
+    }
+
+    private static void paintInstructions(Transition2DInstruction[] instructions, int from,
+                                          Graphics2D g,
+                                          BufferedImage frameA, BufferedImage frameB) {
+        for (int i = from; i < instructions.length; i++) {
+            instructions[i].paint(g, frameA, frameB);
+        }
+        g.dispose();
+    }
+
+    /**
+     * Returns the number of leading instructions that
+     * paint the same pixels when clipped to a band.
+     * Java2D flattens the stroked curves differently if the clip
+     * is different, and it steps along the edges of rotated images
+     * starting from the top of the clip, so these are painted
+     * (together with all the following instructions) on the whole image.
+     */
+    private static int countBandable(Transition2DInstruction[] instructions) {
+        for (int i = 0; i < instructions.length; i++) {
+            Transition2DInstruction instruction = instructions[i];
+            if (instruction instanceof ShapeInstruction) {
+                var shapeInstruction = (ShapeInstruction) instruction;
+                if (shapeInstruction.strokeColor != null && shapeInstruction.strokeWidth > 0) {
+                    return i;
+                }
+            } else if (instruction instanceof ImageInstruction) {
+                AffineTransform transform = ((ImageInstruction) instruction).transform;
+                if (transform != null && (transform.getType() & ~SCALE_AND_TRANSLATE) != 0) {
+                    return i;
+                }
+            } else {
+                return i;
+            }
+        }
+        return instructions.length;
+    }
+
+    /**
+     * Paints the first numBanded instructions clipped to the
+     * given band, and returns the final composite of the graphics.
+     */
+    private static Composite paintBand(Transition2DInstruction[] instructions, int numBanded,
+                                       List<List<Rectangle>> clipPixels, Rectangle band,
+                                       BufferedImage dest,
+                                       BufferedImage frameA, BufferedImage frameB) {
+        // The graphics of the subimage can't write outside the band,
+        // even if an instruction replaces its clip. The translation
+        // keeps using the coordinates of the whole image.
+        BufferedImage bandImage = dest.getSubimage(band.x, band.y, band.width, band.height);
+        Graphics2D g = bandImage.createGraphics();
+        g.translate(-band.x, -band.y);
+        for (int i = 0; i < numBanded; i++) {
+            if (instructions[i] instanceof ImageInstruction) {
+                var imageInstruction = (ImageInstruction) instructions[i];
+                Shape clip = calcBandClip(imageInstruction.clipping, clipPixels.get(i), band);
+                imageInstruction.paint(g, frameA, frameB, clip);
+            } else {
+                g.setClip(band);
+                instructions[i].paint(g, frameA, frameB);
+            }
+        }
+        Composite composite = g.getComposite();
+        g.dispose();
+        return composite;
+    }
+
+    private static Shape calcBandClip(Shape clipping, List<Rectangle> pixels, Rectangle band) {
+        if (clipping == null) {
+            return band;
+        }
+        if (pixels == null) {
+            // Java2D rounds the clip rectangles to whole pixels,
+            // so the intersection has the same pixels in the band
+            return ((Rectangle2D) clipping).createIntersection(band);
+        }
+        Path2D clip = new Path2D.Float();
+        for (Rectangle r : pixels) {
+            Rectangle inBand = r.intersection(band);
+            if (!inBand.isEmpty()) {
+                clip.append(inBand, false);
+            }
+        }
+        return clip;
+    }
+
+    /**
+     * Returns the pixels that Java2D would use when clipping
+     * with the given shape, as a list of rectangles.
+     * The mask must be empty, and it's left empty.
+     */
+    private static List<Rectangle> rasterizeClipping(Shape clipping, BufferedImage mask) {
+        int width = mask.getWidth();
+        Rectangle bounds = clipping.getBounds()
+                .intersection(new Rectangle(0, 0, width, mask.getHeight()));
+        List<Rectangle> pixels = new ArrayList<>();
+        if (bounds.isEmpty()) {
+            return pixels;
+        }
+
+        // the mask has the same size as the destination,
+        // so this clip has exactly the same pixels
+        Graphics2D g = mask.createGraphics();
+        g.setClip(clipping);
+        g.setColor(Color.WHITE);
+        g.fill(bounds);
+        g.dispose();
+
+        byte[] data = ((DataBufferByte) mask.getRaster().getDataBuffer()).getData();
+        // the runs of the previous row, which are extended
+        // downwards while the next rows have the same runs
+        List<Rectangle> prevRuns = new ArrayList<>();
+        for (int y = bounds.y; y < bounds.y + bounds.height; y++) {
+            List<Rectangle> runs = new ArrayList<>();
+            int rowStart = y * width;
+            int runStart = -1;
+            for (int x = bounds.x; x <= bounds.x + bounds.width; x++) {
+                boolean inside = x < bounds.x + bounds.width && data[rowStart + x] != 0;
+                if (inside && runStart == -1) {
+                    runStart = x;
+                } else if (!inside && runStart != -1) {
+                    runs.add(new Rectangle(runStart, y, x - runStart, 1));
+                    runStart = -1;
+                }
+            }
+            Arrays.fill(data, rowStart + bounds.x, rowStart + bounds.x + bounds.width, (byte) 0);
+
+            if (sameRuns(runs, prevRuns)) {
+                for (Rectangle r : prevRuns) {
+                    r.height++;
+                }
+            } else {
+                pixels.addAll(runs);
+                prevRuns = runs;
+            }
+        }
+        return pixels;
+    }
+
+    private static boolean sameRuns(List<Rectangle> runs, List<Rectangle> prevRuns) {
+        if (runs.size() != prevRuns.size()) {
+            return false;
+        }
+        for (int i = 0; i < runs.size(); i++) {
+            Rectangle r = runs.get(i);
+            Rectangle prev = prevRuns.get(i);
+            if (r.x != prev.x || r.width != prev.width) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public void setProgress(float progress) {
         this.progress = progress;
     }
@@ -225,4 +530,9 @@ public class BricTransitionFilter extends AbstractBufferedImageOp {
     public void setType(int type) {
         this.type = type;
     }
+
+    @VisibleForTesting
+    void setNumBands(int numBands) {
+        this.numBands = numBands;
+    }
 }
@@ -63,6 +63,12 @@ public class CircleToSquareFilter extends CenteredTransformFilter {
         return new Shape[]{rect, ellipse};
     }
 
+    @Override
+    protected boolean hasSmoothMapping() {
+        // the edge of a small affected area could fit inside a grid cell
+        return Math.min(radiusX, radiusY) >= GRID_CELL_SIZE;
+    }
+
     @Override
     protected void transformInverse(int x, int y, float[] out) {
         float dx = x - cx;
@@ -21,6 +21,8 @@ import net.jafama.FastMath;
 import pixelitor.filters.LittlePlanet;
 import pixelitor.utils.Utils;
 
+import java.util.List;
+
 /**
  * The implementation of the {@link LittlePlanet} filter.
  * This is actually a rectangular -> polar filter with some extra features
@@ -60,6 +62,11 @@ public class LittlePlanetFilter extends CenteredTransformFilter {
         out[1] = ny;
     }
 
+    @Override
+    protected Object getGeometryState() {
+        return List.of(cx, cy, rotateResult, zoom, innerZoom, inverted);
+    }
+
     public void setRotateResult(double turn) {
         rotateResult = turn;
     }
@@ -72,6 +72,14 @@ public class MagnifyFilter extends CenteredTransformFilter {
         return super.filter(src, dst);
     }
 
+    @Override
+    protected boolean hasSmoothMapping() {
+        // the edge of a small affected area could fit inside a grid cell
+        float minRadius = Math.min(Math.min(innerRadiusX, innerRadiusY),
+                Math.min(outerRadiusX, outerRadiusY));
+        return minRadius >= GRID_CELL_SIZE;
+    }
+
     @Override
     protected void transformInverse(int x, int y, float[] out) {
         double outside = shape.isOutside(x, y);
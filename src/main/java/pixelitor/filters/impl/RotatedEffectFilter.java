@@ -42,6 +42,13 @@ public abstract class RotatedEffectFilter extends TransformFilter {
         return super.filter(src, dst);
     }
 
+    @Override
+    protected boolean hasSmoothMapping() {
+        // the discontinuities of the subclasses are lines
+        // across the whole image, such as the edges of the slices
+        return true;
+    }
+
     @Override
     protected void transformInverse(int x, int y, float[] out) {
         double i = x - halfWidth;
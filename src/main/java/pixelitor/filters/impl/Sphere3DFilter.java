@@ -19,6 +19,8 @@ package pixelitor.filters.impl;
 import net.jafama.FastMath;
 import pixelitor.filters.Sphere3D;
 
+import java.util.List;
+
 /**
  * The implementation of the {@link Sphere3D} filter.
  *
@@ -70,6 +72,11 @@ public class Sphere3DFilter extends CenteredTransformFilter {
         out[1] = (float) (-phi1 / (Math.PI / 2) * Y);
     }
 
+    @Override
+    protected Object getGeometryState() {
+        return List.of(cx, cy, alpha, beta, gamma);
+    }
+
     public void setAlpha(float alpha) {
         this.alpha = (float) (2 * Math.PI * alpha);
     }
@@ -35,6 +35,12 @@ public class JHCustomHalftone extends JHMaskedHalftone {
         );
     }
 
+    @Override
+    protected Object getCacheableState() {
+        // the result also depends on another composition
+        return null;
+    }
+
     @Override
     protected BufferedImage createMaskImage(BufferedImage src) {
         Optional<Composition> opt = OpenImages.findCompositionByName("Untitled1");
@@ -65,4 +65,10 @@ public class JHFrostedGlass extends ParametrizedFilter {
         dest = filter.filter(src, dest);
         return dest;
     }
+
+    @Override
+    protected Object getCacheableState() {
+        // the result is random, and reseeding keeps the settings
+        return null;
+    }
 }
\ No newline at end of file
@@ -17,15 +17,21 @@
 
 package pixelitor.filters.jhlabsproxies;
 
-import com.jhlabs.image.GlowFilter;
+import com.jhlabs.image.PixelUtils;
 import pixelitor.filters.ParametrizedFilter;
+import pixelitor.filters.graph.BoxBlurNode;
+import pixelitor.filters.graph.ImageGraph;
+import pixelitor.filters.graph.Node;
+import pixelitor.filters.graph.PixelNode;
 import pixelitor.filters.gui.RangeParam;
 import pixelitor.filters.gui.ShowOriginal;
 
 import java.awt.image.BufferedImage;
 
 /**
- * Glow filter based on the JHLabs GlowFilter
+ * Glow filter based on the JHLabs GlowFilter.
+ * The blurred image is cached, so changing only
+ * the amount doesn't re-run the blur.
  */
 public class JHGlow extends ParametrizedFilter {
     public static final String NAME = "Glow";
@@ -33,7 +39,9 @@ public class JHGlow extends ParametrizedFilter {
     private final RangeParam amount = new RangeParam("Amount", 0, 15, 100);
     private final RangeParam softness = new RangeParam("Softness Radius", 0, 20, 100);
 
-    private GlowFilter filter;
+    private transient ImageGraph graph;
+    private transient BoxBlurNode blurred;
+    private transient GlowNode glow;
 
     public JHGlow() {
         super(ShowOriginal.YES);
@@ -56,15 +64,63 @@ public class JHGlow extends ParametrizedFilter {
             return src;
         }
 
-        if (filter == null) {
-            filter = new GlowFilter(NAME);
+        if (graph == null) {
+            graph = new ImageGraph();
+            blurred = new BoxBlurNode(graph.getSource(), NAME);
+            glow = new GlowNode(graph.getSource(), blurred);
         }
 
-        filter.setAmount(amountValue);
-        filter.setRadius(softness.getValueAsFloat());
+        blurred.setRadius(softness.getValueAsFloat());
+        glow.setAmount(amountValue);
 
-        dest = filter.filter(src, dest);
-        return dest;
+        return graph.evaluate(glow, src, getSourceVersion(), dest);
     }
 
-}
\ No newline at end of file
+    @Override
+    public boolean supportsGray() {
+        return false;
+    }
+
+    /**
+     * Adds the blurred image to the original
+     */
+    private static class GlowNode extends PixelNode {
+        private float amount;
+
+        GlowNode(Node original, Node blurred) {
+            super(original, blurred);
+        }
+
+        void setAmount(float amount) {
+            if (amount != this.amount) {
+                this.amount = amount;
+                settingsChanged();
+            }
+        }
+
+        @Override
+        protected void calcRow(int[][] inputRows, int[] outRow) {
+            int[] original = inputRows[0];
+            int[] blurred = inputRows[1];
+            float a = 4 * amount;
+
+            for (int x = 0; x < outRow.length; x++) {
+                int rgb1 = original[x];
+                int r1 = (rgb1 >> 16) & 0xff;
+                int g1 = (rgb1 >> 8) & 0xff;
+                int b1 = rgb1 & 0xff;
+
+                int rgb2 = blurred[x];
+                int r2 = (rgb2 >> 16) & 0xff;
+                int g2 = (rgb2 >> 8) & 0xff;
+                int b2 = rgb2 & 0xff;
+
+                r1 = PixelUtils.max255((int) (r1 + a * r2));
+                g1 = PixelUtils.max255((int) (g1 + a * g2));
+                b1 = PixelUtils.max255((int) (b1 + a * b2));
+
+                outRow[x] = (rgb1 & 0xff000000) | (r1 << 16) | (g1 << 8) | b1;
+            }
+        }
+    }
+}
@@ -17,15 +17,21 @@
 
 package pixelitor.filters.jhlabsproxies;
 
-import com.jhlabs.image.UnsharpFilter;
+import com.jhlabs.image.PixelUtils;
 import pixelitor.filters.ParametrizedFilter;
+import pixelitor.filters.graph.GaussianBlurNode;
+import pixelitor.filters.graph.ImageGraph;
+import pixelitor.filters.graph.Node;
+import pixelitor.filters.graph.PixelNode;
 import pixelitor.filters.gui.RangeParam;
 import pixelitor.filters.gui.ShowOriginal;
 
 import java.awt.image.BufferedImage;
 
 /**
- * Unsharp Mask filter based on the JHLabs UnsharpFilter
+ * Unsharp Mask filter based on the JHLabs UnsharpFilter.
+ * The blurred image is cached, so changing only the
+ * amount or the threshold doesn't re-run the blur.
  */
 public class JHUnsharpMask extends ParametrizedFilter {
     public static final String NAME = "Unsharp Mask";
@@ -34,7 +40,9 @@ public class JHUnsharpMask extends ParametrizedFilter {
     private final RangeParam radius = new RangeParam("Radius", 0, 2, 100);
     private final RangeParam threshold = new RangeParam("Threshold", 0, 0, 100);
 
-    private UnsharpFilter filter;
+    private transient ImageGraph graph;
+    private transient GaussianBlurNode blurred;
+    private transient UnsharpNode sharpened;
 
     public JHUnsharpMask() {
         super(ShowOriginal.YES);
@@ -52,16 +60,78 @@ public class JHUnsharpMask extends ParametrizedFilter {
             return src;
         }
 
-        if (filter == null) {
-            filter = new UnsharpFilter(NAME);
+        if (graph == null) {
+            graph = new ImageGraph();
+            blurred = new GaussianBlurNode(graph.getSource(), NAME);
+            sharpened = new UnsharpNode(graph.getSource(), blurred);
         }
 
-        filter.setAmount(amount.getPercentageValF());
-        filter.setThreshold(threshold.getValue());
-        filter.setRadius(radius.getValueAsFloat());
+        blurred.setRadius(radius.getValueAsFloat());
+        sharpened.setAmount(amount.getPercentageValF());
+        sharpened.setThreshold(threshold.getValue());
 
-        dest = filter.filter(src, dest);
+        return graph.evaluate(sharpened, src, getSourceVersion(), dest);
+    }
+
+    @Override
+    public boolean supportsGray() {
+        return false;
+    }
+
+    /**
+     * Subtracts the blurred image from the original
+     */
+    private static class UnsharpNode extends PixelNode {
+        private float amount;
+        private int threshold;
+
+        UnsharpNode(Node original, Node blurred) {
+            super(original, blurred);
+        }
+
+        void setAmount(float amount) {
+            if (amount != this.amount) {
+                this.amount = amount;
+                settingsChanged();
+            }
+        }
+
+        void setThreshold(int threshold) {
+            if (threshold != this.threshold) {
+                this.threshold = threshold;
+                settingsChanged();
+            }
+        }
+
+        @Override
+        protected void calcRow(int[][] inputRows, int[] outRow) {
+            int[] original = inputRows[0];
+            int[] blurred = inputRows[1];
+            float a = 4 * amount;
 
-        return dest;
+            for (int x = 0; x < outRow.length; x++) {
+                int rgb1 = original[x];
+                int r1 = (rgb1 >> 16) & 0xff;
+                int g1 = (rgb1 >> 8) & 0xff;
+                int b1 = rgb1 & 0xff;
+
+                int rgb2 = blurred[x];
+                int r2 = (rgb2 >> 16) & 0xff;
+                int g2 = (rgb2 >> 8) & 0xff;
+                int b2 = rgb2 & 0xff;
+
+                if (Math.abs(r1 - r2) >= threshold) {
+                    r1 = PixelUtils.clamp((int) ((a + 1) * (r1 - r2) + r2));
+                }
+                if (Math.abs(g1 - g2) >= threshold) {
+                    g1 = PixelUtils.clamp((int) ((a + 1) * (g1 - g2) + g2));
+                }
+                if (Math.abs(b1 - b2) >= threshold) {
+                    b1 = PixelUtils.clamp((int) ((a + 1) * (b1 - b2) + b2));
+                }
+
+                outRow[x] = (rgb1 & 0xff000000) | (r1 << 16) | (g1 << 8) | b1;
+            }
+        }
     }
-}
\ No newline at end of file
+}
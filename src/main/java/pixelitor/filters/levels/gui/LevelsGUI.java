@@ -21,12 +21,15 @@ import pixelitor.filters.Filter;
 import pixelitor.filters.gui.FilterGUI;
 import pixelitor.filters.levels.LevelsModel;
 import pixelitor.filters.levels.OneChannelLevelsModel;
+import pixelitor.gui.HistogramPainter;
 import pixelitor.layers.Drawable;
+import pixelitor.utils.Histogram;
 import pixelitor.utils.Icons;
 
 import javax.swing.*;
 import java.awt.BorderLayout;
 import java.awt.CardLayout;
+import java.awt.Color;
 import java.awt.FlowLayout;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
@@ -72,7 +75,20 @@ public class LevelsGUI extends FilterGUI implements ItemListener {
             addNewCard(p);
         }
 
-        add(cardPanel, CENTER);
+        // the luminosity histogram of the input image helps to set the levels,
+        // it's shown when its calculation outside the EDT is finished
+        var histogramPainter = new HistogramPainter(Color.GRAY);
+        Histogram.calcAsync(dr, histogram -> {
+            histogramPainter.updateData(histogram.getLuminosities());
+            histogramPainter.repaint();
+        });
+        JPanel histogramPanel = new JPanel(new FlowLayout());
+        histogramPanel.add(histogramPainter);
+
+        JPanel centerPanel = new JPanel(new BorderLayout());
+        centerPanel.add(histogramPanel, NORTH);
+        centerPanel.add(cardPanel, CENTER);
+        add(centerPanel, CENTER);
 
         showOriginalCB = new JCheckBox("Show Original");
         showOriginalCB.setName("show original");
@@ -43,12 +43,14 @@ public class FastLookupOp implements BufferedImageOp {
 
     @Override
     public BufferedImage filter(BufferedImage src, BufferedImage dst) {
-        boolean packedInt = ImageUtils.hasPackedIntArray(src);
+        // the source can be a zero-copy view of a selected area,
+        // but the destination must own its pixel array
+        boolean packedInt = ImageUtils.hasPackedIntArray(src)
+                && ImageUtils.isDenseRaster(dst.getRaster());
         if (packedInt) {
             boolean notPremultiplied = !src.isAlphaPremultiplied();
 
-            int[] srcData = ((DataBufferInt) src.getRaster()
-                    .getDataBuffer()).getData();
+            int[] srcData = ImageUtils.getPixelsAsArray(src);
 
             int[] destData = ((DataBufferInt) dst.getRaster()
                     .getDataBuffer()).getData();
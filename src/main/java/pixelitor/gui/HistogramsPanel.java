@@ -17,8 +17,10 @@
 
 package pixelitor.gui;
 
+import pixelitor.Build;
 import pixelitor.Composition;
 import pixelitor.OpenImages;
+import pixelitor.utils.Histogram;
 import pixelitor.utils.ImageUtils;
 import pixelitor.utils.ViewActivationListener;
 
@@ -27,8 +29,10 @@ import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.awt.GridLayout;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.util.Objects;
+import java.util.concurrent.Executor;
 
 import static java.awt.BorderLayout.CENTER;
 import static java.awt.BorderLayout.NORTH;
@@ -54,9 +58,30 @@ public class HistogramsPanel extends JPanel implements ViewActivationListener {
     private boolean logarithmic;
     private final JComboBox<String> typeChooser;
 
+    // coalesces the rapid update requests, for example
+    // the ones coming from consecutive brush strokes
+    private static final int UPDATE_DELAY_MILLIS = 100;
+    private final Timer updateTimer;
+
+    // the state of the requests, accessed only on the EDT
+    private Composition pendingComp;
+    private Rectangle pendingDirty;
+    private boolean pendingFull;
+    private Composition lastComp;
+    private Histogram lastHistogram;
+
+    // the state of the calculations, accessed only on the calculation thread
+    private final Executor calcExecutor = Histogram.getCalcExecutor();
+    private Composition calcComp;
+    private BufferedImage calcImage;
+    private Histogram calcHistogram;
+
     private HistogramsPanel() {
         setLayout(new BorderLayout());
 
+        updateTimer = new Timer(UPDATE_DELAY_MILLIS, e -> startCalculation());
+        updateTimer.setRepeats(false);
+
         red = new HistogramPainter(RED);
         green = new HistogramPainter(GREEN);
         blue = new HistogramPainter(BLUE);
@@ -90,7 +115,9 @@ public class HistogramsPanel extends JPanel implements ViewActivationListener {
         boolean isLogarithmicNow = newType.equals(TYPE_LOGARITHMIC);
         if (isLogarithmicNow != logarithmic) {
             logarithmic = isLogarithmicNow;
-            OpenImages.onActiveComp(this::updateFrom);
+            if (lastHistogram != null) {
+                display(lastHistogram);
+            }
         }
     }
 
@@ -100,6 +127,12 @@ public class HistogramsPanel extends JPanel implements ViewActivationListener {
 
     @Override
     public void allViewsClosed() {
+        updateTimer.stop();
+        pendingComp = null;
+        pendingDirty = null;
+        lastHistogram = null;
+        calcExecutor.execute(this::forgetCalcState);
+
         red.allViewsClosed();
         green.allViewsClosed();
         blue.allViewsClosed();
@@ -111,30 +144,127 @@ public class HistogramsPanel extends JPanel implements ViewActivationListener {
         updateFrom(newView.getComp());
     }
 
+    /**
+     * Requests a histogram update for the whole composite image
+     */
     public void updateFrom(Composition comp) {
+        updateFrom(comp, null);
+    }
+
+    /**
+     * Requests a histogram update after only the given
+     * region (in canvas coordinates) of the composite image changed.
+     * The requests are coalesced, and the calculation runs
+     * outside the EDT. If dirtyRect is null, then the whole
+     * histogram is recalculated.
+     */
+    public void updateFrom(Composition comp, Rectangle dirtyRect) {
         Objects.requireNonNull(comp);
+        // the compositions of the unit tests are changed outside the EDT
+        assert Build.isUnitTesting() || SwingUtilities.isEventDispatchThread();
         if (!isShown()) {
+            // the incremental state can't be trusted after missed changes
+            contentChanged(comp);
+            return;
+        }
+
+        if (pendingComp != comp) {
+            pendingComp = comp;
+            pendingFull = true;
+        }
+        if (dirtyRect == null) {
+            pendingFull = true;
+        } else if (pendingDirty == null) {
+            pendingDirty = new Rectangle(dirtyRect);
+        } else {
+            pendingDirty.add(dirtyRect);
+        }
+
+        if (!updateTimer.isRunning()) {
+            updateTimer.start();
+        }
+    }
+
+    /**
+     * Called when the pixels of the given composition changed in an
+     * unknown region without requesting a histogram update, so that
+     * the next update will not be an incremental one.
+     */
+    public void contentChanged(Composition comp) {
+        if (pendingComp == comp || pendingComp == null) {
+            pendingFull = true;
+        }
+        if (lastComp == comp) {
+            lastComp = null;
+        }
+    }
+
+    private void startCalculation() {
+        Composition comp = pendingComp;
+        if (comp == null || !isShown()) {
             return;
         }
-        BufferedImage image = comp.getCompositeImage();
-
-        int[] reds = new int[HISTOGRAM_RESOLUTION];
-        int[] blues = new int[HISTOGRAM_RESOLUTION];
-        int[] greens = new int[HISTOGRAM_RESOLUTION];
-
-        int[] data = ImageUtils.getPixelsAsArray(image);
-        for (int rgb : data) {
-            int a = (rgb >>> 24) & 0xFF;
-            if (a > 0) {
-                int r = (rgb >>> 16) & 0xFF;
-                int g = (rgb >>> 8) & 0xFF;
-                int b = rgb & 0xFF;
-
-                reds[r]++;
-                greens[g]++;
-                blues[b]++;
+        // the calculation needs an image that doesn't change
+        BufferedImage image = comp.isCompositeImageReused()
+                ? ImageUtils.copyImage(comp.getCompositeImage())
+                : comp.getCompositeImage();
+
+        // the incremental calculation is possible only if nothing
+        // else changed since the histogram of the last image
+        Rectangle dirty = pendingFull || lastComp != comp ? null : pendingDirty;
+        pendingDirty = null;
+        pendingFull = false;
+        lastComp = comp;
+
+        calcExecutor.execute(() -> {
+            Histogram histogram = calculate(comp, image, dirty);
+            SwingUtilities.invokeLater(() -> calculationFinished(comp, histogram));
+        });
+    }
+
+    /**
+     * Runs on the calculation thread. The composite images are never
+     * modified after they are created, therefore the previous one can be
+     * kept as the baseline for the next incremental calculation.
+     */
+    private Histogram calculate(Composition comp, BufferedImage image, Rectangle dirty) {
+        boolean incremental = dirty != null
+                && calcComp == comp
+                && calcImage != null
+                && calcImage.getWidth() == image.getWidth()
+                && calcImage.getHeight() == image.getHeight();
+
+        if (incremental) {
+            if (calcImage != image) {
+                calcHistogram.update(calcImage, image, dirty);
             }
+        } else {
+            calcHistogram = Histogram.of(image);
         }
+        calcComp = comp;
+        calcImage = image;
+        return calcHistogram.copy();
+    }
+
+    private void forgetCalcState() {
+        calcComp = null;
+        calcImage = null;
+        calcHistogram = null;
+    }
+
+    private void calculationFinished(Composition comp, Histogram histogram) {
+        if (comp != OpenImages.getActiveComp()) {
+            // the view was switched or closed in the meantime
+            return;
+        }
+        lastHistogram = histogram;
+        display(histogram);
+    }
+
+    private void display(Histogram histogram) {
+        int[] reds = histogram.getReds();
+        int[] greens = histogram.getGreens();
+        int[] blues = histogram.getBlues();
 
         if (logarithmic) {
             for (int i = 0; i < HISTOGRAM_RESOLUTION; i++) {
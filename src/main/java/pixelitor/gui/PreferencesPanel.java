@@ -29,6 +29,7 @@ import pixelitor.guides.GuideStyle;
 import pixelitor.history.History;
 import pixelitor.layers.LayerButtonLayout;
 import pixelitor.utils.AppPreferences;
+import pixelitor.utils.ScratchImage;
 
 import javax.swing.*;
 import javax.swing.border.Border;
@@ -77,6 +78,14 @@ public class PreferencesPanel extends JPanel {
                 TextFieldValidator.createPositiveIntLayer("Undo/Redo Levels",
                         undoLevelsTF, true));
 
+        JCheckBox scratchFilesCB = new JCheckBox("", ScratchImage.isEnabled());
+        scratchFilesCB.setName("scratchFilesCB");
+        scratchFilesCB.setToolTipText("<html>Store the pixels and the undo data of large images in temporary files" +
+                "<br>outside the Java heap, so that larger images can be edited");
+        scratchFilesCB.addActionListener(e ->
+                ScratchImage.setEnabled(scratchFilesCB.isSelected()));
+        gbh.addLabelAndControl("Large Images in Scratch Files: ", scratchFilesCB);
+
         IntChoiceParam.Value[] thumbSizes = {
                 new IntChoiceParam.Value("24x24 pixels", 24),
                 new IntChoiceParam.Value("48x48 pixels", 48),
@@ -46,6 +46,7 @@ import pixelitor.tools.util.PRectangle;
 import pixelitor.utils.ImageUtils;
 import pixelitor.utils.Lazy;
 import pixelitor.utils.Messages;
+import pixelitor.utils.Timings;
 import pixelitor.utils.VisibleForTesting;
 import pixelitor.utils.debug.DebugNodes;
 import pixelitor.utils.test.Assertions;
@@ -84,6 +85,9 @@ public class View extends JComponent
     private static final CheckerboardPainter checkerBoardPainter
             = ImageUtils.createCheckerboardPainter();
 
+    private static final Timings.Key PAINT_TIMINGS_KEY
+            = Timings.key(Timings.Category.VIEW_PAINT, "View");
+
     private LayersPanel layersPanel;
 
     private Composition comp;
@@ -101,6 +105,11 @@ public class View extends JComponent
 
     private Navigator navigator;
 
+    // the region changed by the stroke rendering
+    // thread, which is not yet repainted on the EDT
+    private Rectangle pendingRegion;
+    private final Object pendingRegionLock = new Object();
+
     private static boolean showPixelGrid = false;
 
     public View(Composition comp) {
@@ -324,7 +333,9 @@ public class View extends JComponent
         try {
             // no borders, no children, double-buffering is happening
             // in the parent
+            long startTime = System.nanoTime();
             paintComponent(g);
+            Timings.record(PAINT_TIMINGS_KEY, comp.getName(), startTime);
         } catch (OutOfMemoryError e) {
             Dialogs.showOutOfMemoryDialog(e);
         }
@@ -475,6 +486,10 @@ public class View extends JComponent
      * Repaints only a region of the image
      */
     public void repaintRegion(PPoint start, PPoint end, double thickness) {
+        repaint(calcRegion(start, end, thickness));
+    }
+
+    private Rectangle calcRegion(PPoint start, PPoint end, double thickness) {
         double startX = start.getCoX();
         double startY = start.getCoY();
         double endX = end.getCoX();
@@ -504,10 +519,51 @@ public class View extends JComponent
         double repWidth = endX - startX;
         double repHeight = endY - startY;
 
-        repaint((int) startX, (int) startY,
+        return new Rectangle((int) startX, (int) startY,
                 (int) repWidth, (int) repHeight);
     }
 
+    /**
+     * Like {@link #repaintRegion(PPoint, PPoint, double)}, but it can be
+     * called from the stroke rendering thread. The regions are merged
+     * until the EDT gets to them, so that there is one repaint per frame.
+     */
+    public void repaintRegionLater(PPoint start, PPoint end, double thickness) {
+        addPendingRegion(calcRegion(start, end, thickness));
+    }
+
+    /**
+     * Like {@link #repaintRegion(PRectangle)}, but it can be
+     * called from the stroke rendering thread.
+     */
+    public void repaintRegionLater(PRectangle area) {
+        addPendingRegion(area.getCo());
+    }
+
+    private void addPendingRegion(Rectangle region) {
+        boolean first;
+        synchronized (pendingRegionLock) {
+            first = pendingRegion == null;
+            if (first) {
+                pendingRegion = new Rectangle(region);
+            } else {
+                pendingRegion.add(region);
+            }
+        }
+        if (first) {
+            EventQueue.invokeLater(this::repaintPendingRegion);
+        }
+    }
+
+    private void repaintPendingRegion() {
+        Rectangle region;
+        synchronized (pendingRegionLock) {
+            region = pendingRegion;
+            pendingRegion = null;
+        }
+        comp.repaintRegion(PRectangle.fromCo(region, this));
+    }
+
     /**
      * Repaints only a region of the image
      */
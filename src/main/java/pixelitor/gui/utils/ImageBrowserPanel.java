@@ -0,0 +1,227 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.gui.utils;
+
+import pixelitor.io.IOTasks;
+import pixelitor.io.ThumbnailCache;
+import pixelitor.utils.ImageUtils;
+import pixelitor.utils.Messages;
+import pixelitor.utils.Utils;
+
+import javax.swing.*;
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.EventQueue;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static java.awt.BorderLayout.CENTER;
+import static java.awt.BorderLayout.NORTH;
+
+/**
+ * Shows the thumbnails of image files, so that some of them can be
+ * selected without decoding all of them. The thumbnails come from
+ * the {@link ThumbnailCache}, and only the thumbnails of the
+ * files that are scrolled into view are loaded.
+ */
+public class ImageBrowserPanel extends JPanel {
+    private static final int THUMB_SIZE = 128;
+    private static final int CELL_WIDTH = THUMB_SIZE + 20;
+    private static final int CELL_HEIGHT = THUMB_SIZE + 44;
+    private static final int VISIBLE_COLUMNS = 5;
+    private static final int VISIBLE_ROWS = 3;
+
+    private final JList<File> fileList;
+
+    // the loaded thumbnails, a null value means that the
+    // thumbnail is loading or that the file has no preview
+    private final Map<File, ThumbInfo> thumbs = new HashMap<>();
+
+    // set when the dialog is closed, so that the
+    // thumbnails that are still waiting are not loaded
+    private volatile boolean closed;
+
+    public ImageBrowserPanel(File[] files) {
+        super(new BorderLayout());
+
+        fileList = new JList<>(files);
+        fileList.setLayoutOrientation(JList.HORIZONTAL_WRAP);
+        fileList.setVisibleRowCount(-1);
+        fileList.setFixedCellWidth(CELL_WIDTH);
+        fileList.setFixedCellHeight(CELL_HEIGHT);
+        fileList.setCellRenderer(new ThumbCell());
+        fileList.setSelectionInterval(0, files.length - 1);
+
+        JScrollPane scrollPane = new JScrollPane(fileList);
+        scrollPane.getVerticalScrollBar().setUnitIncrement(CELL_HEIGHT / 4);
+        scrollPane.setPreferredSize(new Dimension(
+            VISIBLE_COLUMNS * CELL_WIDTH + 30, VISIBLE_ROWS * CELL_HEIGHT + 10));
+
+        add(new JLabel(files.length + " image files. " +
+            "Select the ones you want with Ctrl/Shift+click."), NORTH);
+        add(scrollPane, CENTER);
+    }
+
+    public List<File> getSelectedFiles() {
+        return fileList.getSelectedValuesList();
+    }
+
+    private void close() {
+        closed = true;
+    }
+
+    /**
+     * Called by the cell renderer, therefore only for the visible cells
+     */
+    private ThumbInfo getThumb(File file, int index) {
+        if (thumbs.containsKey(file)) {
+            return thumbs.get(file);
+        }
+        thumbs.put(file, null);
+        IOTasks.submitRead(file, Utils.toSupplier(() -> loadThumb(file)))
+            // a file that can't be decoded is shown without a preview
+            .handle((thumb, e) -> e == null ? thumb : null)
+            .thenAcceptAsync(thumb -> thumbLoaded(file, index, thumb),
+                EventQueue::invokeLater);
+        return null;
+    }
+
+    private ThumbInfo loadThumb(File file) throws IOException {
+        if (closed) {
+            return null;
+        }
+        ThumbInfo cached = ThumbnailCache.INSTANCE.get(file, null);
+        if (cached == null) {
+            return null;
+        }
+        BufferedImage thumb = cached.getThumb();
+        if (thumb.getWidth() <= THUMB_SIZE && thumb.getHeight() <= THUMB_SIZE) {
+            return cached;
+        }
+        thumb = ImageUtils.createThumbnail(thumb, THUMB_SIZE, null);
+        return new ThumbInfo(thumb, cached.getOrigWidth(), cached.getOrigHeight());
+    }
+
+    private void thumbLoaded(File file, int index, ThumbInfo thumb) {
+        if (thumb == null || closed) {
+            return;
+        }
+        thumbs.put(file, thumb);
+        Rectangle cellBounds = fileList.getCellBounds(index, index);
+        if (cellBounds != null) {
+            fileList.repaint(cellBounds);
+        }
+    }
+
+    /**
+     * Shows the given files in a dialog, and if OK is pressed,
+     * then runs the given action with the selected files.
+     */
+    public static void showInDialog(String title, String okText,
+                                    File[] files, Consumer<List<File>> action) {
+        var browser = new ImageBrowserPanel(files);
+        new DialogBuilder()
+            .title(title)
+            .content(browser)
+            .okText(okText)
+            .validator(d -> {
+                if (browser.getSelectedFiles().isEmpty()) {
+                    Messages.showError("No files selected", "No image files are selected.");
+                    return false;
+                }
+                return true;
+            })
+            .okAction(() -> {
+                browser.close();
+                action.accept(browser.getSelectedFiles());
+            })
+            .cancelAction(browser::close)
+            .show();
+    }
+
+    /**
+     * Paints the thumbnail, the name and the size of a file
+     */
+    private class ThumbCell extends JComponent implements ListCellRenderer<File> {
+        private static final int MARGIN = 4;
+
+        private File file;
+        private ThumbInfo thumbInfo;
+        private boolean selected;
+
+        @Override
+        public Component getListCellRendererComponent(JList<? extends File> list,
+                                                      File value, int index,
+                                                      boolean isSelected,
+                                                      boolean cellHasFocus) {
+            file = value;
+            thumbInfo = getThumb(value, index);
+            selected = isSelected;
+            return this;
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            int width = getWidth();
+            int height = getHeight();
+            g.setColor(selected
+                ? fileList.getSelectionBackground()
+                : fileList.getBackground());
+            g.fillRect(0, 0, width, height);
+
+            if (thumbInfo != null) {
+                BufferedImage thumb = thumbInfo.getThumb();
+                int x = (width - thumb.getWidth()) / 2;
+                int y = MARGIN + (THUMB_SIZE - thumb.getHeight()) / 2;
+                g.drawImage(thumb, x, y, null);
+            }
+
+            g.setColor(selected
+                ? fileList.getSelectionForeground()
+                : fileList.getForeground());
+            FontMetrics fm = g.getFontMetrics();
+            int textY = THUMB_SIZE + 2 * MARGIN + fm.getAscent();
+            drawCentered(g, fm, file.getName(), textY);
+            if (thumbInfo != null) {
+                String size = thumbInfo.getOrigWidth() + " x " + thumbInfo.getOrigHeight();
+                drawCentered(g, fm, size, textY + fm.getHeight());
+            }
+        }
+
+        private void drawCentered(Graphics g, FontMetrics fm, String text, int y) {
+            int maxWidth = getWidth() - 2 * MARGIN;
+            String shown = text;
+            if (fm.stringWidth(shown) > maxWidth) {
+                while (shown.length() > 1 && fm.stringWidth(shown + "...") > maxWidth) {
+                    shown = shown.substring(0, shown.length() - 1);
+                }
+                shown += "...";
+            }
+            g.drawString(shown, (getWidth() - fm.stringWidth(shown)) / 2, y);
+        }
+    }
+}
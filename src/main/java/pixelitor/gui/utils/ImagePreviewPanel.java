@@ -18,22 +18,25 @@
 package pixelitor.gui.utils;
 
 import pixelitor.io.FileUtils;
-import pixelitor.io.TrackedIO;
+import pixelitor.io.IOTasks;
+import pixelitor.io.ThumbnailCache;
+import pixelitor.utils.ImageUtils;
 import pixelitor.utils.JProgressBarTracker;
 import pixelitor.utils.Messages;
 import pixelitor.utils.ProgressPanel;
 import pixelitor.utils.ProgressTracker;
+import pixelitor.utils.Utils;
 
 import javax.swing.*;
 import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.EventQueue;
 import java.awt.Graphics;
 import java.awt.image.BufferedImage;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static java.awt.Color.BLACK;
 import static java.awt.Color.WHITE;
@@ -48,18 +51,19 @@ public class ImagePreviewPanel extends JPanel implements PropertyChangeListener
     private final Color backgroundColor;
     private ThumbInfo thumbInfo;
 
+    // the last selected file, the thumbnails
+    // of the other files are ignored when they arrive
+    private File selectedFile;
+
     private static final int MSG_X = 20;
     private static final int MSG_Y = 10;
 
-    private final Map<String, ThumbInfo> thumbsCache;
-
     private final ProgressPanel progressPanel;
 
     public ImagePreviewPanel(ProgressPanel progressPanel) {
         this.progressPanel = progressPanel;
         setPreferredSize(new Dimension(SIZE, SIZE));
         backgroundColor = getBackground();
-        thumbsCache = new HashMap<>();
 
         this.progressPanel.setVisible(true);
     }
@@ -68,36 +72,53 @@ public class ImagePreviewPanel extends JPanel implements PropertyChangeListener
     @Override
     public void propertyChange(PropertyChangeEvent e) {
         File file = getFileFromFileChooserEvent(e);
+        selectedFile = file;
         if (file == null) {
             thumbInfo = null;
             repaint();
             return;
         }
 
-        String filePath = file.getAbsolutePath();
         if (FileUtils.hasSupportedInputExt(file)) {
-            createThumbImage(file, filePath);
+            thumbInfo = null;
             repaint();
+            loadThumbAsync(file);
         }
     }
 
-    private void createThumbImage(File file, String filePath) {
-        if (thumbsCache.containsKey(filePath)) {
-            thumbInfo = thumbsCache.get(filePath);
+    private void loadThumbAsync(File file) {
+        // TODO A problem is that ora and pxc files are reported as "Unrecognized"
+
+        // the tracker touches Swing components, so it's created here on the EDT
+        ProgressTracker pt = new JProgressBarTracker(progressPanel);
+        CompletableFuture
+            .supplyAsync(
+                Utils.toSupplier(() -> ThumbnailCache.INSTANCE.get(file, pt)),
+                IOTasks.getExecutor())
+            .thenAcceptAsync(
+                cached -> thumbLoaded(file, cached),
+                EventQueue::invokeLater)
+            .exceptionally(Messages::showExceptionOnEDT);
+    }
+
+    private void thumbLoaded(File file, ThumbInfo cached) {
+        if (file != selectedFile) {
+            // another file was selected in the meantime
             return;
         }
+        thumbInfo = cached == null ? null : fitToPanel(cached);
+        repaint();
+    }
 
-        // TODO A problem is that ora and pxc files are reported as "Unrecognized"
-        try {
-            int availableWidth = getWidth() - EMPTY_SPACE_AT_LEFT;
-            int availableHeight = getHeight();
-
-            ProgressTracker pt = new JProgressBarTracker(progressPanel);
-            thumbInfo = TrackedIO.readSubsampledThumb(file, availableWidth, availableHeight, pt);
-            thumbsCache.put(filePath, thumbInfo);
-        } catch (Exception ex) {
-            Messages.showException(ex);
+    private ThumbInfo fitToPanel(ThumbInfo cached) {
+        int availableWidth = getWidth() - EMPTY_SPACE_AT_LEFT;
+        int availableHeight = getHeight();
+        BufferedImage thumb = cached.getThumb();
+        if (thumb.getWidth() <= availableWidth && thumb.getHeight() <= availableHeight) {
+            return cached;
         }
+        thumb = ImageUtils.createThumbnail(thumb, availableWidth, availableHeight, null);
+        return new ThumbInfo(thumb, cached.getOrigWidth(), cached.getOrigHeight());
     }
 
     private static File getFileFromFileChooserEvent(PropertyChangeEvent e) {
@@ -50,7 +50,8 @@ public class SaveFileChooser extends ConfirmSaveFileChooser {
             extension = getExtensionFromFileFilter();
             f = new File(f.getAbsolutePath() + '.' + extension);
         } else {
-            boolean supported = FileUtils.hasSupportedOutputExt(f.getName());
+            boolean supported = FileUtils.hasSupportedOutputExt(f.getName())
+                    || isFileFilterExtension(foundExt.get());
             if (!supported) {
                 extension = getExtensionFromFileFilter();
                 f = new File(f.getAbsolutePath() + '.' + extension);
@@ -66,6 +67,18 @@ public class SaveFileChooser extends ConfirmSaveFileChooser {
         return extension;
     }
 
+    private boolean isFileFilterExtension(String ext) {
+        FileFilter currentFilter = getFileFilter();
+        if (currentFilter instanceof FileNameExtensionFilter) {
+            for (String filterExt : ((FileNameExtensionFilter) currentFilter).getExtensions()) {
+                if (filterExt.equalsIgnoreCase(ext)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     private String getExtensionFromFileFilter() {
         FileFilter currentFilter = getFileFilter();
         return ((FileNameExtensionFilter) currentFilter).getExtensions()[0];
@@ -21,6 +21,7 @@ import pixelitor.Composition;
 import pixelitor.layers.ImageLayer;
 import pixelitor.layers.LayerMask;
 import pixelitor.layers.MaskViewMode;
+import pixelitor.layers.SharedImages;
 
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
@@ -46,6 +47,10 @@ public class ApplyLayerMaskEdit extends PixelitorEdit {
         this.oldImage = oldImage;
         this.layer = layer;
         this.oldMask = oldMask;
+
+        // the old image can be shared with other layers,
+        // which must not modify it in place
+        SharedImages.addOwner(oldImage, this);
     }
 
     @Override
@@ -53,6 +58,7 @@ public class ApplyLayerMaskEdit extends PixelitorEdit {
         super.undo();
 
         layer.setImage(oldImage);
+        SharedImages.removeOwner(oldImage, this);
         layer.addConfiguredMask(oldMask, true);
         oldMode.activate(comp, layer, "apply mask undone");
         layer.updateIconImage();
@@ -64,6 +70,7 @@ public class ApplyLayerMaskEdit extends PixelitorEdit {
 
         // the mask view mode is automatically set to normal
         oldImage = layer.applyLayerMask(false);
+        SharedImages.addOwner(oldImage, this);
     }
 
     @Override
@@ -73,6 +80,7 @@ public class ApplyLayerMaskEdit extends PixelitorEdit {
         layer = null;
         oldMask = null;
         if(oldImage != null) {
+            SharedImages.removeOwner(oldImage, this);
             oldImage.flush();
             oldImage = null;
         }
@@ -26,6 +26,7 @@ import pixelitor.menus.MenuAction.AllowedLayerType;
 import pixelitor.utils.AppPreferences;
 import pixelitor.utils.Icons;
 import pixelitor.utils.Messages;
+import pixelitor.utils.Timings;
 import pixelitor.utils.VisibleForTesting;
 import pixelitor.utils.debug.DebugNode;
 import pixelitor.utils.test.Events;
@@ -86,6 +87,7 @@ public class History {
         if (ignoreEdits) {
             return;
         }
+        long startTime = System.nanoTime();
 
         var comp = edit.getComp();
 
@@ -103,6 +105,8 @@ public class History {
         numUndoneEdits = 0;
         undoableEditSupport.postEdit(edit);
 
+        Timings.record(Timings.Category.HISTORY, edit.getName(), comp.getName(), startTime);
+
         if (Build.isDevelopment()) {
             Events.postAddToHistoryEvent(edit);
 
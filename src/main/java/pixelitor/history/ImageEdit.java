@@ -19,6 +19,8 @@ package pixelitor.history;
 
 import pixelitor.Composition;
 import pixelitor.layers.Drawable;
+import pixelitor.layers.SharedImages;
+import pixelitor.utils.ScratchImage;
 import pixelitor.utils.debug.DebugNode;
 
 import javax.swing.undo.CannotRedoException;
@@ -32,6 +34,11 @@ import java.lang.ref.SoftReference;
 public class ImageEdit extends FadeableEdit {
     private final boolean ignoreSelection;
     private SoftReference<BufferedImage> imgRef;
+
+    // not null if the backup is stored in a scratch file, in this case it
+    // can be referenced strongly, because it doesn't use the Java heap
+    private BufferedImage scratchBackup;
+
     protected Drawable dr;
 
     private final boolean canRepeat;
@@ -47,12 +54,43 @@ public class ImageEdit extends FadeableEdit {
 
 //        Utils.debugImage(backupImage, "Backup for " + name);
         
-        // the backup image is stored in an SoftReference
-        imgRef = new SoftReference<>(backupImage);
         this.dr = dr;
         this.canRepeat = canRepeat;
 
-        checkBackupDifferentFromActive();
+        checkBackupDifferentFromActive(backupImage);
+        storeBackup(backupImage);
+    }
+
+    /**
+     * Stores the backup image in a SoftReference, or if it's
+     * stored in a scratch file (see {@link ScratchImage}), then
+     * in a normal reference. The backups are not copied here:
+     * the images of the layers are already moved into scratch files
+     * if that's enabled, and so are the copies made for the backups.
+     */
+    private void storeBackup(BufferedImage backupImage) {
+        if (ScratchImage.isStored(backupImage)) {
+            scratchBackup = backupImage;
+            imgRef = null;
+        } else {
+            scratchBackup = null;
+            imgRef = new SoftReference<>(backupImage);
+        }
+        // the backup can be the old image of a layer, which
+        // can still be shared with other layers
+        SharedImages.addOwner(backupImage, this);
+    }
+
+    /**
+     * Gives up the ownership of the given backup image, and if
+     * no other owner uses it, then deletes its scratch file.
+     */
+    private void releaseBackup(BufferedImage backupImage) {
+        boolean stillUsed = SharedImages.hasOtherOwner(backupImage, this);
+        SharedImages.removeOwner(backupImage, this);
+        if (!stillUsed) {
+            ScratchImage.dispose(backupImage);
+        }
     }
 
     public static ImageEdit createEmbedded(Drawable dr) {
@@ -70,9 +108,9 @@ public class ImageEdit extends FadeableEdit {
 
     // the backup should never be identical to the active image
     // otherwise the backup might be also edited
-    private void checkBackupDifferentFromActive() {
-        BufferedImage layerImage = dr.getImage();
-        if (layerImage == imgRef.get()) {
+    private void checkBackupDifferentFromActive(BufferedImage backupImage) {
+        BufferedImage layerImage = dr.getImageForReading();
+        if (layerImage == backupImage) {
             throw new IllegalStateException("backup image is identical to the active one");
         }
     }
@@ -99,28 +137,31 @@ public class ImageEdit extends FadeableEdit {
      * Returns true if successful
      */
     private boolean swapImages()  {
-        BufferedImage backupImage = imgRef.get();
+        BufferedImage backupImage = getBackupImage();
         if(backupImage == null) {
             return false;
         }
+        scratchBackup = null;
+        imgRef = null;
 
         BufferedImage tmp;
         if (ignoreSelection) {
-            tmp = dr.getImage();
+            tmp = dr.getImageForReading();
         } else {
             tmp = dr.getSelectedSubImage(false);
         }
         dr.changeImageForUndoRedo(backupImage, ignoreSelection);
-
-        // create new backup image from tmp
-        imgRef = new SoftReference<>(tmp);
+        // if it became the image of the layer, then the layer also owns it
+        releaseBackup(backupImage);
 
         if(!embedded) {
             comp.imageChanged();
             dr.updateIconImage();
         }
 
-        checkBackupDifferentFromActive();
+        // create new backup image from tmp
+        checkBackupDifferentFromActive(tmp);
+        storeBackup(tmp);
         return true;
     }
 
@@ -128,17 +169,27 @@ public class ImageEdit extends FadeableEdit {
     public void die() {
         super.die();
 
-        BufferedImage backupImage = imgRef.get();
-        if(backupImage != null) {
+        BufferedImage backupImage = getBackupImage();
+        if (backupImage != null) {
             backupImage.flush();
+            releaseBackup(backupImage);
         }
 
+        scratchBackup = null;
         imgRef = null;
         dr = null;
     }
 
+    /**
+     * Returns the backup image, which is not copied to the heap
+     * if it's stored in a scratch file. It can be null if the
+     * soft reference has been cleared.
+     */
     @Override
     public BufferedImage getBackupImage() {
+        if (scratchBackup != null) {
+            return scratchBackup;
+        }
         if(imgRef != null) {
             // this still could be null
             return imgRef.get();
@@ -155,10 +206,11 @@ public class ImageEdit extends FadeableEdit {
     public DebugNode getDebugNode() {
         var node = super.getDebugNode();
 
-        BufferedImage img = imgRef.get();
+        BufferedImage img = getBackupImage();
         if (img != null) {
             node.addInt("backup image width", img.getWidth());
             node.addInt("backup image height", img.getHeight());
+            node.addBoolean("backup in scratch file", scratchBackup != null);
         }
 
         return node;
@@ -106,6 +106,7 @@ public class PartialImageEdit extends FadeableEdit {
 
         backupRasterRef = new SoftReference<>(tmpRaster);
 
+        dr.pixelsChanged();
         comp.imageChanged();
         dr.updateIconImage();
 
@@ -159,7 +160,7 @@ public class PartialImageEdit extends FadeableEdit {
         // recreate the full image as if it was backed up entirely
         // because Fade expects to fade images of equal size
         // TODO this is not the optimal solution  - Fade should fade only the changed area
-        BufferedImage fullImage = dr.getImage();
+        BufferedImage fullImage = dr.getImageForReading();
         BufferedImage previousImage = ImageUtils.copyImage(fullImage);
         previousImage.setData(backupRaster);
 
@@ -51,6 +51,8 @@ public class FileChoosers {
     private static final FileFilter tiffFilter = new FileNameExtensionFilter("TIFF files", "tiff", "tif");
     private static final FileFilter pxcFilter = new FileNameExtensionFilter("PXC files", "pxc");
     public static final FileFilter oraFilter = new FileNameExtensionFilter("OpenRaster files", "ora");
+    public static final FileFilter csvFilter = new FileNameExtensionFilter("CSV files", "csv");
+    public static final FileFilter jsonFilter = new FileNameExtensionFilter("JSON files", "json");
 
     private static final FileFilter[] OPEN_SAVE_FILTERS;
 
@@ -142,6 +144,27 @@ public class FileChoosers {
         }
     }
 
+    /**
+     * Lets the user select a folder, and then shows its images in the
+     * image browser, where the images to be opened can be selected.
+     */
+    public static void browseFolder() {
+        var dirChooser = new JFileChooser(Dirs.getLastOpen());
+        dirChooser.setName("browseFolder");
+        dirChooser.setDialogTitle("Select Folder");
+        dirChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+
+        GlobalEvents.dialogOpened("Select Folder");
+        int status = dirChooser.showOpenDialog(PixelitorWindow.getInstance());
+        GlobalEvents.dialogClosed("Select Folder");
+
+        if (status == JFileChooser.APPROVE_OPTION) {
+            File dir = dirChooser.getSelectedFile();
+            Dirs.setLastOpenIfValid(dir);
+            OpenSave.browseImagesInDir(dir);
+        }
+    }
+
     private static void handleUnsupportedExtensionWhileOpening(String fileName) {
         String extension = FileUtils.findExtension(fileName).orElse("");
         String msg = "Could not open " + fileName + ", because ";
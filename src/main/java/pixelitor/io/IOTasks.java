@@ -0,0 +1,313 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.io;
+
+import pixelitor.utils.Timings;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static pixelitor.utils.Timings.Category.IO_READ;
+import static pixelitor.utils.Timings.Category.IO_WRITE;
+
+/**
+ * Schedules the IO tasks on a bounded pool of threads.
+ *
+ * The tasks touching the same file are ordered as if they were protected
+ * by a read-write lock that is acquired in submission order: reads of the
+ * same file can run in parallel, but a write waits for all the previously
+ * submitted tasks of its file, and later tasks wait for the write.
+ * The tasks of different files run in parallel.
+ *
+ * Interactive tasks (opening files) are started before the background
+ * tasks (saving and exporting). The actual disk reads are limited
+ * separately (see {@link #readFully(File)}), so that the decoding
+ * can use all the cores without too many parallel disk operations.
+ * The writes are streamed to the disk while they are encoded
+ * (see {@link #writeViaTempFile(File, TempFileWriter)}).
+ */
+public class IOTasks {
+    private static final int NUM_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    // the number of parallel disk reads
+    private static final int MAX_DISK_ACCESSES = 2;
+    private static final Semaphore diskAccessPermits = new Semaphore(MAX_DISK_ACCESSES, true);
+
+    private enum Priority {INTERACTIVE, BACKGROUND}
+
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+    private static final AtomicLong taskCounter = new AtomicLong();
+    private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            NUM_THREADS, NUM_THREADS, 30, TimeUnit.SECONDS,
+            new PriorityBlockingQueue<>(),
+            r -> new Thread(r, "[IO thread " + threadCounter.incrementAndGet() + "]"));
+
+    static {
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    private static final Executor interactiveExecutor =
+            task -> executor.execute(new PrioritizedTask(task, Priority.INTERACTIVE));
+    private static final Executor backgroundExecutor =
+            task -> executor.execute(new PrioritizedTask(task, Priority.BACKGROUND));
+
+    // the scheduled or running tasks of each file, guarded by the class lock
+    private static final Map<String, PathTasks> pathTasks = new HashMap<>();
+
+    private IOTasks() {
+        // should not be instantiated
+    }
+
+    /**
+     * Returns the executor for the interactive tasks
+     * that are not associated with a single file
+     */
+    public static Executor getExecutor() {
+        return interactiveExecutor;
+    }
+
+    /**
+     * Returns the executor for the tasks that are not associated
+     * with a single file and have no user waiting for them
+     */
+    public static Executor getBackgroundExecutor() {
+        return backgroundExecutor;
+    }
+
+    /**
+     * Schedules an interactive task that reads the given file.
+     */
+    public static <T> CompletableFuture<T> submitRead(File file, Supplier<T> task) {
+        String path = file.getAbsolutePath();
+        synchronized (IOTasks.class) {
+            PathTasks tasks = pathTasks.computeIfAbsent(path, p -> new PathTasks());
+            CompletableFuture<T> cf = tasks.lastWrite
+                    .thenApplyAsync(v -> timed(file, IO_READ, task), interactiveExecutor);
+            tasks.readsSinceLastWrite.add(cf);
+            cf.whenComplete((v, e) -> finished(path, cf));
+            return cf;
+        }
+    }
+
+    /**
+     * Schedules a background task that writes the given file.
+     */
+    public static CompletableFuture<Void> submitWrite(File file, Runnable task) {
+        String path = file.getAbsolutePath();
+        synchronized (IOTasks.class) {
+            PathTasks tasks = pathTasks.computeIfAbsent(path, p -> new PathTasks());
+            List<CompletableFuture<?>> previous = new ArrayList<>(tasks.readsSinceLastWrite);
+            previous.add(tasks.lastWrite);
+
+            // the write runs even if the previous tasks failed
+            CompletableFuture<Void> cf = CompletableFuture
+                    .allOf(previous.stream()
+                            .map(f -> f.handle((v, e) -> null))
+                            .toArray(CompletableFuture[]::new))
+                    .thenRunAsync(() -> timed(file, IO_WRITE, () -> {
+                        task.run();
+                        return null;
+                    }), backgroundExecutor);
+            tasks.lastWrite = cf.handle((v, e) -> null);
+            tasks.readsSinceLastWrite.clear();
+            tasks.numPendingWrites++;
+            cf.whenComplete((v, e) -> writeFinished(path));
+            return cf;
+        }
+    }
+
+    private static <T> T timed(File file, Timings.Category category, Supplier<T> task) {
+        long startTime = System.nanoTime();
+        T result = task.get();
+        String format = FileUtils.findExtension(file.getName())
+                .map(ext -> ext.toUpperCase(Locale.ENGLISH))
+                .orElse("Unknown");
+        Timings.record(category, format, file.getName(), startTime);
+        return result;
+    }
+
+    private static synchronized void finished(String path, CompletableFuture<?> cf) {
+        PathTasks tasks = pathTasks.get(path);
+        tasks.readsSinceLastWrite.remove(cf);
+        removeIfIdle(path, tasks);
+    }
+
+    private static synchronized void writeFinished(String path) {
+        PathTasks tasks = pathTasks.get(path);
+        tasks.numPendingWrites--;
+        removeIfIdle(path, tasks);
+    }
+
+    private static void removeIfIdle(String path, PathTasks tasks) {
+        if (tasks.numPendingWrites == 0 && tasks.readsSinceLastWrite.isEmpty()) {
+            pathTasks.remove(path);
+        }
+    }
+
+    /**
+     * Returns true if there is a scheduled or running task for the given path
+     */
+    public static synchronized boolean isProcessing(String absolutePath) {
+        return pathTasks.containsKey(absolutePath);
+    }
+
+    public static synchronized boolean isBusyWriting() {
+        for (PathTasks tasks : pathTasks.values()) {
+            if (tasks.numPendingWrites > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a snapshot of the paths that are currently written
+     * or scheduled to be written.
+     */
+    public static synchronized Set<String> getCurrentWritePaths() {
+        Set<String> paths = new TreeSet<>();
+        pathTasks.forEach((path, tasks) -> {
+            if (tasks.numPendingWrites > 0) {
+                paths.add(path);
+            }
+        });
+        return paths;
+    }
+
+    /**
+     * Waits until all the scheduled IO tasks are finished.
+     */
+    public static void waitForIdle() throws InterruptedException {
+        while (executor.getActiveCount() > 0 || !executor.getQueue().isEmpty()
+                || !isIdle()) {
+            Thread.sleep(50);
+        }
+    }
+
+    private static synchronized boolean isIdle() {
+        return pathTasks.isEmpty();
+    }
+
+    /**
+     * Reads all the bytes of the given file, limiting
+     * the number of parallel disk accesses.
+     */
+    public static byte[] readFully(File file) throws IOException {
+        diskAccessPermits.acquireUninterruptibly();
+        try {
+            return Files.readAllBytes(file.toPath());
+        } finally {
+            diskAccessPermits.release();
+        }
+    }
+
+    /**
+     * Streams the output of the given writer into a new temporary file,
+     * and then moves it to the target file, so that the encoded file
+     * is never held in memory, and a failed encoding doesn't destroy
+     * the previous version of the file. The temporary file is created
+     * in the temporary directory, so nothing is left behind next to
+     * the user's files, even if the application crashes.
+     * Every call has its own temporary file, therefore it can be
+     * called from any thread, not only from the write tasks.
+     */
+    public static void writeViaTempFile(File file, TempFileWriter writer) throws IOException {
+        Path target = file.toPath().toAbsolutePath();
+        Path tmp = Files.createTempFile("pixelitor", ".part");
+        try {
+            writer.writeTo(tmp.toFile());
+            try {
+                Files.move(tmp, target, REPLACE_EXISTING, ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                // the temporary directory is on a different file system
+                Files.move(tmp, target, REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Writes the contents of a file into the given temporary file
+     */
+    @FunctionalInterface
+    public interface TempFileWriter {
+        void writeTo(File tmpFile) throws IOException;
+    }
+
+    /**
+     * The scheduled or running tasks of a file
+     */
+    private static class PathTasks {
+        // completes when the last submitted write finishes, successfully or not
+        private CompletableFuture<?> lastWrite = CompletableFuture.completedFuture(null);
+        private final List<CompletableFuture<?>> readsSinceLastWrite = new ArrayList<>();
+        private int numPendingWrites;
+    }
+
+    /**
+     * A task in the priority queue of the executor. Tasks with
+     * the same priority are started in the order of submission.
+     */
+    private static class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+        private final Runnable task;
+        private final Priority priority;
+        private final long seqNum;
+
+        PrioritizedTask(Runnable task, Priority priority) {
+            this.task = task;
+            this.priority = priority;
+            seqNum = taskCounter.getAndIncrement();
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask other) {
+            int byPriority = priority.compareTo(other.priority);
+            if (byPriority != 0) {
+                return byPriority;
+            }
+            return Long.compare(seqNum, other.seqNum);
+        }
+    }
+}
@@ -58,7 +58,7 @@ public class LayerAnimation {
         Layer layer = comp.getLayer(layerIndex);
         if (layer instanceof ImageLayer) {
             ImageLayer imageLayer = (ImageLayer) layer;
-            BufferedImage image = imageLayer.getCanvasSizedSubImage();
+            BufferedImage image = imageLayer.getCanvasSizedSubImageForReading();
 
             if (layer.hasMask()) {
                 // TODO probably problems with translation
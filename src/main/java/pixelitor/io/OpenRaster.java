@@ -24,30 +24,36 @@ import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import pixelitor.Composition;
+import pixelitor.ThreadPool;
 import pixelitor.layers.BlendingMode;
 import pixelitor.layers.ImageLayer;
 import pixelitor.layers.Layer;
 import pixelitor.utils.ImageUtils;
 import pixelitor.utils.ProgressTracker;
 import pixelitor.utils.StatusBarProgressTracker;
-import pixelitor.utils.SubtaskProgressTracker;
 import pixelitor.utils.Utils;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.StringReader;
 import java.io.UncheckedIOException;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
@@ -55,6 +61,7 @@ import java.util.zip.ZipOutputStream;
 import static java.lang.Integer.parseInt;
 import static java.lang.String.format;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static pixelitor.utils.ProgressTracker.NULL_TRACKER;
 
 /**
  * OpenRaster file format support.
@@ -62,6 +69,8 @@ import static java.nio.charset.StandardCharsets.UTF_8;
  */
 public class OpenRaster {
     private static final String MERGED_IMAGE_NAME = "mergedimage.png";
+    private static final String THUMBNAIL_NAME = "Thumbnails/thumbnail.png";
+    private static final int THUMBNAIL_SIZE = 256;
 
     private OpenRaster() {
     }
@@ -75,90 +84,119 @@ public class OpenRaster {
     }
 
     public static void write(Composition comp, File outFile, boolean addMergedImage) throws IOException {
-        ProgressTracker pt = new StatusBarProgressTracker("Writing " + outFile.getName(), 100);
-
-        FileOutputStream fos = new FileOutputStream(outFile);
-        ZipOutputStream zos = new ZipOutputStream(fos);
-
-        String stackXML = format("<?xml version='1.0' encoding='UTF-8'?>\n" +
+        var stackXML = new StringBuilder(format("<?xml version='1.0' encoding='UTF-8'?>\n" +
                 "<image w=\"%d\" h=\"%d\">\n" +
-                "<stack>\n", comp.getCanvasImWidth(), comp.getCanvasImHeight());
+                "<stack>\n", comp.getCanvasImWidth(), comp.getCanvasImHeight()));
 
-        int numLayers = comp.getNumLayers();
-        int numImageLayers = comp.getNumImageLayers();
-        if (addMergedImage) {
-            numImageLayers++;
-        }
-        double workRatio = 1.0 / numImageLayers;
+        // The PNG files are encoded in parallel into memory,
+        // and then they are written into the zip file in order.
+        Map<String, Future<byte[]>> pngEntries = new LinkedHashMap<>();
 
         // Reverse iteration: in stack.xml the first element in a stack is the uppermost.
-        for (int i = numLayers - 1; i >= 0; i--) {
+        for (int i = comp.getNumLayers() - 1; i >= 0; i--) {
             Layer layer = comp.getLayer(i);
             if (layer instanceof ImageLayer) {
                 ImageLayer imageLayer = (ImageLayer) layer;
-                ProgressTracker spt = new SubtaskProgressTracker(workRatio, pt);
-                stackXML += writeLayer(imageLayer, i, zos, spt);
+                String entryName = format("data/%d.png", i);
+                stackXML.append(createLayerXML(imageLayer, entryName));
+                pngEntries.put(entryName, encodeAsync(imageLayer.getImageForReading()));
             }
         }
+        stackXML.append("</stack>\n</image>");
 
+        BufferedImage composite = comp.getCompositeImage();
         if (addMergedImage) {
-            zos.putNextEntry(new ZipEntry(MERGED_IMAGE_NAME));
-            ProgressTracker subTaskTracker = new SubtaskProgressTracker(workRatio, pt);
-            BufferedImage img = comp.getCompositeImage();
-            TrackedIO.writeToStream(img, zos, "PNG", subTaskTracker);
-            zos.closeEntry();
+            pngEntries.put(MERGED_IMAGE_NAME, encodeAsync(composite));
         }
+        pngEntries.put(THUMBNAIL_NAME, ThreadPool.submit2(() ->
+                TrackedIO.encode(createThumbnail(composite), "PNG", NULL_TRACKER)));
 
-        stackXML += "</stack>\n</image>";
+        ProgressTracker pt = new StatusBarProgressTracker(
+                "Writing " + outFile.getName(), pngEntries.size());
+        try (var zos = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(outFile)))) {
+            // the specification requires the mimetype to be the first, uncompressed entry
+            putStoredEntry(zos, "mimetype", "image/openraster".getBytes(UTF_8));
 
-        // write the stack.xml file
-        zos.putNextEntry(new ZipEntry("stack.xml"));
-        zos.write(stackXML.getBytes(UTF_8));
-        zos.closeEntry();
+            zos.putNextEntry(new ZipEntry("stack.xml"));
+            zos.write(stackXML.toString().getBytes(UTF_8));
+            zos.closeEntry();
 
-        // write the mimetype
-        zos.putNextEntry(new ZipEntry("mimetype"));
-        zos.write("image/openraster".getBytes(UTF_8));
-        zos.closeEntry();
-        zos.close();
+            for (var pngEntry : pngEntries.entrySet()) {
+                putStoredEntry(zos, pngEntry.getKey(), getResult(pngEntry.getValue()));
+                pt.unitDone();
+            }
+        } finally {
+            // if something failed, don't continue encoding in the background
+            pngEntries.values().forEach(f -> f.cancel(true));
+        }
 
         pt.finished();
     }
 
-    private static String writeLayer(ImageLayer layer,
-                                     int layerIndex,
-                                     ZipOutputStream zos,
-                                     ProgressTracker pt) throws IOException {
-        String stackXML = format(Locale.ENGLISH,
+    private static String createLayerXML(ImageLayer layer, String entryName) {
+        return format(Locale.ENGLISH,
                 "<layer name=\"%s\" visibility=\"%s\" composite-op=\"%s\" " +
-                        "opacity=\"%f\" src=\"data/%d.png\" x=\"%d\" y=\"%d\"/>\n",
+                        "opacity=\"%f\" src=\"%s\" x=\"%d\" y=\"%d\"/>\n",
                 layer.getName(),
                 layer.getVisibilityAsORAString(),
                 layer.getBlendingMode().toSVGName(),
                 layer.getOpacity(),
-                layerIndex,
+                entryName,
                 layer.getTx(),
                 layer.getTy());
-        ZipEntry entry = new ZipEntry(format("data/%d.png", layerIndex));
-        zos.putNextEntry(entry);
-        BufferedImage image = layer.getImage();
+    }
+
+    private static Future<byte[]> encodeAsync(BufferedImage img) {
+        return ThreadPool.submit2(() -> TrackedIO.encode(img, "PNG", NULL_TRACKER));
+    }
+
+    private static BufferedImage createThumbnail(BufferedImage composite) {
+        if (composite.getWidth() <= THUMBNAIL_SIZE && composite.getHeight() <= THUMBNAIL_SIZE) {
+            return composite;
+        }
+        return ImageUtils.createThumbnail(composite, THUMBNAIL_SIZE, THUMBNAIL_SIZE, null);
+    }
 
-        TrackedIO.writeToStream(image, zos, "PNG", pt);
+    /**
+     * PNG files are already compressed, so deflating
+     * them again would only waste time.
+     */
+    private static void putStoredEntry(ZipOutputStream zos, String name, byte[] data) throws IOException {
+        var crc = new CRC32();
+        crc.update(data);
 
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(data.length);
+        entry.setCompressedSize(data.length);
+        entry.setCrc(crc.getValue());
+
+        zos.putNextEntry(entry);
+        zos.write(data);
         zos.closeEntry();
-        return stackXML;
+    }
+
+    private static <T> T getResult(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
     }
 
     public static Composition read(File file) throws IOException, ParserConfigurationException, SAXException {
         String stackXML = null;
-        ProgressTracker pt = new StatusBarProgressTracker("Reading " + file.getName(), 100);
         Map<String, BufferedImage> images = new HashMap<>();
         try (ZipFile zipFile = new ZipFile(file)) {
-            // first iterate to count the image files...
-            int numImageFiles = countNumImageFiles(zipFile);
-            double workRatio = 1.0 / numImageFiles;
-
-            // ...then iterate again to actually read the files
+            // the layer images are decoded in parallel
+            Map<String, Future<BufferedImage>> decodedImages = new HashMap<>();
             Enumeration<? extends ZipEntry> fileEntries = zipFile.entries();
             while (fileEntries.hasMoreElements()) {
                 ZipEntry entry = fileEntries.nextElement();
@@ -166,15 +204,24 @@ public class OpenRaster {
 
                 if (name.equalsIgnoreCase("stack.xml")) {
                     stackXML = extractString(zipFile.getInputStream(entry));
-                } else if (name.equalsIgnoreCase(MERGED_IMAGE_NAME)) {
-                    // no need for that
-                } else if (FileUtils.hasPNGExtension(name)) {
-                    ProgressTracker spt = new SubtaskProgressTracker(workRatio, pt);
-                    InputStream stream = zipFile.getInputStream(entry);
-                    BufferedImage image = TrackedIO.readFromStream(stream, spt);
-                    images.put(name, image);
+                } else if (isLayerImage(name)) {
+                    decodedImages.put(name, ThreadPool.submit2(() ->
+                            decodeLayerImage(zipFile, entry)));
                 }
             }
+
+            // wait for the results while the zip file is still open
+            ProgressTracker pt = new StatusBarProgressTracker(
+                    "Reading " + file.getName(), decodedImages.size());
+            try {
+                for (var decoded : decodedImages.entrySet()) {
+                    images.put(decoded.getKey(), getResult(decoded.getValue()));
+                    pt.unitDone();
+                }
+            } finally {
+                decodedImages.values().forEach(f -> f.cancel(true));
+            }
+            pt.finished();
         }
 
         if (stackXML == null) {
@@ -211,7 +258,6 @@ public class OpenRaster {
             String layerY = element.getAttribute("y");
 
             BufferedImage image = images.get(layerImageSource);
-            image = ImageUtils.toSysCompatibleImage(image);
 
             if (layerVisibility == null || layerVisibility.isEmpty()) {
                 //workaround: paint.net exported files use "visible" attribute instead of "visibility"
@@ -235,22 +281,20 @@ public class OpenRaster {
             comp.addLayerInInitMode(layer);
         }
 
-        pt.finished();
-
         return comp;
     }
 
-    private static int countNumImageFiles(ZipFile zipFile) {
-        Enumeration<? extends ZipEntry> fileEntries = zipFile.entries();
-        int numImageFiles = 0;
-        while (fileEntries.hasMoreElements()) {
-            ZipEntry entry = fileEntries.nextElement();
-            String name = entry.getName().toLowerCase();
-            if (name.endsWith("png") && !name.equals(MERGED_IMAGE_NAME)) {
-                numImageFiles++;
-            }
+    private static boolean isLayerImage(String entryName) {
+        return FileUtils.hasPNGExtension(entryName)
+                && !entryName.equalsIgnoreCase(MERGED_IMAGE_NAME)
+                && !entryName.startsWith("Thumbnails/");
+    }
+
+    private static BufferedImage decodeLayerImage(ZipFile zipFile, ZipEntry entry) throws IOException {
+        try (InputStream stream = zipFile.getInputStream(entry)) {
+            BufferedImage image = TrackedIO.readFromStream(stream, NULL_TRACKER);
+            return ImageUtils.toSysCompatibleImage(image);
         }
-        return numImageFiles;
     }
 
     private static Document loadXMLFromString(String xml)
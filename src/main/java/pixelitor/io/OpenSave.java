@@ -21,6 +21,7 @@ import pixelitor.Composition;
 import pixelitor.OpenImages;
 import pixelitor.automate.SingleDirChooser;
 import pixelitor.gui.utils.Dialogs;
+import pixelitor.gui.utils.ImageBrowserPanel;
 import pixelitor.layers.ImageLayer;
 import pixelitor.layers.Layer;
 import pixelitor.layers.LayerMask;
@@ -28,6 +29,7 @@ import pixelitor.layers.TextLayer;
 import pixelitor.utils.Messages;
 import pixelitor.utils.Utils;
 
+import java.awt.Dimension;
 import java.awt.EventQueue;
 import java.awt.image.BufferedImage;
 import java.io.File;
@@ -50,13 +52,26 @@ public class OpenSave {
     }
 
     public static CompletableFuture<Composition> openFileAsync(File file) {
-        return loadCompAsync(file).
+        return openFileAsync(file, null);
+    }
+
+    /**
+     * Opens the file so that if fitInBox is not null, large single-layer
+     * images are subsampled already while they are decoded. This is useful
+     * if the image will be resized into the given box anyway.
+     */
+    public static CompletableFuture<Composition> openFileAsync(File file, Dimension fitInBox) {
+        return loadCompAsync(file, fitInBox).
                 thenApplyAsync(comp -> addJustLoadedComp(comp, file),
                         EventQueue::invokeLater)
                 .exceptionally(Messages::showExceptionOnEDT);
     }
 
     public static CompletableFuture<Composition> loadCompAsync(File file) {
+        return loadCompAsync(file, null);
+    }
+
+    private static CompletableFuture<Composition> loadCompAsync(File file, Dimension fitInBox) {
         CompletableFuture<Composition> cf;
 
         String ext = FileUtils.findExtension(file.getName()).orElse("");
@@ -65,7 +80,7 @@ public class OpenSave {
         } else if ("ora".equals(ext)) {
             cf = loadLayered(file, "ora");
         } else {
-            cf = loadSimple(file);
+            cf = loadSimple(file, fitInBox);
         }
 
         return cf;
@@ -74,9 +89,8 @@ public class OpenSave {
     /**
      * Loads a composition from a file with a single-layer image format
      */
-    private static CompletableFuture<Composition> loadSimple(File file) {
-        return CompletableFuture.supplyAsync(
-                () -> TrackedIO.uncheckedRead(file), IOThread.getExecutor())
+    private static CompletableFuture<Composition> loadSimple(File file, Dimension fitInBox) {
+        return IOTasks.submitRead(file, () -> TrackedIO.uncheckedRead(file, fitInBox))
                 .handle((img, e) -> handleDecodingError(file, img, e))
                 .thenApplyAsync(img -> Composition.fromImage(img, file, null),
                         EventQueue::invokeLater);
@@ -117,8 +131,7 @@ public class OpenSave {
 
     public static CompletableFuture<Void> loadToNewImageLayerAsync(File file,
                                                                    Composition comp) {
-        return CompletableFuture.supplyAsync(
-                () -> TrackedIO.uncheckedRead(file), IOThread.getExecutor())
+        return IOTasks.submitRead(file, () -> TrackedIO.uncheckedRead(file))
                 .handle((img, e) -> handleDecodingError(file, img, e))
                 .thenAcceptAsync(image -> comp.addExternalImageAsNewLayer(
                         image, file.getName(), "Dropped Layer"),
@@ -139,9 +152,7 @@ public class OpenSave {
                 throw new IllegalStateException("type = " + type);
         }
 
-        return CompletableFuture.supplyAsync(
-                Utils.toSupplier(loadTask),
-                IOThread.getExecutor());
+        return IOTasks.submitRead(selectedFile, Utils.toSupplier(loadTask));
     }
 
     public static void save(boolean saveAs) {
@@ -231,6 +242,22 @@ public class OpenSave {
         }
     }
 
+    /**
+     * Shows the images of the given directory in the image
+     * browser, and opens the ones that are selected there.
+     */
+    public static void browseImagesInDir(File dir) {
+        File[] files = FileUtils.listSupportedInputFilesIn(dir);
+        if (files == null || files.length == 0) {
+            Messages.showInfo("No files found",
+                    format("<html>No supported image files found in <b>%s</b>.",
+                            dir.getName()));
+            return;
+        }
+        ImageBrowserPanel.showInDialog("Images in " + dir.getName(), "Open", files,
+                selectedFiles -> selectedFiles.forEach(OpenSave::openFileAsync));
+    }
+
     public static void exportLayersToPNGAsync() {
         assert EventQueue.isDispatchThread() : "not EDT thread";
 
@@ -242,7 +269,7 @@ public class OpenSave {
         var comp = OpenImages.getActiveComp();
 
         CompletableFuture
-                .supplyAsync(() -> exportLayersToPNG(comp), IOThread.getExecutor())
+                .supplyAsync(() -> exportLayersToPNG(comp), IOTasks.getBackgroundExecutor())
                 .thenAcceptAsync(numImg -> Messages.showInStatusBar(
                     "<html>Saved " + numImg + " images to <b>" + Dirs.getLastSave() + "</b>")
                         , EventQueue::invokeLater)
@@ -257,7 +284,7 @@ public class OpenSave {
             Layer layer = comp.getLayer(layerIndex);
             if (layer instanceof ImageLayer) {
                 ImageLayer imageLayer = (ImageLayer) layer;
-                BufferedImage image = imageLayer.getImage();
+                BufferedImage image = imageLayer.getImageForReading();
 
                 saveLayerImage(image, layer.getName(), layerIndex);
                 numSavedImages++;
@@ -270,7 +297,7 @@ public class OpenSave {
             }
             if (layer.hasMask()) {
                 LayerMask mask = layer.getMask();
-                BufferedImage image = mask.getImage();
+                BufferedImage image = mask.getImageForReading();
                 saveLayerImage(image, layer.getName() + "_mask", layerIndex);
                 numSavedImages++;
             }
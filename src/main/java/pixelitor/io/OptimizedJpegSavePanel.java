@@ -144,7 +144,7 @@ public class OptimizedJpegSavePanel extends JPanel {
         CompletableFuture
             .supplyAsync(
                 () -> createPreview(settings),
-                IOThread.getExecutor())
+                IOTasks.getExecutor())
             .thenAcceptAsync(
                 this::setPreview,
                 EventQueue::invokeLater)
@@ -40,6 +40,7 @@ import java.util.zip.GZIPOutputStream;
 
 import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
 import static pixelitor.utils.ImageUtils.getPixelsAsArray;
+import static pixelitor.utils.ImageUtils.getStandardType;
 
 /**
  * PXC file format support.
@@ -134,7 +135,8 @@ public class PXCFormat {
     public static void serializeImage(ObjectOutputStream out,
                                       BufferedImage img) throws IOException {
         assert img != null;
-        int imgType = img.getType();
+        // the images in scratch files have a custom type
+        int imgType = getStandardType(img);
         int imgWidth = img.getWidth();
         int imgHeight = img.getHeight();
 
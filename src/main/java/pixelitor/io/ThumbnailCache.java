@@ -0,0 +1,223 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.io;
+
+import pixelitor.gui.utils.ThumbInfo;
+import pixelitor.utils.Messages;
+import pixelitor.utils.ProgressTracker;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * A persistent cache of thumbnails and image sizes, so that the
+ * previews of image files can be shown without decoding them fully.
+ *
+ * The entries are keyed by the path, size and modification time
+ * of the files, therefore a modified file gets a new entry. The entries
+ * are stored in the user's Pixelitor directory, and the most recently
+ * used ones are also kept in memory.
+ */
+public class ThumbnailCache {
+    // the maximum width and height of the cached thumbnails
+    public static final int MAX_THUMB_SIZE = 256;
+
+    private static final int MAGIC = 0x50_58_54_48; // "PXTH"
+    private static final int FORMAT_VERSION = 1;
+    private static final String EXTENSION = ".thumb";
+
+    private static final int MAX_MEMORY_ENTRIES = 200;
+    private static final int MAX_DISK_ENTRIES = 5000;
+    private static final int PRUNE_CHECK_INTERVAL = 100;
+
+    public static final ThumbnailCache INSTANCE = new ThumbnailCache(
+            Paths.get(System.getProperty("user.home"), ".pixelitor", "thumbnails"));
+
+    private final Path cacheDir;
+    private final Map<String, ThumbInfo> memoryCache =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ThumbInfo> eldest) {
+                    return size() > MAX_MEMORY_ENTRIES;
+                }
+            };
+    private final AtomicInteger numWrites = new AtomicInteger();
+
+    // the cache is only an optimization, and if the cache directory
+    // isn't writable, then every write fails: only the first error is shown
+    private final AtomicBoolean errorReported = new AtomicBoolean();
+
+    ThumbnailCache(Path cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * Returns the thumbnail and the original size of the given image file.
+     * The thumbnail fits into {@link #MAX_THUMB_SIZE}, but it could be smaller.
+     * The image is decoded (subsampled) only if it isn't in the cache.
+     * Returns null if the file can't be decoded. This method can be
+     * called from any thread, but it should not be called on the EDT
+     * for uncached files.
+     */
+    public ThumbInfo get(File file, ProgressTracker pt) throws IOException {
+        String key = keyFor(file);
+        ThumbInfo thumbInfo = getFromMemory(key);
+        if (thumbInfo != null) {
+            return thumbInfo;
+        }
+
+        Path entryFile = cacheDir.resolve(key + EXTENSION);
+        thumbInfo = readEntry(entryFile);
+        if (thumbInfo == null) {
+            thumbInfo = TrackedIO.readSubsampledThumb(file, MAX_THUMB_SIZE, MAX_THUMB_SIZE, pt);
+            if (thumbInfo == null) {
+                return null;
+            }
+            writeEntry(entryFile, thumbInfo);
+        }
+
+        synchronized (memoryCache) {
+            memoryCache.put(key, thumbInfo);
+        }
+        return thumbInfo;
+    }
+
+    private ThumbInfo getFromMemory(String key) {
+        synchronized (memoryCache) {
+            return memoryCache.get(key);
+        }
+    }
+
+    private static String keyFor(File file) {
+        String id = file.getAbsolutePath() + '|' + file.length() + '|' + file.lastModified();
+        return UUID.nameUUIDFromBytes(id.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /**
+     * Returns null if the entry doesn't exist or can't be read
+     */
+    private static ThumbInfo readEntry(Path entryFile) {
+        if (!Files.exists(entryFile)) {
+            return null;
+        }
+        try (InputStream is = new BufferedInputStream(Files.newInputStream(entryFile))) {
+            ThumbInfo thumbInfo = readEntry(is);
+            if (thumbInfo != null) {
+                // the last modification time marks the recently used entries
+                entryFile.toFile().setLastModified(System.currentTimeMillis());
+            }
+            return thumbInfo;
+        } catch (IOException e) {
+            // a corrupt entry is simply recreated
+            return null;
+        }
+    }
+
+    static ThumbInfo readEntry(InputStream is) throws IOException {
+        DataInputStream in = new DataInputStream(is);
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+            return null;
+        }
+        int origWidth = in.readInt();
+        int origHeight = in.readInt();
+        BufferedImage thumb = ImageIO.read(in);
+        if (thumb == null) {
+            return null;
+        }
+        return new ThumbInfo(thumb, origWidth, origHeight);
+    }
+
+    private void writeEntry(Path entryFile, ThumbInfo thumbInfo) {
+        try {
+            Files.createDirectories(cacheDir);
+
+            // write to a temporary file first, so that concurrent
+            // readers never see a partially written entry
+            Path tmpFile = Files.createTempFile(cacheDir, "tmp", EXTENSION);
+            try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(tmpFile))) {
+                writeEntry(os, thumbInfo);
+            }
+            Files.move(tmpFile, entryFile, REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (IOException e) {
+            reportError(e);
+            return;
+        }
+
+        if (numWrites.incrementAndGet() % PRUNE_CHECK_INTERVAL == 0) {
+            prune();
+        }
+    }
+
+    static void writeEntry(OutputStream os, ThumbInfo thumbInfo) throws IOException {
+        DataOutputStream out = new DataOutputStream(os);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(thumbInfo.getOrigWidth());
+        out.writeInt(thumbInfo.getOrigHeight());
+        ImageIO.write(thumbInfo.getThumb(), "png", out);
+        out.flush();
+    }
+
+    /**
+     * Deletes the least recently used entries if there are too many
+     */
+    void prune() {
+        try (Stream<Path> entries = Files.list(cacheDir)) {
+            List<File> files = entries
+                    .filter(p -> p.toString().endsWith(EXTENSION))
+                    .map(Path::toFile)
+                    .sorted(Comparator.comparingLong(File::lastModified).reversed())
+                    .collect(Collectors.toList());
+            for (int i = MAX_DISK_ENTRIES; i < files.size(); i++) {
+                files.get(i).delete();
+            }
+        } catch (IOException e) {
+            reportError(e);
+        }
+    }
+
+    private void reportError(IOException e) {
+        if (errorReported.compareAndSet(false, true)) {
+            Messages.showExceptionOnEDT(e);
+        }
+    }
+}
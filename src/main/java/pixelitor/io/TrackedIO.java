@@ -19,6 +19,7 @@ package pixelitor.io;
 
 import pd.GifDecoder;
 import pixelitor.gui.utils.ThumbInfo;
+import pixelitor.utils.ImageUtils;
 import pixelitor.utils.ProgressTracker;
 import pixelitor.utils.StatusBarProgressTracker;
 import pixelitor.utils.TrackerReadProgressListener;
@@ -30,10 +31,15 @@ import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
 import javax.imageio.ImageTypeSpecifier;
 import javax.imageio.ImageWriter;
+import javax.imageio.stream.FileImageOutputStream;
 import javax.imageio.stream.ImageInputStream;
 import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Dimension;
 import java.awt.EventQueue;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -41,13 +47,20 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.function.IntBinaryOperator;
+import java.util.function.UnaryOperator;
 
+import static java.awt.RenderingHints.VALUE_INTERPOLATION_BILINEAR;
 import static pixelitor.utils.ImageUtils.createThumbnail;
 
 /**
  * Utility methods like in ImageIO, but with progress tracking
  */
 public class TrackedIO {
+    // larger files are decoded while they are read
+    private static final long MAX_IN_MEMORY_READ_SIZE = 256 * 1024 * 1024;
+
     private TrackedIO() {
         // do not instantiate
     }
@@ -56,13 +69,27 @@ public class TrackedIO {
                              String formatName,
                              File file) throws IOException {
         ProgressTracker pt = new StatusBarProgressTracker("Writing " + file.getName(), 100);
-        try (ImageOutputStream ios = ImageIO.createImageOutputStream(file)) {
-            if (ios != null) {
+
+        // the encoded bytes are streamed to the disk instead of being
+        // collected in memory, because large images could need gigabytes
+        IOTasks.writeViaTempFile(file, tmpFile -> {
+            try (ImageOutputStream ios = new FileImageOutputStream(tmpFile)) {
                 writeToIOS(img, ios, formatName, pt);
-            } else {
-                throwNoIOSErrorFor(file);
             }
+        });
+    }
+
+    /**
+     * Encodes the given image in memory, without touching the disk.
+     */
+    public static byte[] encode(BufferedImage img,
+                                String formatName,
+                                ProgressTracker pt) throws IOException {
+        var encoded = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = new MemoryCacheImageOutputStream(encoded)) {
+            writeToIOS(img, ios, formatName, pt);
         }
+        return encoded.toByteArray();
     }
 
     public static void throwNoIOSErrorFor(File file) throws IOException {
@@ -110,8 +137,24 @@ public class TrackedIO {
     }
 
     public static BufferedImage uncheckedRead(File file) {
+        return uncheckedRead(file, null);
+    }
+
+    /**
+     * Reads the image so that if fitInBox is not null, large images
+     * are already subsampled while they are decoded,
+     * see {@link #readToFitInBox(File, int, int)}
+     */
+    public static BufferedImage uncheckedRead(File file, Dimension fitInBox) {
+        if (fitInBox != null) {
+            return callUnchecked(file, () -> readToFitInBox(file, fitInBox.width, fitInBox.height));
+        }
+        return callUnchecked(file, () -> read(file));
+    }
+
+    private static BufferedImage callUnchecked(File file, Callable<BufferedImage> readTask) {
         try {
-            return read(file);
+            return readTask.call();
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         } catch (ArrayIndexOutOfBoundsException e) {
@@ -123,6 +166,10 @@ public class TrackedIO {
             } else {
                 throw e;
             }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
         }
     }
 
@@ -147,12 +194,125 @@ public class TrackedIO {
             "Reading " + file.getName(), 100);
 
         BufferedImage image;
-        try (ImageInputStream iis = ImageIO.createImageInputStream(file)) {
+        if (file.length() > MAX_IN_MEMORY_READ_SIZE) {
+            try (ImageInputStream iis = ImageIO.createImageInputStream(file)) {
+                image = readFromIIS(iis, pt);
+            }
+            return image;
+        }
+
+        // read the file in one go, and then decode it from
+        // memory, so that the decoding doesn't block the disk
+        byte[] bytes = IOTasks.readFully(file);
+        try (ImageInputStream iis = new ByteArrayImageInputStream(bytes)) {
             image = readFromIIS(iis, pt);
         }
         return image;
     }
 
+    /**
+     * Reads an image so that it fits into the given box. Large images
+     * are subsampled while they are decoded, but only down to twice
+     * the size that fits into the box, so that the pixels of very large
+     * images don't have to be decoded or held in memory all at once.
+     * The rest of the shrinking is done with progressive bilinear
+     * scaling, because the point subsampling alone would cause aliasing.
+     */
+    public static BufferedImage readToFitInBox(File file,
+                                               int boxWidth,
+                                               int boxHeight) throws IOException {
+        BufferedImage image = readSubsampled(file, null, (imgWidth, imgHeight) ->
+            calcFitInBoxSubsampling(imgWidth, imgHeight, boxWidth, boxHeight));
+        if (image == null) {
+            return null;
+        }
+
+        int imgWidth = image.getWidth();
+        int imgHeight = image.getHeight();
+        if (imgWidth <= boxWidth && imgHeight <= boxHeight) {
+            return image;
+        }
+        double scale = Math.min(boxWidth / (double) imgWidth,
+            boxHeight / (double) imgHeight);
+        int targetWidth = Math.max(1, (int) Math.round(imgWidth * scale));
+        int targetHeight = Math.max(1, (int) Math.round(imgHeight * scale));
+
+        // the decoded image can have a custom type
+        image = ImageUtils.toSysCompatibleImage(image);
+        return ImageUtils.getFasterScaledInstance(image,
+            targetWidth, targetHeight, VALUE_INTERPOLATION_BILINEAR, true);
+    }
+
+    /**
+     * Reads only a region of the image, so that the pixels outside
+     * the region are not decoded or held in memory at all. The region
+     * is calculated by the given function from the bounds of the whole
+     * image (which are known only after the header has been read).
+     */
+    public static BufferedImage readRegion(File file,
+                                           UnaryOperator<Rectangle> regionCalc) throws IOException {
+        return readSubsampled(file, regionCalc, (regionWidth, regionHeight) -> 1);
+    }
+
+    /**
+     * Streams the image from the file with decode-time subsampling.
+     * The subsampling is calculated from the size of the
+     * (source region of the) image.
+     */
+    private static BufferedImage readSubsampled(File file,
+                                                UnaryOperator<Rectangle> regionCalc,
+                                                IntBinaryOperator subsamplingCalc) throws IOException {
+        ProgressTracker pt = new StatusBarProgressTracker(
+            "Reading " + file.getName(), 100);
+
+        try (ImageInputStream iis = ImageIO.createImageInputStream(file)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true);
+                reader.addIIOReadProgressListener(new TrackerReadProgressListener(pt));
+
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (regionCalc != null) {
+                    Rectangle imgBounds = new Rectangle(0, 0, width, height);
+                    Rectangle region = regionCalc.apply(imgBounds).intersection(imgBounds);
+                    if (!region.equals(imgBounds)) {
+                        param.setSourceRegion(region);
+                    }
+                    width = region.width;
+                    height = region.height;
+                }
+                int subsampling = subsamplingCalc.applyAsInt(width, height);
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Returns the largest subsampling that still keeps the image at
+     * least twice as large as the image that fits into the given box.
+     */
+    @VisibleForTesting
+    public static int calcFitInBoxSubsampling(int imgWidth, int imgHeight,
+                                              int boxWidth, int boxHeight) {
+        double scale = Math.min(boxWidth / (double) imgWidth,
+            boxHeight / (double) imgHeight);
+        if (scale >= 0.5) {
+            return 1;
+        }
+        return (int) (1 / (2 * scale));
+    }
+
     public static BufferedImage readFromStream(InputStream is,
                                                ProgressTracker pt) throws IOException {
         BufferedImage image;
@@ -234,12 +394,14 @@ public class TrackedIO {
                     return new ThumbInfo(thumb, imgWidth, imgHeight);
                 }
 
-// TODO in principle a thumbnail could be in the file already
-// see https://docs.oracle.com/javase/7/docs/technotes/guides/imageio/spec/apps.fm3.html
-//                boolean hasThumbs = reader.hasThumbnails(0);
-//                if(hasThumbs) {
-//                    BufferedImage bi = reader.readThumbnail(0, 0);
-//                }
+                // use the thumbnail embedded in the file (for example
+                // in the JFIF header of a JPEG) if it is large enough, see
+                // https://docs.oracle.com/javase/7/docs/technotes/guides/imageio/spec/apps.fm3.html
+                BufferedImage embeddedThumb = readEmbeddedThumb(reader,
+                    thumbMaxWidth, thumbMaxHeight);
+                if (embeddedThumb != null) {
+                    return new ThumbInfo(embeddedThumb, imgWidth, imgHeight);
+                }
 
                 ImageReadParam imageReaderParams = reader.getDefaultReadParam();
                 int subsampling = calcSubsamplingCols(imgWidth, imgHeight,
@@ -255,6 +417,34 @@ public class TrackedIO {
         return thumbInfo;
     }
 
+    /**
+     * Returns the embedded thumbnail if there is one that covers at least
+     * three quarters of the requested size, otherwise returns null.
+     */
+    private static BufferedImage readEmbeddedThumb(ImageReader reader,
+                                                   int thumbMaxWidth,
+                                                   int thumbMaxHeight) {
+        try {
+            if (!reader.readerSupportsThumbnails() || !reader.hasThumbnails(0)) {
+                return null;
+            }
+            int thumbWidth = reader.getThumbnailWidth(0, 0);
+            int thumbHeight = reader.getThumbnailHeight(0, 0);
+            if (4 * thumbWidth < 3 * thumbMaxWidth && 4 * thumbHeight < 3 * thumbMaxHeight) {
+                return null;
+            }
+            BufferedImage thumb = reader.readThumbnail(0, 0);
+            if (thumbWidth > thumbMaxWidth || thumbHeight > thumbMaxHeight) {
+                thumb = createThumbnail(thumb, thumbMaxWidth, thumbMaxHeight, null);
+            }
+            return thumb;
+        } catch (IOException | RuntimeException e) {
+            // some plugins report thumbnails that they can't read,
+            // in this case the image itself is subsampled
+            return null;
+        }
+    }
+
     /**
      * Calculates the number of columns to advance between pixels while subsampling.
      * In order to preserve the aspect ratio, the same number is used
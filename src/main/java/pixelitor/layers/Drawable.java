@@ -31,6 +31,12 @@ import java.awt.image.BufferedImage;
 public interface Drawable {
     BufferedImage getImage();
 
+    /**
+     * Returns the image without the copy-on-write check
+     * of {@link #getImage()}, the result must not be modified.
+     */
+    BufferedImage getImageForReading();
+
     void setImage(BufferedImage newImage);
 
     void startPreviewing();
@@ -61,6 +67,24 @@ public interface Drawable {
 
     BufferedImage getFilterSourceImage();
 
+    /**
+     * Returns a no longer used result image of a previous preview
+     * that can be overwritten by the next preview, or null.
+     */
+    BufferedImage getReusableFilterDest();
+
+    /**
+     * Returns a number that changes every time the image content
+     * changes. The numbers are unique across all drawables.
+     */
+    long getContentVersion();
+
+    /**
+     * Must be called after the image returned by {@link #getImage()} or
+     * {@link #getCanvasSizedSubImage()} was modified in place.
+     */
+    void pixelsChanged();
+
     BufferedImage getSelectedSubImage(boolean copyIfNoSelection);
 
     void setShowOriginal(boolean b);
@@ -36,6 +36,7 @@ import pixelitor.tools.Tools;
 import pixelitor.utils.ImageTrimUtil;
 import pixelitor.utils.ImageUtils;
 import pixelitor.utils.Messages;
+import pixelitor.utils.ScratchImage;
 import pixelitor.utils.Utils;
 import pixelitor.utils.VisibleForTesting;
 import pixelitor.utils.test.Assertions;
@@ -56,6 +57,8 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static java.awt.RenderingHints.KEY_INTERPOLATION;
 import static java.awt.RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR;
@@ -95,6 +98,11 @@ public class ImageLayer extends ContentLayer implements Drawable {
 
     private static final long serialVersionUID = 2L;
 
+    private static final AtomicLong versionCounter = new AtomicLong();
+
+    // the images can be moved into scratch files on any thread
+    private static final AtomicBoolean scratchFileErrorReported = new AtomicBoolean();
+
     //
     // transient variables from here!
     //
@@ -102,6 +110,10 @@ public class ImageLayer extends ContentLayer implements Drawable {
 
     private transient TmpDrawingLayer tmpDrawingLayer;
 
+    // reused by the repaints while the shapes tool draws
+    // into this layer, if it's not the first visible layer
+    private transient BufferedImage shapesTmpImage;
+
     /**
      * The regular image content of this image layer.
      * Transient because BufferedImage can't be directly serialized.
@@ -115,10 +127,28 @@ public class ImageLayer extends ContentLayer implements Drawable {
 
     /**
      * The source image passed to the filters.
-     * It's different from the layer's image if there is a selection.
+     * It's different from the layer's image if there is a selection,
+     * but even then it is a view sharing the pixels of the image.
      */
     private transient BufferedImage filterSourceImage;
 
+    /**
+     * A previous preview result that is no longer displayed, and can be
+     * overwritten by the next preview instead of allocating a new image.
+     * Without a selection the displayed preview itself is overwritten.
+     */
+    private transient BufferedImage reusableFilterDest;
+
+    /**
+     * Reused by the previews for the soft clipping of non-rectangular selections.
+     */
+    private transient BufferedImage softSelectionTmp;
+
+    /**
+     * Identifies the current image content, see {@link #getContentVersion()}
+     */
+    private transient long contentVersion = versionCounter.incrementAndGet();
+
     /**
      * The image bounding box trimmed from transparent pixels
      */
@@ -255,6 +285,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
         filterSourceImage = null;
         image = null;
         trimmedBoundingBox = null;
+        contentVersion = versionCounter.incrementAndGet();
 
         in.defaultReadObject();
         setImage(PXCFormat.deserializeImage(in));
@@ -263,14 +294,11 @@ public class ImageLayer extends ContentLayer implements Drawable {
 
     @Override
     public ImageLayer duplicate(boolean compCopy) {
-        BufferedImage imageCopy = copyImage(image);
-        if (imageCopy == null) {
-            // there was an out of memory error
-            return null;
-        }
         String duplicateName = compCopy ? name : Utils.createCopyName(name);
 
-        ImageLayer d = new ImageLayer(comp, imageCopy, duplicateName,
+        // the pixels are copied only when one of the layers modifies them,
+        // because the duplicate becomes another owner of the same image
+        ImageLayer d = new ImageLayer(comp, image, duplicateName,
                 null, translationX, translationY);
         d.setOpacity(getOpacity(), false, false, true);
         d.setBlendingMode(getBlendingMode(), false, false, false);
@@ -280,17 +308,135 @@ public class ImageLayer extends ContentLayer implements Drawable {
         return d;
     }
 
+    /**
+     * Returns the image, which can be modified by the caller.
+     * If the image is shared with other layers, then it is copied first.
+     * After modifying it, the caller must call {@link #pixelsChanged()}.
+     */
     @Override
     public BufferedImage getImage() {
+        ensureImageNotShared();
         return image;
     }
 
+    /**
+     * Returns the image without copying it, even if it is shared
+     * with other layers, therefore it must not be modified.
+     */
+    @Override
+    public BufferedImage getImageForReading() {
+        return image;
+    }
+
+    /**
+     * Replaces a shared image with a private copy,
+     * so that it can be modified in place.
+     */
+    private void ensureImageNotShared() {
+        BufferedImage shared = image;
+        if (shared == null || !SharedImages.hasOtherOwner(shared, this)) {
+            return;
+        }
+        BufferedImage copy = null;
+        if (ScratchImage.isStored(shared)) {
+            // a copy on the heap could be too large
+            copy = copyToScratchFile(shared);
+        }
+        if (copy == null) {
+            copy = copyImage(shared);
+        }
+        if (copy == null) {
+            // there was an out of memory error
+            throw new IllegalStateException("could not copy the shared image");
+        }
+        setImageRef(copy);
+        if (previewImage == shared) {
+            previewImage = copy;
+        }
+        imageRefChanged();
+    }
+
+    /**
+     * Replaces the image reference, and updates
+     * the owners of the old and new images.
+     */
+    private void setImageRef(BufferedImage newImage) {
+        if (newImage != null && ScratchImage.shouldStore(newImage)) {
+            BufferedImage copy = copyToScratchFile(newImage);
+            if (copy != null) {
+                newImage = copy;
+            }
+        }
+        if (image != null) {
+            SharedImages.removeOwner(image, this);
+        }
+        image = newImage;
+        if (newImage != null) {
+            SharedImages.addOwner(newImage, this);
+        }
+    }
+
+    /**
+     * Returns a copy of the given image in a scratch file,
+     * or null if the scratch file could not be created.
+     */
+    private static BufferedImage copyToScratchFile(BufferedImage img) {
+        try {
+            return ScratchImage.copyOf(img);
+        } catch (IOException e) {
+            // for example there is no space left for the temporary file:
+            // the callers keep the image on the heap, and only the first
+            // error is reported, because the next ones would probably
+            // fail for the same reason
+            if (scratchFileErrorReported.compareAndSet(false, true)) {
+                Messages.showExceptionOnEDT(e);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Must be called every time the image content
+     * is modified or the image reference is replaced.
+     */
+    private void contentChanged() {
+        contentVersion = versionCounter.incrementAndGet();
+    }
+
+    @Override
+    public long getContentVersion() {
+        return contentVersion;
+    }
+
+    @Override
+    public void pixelsChanged() {
+        contentChanged();
+    }
+
     private void setPreviewWithSelection(BufferedImage newImage) {
-        previewImage = replaceSelectedPart(previewImage, newImage, false);
+        var selection = comp.getSelection();
+        if (selection == null || selection.isRectangular()) {
+            previewImage = replaceSelectedPart(previewImage, newImage, false);
+            return;
+        }
+
+        // same as in replaceSelectedPart, but the temporary image is reused
+        Rectangle bounds = selection.getShapeBounds(1);
+        if (softSelectionTmp == null
+                || softSelectionTmp.getWidth() != bounds.width
+                || softSelectionTmp.getHeight() != bounds.height) {
+            softSelectionTmp = ImageUtils.createSysCompatibleImage(bounds.width, bounds.height);
+        }
+        drawWithSoftSelection(previewImage, newImage, selection.getShape(), bounds, softSelectionTmp);
     }
 
     private void setImageWithSelection(BufferedImage newImage, boolean isUndoRedo) {
-        image = replaceSelectedPart(image, newImage, isUndoRedo);
+        if (comp.hasSelection()) {
+            // the new image will be drawn into the current one
+            ensureImageNotShared();
+        }
+        setImageRef(replaceSelectedPart(image, newImage, isUndoRedo));
+        contentChanged();
         imageRefChanged();
 
         comp.imageChanged(INVALIDATE_CACHE);
@@ -336,26 +482,39 @@ public class ImageLayer extends ContentLayer implements Drawable {
         } else {
             Rectangle bounds = selection.getShapeBounds(1);
             BufferedImage tmpImg = ImageUtils.createSysCompatibleImage(bounds.width, bounds.height);
-            Graphics2D g2 = ImageUtils.setupForSoftSelection(tmpImg, selection.getShape(), bounds.x, bounds.y);
-
-            g2.drawImage(newImg, 0, 0, null);
-            g2.dispose();
-
-            Graphics2D srcG = src.createGraphics();
-            srcG.drawImage(tmpImg, bounds.x - getTx(), bounds.y - getTy(), null);
-            srcG.dispose();
+            drawWithSoftSelection(src, newImg, selection.getShape(), bounds, tmpImg);
+            tmpImg.flush();
 
             return src;
         }
     }
 
+    /**
+     * Draws newImg into src with anti-aliased clipping to the given
+     * selection shape, using tmpImg (of the size of the selection bounds)
+     * as the temporary image of the soft clipping.
+     */
+    private void drawWithSoftSelection(BufferedImage src, BufferedImage newImg,
+                                       Shape selShape, Rectangle bounds,
+                                       BufferedImage tmpImg) {
+        Graphics2D g2 = ImageUtils.setupForSoftSelection(tmpImg, selShape, bounds.x, bounds.y);
+
+        g2.drawImage(newImg, 0, 0, null);
+        g2.dispose();
+
+        Graphics2D srcG = src.createGraphics();
+        srcG.drawImage(tmpImg, bounds.x - getTx(), bounds.y - getTy(), null);
+        srcG.dispose();
+    }
+
     /**
      * Sets the image ignoring the selection
      */
     @Override
     public void setImage(BufferedImage newImage) {
         BufferedImage oldRef = image;
-        image = requireNonNull(newImage);
+        setImageRef(requireNonNull(newImage));
+        contentChanged();
         imageRefChanged();
 
         assert Assertions.checkRasterMinimum(newImage);
@@ -407,6 +566,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
         assert state == PREVIEW || state == SHOW_ORIGINAL;
         assert previewImage != null;
 
+        releaseFilterBuffers();
         setState(NORMAL);
 
         // so that layer mask transparency image is regenerated
@@ -422,17 +582,25 @@ public class ImageLayer extends ContentLayer implements Drawable {
         assert state == PREVIEW || state == SHOW_ORIGINAL;
         assert previewImage != null;
 
+        // free the pooled buffers before the backup is created,
+        // which might need a copy of the selected area
+        releaseFilterBuffers();
+
+        BufferedImage backup = null;
         if (imageContentChanged) {
-            var edit = new ImageEdit(filterName, comp, this,
-                    getSelectedSubImage(true),
-                    false, true);
-            History.add(edit);
+            backup = getBackupForAcceptedPreview();
         }
 
-        image = previewImage;
+        setImageRef(previewImage);
+        contentChanged();
         imageRefChanged();
 
         if (imageContentChanged) {
+            // the edit can be created only after the image
+            // was replaced, because the backup is the old image
+            History.add(new ImageEdit(filterName, comp, this,
+                    backup, false, true));
+
             updateIconImage();
             invalidateTrimCache();
         }
@@ -447,6 +615,32 @@ public class ImageLayer extends ContentLayer implements Drawable {
         }
     }
 
+    /**
+     * Returns the undo backup for a filter dialog session. The image
+     * is about to be replaced by the preview image, so there is
+     * no need to deep-copy it: a reference (or a view) will do.
+     */
+    private BufferedImage getBackupForAcceptedPreview() {
+        assert previewImage != image;
+
+        var selection = comp.getSelection();
+        if (selection == null) {
+            return image;
+        }
+
+        Rectangle selBounds = ImageUtils.getSelectionBoundsInImage(
+                image, selection, getTx(), getTy());
+        long selArea = (long) selBounds.width * selBounds.height;
+        long imageArea = (long) image.getWidth() * image.getHeight();
+        if (selArea * 2 < imageArea) {
+            // a view would keep the whole old image alive
+            // in the history, a copy of the small part is better
+            return ImageUtils.getCopyOfSubimage(image, selBounds);
+        }
+        return ImageUtils.getSelectionSizedViewOf(
+                image, selection, getTx(), getTy());
+    }
+
     @Override
     public void onFilterDialogCanceled() {
         stopPreviewing();
@@ -490,6 +684,10 @@ public class ImageLayer extends ContentLayer implements Drawable {
             // because the preview image can be different from the image
             // (the user does something, but then resets the params to a do-nothing state)
             boolean shouldRefresh = image != previewImage;
+            if (shouldRefresh && !comp.hasSelection()) {
+                // no longer displayed, but it can be the destination of the next run
+                reusableFilterDest = previewImage;
+            }
             previewImage = image;
 
             if (shouldRefresh) {
@@ -497,9 +695,24 @@ public class ImageLayer extends ContentLayer implements Drawable {
                 comp.imageChanged();
             }
         } else {
-            imageContentChanged = true; // history will be necessary
+            // with a selection the filters can also return their
+            // source, which is a view of the selected part of the image
+            boolean returnedSource = img == filterSourceImage;
+            imageContentChanged = !returnedSource; // history will be necessary
 
+            BufferedImage oldPreview = previewImage;
             setPreviewWithSelection(img);
+            if (previewImage != img) {
+                // the result was copied into the preview image
+                reusableFilterDest = returnedSource ? null : img;
+            } else {
+                // the result is displayed: either it was written into the
+                // old preview image, or the old preview image is dropped
+                reusableFilterDest = null;
+                if (oldPreview != image && oldPreview != img) {
+                    oldPreview.flush();
+                }
+            }
             setState(PREVIEW);
             imageRefChanged();
             comp.imageChanged();
@@ -527,7 +740,10 @@ public class ImageLayer extends ContentLayer implements Drawable {
         // filters without dialog run in the normal state
         assert state == NORMAL;
 
-        BufferedImage imageForUndo = getFilterSourceImage();
+        // The filter source is only a view if there is a selection,
+        // and the selected part will be overwritten in place, so in
+        // that case the backup has to be a copy.
+        BufferedImage imageForUndo = getSelectedSubImage(false);
         setImageWithSelection(transformedImage, false);
 
         if (!cr.needsUndo()) {
@@ -583,7 +799,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
     public Rectangle getEffectiveBoundingBox() {
         // cache trimmed rect until better solution is found
         if (trimmedBoundingBox == null) {
-            trimmedBoundingBox = ImageTrimUtil.getTrimRect(getImage());
+            trimmedBoundingBox = ImageTrimUtil.getTrimRect(image);
         }
 
         return new Rectangle(
@@ -771,6 +987,8 @@ public class ImageLayer extends ContentLayer implements Drawable {
         if (tmpDrawingLayer == null) {
             return;
         }
+        ensureImageNotShared();
+        contentChanged();
         Graphics2D g = image.createGraphics();
 
         tmpDrawingLayer.paintOn(g, -getTx(), -getTy());
@@ -788,6 +1006,15 @@ public class ImageLayer extends ContentLayer implements Drawable {
 
     @Override
     public BufferedImage getCanvasSizedSubImage() {
+        ensureImageNotShared();
+        return getCanvasSizedSubImageForReading();
+    }
+
+    /**
+     * Like {@link #getCanvasSizedSubImage()}, but without copying
+     * a shared image, therefore the result must not be modified.
+     */
+    public BufferedImage getCanvasSizedSubImageForReading() {
         if (!isBigLayer()) {
             return image;
         }
@@ -830,11 +1057,54 @@ public class ImageLayer extends ContentLayer implements Drawable {
     @Override
     public BufferedImage getFilterSourceImage() {
         if (filterSourceImage == null) {
-            filterSourceImage = getSelectedSubImage(false);
+            var selection = comp.getSelection();
+            if (selection == null) {
+                filterSourceImage = image;
+            } else {
+                filterSourceImage = ImageUtils.getSelectionSizedViewOf(
+                        image, selection, getTx(), getTy());
+            }
         }
         return filterSourceImage;
     }
 
+    @Override
+    public BufferedImage getReusableFilterDest() {
+        if (state == NORMAL) {
+            return null;
+        }
+        BufferedImage dest;
+        if (previewImage != image && !comp.hasSelection()) {
+            // the filters read only the image, therefore they can write
+            // their result directly into the displayed preview image
+            dest = previewImage;
+        } else {
+            dest = reusableFilterDest;
+        }
+        if (dest != null && SharedImages.hasOtherOwner(dest, this)) {
+            // for example a cached filter result
+            return null;
+        }
+        return dest;
+    }
+
+    /**
+     * Releases the buffers that are reused only while a filter dialog is shown.
+     */
+    private void releaseFilterBuffers() {
+        if (reusableFilterDest != null) {
+            if (reusableFilterDest != previewImage
+                    && !SharedImages.hasOtherOwner(reusableFilterDest, this)) {
+                reusableFilterDest.flush();
+            }
+            reusableFilterDest = null;
+        }
+        if (softSelectionTmp != null) {
+            softSelectionTmp.flush();
+            softSelectionTmp = null;
+        }
+    }
+
     /**
      * Returns the subimage determined by the selection bounds,
      * or the image if there is no selection.
@@ -844,6 +1114,13 @@ public class ImageLayer extends ContentLayer implements Drawable {
         var selection = comp.getSelection();
         if (selection == null) { // no selection => return full image
             if (copyIfNoSelection) {
+                if (ScratchImage.isStored(image)) {
+                    // a copy on the heap could be too large
+                    BufferedImage copy = copyToScratchFile(image);
+                    if (copy != null) {
+                        return copy;
+                    }
+                }
                 return copyImage(image);
             }
             return image;
@@ -928,7 +1205,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
     }
 
     public void toCanvasSizeWithHistory() {
-        BufferedImage backupImage = getImage();
+        BufferedImage backupImage = image;
         // must be created before the change
         var translationEdit = new TranslationEdit(comp, this, true);
 
@@ -971,7 +1248,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
         BufferedImage maskBackupImage = null;
         if (hasMask()) {
             LayerMask mask = getMask();
-            maskBackupImage = mask.getImage();
+            maskBackupImage = mask.getImageForReading();
             maskChanged = mask.toCanvasSize();
         }
         if (maskChanged) {
@@ -1011,7 +1288,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
         ContentLayerMoveEdit edit;
         boolean needsEnlarging = checkImageDoesNotCoverCanvas();
         if (needsEnlarging) {
-            BufferedImage backupImage = getImage();
+            BufferedImage backupImage = image;
             enlargeImage(comp.getCanvasImBounds());
             edit = new ContentLayerMoveEdit(this, backupImage, oldTx, oldTy);
         } else {
@@ -1112,6 +1389,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
         if (Tools.isShapesDrawing() && isActive() && !isMaskEditing()) {
             paintDraggedShapesIntoActiveLayer(g, visibleImage, firstVisibleLayer);
         } else { // the simple case
+            releaseShapesTmpImage();
             g.drawImage(visibleImage, getTx(), getTy(), null);
         }
     }
@@ -1135,7 +1413,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
             // and then the result must be composited into the main Graphics,
             // otherwise we don't get the correct result if this layer is not the
             // first visible layer and has a blending mode different from normal
-            BufferedImage tmp = createCanvasSizedTmpImage();
+            BufferedImage tmp = getShapesTmpImage();
             Graphics2D tmpG = tmp.createGraphics();
             tmpG.drawImage(visibleImage, getTx(), getTy(), null);
 
@@ -1144,7 +1422,32 @@ public class ImageLayer extends ContentLayer implements Drawable {
             tmpG.dispose();
 
             g.drawImage(tmp, 0, 0, null);
-            tmp.flush();
+        }
+    }
+
+    /**
+     * Returns the cleared canvas-sized temporary image
+     * that is reused while the shapes tool draws
+     */
+    private BufferedImage getShapesTmpImage() {
+        if (shapesTmpImage == null
+                || shapesTmpImage.getWidth() != canvas.getImWidth()
+                || shapesTmpImage.getHeight() != canvas.getImHeight()) {
+            releaseShapesTmpImage();
+            shapesTmpImage = createCanvasSizedTmpImage();
+        } else {
+            Graphics2D g = shapesTmpImage.createGraphics();
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, shapesTmpImage.getWidth(), shapesTmpImage.getHeight());
+            g.dispose();
+        }
+        return shapesTmpImage;
+    }
+
+    private void releaseShapesTmpImage() {
+        if (shapesTmpImage != null) {
+            shapesTmpImage.flush();
+            shapesTmpImage = null;
         }
     }
 
@@ -1194,6 +1497,8 @@ public class ImageLayer extends ContentLayer implements Drawable {
         if (newState == NORMAL) { // back to normal: cleanup
             previewImage = null;
             filterSourceImage = null;
+            reusableFilterDest = null;
+            softSelectionTmp = null;
         }
     }
 
@@ -1235,8 +1540,11 @@ public class ImageLayer extends ContentLayer implements Drawable {
      * to the transparency of the layer
      */
     public BufferedImage applyLayerMask(boolean addToHistory) {
-        // the image reference will not be replaced
-        BufferedImage oldImage = copyImage(image);
+        // the image reference will not be replaced, unless it's
+        // shared, but then the shared image itself is the backup
+        BufferedImage oldImage = SharedImages.hasOtherOwner(image, this) ? image : copyImage(image);
+        ensureImageNotShared();
+        contentChanged();
 
         LayerMask oldMask = mask;
         MaskViewMode oldMode = comp.getView().getMaskViewMode();
@@ -1272,7 +1580,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
 
     @Override
     public BufferedImage getTmpLayerImage() {
-        return getCanvasSizedSubImage();
+        return getCanvasSizedSubImageForReading();
     }
 
     public String toDebugCanvasString() {
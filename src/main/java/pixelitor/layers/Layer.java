@@ -333,6 +333,7 @@ public abstract class Layer implements Serializable {
             g.fill(unselectedShape);
             g.dispose();
 
+            mask.pixelsChanged();
             mask.updateFromBWImage();
 
             if (createEdit) {
@@ -492,6 +493,14 @@ public abstract class Layer implements Serializable {
         return null;
     }
 
+    /**
+     * Returns true for adjustment layers and watermarked text layers,
+     * which act on the blended image of the layers below them.
+     */
+    public boolean isAdjustment() {
+        return isAdjustment;
+    }
+
     // used by the non-adjustment stuff
     // This method assumes that the composite of the graphics is already
     // set up according to the transparency and blending mode
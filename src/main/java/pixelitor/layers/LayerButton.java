@@ -364,7 +364,7 @@ public class LayerButton extends JToggleButton implements LayerUI {
 
         boolean isMask = layer instanceof LayerMask;
 
-        BufferedImage img = layer.getCanvasSizedSubImage();
+        BufferedImage img = layer.getCanvasSizedSubImageForReading();
 
         Runnable notEDT = () -> {
             CheckerboardPainter painter = null;
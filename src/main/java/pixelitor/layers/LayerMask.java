@@ -142,9 +142,8 @@ public class LayerMask extends ImageLayer {
      * to the given layer
      */
     public LayerMask duplicate(Layer owner) {
-        BufferedImage maskImageCopy = ImageUtils.copyImage(image);
-
-        LayerMask d = new LayerMask(comp, maskImageCopy, owner,
+        // the pixels are copied only when one of the masks modifies them
+        LayerMask d = new LayerMask(comp, image, owner,
                 getTx(), getTy());
 
         return d;
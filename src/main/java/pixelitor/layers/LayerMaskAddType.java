@@ -121,7 +121,7 @@ public enum LayerMaskAddType {
                                                      Canvas canvas) {
         if (layer instanceof ImageLayer) {
             ImageLayer imageLayer = (ImageLayer) layer;
-            BufferedImage image = imageLayer.getCanvasSizedSubImage();
+            BufferedImage image = imageLayer.getCanvasSizedSubImageForReading();
             return createMaskFromImage(image, onlyTransparency, canvas);
         } else if (layer instanceof TextLayer) {
             TextLayer textLayer = (TextLayer) layer;
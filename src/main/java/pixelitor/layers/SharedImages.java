@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.layers;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Keeps track of the owners of the layer images, which can be
+ * shared by duplicated layers, undo edits and the filter result
+ * cache (copy-on-write). An owner copies a shared image before
+ * modifying it, but the last owner modifies it in place.
+ *
+ * The images are identified by their data buffers, so that a subimage
+ * is the same image as its parent. The owners are weakly referenced,
+ * so a deleted layer or a discarded edit stops counting as an owner
+ * when it's garbage collected.
+ */
+public final class SharedImages {
+    // DataBuffer doesn't override equals/hashCode,
+    // so this is an identity-based weak map
+    private static final Map<DataBuffer, List<WeakReference<Object>>> owners =
+            new WeakHashMap<>();
+
+    private SharedImages() {
+        // should not be instantiated
+    }
+
+    public static synchronized void addOwner(BufferedImage image, Object owner) {
+        var imageOwners = owners.computeIfAbsent(getKey(image), k -> new ArrayList<>(2));
+        removeOwner(imageOwners, owner);
+        imageOwners.add(new WeakReference<>(owner));
+    }
+
+    public static synchronized void removeOwner(BufferedImage image, Object owner) {
+        var key = getKey(image);
+        var imageOwners = owners.get(key);
+        if (imageOwners != null) {
+            removeOwner(imageOwners, owner);
+            if (imageOwners.isEmpty()) {
+                owners.remove(key);
+            }
+        }
+    }
+
+    private static void removeOwner(List<WeakReference<Object>> imageOwners, Object owner) {
+        // also removes the garbage collected owners
+        imageOwners.removeIf(ref -> {
+            Object o = ref.get();
+            return o == null || o == owner;
+        });
+    }
+
+    /**
+     * Returns true if the given image has an owner other than
+     * the given one, which means that it must be copied before
+     * the given owner modifies it.
+     */
+    public static synchronized boolean hasOtherOwner(BufferedImage image, Object owner) {
+        var imageOwners = owners.get(getKey(image));
+        if (imageOwners == null) {
+            return false;
+        }
+        for (var ref : imageOwners) {
+            Object o = ref.get();
+            if (o != null && o != owner) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static DataBuffer getKey(BufferedImage image) {
+        return image.getRaster().getDataBuffer();
+    }
+}
@@ -187,7 +187,7 @@ public class TextLayer extends ContentLayer {
         // for larger font sizes it could be more appropriate to use pixel perfect test
         if (painter.getBoundingShape().contains(p)) {
             if (hasMask() && getMask().isMaskEnabled()) {
-                BufferedImage maskImage = getMask().getImage();
+                BufferedImage maskImage = getMask().getImageForReading();
                 int ix = p.x - getMask().translationX;
                 int iy = p.y - getMask().translationY;
                 if (ix >= 0 && iy >= 0 && ix < maskImage.getWidth() && iy < maskImage.getHeight()) {
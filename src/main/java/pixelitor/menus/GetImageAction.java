@@ -59,6 +59,7 @@ public abstract class GetImageAction extends AbstractAction {
 
     /**
      * This callback method represents the task that has to be done.
+     * The image can be shared with other layers, so it must not be modified.
      */
     protected abstract void process(Layer layer, BufferedImage image);
 
@@ -74,14 +75,14 @@ public abstract class GetImageAction extends AbstractAction {
     private void startOnLayer(Layer layer) {
         if (layer.isMaskEditing()) {
             if (allowMasks) {
-                BufferedImage image = layer.getMask().getImage();
+                BufferedImage image = layer.getMask().getImageForReading();
                 process(layer, image);
             } else {
                 Dialogs.showErrorDialog("Layer Mask",
                         name + " cannot be applied to layer masks.");
             }
         } else if (layer instanceof ImageLayer) {
-            BufferedImage image = ((ImageLayer) layer).getImage();
+            BufferedImage image = ((ImageLayer) layer).getImageForReading();
             process(layer, image);
         } else if (layer instanceof TextLayer) {
             BufferedImage image = ((TextLayer) layer).createRasterizedImage();
@@ -81,6 +81,7 @@ import pixelitor.menus.file.OpenRasterExportPanel;
 import pixelitor.menus.file.RecentFilesMenu;
 import pixelitor.menus.file.ScreenCaptureAction;
 import pixelitor.menus.help.AboutDialog;
+import pixelitor.menus.help.PerformanceMonitor;
 import pixelitor.menus.help.UpdatesCheck;
 import pixelitor.menus.view.ShowHideAllAction;
 import pixelitor.menus.view.ShowHideHistogramsAction;
@@ -184,6 +185,13 @@ public class MenuBar extends JMenuBar {
             }
         }).alwaysEnabled().withKey(CTRL_O).add();
 
+        fileMenu.buildAction(new MenuAction("Browse Images in Folder...") {
+            @Override
+            public void onClick() {
+                FileChoosers.browseFolder();
+            }
+        }).alwaysEnabled().add();
+
         // recent files
         JMenu recentFiles = RecentFilesMenu.getInstance();
         fileMenu.add(recentFiles);
@@ -1211,11 +1219,11 @@ public class MenuBar extends JMenuBar {
             @Override
             public void onClick() {
                 ImageLayer imageLayer = (ImageLayer) getActiveLayer();
-                debugImage(imageLayer.getImage(), "layer image");
+                debugImage(imageLayer.getImageForReading(), "layer image");
 
                 if (imageLayer.hasMask()) {
                     LayerMask layerMask = imageLayer.getMask();
-                    BufferedImage maskImage = layerMask.getImage();
+                    BufferedImage maskImage = layerMask.getImageForReading();
                     debugImage(maskImage, "mask image");
 
                     BufferedImage transparencyImage = layerMask.getTransparencyImage();
@@ -1240,7 +1248,8 @@ public class MenuBar extends JMenuBar {
         developMenu.addAction(new MenuAction("Debug getCanvasSizedSubImage") {
             @Override
             public void onClick() {
-                onActiveDrawable(dr -> debugImage(dr.getCanvasSizedSubImage()));
+                onActiveDrawable(dr -> debugImage(
+                        ((ImageLayer) dr).getCanvasSizedSubImageForReading()));
             }
         });
 
@@ -1461,6 +1470,13 @@ public class MenuBar extends JMenuBar {
             }
         });
 
+        helpMenu.addAlwaysEnabledAction(new MenuAction("Performance Monitor...") {
+            @Override
+            public void onClick() {
+                PerformanceMonitor.showDialog(pw);
+            }
+        });
+
         helpMenu.add(new MenuAction("Check for Update...") {
             @Override
             public void onClick() {
@@ -45,7 +45,7 @@ public enum CopySource {
             BufferedImage canvasSizedImage = null;
 
             if (layer instanceof ImageLayer) {
-                canvasSizedImage = ((ImageLayer) layer).getCanvasSizedSubImage();
+                canvasSizedImage = ((ImageLayer) layer).getCanvasSizedSubImageForReading();
             }
 
             // TODO Text layers are rasterized, but they should be probably copied
@@ -22,6 +22,8 @@ import pixelitor.utils.BoundedUniqueList;
 import pixelitor.utils.Messages;
 
 import javax.swing.*;
+import javax.swing.event.MenuEvent;
+import javax.swing.event.MenuListener;
 import java.awt.EventQueue;
 import java.io.File;
 
@@ -50,6 +52,30 @@ public final class RecentFilesMenu extends JMenu {
         });
         load();
         rebuildGUI();
+
+        addMenuListener(new MenuListener() {
+            @Override
+            public void menuSelected(MenuEvent e) {
+                loadPreviews();
+            }
+
+            @Override
+            public void menuDeselected(MenuEvent e) {
+            }
+
+            @Override
+            public void menuCanceled(MenuEvent e) {
+            }
+        });
+    }
+
+    private void loadPreviews() {
+        for (int i = 0; i < getItemCount(); i++) {
+            JMenuItem item = getItem(i);
+            if (item instanceof RecentFilesMenuItem) {
+                ((RecentFilesMenuItem) item).loadPreviewAsync();
+            }
+        }
     }
 
     private void clear() {
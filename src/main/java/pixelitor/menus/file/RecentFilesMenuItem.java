@@ -16,11 +16,19 @@
  */
 package pixelitor.menus.file;
 
+import pixelitor.gui.utils.ThumbInfo;
+import pixelitor.io.IOTasks;
 import pixelitor.io.OpenSave;
+import pixelitor.io.ThumbnailCache;
+import pixelitor.utils.ImageUtils;
 import pixelitor.utils.Messages;
+import pixelitor.utils.Utils;
 
 import javax.swing.*;
+import java.awt.EventQueue;
+import java.awt.image.BufferedImage;
 import java.io.File;
+import java.util.concurrent.CompletableFuture;
 
 import static java.lang.String.format;
 
@@ -28,7 +36,10 @@ import static java.lang.String.format;
  * A menu item for the recent file entries
  */
 public class RecentFilesMenuItem extends JMenuItem {
+    private static final int PREVIEW_SIZE = 32;
+
     private final RecentFile recentFile;
+    private boolean previewRequested;
 
     public RecentFilesMenuItem(RecentFile recentFile) {
         super(recentFile.getMenuName());
@@ -49,6 +60,38 @@ public class RecentFilesMenuItem extends JMenuItem {
         addActionListener(e -> openAsync());
     }
 
+    /**
+     * Starts loading the preview icon (from the thumbnail
+     * cache if possible), unless it was already requested
+     */
+    public void loadPreviewAsync() {
+        File file = recentFile.getFile();
+        if (previewRequested || !file.exists()) {
+            return;
+        }
+        previewRequested = true;
+
+        CompletableFuture
+                .supplyAsync(Utils.toSupplier(() -> ThumbnailCache.INSTANCE.get(file, null)),
+                        IOTasks.getBackgroundExecutor())
+                .thenAcceptAsync(this::setPreview, EventQueue::invokeLater)
+                .exceptionally(e -> null); // the previews are not essential
+    }
+
+    private void setPreview(ThumbInfo thumbInfo) {
+        if (thumbInfo == null) {
+            return;
+        }
+        BufferedImage thumb = thumbInfo.getThumb();
+        if (thumb.getWidth() > PREVIEW_SIZE || thumb.getHeight() > PREVIEW_SIZE) {
+            thumb = ImageUtils.createThumbnail(thumb, PREVIEW_SIZE, PREVIEW_SIZE, null);
+        }
+        setIcon(new ImageIcon(thumb));
+        setToolTipText(format("<html>%s<br>%d x %d pixels",
+                recentFile.getFile().getAbsolutePath(),
+                thumbInfo.getOrigWidth(), thumbInfo.getOrigHeight()));
+    }
+
     private void openAsync() {
         File f = recentFile.getFile();
         if (f.exists()) {
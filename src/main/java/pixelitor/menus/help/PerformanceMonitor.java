@@ -0,0 +1,264 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.menus.help;
+
+import pixelitor.gui.PixelitorWindow;
+import pixelitor.gui.utils.DialogBuilder;
+import pixelitor.io.FileChoosers;
+import pixelitor.utils.MemoryInfo;
+import pixelitor.utils.Messages;
+import pixelitor.utils.Timings;
+import pixelitor.utils.Timings.Stats;
+
+import javax.swing.*;
+import javax.swing.filechooser.FileFilter;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.awt.BorderLayout.CENTER;
+import static java.awt.BorderLayout.NORTH;
+import static java.awt.BorderLayout.SOUTH;
+import static java.lang.String.format;
+import static javax.swing.BorderFactory.createEmptyBorder;
+
+/**
+ * A non-modal dialog showing the statistics collected
+ * by {@link Timings}, refreshed every second.
+ */
+public class PerformanceMonitor extends JPanel {
+    private static final int REFRESH_MILLIS = 1000;
+    private static final Color SLOW_COLOR = new Color(200, 0, 0);
+
+    private final StatsTableModel tableModel = new StatsTableModel();
+    private final JLabel memoryLabel = new JLabel();
+    private final Timer refreshTimer = new Timer(REFRESH_MILLIS, e -> refresh());
+
+    private PerformanceMonitor() {
+        super(new BorderLayout());
+
+        memoryLabel.setBorder(createEmptyBorder(5, 5, 5, 5));
+        add(memoryLabel, NORTH);
+
+        JTable table = new JTable(tableModel);
+        table.setDefaultRenderer(Double.class, new MillisRenderer());
+        table.setAutoCreateRowSorter(true);
+        var scrollPane = new JScrollPane(table);
+        scrollPane.setPreferredSize(new Dimension(800, 300));
+        add(scrollPane, CENTER);
+
+        add(createButtonsPanel(), SOUTH);
+
+        refresh();
+    }
+
+    public static void showDialog(PixelitorWindow pw) {
+        new DialogBuilder()
+                .owner(pw)
+                .title("Performance Monitor")
+                .content(new PerformanceMonitor())
+                .notModal()
+                .okText("Close")
+                .noCancelButton()
+                .show();
+    }
+
+    private JPanel createButtonsPanel() {
+        JPanel p = new JPanel(new FlowLayout(FlowLayout.LEFT));
+
+        JButton resetButton = new JButton("Reset");
+        resetButton.addActionListener(e -> {
+            Timings.reset();
+            refresh();
+        });
+        p.add(resetButton);
+
+        JButton csvButton = new JButton("Export CSV...");
+        csvButton.addActionListener(e -> export(FileChoosers.csvFilter, true));
+        p.add(csvButton);
+
+        JButton jsonButton = new JButton("Export JSON...");
+        jsonButton.addActionListener(e -> export(FileChoosers.jsonFilter, false));
+        p.add(jsonButton);
+
+        JCheckBox logCB = new JCheckBox("Log Each Measurement", Timings.isLogging());
+        logCB.setToolTipText("Appends every measurement to a CSV file");
+        logCB.addActionListener(e -> {
+            if (logCB.isSelected()) {
+                logCB.setSelected(startLog());
+            } else {
+                Timings.stopLog();
+            }
+        });
+        p.add(logCB);
+
+        return p;
+    }
+
+    private static void export(FileFilter filter, boolean csv) {
+        File file = FileChoosers.selectSaveFileForSpecificFormat(filter);
+        if (file == null) {
+            return;
+        }
+        try {
+            if (csv) {
+                Timings.exportCSV(file);
+            } else {
+                Timings.exportJSON(file);
+            }
+        } catch (IOException ex) {
+            Messages.showException(ex);
+        }
+    }
+
+    private static boolean startLog() {
+        File file = FileChoosers.selectSaveFileForSpecificFormat(FileChoosers.csvFilter);
+        if (file == null) {
+            return false;
+        }
+        try {
+            Timings.startLog(file);
+            return true;
+        } catch (IOException ex) {
+            Messages.showException(ex);
+            return false;
+        }
+    }
+
+    private void refresh() {
+        tableModel.setStats(Timings.getStats());
+
+        MemoryInfo mi = new MemoryInfo();
+        memoryLabel.setText(format("Heap: %d MB used of %d MB, GC: %d collections, %d ms",
+                mi.getUsedMemoryMB(), mi.getMaxMemoryMB(),
+                mi.getGCCount(), mi.getGCTimeMillis()));
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        refreshTimer.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        refreshTimer.stop();
+        super.removeNotify();
+    }
+
+    private static class StatsTableModel extends AbstractTableModel {
+        private static final String[] COLUMN_NAMES = {"Category", "Operation",
+                "Count", "Last (ms)", "Average (ms)", "Recent 95% (ms)",
+                "Max (ms)", "Slowest Document"};
+
+        private List<Stats> stats = new ArrayList<>();
+
+        void setStats(List<Stats> stats) {
+            this.stats = stats;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return stats.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMN_NAMES.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMN_NAMES[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            switch (column) {
+                case 2:
+                    return Integer.class;
+                case 3:
+                case 4:
+                case 5:
+                case 6:
+                    return Double.class;
+                default:
+                    return String.class;
+            }
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            Stats s = stats.get(row);
+            switch (column) {
+                case 0:
+                    return s.getCategory().toString();
+                case 1:
+                    return s.getName();
+                case 2:
+                    return s.getCount();
+                case 3:
+                    return s.getLastMillis();
+                case 4:
+                    return s.getAverageMillis();
+                case 5:
+                    return s.getRecentP95Millis();
+                case 6:
+                    return s.getMaxMillis();
+                case 7:
+                    return s.getSlowestDoc();
+                default:
+                    throw new IllegalStateException("column = " + column);
+            }
+        }
+    }
+
+    /**
+     * Shows the durations with one decimal place,
+     * and highlights the ones over the latency limit
+     */
+    private static class MillisRenderer extends DefaultTableCellRenderer {
+        MillisRenderer() {
+            setHorizontalAlignment(RIGHT);
+        }
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value,
+                                                       boolean isSelected, boolean hasFocus,
+                                                       int row, int column) {
+            double millis = (Double) value;
+            super.getTableCellRendererComponent(table, format("%.1f", millis),
+                    isSelected, hasFocus, row, column);
+            if (millis > Timings.SLOW_MILLIS && !isSelected) {
+                setForeground(SLOW_COLOR);
+            } else if (!isSelected) {
+                setForeground(table.getForeground());
+            }
+            return this;
+        }
+    }
+}
@@ -19,6 +19,7 @@ package pixelitor.selection;
 
 import pixelitor.Build;
 import pixelitor.Composition;
+import pixelitor.ThreadPool;
 import pixelitor.gui.View;
 import pixelitor.history.DeselectEdit;
 import pixelitor.history.History;
@@ -29,6 +30,7 @@ import pixelitor.utils.debug.DebugNode;
 
 import javax.swing.*;
 import java.awt.BasicStroke;
+import java.awt.EventQueue;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.Shape;
@@ -36,6 +38,7 @@ import java.awt.Stroke;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Area;
 import java.awt.geom.Rectangle2D;
+import java.util.concurrent.CompletableFuture;
 
 import static java.awt.BasicStroke.CAP_BUTT;
 import static java.awt.BasicStroke.JOIN_ROUND;
@@ -70,6 +73,12 @@ public class Selection {
     // the original shape before a shape movement
     private Shape moveStartShape;
 
+    // the traced outline of a complex shape, used for painting the marching
+    // ants, and the shape for which it was (or is being) calculated
+    private Shape antsOutline;
+    private Shape antsOutlineSource;
+    private Shape moveStartAntsOutline;
+
     public Selection(Shape shape, View view) {
         // TODO should not allow selections with null shape
         assert view != null;
@@ -133,7 +142,46 @@ public class Selection {
             return;
         }
 
-        paintAnts(g2, shape, dashPhase);
+        paintAnts(g2, getAntsShape(), dashPhase);
+    }
+
+    /**
+     * Stroking the dashed marching ants along a complex shape is slow,
+     * therefore such shapes are painted using their traced outline.
+     * The outline is calculated outside the EDT, and until
+     * it is ready, the shape itself is painted.
+     */
+    private Shape getAntsShape() {
+        if (shape == antsOutlineSource) {
+            return antsOutline != null ? antsOutline : shape;
+        }
+        antsOutlineSource = shape;
+        antsOutline = null;
+        if (moveStartShape == null && SelectionMask.isComplex(shape)) {
+            traceAntsOutline(shape);
+        }
+        return shape;
+    }
+
+    private void traceAntsOutline(Shape source) {
+        CompletableFuture.supplyAsync(() ->
+                SelectionMask.fromShape(source, source.getBounds()).getOutline(),
+            ThreadPool.getExecutor())
+            .thenAcceptAsync(outline -> {
+                if (!dead && antsOutlineSource == source) {
+                    antsOutline = outline;
+                    repaint();
+                }
+            }, EventQueue::invokeLater);
+    }
+
+    /**
+     * Sets the cached outline of the marching ants
+     * if it's known without tracing the shape
+     */
+    private void setAntsOutline(Shape outline, Shape source) {
+        antsOutline = outline;
+        antsOutlineSource = source;
     }
 
     private void paintAnts(Graphics2D g2, Shape shape, float phase) {
@@ -235,17 +283,30 @@ public class Selection {
     }
 
     public void modify(SelectionModifyType type, float amount) {
-        BasicStroke outlineStroke = new BasicStroke(amount);
-        Shape outlineShape = outlineStroke.createStrokedShape(shape);
+        Shape backupShape = shape;
+        Shape maskOutline = null;
+        if (SelectionMask.isComplex(shape)) {
+            // the outline has the given width, centered on the edge
+            maskOutline = SelectionMask.fromShape(shape, shape.getBounds())
+                    .modify(type, amount / 2.0)
+                    .getOutline();
+            shape = maskOutline;
+        } else {
+            BasicStroke outlineStroke = new BasicStroke(amount);
+            Shape outlineShape = outlineStroke.createStrokedShape(shape);
 
-        Area oldArea = new Area(shape);
-        Area outlineArea = new Area(outlineShape);
+            Area oldArea = new Area(shape);
+            Area outlineArea = new Area(outlineShape);
 
-        Shape backupShape = shape;
-        shape = type.modify(oldArea, outlineArea);
+            shape = type.modify(oldArea, outlineArea);
+        }
 
         var comp = view.getComp();
         boolean notEmpty = clipToCanvasSize(comp);
+        if (maskOutline != null && shape == maskOutline) {
+            // the new shape is already a traced outline
+            setAntsOutline(maskOutline, maskOutline);
+        }
         if (notEmpty) {
             SelectionShapeChangeEdit edit = new SelectionShapeChangeEdit(
                     "Modify Selection", comp, backupShape);
@@ -323,11 +384,16 @@ public class Selection {
 
     public void startMovement() {
         moveStartShape = shape;
+        moveStartAntsOutline = shape == antsOutlineSource ? antsOutline : null;
     }
 
     public void moveWhileDragging(double relImX, double relImY) {
         var at = AffineTransform.getTranslateInstance(relImX, relImY);
         shape = at.createTransformedShape(moveStartShape);
+        if (moveStartAntsOutline != null) {
+            // translating the outline is much faster than tracing it again
+            setAntsOutline(at.createTransformedShape(moveStartAntsOutline), shape);
+        }
     }
 
     public PixelitorEdit endMovement() {
@@ -343,6 +409,11 @@ public class Selection {
         SelectionShapeChangeEdit edit = new SelectionShapeChangeEdit(
                 MoveMode.MOVE_SELECTION_ONLY.getEditName(), comp, moveStartShape);
         moveStartShape = null;
+        moveStartAntsOutline = null;
+        if (antsOutline == null) {
+            // the outline is not traced while dragging
+            antsOutlineSource = null;
+        }
         return edit;
     }
 
@@ -0,0 +1,925 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.selection;
+
+import pixelitor.ThreadPool;
+import pixelitor.utils.ProgressTracker;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Arrays;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import static java.awt.Color.WHITE;
+import static java.awt.RenderingHints.KEY_ANTIALIASING;
+import static java.awt.RenderingHints.VALUE_ANTIALIAS_ON;
+import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
+
+/**
+ * A raster representation of a selection: an 8-bit coverage mask
+ * stored in tiles. It is used instead of {@link java.awt.geom.Area}
+ * for the boolean operations and modifications of complex selection
+ * shapes, because Area gets very slow for shapes with many segments.
+ * Only hard-edged selections are supported: the results are converted
+ * back into outline shapes, which keep only the 50% coverage contour.
+ *
+ * Like in {@link Selection}, the coordinates are in image space,
+ * relative to the canvas.
+ */
+public class SelectionMask {
+    // shapes with more path segments than this are considered complex
+    private static final int COMPLEXITY_THRESHOLD = 2000;
+
+    private static final int TILE_SHIFT = 6;
+    private static final int TILE_SIZE = 1 << TILE_SHIFT;
+    private static final int TILE_MASK = TILE_SIZE - 1;
+
+    // a shared tile for the fully selected areas, never modified
+    private static final byte[] FULL_TILE = new byte[TILE_SIZE * TILE_SIZE];
+
+    static {
+        Arrays.fill(FULL_TILE, (byte) 0xFF);
+    }
+
+    private static final float INF = 1.0e20f;
+
+    // the tile kinds, see getTileKind
+    private static final int EMPTY = 0;
+    private static final int FULL = 1;
+    private static final int PARTIAL = 2;
+
+    // the coverage at which the outline is traced
+    private static final double OUTLINE_LEVEL = 127.5;
+
+    private final Rectangle bounds;
+    private final int numTilesX;
+    private final int numTilesY;
+
+    // null means an empty tile, FULL_TILE means a fully selected tile
+    private final byte[][] tiles;
+
+    private Shape outline;
+
+    private SelectionMask(Rectangle bounds) {
+        this.bounds = new Rectangle(bounds);
+        numTilesX = (bounds.width + TILE_MASK) >> TILE_SHIFT;
+        numTilesY = (bounds.height + TILE_MASK) >> TILE_SHIFT;
+        tiles = new byte[numTilesX * numTilesY][];
+    }
+
+    /**
+     * Rasterizes the given shape (anti-aliased) within the given bounds.
+     * The shape is rendered one row of tiles at a time, and only the
+     * partially selected tiles are allocated.
+     */
+    public static SelectionMask fromShape(Shape shape, Rectangle bounds) {
+        var mask = new SelectionMask(bounds);
+        int width = bounds.width;
+        int height = bounds.height;
+        if (width <= 0 || height <= 0) {
+            return mask;
+        }
+
+        var band = new BufferedImage(width, TILE_SIZE, TYPE_BYTE_GRAY);
+        byte[] data = ((DataBufferByte) band.getRaster().getDataBuffer()).getData();
+        Rectangle2D shapeBounds = shape.getBounds2D();
+        for (int ty = 0; ty < mask.numTilesY; ty++) {
+            int startY = ty << TILE_SHIFT;
+            int bandY = bounds.y + startY;
+            if (bandY >= shapeBounds.getMaxY() || bandY + TILE_SIZE <= shapeBounds.getMinY()) {
+                continue;
+            }
+
+            Arrays.fill(data, (byte) 0);
+            Graphics2D g = band.createGraphics();
+            g.setRenderingHint(KEY_ANTIALIASING, VALUE_ANTIALIAS_ON);
+            g.setColor(WHITE);
+            g.translate(-bounds.x, -bandY);
+            g.fill(shape);
+            g.dispose();
+
+            int tileHeight = Math.min(TILE_SIZE, height - startY);
+            for (int tx = 0; tx < mask.numTilesX; tx++) {
+                int startX = tx << TILE_SHIFT;
+                int tileWidth = Math.min(TILE_SIZE, width - startX);
+                mask.copyToTile(ty * mask.numTilesX + tx, data,
+                        startX, width, tileWidth, tileHeight);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Copies a tile from the given row-major data, allocating
+     * the tile only if it is partially selected
+     */
+    private void copyToTile(int index, byte[] data, int offset, int scanSize,
+                            int tileWidth, int tileHeight) {
+        boolean allZero = true;
+        boolean allFull = tileWidth == TILE_SIZE && tileHeight == TILE_SIZE;
+        for (int y = 0; y < tileHeight && (allZero || allFull); y++) {
+            int rowStart = offset + y * scanSize;
+            for (int x = 0; x < tileWidth; x++) {
+                byte b = data[rowStart + x];
+                if (b != 0) {
+                    allZero = false;
+                }
+                if (b != (byte) 0xFF) {
+                    allFull = false;
+                }
+            }
+        }
+        if (allZero) {
+            tiles[index] = null;
+            return;
+        }
+        if (allFull) {
+            tiles[index] = FULL_TILE;
+            return;
+        }
+
+        byte[] tile = new byte[TILE_SIZE * TILE_SIZE];
+        for (int y = 0; y < tileHeight; y++) {
+            System.arraycopy(data, offset + y * scanSize,
+                    tile, y << TILE_SHIFT, tileWidth);
+        }
+        tiles[index] = tile;
+    }
+
+    /**
+     * Stores the tile, replacing it with null or with
+     * the shared full tile if possible
+     */
+    private void setTile(int index, byte[] tile) {
+        boolean allZero = true;
+        boolean allFull = true;
+        for (byte b : tile) {
+            if (b != 0) {
+                allZero = false;
+            }
+            if (b != (byte) 0xFF) {
+                allFull = false;
+            }
+            if (!allZero && !allFull) {
+                break;
+            }
+        }
+        if (allZero) {
+            tiles[index] = null;
+        } else if (allFull) {
+            tiles[index] = FULL_TILE;
+        } else {
+            tiles[index] = tile;
+        }
+        outline = null;
+    }
+
+    /**
+     * Fills the given tile with a single coverage value
+     */
+    private void fillTile(int index, int tileWidth, int tileHeight, byte value) {
+        if (value == 0) {
+            tiles[index] = null;
+        } else if (value == (byte) 0xFF && tileWidth == TILE_SIZE && tileHeight == TILE_SIZE) {
+            tiles[index] = FULL_TILE;
+        } else {
+            byte[] tile = new byte[TILE_SIZE * TILE_SIZE];
+            for (int y = 0; y < tileHeight; y++) {
+                int rowStart = y << TILE_SHIFT;
+                Arrays.fill(tile, rowStart, rowStart + tileWidth, value);
+            }
+            tiles[index] = tile;
+        }
+    }
+
+    private int getTileKind(int tx, int ty) {
+        if (tx < 0 || ty < 0 || tx >= numTilesX || ty >= numTilesY) {
+            return EMPTY;
+        }
+        byte[] tile = tiles[ty * numTilesX + tx];
+        if (tile == null) {
+            return EMPTY;
+        }
+        return tile == FULL_TILE ? FULL : PARTIAL;
+    }
+
+    /**
+     * Returns EMPTY or FULL if the given region (in image space)
+     * is completely unselected or selected, and PARTIAL otherwise
+     */
+    private int getRegionKind(Rectangle region) {
+        Rectangle r = region.intersection(bounds);
+        if (r.isEmpty()) {
+            return EMPTY;
+        }
+        boolean outsideBounds = !r.equals(region);
+        int minTX = (r.x - bounds.x) >> TILE_SHIFT;
+        int maxTX = (r.x + r.width - 1 - bounds.x) >> TILE_SHIFT;
+        int minTY = (r.y - bounds.y) >> TILE_SHIFT;
+        int maxTY = (r.y + r.height - 1 - bounds.y) >> TILE_SHIFT;
+        int kind = getTileKind(minTX, minTY);
+        if (kind == PARTIAL || (outsideBounds && kind == FULL)) {
+            return PARTIAL;
+        }
+        for (int ty = minTY; ty <= maxTY; ty++) {
+            for (int tx = minTX; tx <= maxTX; tx++) {
+                if (getTileKind(tx, ty) != kind) {
+                    return PARTIAL;
+                }
+            }
+        }
+        return kind;
+    }
+
+    /**
+     * Copies the coverage values of the given region (in image space)
+     * into the given row-major array. The region can extend beyond
+     * the bounds of the mask, where the coverage is zero.
+     */
+    private void readCoverage(Rectangle region, byte[] dest) {
+        Arrays.fill(dest, 0, region.width * region.height, (byte) 0);
+        Rectangle r = region.intersection(bounds);
+        if (r.isEmpty()) {
+            return;
+        }
+        int minTX = (r.x - bounds.x) >> TILE_SHIFT;
+        int maxTX = (r.x + r.width - 1 - bounds.x) >> TILE_SHIFT;
+        int minTY = (r.y - bounds.y) >> TILE_SHIFT;
+        int maxTY = (r.y + r.height - 1 - bounds.y) >> TILE_SHIFT;
+        for (int ty = minTY; ty <= maxTY; ty++) {
+            for (int tx = minTX; tx <= maxTX; tx++) {
+                byte[] tile = tiles[ty * numTilesX + tx];
+                if (tile == null) {
+                    continue;
+                }
+                // the intersection of the tile and the region, in image space
+                int tileX = bounds.x + (tx << TILE_SHIFT);
+                int tileY = bounds.y + (ty << TILE_SHIFT);
+                int x0 = Math.max(tileX, r.x);
+                int x1 = Math.min(tileX + TILE_SIZE, r.x + r.width);
+                int y0 = Math.max(tileY, r.y);
+                int y1 = Math.min(tileY + TILE_SIZE, r.y + r.height);
+                for (int y = y0; y < y1; y++) {
+                    System.arraycopy(tile, ((y - tileY) << TILE_SHIFT) + x0 - tileX,
+                            dest, (y - region.y) * region.width + x0 - region.x,
+                            x1 - x0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if the given shapes are so complex that the boolean
+     * operations should be done on masks instead of areas
+     */
+    public static boolean isComplex(Shape... shapes) {
+        int numSegments = 0;
+        for (Shape shape : shapes) {
+            PathIterator it = shape.getPathIterator(null);
+            while (!it.isDone()) {
+                numSegments++;
+                if (numSegments > COMPLEXITY_THRESHOLD) {
+                    return true;
+                }
+                it.next();
+            }
+        }
+        return false;
+    }
+
+    public Rectangle getBounds() {
+        return new Rectangle(bounds);
+    }
+
+    /**
+     * Returns the coverage (0-255) at the given point
+     */
+    public int getCoverage(int x, int y) {
+        if (!bounds.contains(x, y)) {
+            return 0;
+        }
+        int relX = x - bounds.x;
+        int relY = y - bounds.y;
+        byte[] tile = tiles[(relY >> TILE_SHIFT) * numTilesX + (relX >> TILE_SHIFT)];
+        if (tile == null) {
+            return 0;
+        }
+        return tile[((relY & TILE_MASK) << TILE_SHIFT) + (relX & TILE_MASK)] & 0xFF;
+    }
+
+    public boolean isEmpty() {
+        for (byte[] tile : tiles) {
+            if (tile != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the other mask, which must have the same bounds, to this one.
+     */
+    public void add(SelectionMask other) {
+        checkSameBounds(other);
+        for (int i = 0; i < tiles.length; i++) {
+            byte[] a = tiles[i];
+            byte[] b = other.tiles[i];
+            if (b == null || a == FULL_TILE) {
+                continue;
+            }
+            if (b == FULL_TILE || a == null) {
+                tiles[i] = b == FULL_TILE ? b : b.clone();
+                continue;
+            }
+            for (int j = 0; j < a.length; j++) {
+                if ((b[j] & 0xFF) > (a[j] & 0xFF)) {
+                    a[j] = b[j];
+                }
+            }
+            setTile(i, a);
+        }
+        outline = null;
+    }
+
+    /**
+     * Subtracts the other mask, which must have the same bounds, from this one.
+     */
+    public void subtract(SelectionMask other) {
+        checkSameBounds(other);
+        for (int i = 0; i < tiles.length; i++) {
+            byte[] a = tiles[i];
+            byte[] b = other.tiles[i];
+            if (a == null || b == null) {
+                continue;
+            }
+            if (b == FULL_TILE) {
+                tiles[i] = null;
+                continue;
+            }
+            if (a == FULL_TILE) {
+                a = FULL_TILE.clone();
+            }
+            for (int j = 0; j < a.length; j++) {
+                int inverted = 255 - (b[j] & 0xFF);
+                if (inverted < (a[j] & 0xFF)) {
+                    a[j] = (byte) inverted;
+                }
+            }
+            setTile(i, a);
+        }
+        outline = null;
+    }
+
+    /**
+     * Intersects this mask with the other one, which must have the same bounds.
+     */
+    public void intersect(SelectionMask other) {
+        checkSameBounds(other);
+        for (int i = 0; i < tiles.length; i++) {
+            byte[] a = tiles[i];
+            byte[] b = other.tiles[i];
+            if (a == null || b == FULL_TILE) {
+                continue;
+            }
+            if (b == null) {
+                tiles[i] = null;
+                continue;
+            }
+            if (a == FULL_TILE) {
+                tiles[i] = b.clone();
+                continue;
+            }
+            for (int j = 0; j < a.length; j++) {
+                if ((b[j] & 0xFF) < (a[j] & 0xFF)) {
+                    a[j] = b[j];
+                }
+            }
+            setTile(i, a);
+        }
+        outline = null;
+    }
+
+    private void checkSameBounds(SelectionMask other) {
+        if (!bounds.equals(other.bounds)) {
+            throw new IllegalArgumentException("bounds = " + bounds
+                    + ", other bounds = " + other.bounds);
+        }
+    }
+
+    /**
+     * Returns a new mask modified according to the given type,
+     * using distance transforms instead of stroked outline shapes.
+     * The radius corresponds to half of the outline stroke width.
+     */
+    public SelectionMask modify(SelectionModifyType type, double radius) {
+        // the distances matter only up to this limit, further
+        // from the edge the coverage is the same everywhere
+        int pad = (int) Math.ceil(radius) + 2;
+        byte farInside = toCoverage(type.maskCoverage(pad, radius));
+        byte farOutside = toCoverage(type.maskCoverage(-pad, radius));
+
+        Rectangle newBounds = new Rectangle(bounds);
+        newBounds.grow(pad, pad);
+        var result = new SelectionMask(newBounds);
+        result.calcInBlocks(this, pad, () -> new DistanceBlockCalc(type, radius),
+                farOutside, farInside);
+        return result;
+    }
+
+    /**
+     * Calculates the pixels of a block from the coverage values of
+     * the source mask in a window around the block. The block starts
+     * at (pad, pad) in the window, and the window calculation
+     * objects are reused for the blocks calculated by the same thread.
+     */
+    private interface BlockCalc {
+        void calc(byte[] window, int windowWidth, int windowHeight,
+                  int pad, byte[] block, int blockWidth, int blockHeight);
+    }
+
+    /**
+     * Fills the tiles of this mask with values calculated from the given
+     * source mask. The values of a pixel can depend only on the source
+     * pixels closer than pad in both directions. The calculation is done
+     * in parallel, in square blocks of tiles, so that only small windows of
+     * the source are expanded into arrays. For blocks that are far from
+     * the selection edge the calculation is skipped, and the given
+     * empty or full values are used.
+     */
+    private void calcInBlocks(SelectionMask src, int pad,
+                              Supplier<BlockCalc> calcFactory,
+                              byte emptyValue, byte fullValue) {
+        // big enough blocks, so that the windows don't
+        // overlap too much even for big pad values
+        int tilesPerBlock = Math.max(1, (2 * pad + TILE_MASK) >> TILE_SHIFT);
+        int blockSize = tilesPerBlock << TILE_SHIFT;
+        int numBlocksX = (numTilesX + tilesPerBlock - 1) / tilesPerBlock;
+        int numBlocksY = (numTilesY + tilesPerBlock - 1) / tilesPerBlock;
+
+        runInBands(numBlocksX * numBlocksY, (from, to) -> {
+            int windowSize = blockSize + 2 * pad;
+            byte[] window = new byte[windowSize * windowSize];
+            byte[] block = new byte[blockSize * blockSize];
+            BlockCalc calc = calcFactory.get();
+            for (int i = from; i < to; i++) {
+                int blockX = (i % numBlocksX) * blockSize;
+                int blockY = (i / numBlocksX) * blockSize;
+                int blockWidth = Math.min(blockSize, bounds.width - blockX);
+                int blockHeight = Math.min(blockSize, bounds.height - blockY);
+
+                Rectangle windowBounds = new Rectangle(
+                        bounds.x + blockX - pad, bounds.y + blockY - pad,
+                        blockWidth + 2 * pad, blockHeight + 2 * pad);
+                int kind = src.getRegionKind(windowBounds);
+                if (kind == PARTIAL) {
+                    src.readCoverage(windowBounds, window);
+                    calc.calc(window, windowBounds.width, windowBounds.height,
+                            pad, block, blockWidth, blockHeight);
+                }
+                for (int y = 0; y < blockHeight; y += TILE_SIZE) {
+                    for (int x = 0; x < blockWidth; x += TILE_SIZE) {
+                        int index = ((blockY + y) >> TILE_SHIFT) * numTilesX
+                                + ((blockX + x) >> TILE_SHIFT);
+                        int tileWidth = Math.min(TILE_SIZE, blockWidth - x);
+                        int tileHeight = Math.min(TILE_SIZE, blockHeight - y);
+                        if (kind == PARTIAL) {
+                            copyToTile(index, block, y * blockWidth + x,
+                                    blockWidth, tileWidth, tileHeight);
+                        } else {
+                            fillTile(index, tileWidth, tileHeight,
+                                    kind == FULL ? fullValue : emptyValue);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    private interface BandTask {
+        void run(int from, int to);
+    }
+
+    private static void runInBands(int size, BandTask task) {
+        if (size == 0) {
+            return;
+        }
+        int numBands = Math.min(size, Runtime.getRuntime().availableProcessors() * 2);
+        int bandSize = (size + numBands - 1) / numBands;
+        var futures = new Future<?>[(size + bandSize - 1) / bandSize];
+        for (int i = 0; i < futures.length; i++) {
+            int from = i * bandSize;
+            int to = Math.min(size, from + bandSize);
+            futures[i] = ThreadPool.submit(() -> task.run(from, to));
+        }
+        ThreadPool.waitFor(futures, ProgressTracker.NULL_TRACKER);
+    }
+
+    /**
+     * Calculates the modified coverage from the exact squared
+     * euclidean distance transforms (Felzenszwalb and Huttenlocher)
+     * of the selected and unselected pixels of the window.
+     */
+    private static class DistanceBlockCalc implements BlockCalc {
+        private final SelectionModifyType type;
+        private final double radius;
+
+        // squared distances to the nearest inside and outside pixels
+        private float[] distToInside;
+        private float[] distToOutside;
+        private DistanceScratch scratch;
+
+        DistanceBlockCalc(SelectionModifyType type, double radius) {
+            this.type = type;
+            this.radius = radius;
+        }
+
+        @Override
+        public void calc(byte[] window, int windowWidth, int windowHeight,
+                         int pad, byte[] block, int blockWidth, int blockHeight) {
+            int size = windowWidth * windowHeight;
+            if (distToInside == null || distToInside.length < size) {
+                distToInside = new float[size];
+                distToOutside = new float[size];
+                scratch = new DistanceScratch(Math.max(windowWidth, windowHeight));
+            }
+            for (int i = 0; i < size; i++) {
+                boolean inside = (window[i] & 0xFF) >= 128;
+                distToInside[i] = inside ? 0 : INF;
+                distToOutside[i] = inside ? INF : 0;
+            }
+            transform2D(distToInside, windowWidth, windowHeight);
+            transform2D(distToOutside, windowWidth, windowHeight);
+
+            for (int y = 0; y < blockHeight; y++) {
+                int windowOffset = (y + pad) * windowWidth + pad;
+                int blockOffset = y * blockWidth;
+                for (int x = 0; x < blockWidth; x++) {
+                    int i = windowOffset + x;
+                    // the signed distance of the pixel center from the edge
+                    double dist;
+                    if ((window[i] & 0xFF) >= 128) {
+                        dist = Math.sqrt(distToOutside[i]) - 0.5;
+                    } else {
+                        dist = 0.5 - Math.sqrt(distToInside[i]);
+                    }
+                    block[blockOffset + x] = toCoverage(type.maskCoverage(dist, radius));
+                }
+            }
+        }
+
+        private void transform2D(float[] dist, int width, int height) {
+            for (int x = 0; x < width; x++) {
+                scratch.transform(dist, x, width, height);
+            }
+            for (int y = 0; y < height; y++) {
+                scratch.transform(dist, y * width, 1, width);
+            }
+        }
+    }
+
+    /**
+     * The working arrays for the one-dimensional distance transform
+     */
+    private static class DistanceScratch {
+        private final float[] f;
+        private final int[] v;
+        private final float[] z;
+
+        DistanceScratch(int n) {
+            f = new float[n];
+            v = new int[n];
+            z = new float[n + 1];
+        }
+
+        void transform(float[] data, int start, int step, int n) {
+            for (int i = 0; i < n; i++) {
+                f[i] = data[start + i * step];
+            }
+            int k = 0;
+            v[0] = 0;
+            z[0] = -INF;
+            z[1] = INF;
+            for (int q = 1; q < n; q++) {
+                float s = intersection(q, v[k]);
+                while (s <= z[k]) {
+                    k--;
+                    s = intersection(q, v[k]);
+                }
+                k++;
+                v[k] = q;
+                z[k] = s;
+                z[k + 1] = INF;
+            }
+            k = 0;
+            for (int q = 0; q < n; q++) {
+                while (z[k + 1] < q) {
+                    k++;
+                }
+                int dq = q - v[k];
+                data[start + q * step] = dq * dq + f[v[k]];
+            }
+        }
+
+        private float intersection(int q, int p) {
+            return ((f[q] + q * q) - (f[p] + p * p)) / (2.0f * q - 2.0f * p);
+        }
+    }
+
+    private static double clamp01(double d) {
+        if (d < 0) {
+            return 0;
+        }
+        if (d > 1) {
+            return 1;
+        }
+        return d;
+    }
+
+    private static byte toCoverage(double d) {
+        return (byte) Math.round(clamp01(d) * 255);
+    }
+
+    /**
+     * Returns the 50% coverage contour of the mask. The contour is
+     * interpolated between the pixel centers (marching squares), so
+     * anti-aliased edges keep their sub-pixel position.
+     * The outline is traced only once, and then it is cached.
+     */
+    public Shape getOutline() {
+        if (outline == null) {
+            outline = traceOutline();
+        }
+        return outline;
+    }
+
+    private Shape traceOutline() {
+        var tracer = new ContourTracer();
+        Path2D path = new Path2D.Double(Path2D.WIND_NON_ZERO);
+
+        // the cells are between four pixel centers, the ones
+        // on the border also include the area outside the mask.
+        // The cells are visited in groups, according to the tile
+        // of their top left corner, and a group can be skipped if
+        // all four corners of all of its cells are in uniform tiles
+        // of the same kind, because then no contour goes through it.
+        for (int ty = -1; ty < numTilesY; ty++) {
+            for (int tx = -1; tx < numTilesX; tx++) {
+                int kind = getTileKind(tx, ty);
+                if (kind != PARTIAL
+                        && getTileKind(tx + 1, ty) == kind
+                        && getTileKind(tx, ty + 1) == kind
+                        && getTileKind(tx + 1, ty + 1) == kind) {
+                    continue;
+                }
+                int minCY = Math.max(-1, ty << TILE_SHIFT);
+                int maxCY = Math.min(bounds.height - 1, (ty << TILE_SHIFT) + TILE_MASK);
+                int minCX = Math.max(-1, tx << TILE_SHIFT);
+                int maxCX = Math.min(bounds.width - 1, (tx << TILE_SHIFT) + TILE_MASK);
+                for (int cy = minCY; cy <= maxCY; cy++) {
+                    for (int cx = minCX; cx <= maxCX; cx++) {
+                        int corners = tracer.getCorners(cx, cy);
+                        if (corners == 0 || corners == 0b1111) {
+                            continue;
+                        }
+                        for (int side = 0; side < 4; side++) {
+                            if (isLeavingSide(corners, side) && !tracer.isVisited(cx, cy, side)) {
+                                tracer.traceLoop(cx, cy, side, path);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return path;
+    }
+
+    /**
+     * The sides of a cell are numbered clockwise (top, right, bottom, left),
+     * side i goes from corner i to corner i + 1, and the corner bits are
+     * set for the selected corners. The contour is oriented so that it
+     * goes from a side where the clockwise walk leaves the selection
+     * to a side where it enters it.
+     */
+    private static boolean isLeavingSide(int corners, int side) {
+        return isCornerSet(corners, side) && !isCornerSet(corners, side + 1);
+    }
+
+    private static boolean isEnteringSide(int corners, int side) {
+        return !isCornerSet(corners, side) && isCornerSet(corners, side + 1);
+    }
+
+    private static boolean isCornerSet(int corners, int corner) {
+        return (corners & (1 << (corner & 3))) != 0;
+    }
+
+    /**
+     * Traces the closed contour loops of the mask
+     */
+    private class ContourTracer {
+        private final int width;
+        private final int height;
+
+        // the already traced sides, indexed by cell and side. The bits
+        // are allocated only for the tiles where the contours go through,
+        // the extra first row and column is for the cells at -1
+        private final int numVisitedTilesX;
+        private final long[][] visited;
+
+        // the last added point and the pending point of the path,
+        // collinear points are merged into a single line
+        private double lastX, lastY;
+        private double pendingX, pendingY;
+
+        ContourTracer() {
+            width = bounds.width;
+            height = bounds.height;
+            numVisitedTilesX = numTilesX + 1;
+            visited = new long[numVisitedTilesX * (numTilesY + 1)][];
+        }
+
+        private int getValue(int x, int y) {
+            if (x < 0 || y < 0 || x >= width || y >= height) {
+                return 0;
+            }
+            byte[] tile = tiles[(y >> TILE_SHIFT) * numTilesX + (x >> TILE_SHIFT)];
+            if (tile == null) {
+                return 0;
+            }
+            return tile[((y & TILE_MASK) << TILE_SHIFT) + (x & TILE_MASK)] & 0xFF;
+        }
+
+        // the pixel coordinates of the corners, clockwise from the top left
+        private int cornerX(int cx, int corner) {
+            return corner == 1 || corner == 2 ? cx + 1 : cx;
+        }
+
+        private int cornerY(int cy, int corner) {
+            return corner >= 2 ? cy + 1 : cy;
+        }
+
+        int getCorners(int cx, int cy) {
+            int corners = 0;
+            for (int corner = 0; corner < 4; corner++) {
+                if (getValue(cornerX(cx, corner), cornerY(cy, corner)) > OUTLINE_LEVEL) {
+                    corners |= 1 << corner;
+                }
+            }
+            return corners;
+        }
+
+        boolean isVisited(int cx, int cy, int side) {
+            long[] bits = visited[visitedTileIndex(cx, cy)];
+            if (bits == null) {
+                return false;
+            }
+            int bit = visitedBitIndex(cx, cy, side);
+            return (bits[bit >> 6] & (1L << bit)) != 0;
+        }
+
+        private void setVisited(int cx, int cy, int side) {
+            int tileIndex = visitedTileIndex(cx, cy);
+            long[] bits = visited[tileIndex];
+            if (bits == null) {
+                bits = new long[4 * TILE_SIZE * TILE_SIZE / 64];
+                visited[tileIndex] = bits;
+            }
+            int bit = visitedBitIndex(cx, cy, side);
+            bits[bit >> 6] |= 1L << bit;
+        }
+
+        private int visitedTileIndex(int cx, int cy) {
+            return ((cy + 1) >> TILE_SHIFT) * numVisitedTilesX + ((cx + 1) >> TILE_SHIFT);
+        }
+
+        private int visitedBitIndex(int cx, int cy, int side) {
+            return 4 * ((((cy + 1) & TILE_MASK) << TILE_SHIFT) + ((cx + 1) & TILE_MASK)) + side;
+        }
+
+        /**
+         * Returns the side where the contour coming from
+         * the given leaving side exits the cell
+         */
+        private int findExitSide(int cx, int cy, int corners, int side) {
+            boolean saddle = corners == 0b0101 || corners == 0b1010;
+            boolean connected = true;
+            if (saddle) {
+                // the average decides whether the diagonal
+                // selected corners are connected
+                int sum = 0;
+                for (int corner = 0; corner < 4; corner++) {
+                    sum += getValue(cornerX(cx, corner), cornerY(cy, corner));
+                }
+                connected = sum / 4.0 > OUTLINE_LEVEL;
+            }
+            int step = connected ? 1 : 3;
+            int exit = (side + step) & 3;
+            while (!isEnteringSide(corners, exit)) {
+                exit = (exit + step) & 3;
+            }
+            return exit;
+        }
+
+        void traceLoop(int startX, int startY, int startSide, Path2D path) {
+            Point2D start = calcCrossing(startX, startY, startSide);
+            path.moveTo(start.getX(), start.getY());
+            lastX = pendingX = start.getX();
+            lastY = pendingY = start.getY();
+
+            int cx = startX;
+            int cy = startY;
+            int side = startSide;
+            while (true) {
+                setVisited(cx, cy, side);
+                int exit = findExitSide(cx, cy, getCorners(cx, cy), side);
+                Point2D p = calcCrossing(cx, cy, exit);
+
+                // continue in the neighboring cell, where the
+                // exit side is the opposite, leaving side
+                switch (exit) {
+                    case 0:
+                        cy--;
+                        break;
+                    case 1:
+                        cx++;
+                        break;
+                    case 2:
+                        cy++;
+                        break;
+                    default:
+                        cx--;
+                        break;
+                }
+                side = (exit + 2) & 3;
+                if (cx == startX && cy == startY && side == startSide) {
+                    break;
+                }
+                addPoint(path, p.getX(), p.getY());
+            }
+            if (pendingX != lastX || pendingY != lastY) {
+                path.lineTo(pendingX, pendingY);
+            }
+            path.closePath();
+        }
+
+        private void addPoint(Path2D path, double x, double y) {
+            double dx1 = pendingX - lastX;
+            double dy1 = pendingY - lastY;
+            double dx2 = x - pendingX;
+            double dy2 = y - pendingY;
+            boolean collinear = Math.abs(dx1 * dy2 - dy1 * dx2) < 1.0e-9
+                    && dx1 * dx2 + dy1 * dy2 > 0;
+            if (!collinear && (pendingX != lastX || pendingY != lastY)) {
+                path.lineTo(pendingX, pendingY);
+                lastX = pendingX;
+                lastY = pendingY;
+            }
+            pendingX = x;
+            pendingY = y;
+        }
+
+        /**
+         * Returns the point where the contour crosses the given side
+         * of the cell, linearly interpolated between the pixel centers.
+         */
+        private Point2D calcCrossing(int cx, int cy, int side) {
+            int x0 = cornerX(cx, side);
+            int y0 = cornerY(cy, side);
+            int x1 = cornerX(cx, (side + 1) & 3);
+            int y1 = cornerY(cy, (side + 1) & 3);
+            int v0 = getValue(x0, y0);
+            int v1 = getValue(x1, y1);
+            double t = (OUTLINE_LEVEL - v0) / (v1 - v0);
+            return new Point2D.Double(
+                    bounds.x + x0 + 0.5 + t * (x1 - x0),
+                    bounds.y + y0 + 0.5 + t * (y1 - y0));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SelectionMask{bounds=" + bounds + '}';
+    }
+}
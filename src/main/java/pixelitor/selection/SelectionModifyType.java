@@ -32,29 +32,54 @@ public enum SelectionModifyType {
             previous.add(outlineShape);
             return previous;
         }
+
+        @Override
+        public double maskCoverage(double dist, double radius) {
+            return dist + radius + 0.5;
+        }
     }, CONTRACT("Contract") {
         @Override
         public Shape modify(Area previous, Area outlineShape) {
             previous.subtract(outlineShape);
             return previous;
         }
+
+        @Override
+        public double maskCoverage(double dist, double radius) {
+            return dist - radius + 0.5;
+        }
     }, BORDER("Border") {
         @Override
         public Shape modify(Area previous, Area outlineShape) {
             return outlineShape;
         }
+
+        @Override
+        public double maskCoverage(double dist, double radius) {
+            return radius - Math.abs(dist) + 0.5;
+        }
     }, BORDER_OUT("Border Outwards Only") {
         @Override
         public Shape modify(Area previous, Area outlineShape) {
             outlineShape.subtract(previous);
             return outlineShape;
         }
+
+        @Override
+        public double maskCoverage(double dist, double radius) {
+            return Math.min(dist + radius + 0.5, 0.5 - dist);
+        }
     }, BORDER_IN("Border Inwards Only") {
         @Override
         public Shape modify(Area previous, Area outlineShape) {
             previous.intersect(outlineShape);
             return previous;
         }
+
+        @Override
+        public double maskCoverage(double dist, double radius) {
+            return Math.min(dist + 0.5, radius - dist + 0.5);
+        }
     };
 
     private final String guiName;
@@ -69,6 +94,14 @@ public enum SelectionModifyType {
      */
     public abstract Shape modify(Area previous, Area outlineShape);
 
+    /**
+     * The raster equivalent of the modification, used by {@link SelectionMask}:
+     * calculates the (not yet clamped) coverage of a pixel from the signed
+     * distance of its center from the selection edge (positive inside)
+     * and from the half width of the outline.
+     */
+    public abstract double maskCoverage(double dist, double radius);
+
     public static EnumParam<SelectionModifyType> asParam() {
         return new EnumParam<>("Type", SelectionModifyType.class);
     }
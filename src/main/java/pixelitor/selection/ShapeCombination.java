@@ -16,12 +16,14 @@
  */
 package pixelitor.selection;
 
+import java.awt.Rectangle;
 import java.awt.Shape;
 import java.awt.geom.Area;
 
 /**
  * Describes how a new selection is combined with an existing selection.
  * Corresponds to the "New Selection" combo box in the Selection Tool.
+ * Complex shapes are combined as {@link SelectionMask}s.
  */
 public enum ShapeCombination {
     REPLACE("Replace") {
@@ -32,6 +34,12 @@ public enum ShapeCombination {
     }, ADD("Add") {
         @Override
         public Shape combine(Shape oldShape, Shape newShape) {
+            if (SelectionMask.isComplex(oldShape, newShape)) {
+                Rectangle bounds = oldShape.getBounds().union(newShape.getBounds());
+                var mask = SelectionMask.fromShape(oldShape, bounds);
+                mask.add(SelectionMask.fromShape(newShape, bounds));
+                return mask.getOutline();
+            }
             Area oldArea = new Area(oldShape);
             Area newArea = new Area(newShape);
             oldArea.add(newArea);
@@ -40,6 +48,12 @@ public enum ShapeCombination {
     }, SUBTRACT("Subtract") {
         @Override
         public Shape combine(Shape oldShape, Shape newShape) {
+            if (SelectionMask.isComplex(oldShape, newShape)) {
+                Rectangle bounds = oldShape.getBounds();
+                var mask = SelectionMask.fromShape(oldShape, bounds);
+                mask.subtract(SelectionMask.fromShape(newShape, bounds));
+                return mask.getOutline();
+            }
             Area oldArea = new Area(oldShape);
             Area newArea = new Area(newShape);
             oldArea.subtract(newArea);
@@ -48,6 +62,15 @@ public enum ShapeCombination {
     }, INTERSECT("Intersect") {
         @Override
         public Shape combine(Shape oldShape, Shape newShape) {
+            if (SelectionMask.isComplex(oldShape, newShape)) {
+                Rectangle bounds = oldShape.getBounds().intersection(newShape.getBounds());
+                if (bounds.isEmpty()) {
+                    return new Area();
+                }
+                var mask = SelectionMask.fromShape(oldShape, bounds);
+                mask.intersect(SelectionMask.fromShape(newShape, bounds));
+                return mask.getOutline();
+            }
             Area oldArea = new Area(oldShape);
             Area newArea = new Area(newShape);
             oldArea.intersect(newArea);
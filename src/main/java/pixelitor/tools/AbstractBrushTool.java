@@ -50,6 +50,7 @@ import java.awt.Composite;
 import java.awt.Cursor;
 import java.awt.EventQueue;
 import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
 import java.awt.GridBagLayout;
 import java.awt.MouseInfo;
 import java.awt.Point;
@@ -167,7 +168,9 @@ public abstract class AbstractBrushTool extends Tool {
         closeBrushSettingsDialog();
 
         var brushType = getBrushType();
-        symmetryBrush.brushTypeChanged(brushType, getRadius());
+        int radius = getRadius();
+        StrokeRenderer.runInOrder(() ->
+                symmetryBrush.brushTypeChanged(brushType, radius));
         brushRadiusParam.setEnabled(brushType.sizeCanBeSet(), APP_LOGIC);
         brushSettingsButton.setEnabled(brushType.hasSettings());
     }
@@ -185,8 +188,12 @@ public abstract class AbstractBrushTool extends Tool {
         var symmetryCB = new JComboBox<Symmetry>(symmetryModel);
 
         settingsPanel.addComboBox("Mirror:", symmetryCB, "symmetrySelector");
-        symmetryCB.addActionListener(e -> symmetryBrush.symmetryChanged(
-                getSymmetry(), getRadius()));
+        symmetryCB.addActionListener(e -> {
+            Symmetry symmetry = getSymmetry();
+            int radius = getRadius();
+            StrokeRenderer.runInOrder(() ->
+                    symmetryBrush.symmetryChanged(symmetry, radius));
+        });
     }
 
     protected void addBrushSettingsButton() {
@@ -277,7 +284,13 @@ public abstract class AbstractBrushTool extends Tool {
 
     @Override
     public void mouseDragged(PMouseEvent e) {
-        newMousePoint(e.getComp().getActiveDrawableOrThrow(), e, false);
+        if (graphics != null) {
+            // convert the coordinates here, while the view can't change
+            PPoint p = PPoint.eagerFromCo(e.getCoX(), e.getCoY(), e.getView());
+            StrokeRenderer.get().addPoint(brush, p);
+        } else {
+            newMousePoint(e.getComp().getActiveDrawableOrThrow(), e, false);
+        }
 
         if(lazyMouse) {
             PPoint drawPoint = lazyMouseBrush.getDrawPoint();
@@ -298,6 +311,10 @@ public abstract class AbstractBrushTool extends Tool {
             return;
         }
 
+        // the rendering thread must finish before
+        // the stroke is added to the history
+        StrokeRenderer.get().waitUntilDone();
+
         // whether or not it is lazy mouse, set
         // the outline back to the mouse coordinates
         outlineCoX = (int) e.getCoX();
@@ -351,6 +368,10 @@ public abstract class AbstractBrushTool extends Tool {
     }
 
     private void startOutlinePainting(View view) {
+        if (GraphicsEnvironment.isHeadless()) {
+            // there is no mouse pointer
+            return;
+        }
         Point mousePos = MouseInfo.getPointerInfo().getLocation();
         SwingUtilities.convertPointFromScreen(mousePos, view);
         Rectangle visiblePart = view.getVisiblePart();
@@ -398,9 +419,12 @@ public abstract class AbstractBrushTool extends Tool {
 
         drawDestination.finishBrushStroke(dr);
 
+        dr.pixelsChanged();
         dr.updateIconImage();
 
-        dr.getComp().imageChanged(HISTOGRAM);
+        // a new rectangle, because the history edit translates its own one
+        var changedRect = affectedArea.asRectangle(brush.getEffectiveRadius());
+        dr.getComp().imageChanged(HISTOGRAM, changedRect);
     }
 
     private void addBrushStrokeToHistory(Drawable dr) {
@@ -498,7 +522,9 @@ public abstract class AbstractBrushTool extends Tool {
 
     private void setupDrawingRadius() {
         int newRadius = getRadius();
-        brush.setRadius(newRadius);
+        Brush currentBrush = brush;
+        // can be changed with a keyboard shortcut while dragging
+        StrokeRenderer.runInOrder(() -> currentBrush.setRadius(newRadius));
 
         outlinePainter.setRadius(newRadius);
         if (paintBrushOutline) {
@@ -99,6 +99,12 @@ public enum BrushType {
                     tool, SprayBrushSettings::new);
             return new SprayBrush(radius, settings);
         }
+
+        @Override
+        public boolean canDrawInParallel() {
+            // the random numbers are shared between the brushes
+            return false;
+        }
     }, CONNECT("Connect", true) {
         @Override
         public Brush createBrush(Tool tool, double radius) {
@@ -106,6 +112,12 @@ public enum BrushType {
                     tool, ConnectBrushSettings::new);
             return new ConnectBrush(settings, radius);
         }
+
+        @Override
+        public boolean canDrawInParallel() {
+            // the stroke history is shared between the brushes
+            return false;
+        }
     }, OUTLINE_CIRCLE("Circles", true) {
         @Override
         public Brush createBrush(Tool tool, double radius) {
@@ -157,6 +169,14 @@ public enum BrushType {
         return true; // intended to be overridden if necessary
     }
 
+    /**
+     * Whether the brushes of this type can draw on different
+     * threads, if they draw into different areas of the same image
+     */
+    public boolean canDrawInParallel() {
+        return true; // intended to be overridden if necessary
+    }
+
     public boolean hasSettings() {
         return hasSettings;
     }
@@ -210,7 +210,7 @@ public class CloneTool extends BlendingModeBrushTool {
             sourceImage = comp.getCompositeImage();
         } else {
             Drawable dr = comp.getActiveDrawableOrThrow();
-            sourceImage = dr.getImage();
+            sourceImage = dr.getImageForReading();
             dx = -dr.getTx();
             dy = -dr.getTy();
         }
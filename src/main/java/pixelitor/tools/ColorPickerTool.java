@@ -82,7 +82,7 @@ public class ColorPickerTool extends Tool {
             }
 
             Drawable dr = view.getComp().getActiveDrawableOrThrow();
-            img = dr.getImage();
+            img = dr.getImageForReading();
             isGray = img.getType() == TYPE_BYTE_GRAY;
 
             x -= dr.getTx();
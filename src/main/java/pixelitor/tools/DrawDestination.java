@@ -51,7 +51,7 @@ public enum DrawDestination {
         public BufferedImage getOriginalImage(Drawable dr, AbstractBrushTool tool) {
             // it can simply return the drawable image because
             // the drawing was on the temporary layer
-            return dr.getImage();
+            return dr.getImageForReading();
         }
     }, DIRECT {
         private BufferedImage copyBeforeStart;
@@ -65,7 +65,7 @@ public enum DrawDestination {
 
         @Override
         public void prepareBrushStroke(Drawable dr) {
-            BufferedImage image = dr.getImage();
+            BufferedImage image = dr.getImageForReading();
 
             assert Assertions.checkRasterMinimum(image);
 
@@ -22,6 +22,7 @@ import pixelitor.gui.utils.SliderSpinner;
 import pixelitor.history.History;
 import pixelitor.history.PartialImageEdit;
 import pixelitor.layers.Drawable;
+import pixelitor.tools.util.FloodFill;
 import pixelitor.tools.util.PMouseEvent;
 import pixelitor.utils.Cursors;
 import pixelitor.utils.ImageUtils;
@@ -30,11 +31,8 @@ import pixelitor.utils.debug.DebugNode;
 import javax.swing.*;
 import java.awt.AlphaComposite;
 import java.awt.Graphics2D;
-import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
-import java.util.ArrayDeque;
-import java.util.Deque;
 
 import static pixelitor.colors.FgBgColors.getBGColor;
 import static pixelitor.colors.FgBgColors.getFGColor;
@@ -59,6 +57,10 @@ public class PaintBucketTool extends Tool {
     );
     private final JComboBox<String> actionCB = new JComboBox<>(
             new String[]{ACTION_LOCAL, ACTION_GLOBAL});
+    private JCheckBox antiAliasCB;
+
+    // reused between the clicks
+    private final FloodFill floodFill = new FloodFill();
 
     public PaintBucketTool() {
         super("Paint Bucket", 'N',
@@ -74,6 +76,8 @@ public class PaintBucketTool extends Tool {
 
         settingsPanel.addComboBox("Fill With:", fillCB, "fillCB");
         settingsPanel.addComboBox("Action:", actionCB, "actionCB");
+        antiAliasCB = settingsPanel.addCheckBox("Anti-aliased", false,
+                "antiAliasCB", "Smooth the edges of the filled region");
     }
 
     @Override
@@ -100,7 +104,8 @@ public class PaintBucketTool extends Tool {
         x -= tx;
         y -= ty;
 
-        BufferedImage image = dr.getImage();
+        // only read until it's known that something will be filled
+        BufferedImage image = dr.getImageForReading();
 
         int imgHeight = image.getHeight();
         int imgWidth = image.getWidth();
@@ -108,17 +113,8 @@ public class PaintBucketTool extends Tool {
             return;
         }
 
-        BufferedImage backupForUndo = ImageUtils.copyImage(image);
-        boolean thereIsSelection = comp.hasSelection();
-        BufferedImage workingImage;
-        if (thereIsSelection) {
-            workingImage = ImageUtils.copyImage(image);
-        } else {
-            workingImage = image;
-        }
-
         String fill = (String) fillCB.getSelectedItem();
-        int rgbAtMouse = workingImage.getRGB(x, y);
+        int rgbAtMouse = image.getRGB(x, y);
         int fillRGB;
         switch (fill) {
             case FILL_FOREGROUND:
@@ -137,198 +133,72 @@ public class PaintBucketTool extends Tool {
                 throw new IllegalStateException("fill = " + fill);
         }
 
-        Rectangle replacedArea;
+        // first only find the region, so that only the
+        // affected area has to be saved for the undo
+        int[] pixels = ImageUtils.getPixelsAsArray(image);
+        FloodFill.Region region;
         String action = (String) actionCB.getSelectedItem();
         int tolerance = toleranceParam.getValue();
         switch (action) {
             case ACTION_LOCAL:
-                replacedArea = scanlineFloodFill(workingImage,
-                    x, y, tolerance, rgbAtMouse, fillRGB);
+                region = floodFill.findContiguous(pixels, imgWidth, imgHeight,
+                        x, y, rgbAtMouse, tolerance);
                 break;
             case ACTION_GLOBAL:
-                globalReplaceColor(workingImage,
-                    tolerance, rgbAtMouse, fillRGB);
-                replacedArea = new Rectangle(0, 0, imgWidth, imgHeight);
+                region = floodFill.findGlobal(pixels, imgWidth, imgHeight,
+                        rgbAtMouse, tolerance);
                 break;
             default:
                 throw new IllegalStateException("action = " + action);
         }
 
-        if (replacedArea != null) { // something was replaced
-            PartialImageEdit edit = History.createPartialImageEdit(replacedArea, backupForUndo, dr,
-                    true, getName());
-            if (edit != null) {
-                History.add(edit);
-            }
-
-            if (thereIsSelection) {
-                Graphics2D g = image.createGraphics();
-
-                // the selection is relative to the canvas,
-                // so go to the canvas start
-                g.translate(-tx, -ty);
-                comp.applySelectionClipping(g);
-                g.translate(tx, ty); // go back
-
-                // makes "fill with transparency" possible
-                g.setComposite(AlphaComposite.Src);
-
-                g.drawImage(workingImage, 0, 0, null);
-                g.dispose();
-                workingImage.flush();
-            }
-            comp.imageChanged();
-            dr.updateIconImage();
+        if (region.isEmpty()) {
+            return;
         }
-    }
 
-    /**
-     * Uses the "Scanline fill" algorithm described at
-     * http://en.wikipedia.org/wiki/Flood_fill
-     */
-    private static Rectangle scanlineFloodFill(BufferedImage img,
-                                               int x, int y, int tolerance,
-                                               int rgbAtMouse, int newRGB) {
-        int minX = x;
-        int maxX = x;
-        int minY = y;
-        int maxY = y;
-        int imgHeight = img.getHeight();
-        int imgWidth = img.getWidth();
-
-        int[] pixels = ImageUtils.getPixelsAsArray(img);
-
-        // Needed because the tolerance: we cannot assume that
-        // if the pixel is within the target range, it has been processed
-        boolean[] checkedPixels = new boolean[pixels.length];
-
-        // the double-ended queue is used as a simple LIFO stack
-        Deque<Point> stack = new ArrayDeque<>();
-        stack.push(new Point(x, y));
-
-        while (!stack.isEmpty()) {
-            Point p = stack.pop();
-
-            x = p.x;
-            y = p.y;
-
-            // find the last replaceable point to the left
-            int scanlineMinX = x - 1;
-            int offset = y * imgWidth;
-            while (scanlineMinX >= 0
-                    && isSimilar(pixels[scanlineMinX + offset], rgbAtMouse, tolerance)) {
-                scanlineMinX--;
-            }
-            scanlineMinX++;
-
-            // find the last replaceable point to the right
-            int scanlineMaxX = x + 1;
-            while (scanlineMaxX < img.getWidth()
-                    && isSimilar(pixels[scanlineMaxX + offset], rgbAtMouse, tolerance)) {
-                scanlineMaxX++;
-            }
-            scanlineMaxX--;
-
-            // set the minX, maxX, minY, maxY variables
-            // that will be used to calculate the affected area
-            if (scanlineMinX < minX) {
-                minX = scanlineMinX;
-            }
-            if (scanlineMaxX > maxX) {
-                maxX = scanlineMaxX;
-            }
-            if (y > maxY) {
-                maxY = y;
-            } else if (y < minY) {
-                minY = y;
-            }
-
-            // draw a line between (scanlineMinX, y) and (scanlineMaxX, y)
-            for (int i = scanlineMinX; i <= scanlineMaxX; i++) {
-                int index = i + offset;
-                pixels[index] = newRGB;
-                checkedPixels[index] = true;
-            }
-
-            // look upwards for new points to be inspected later
-            if (y > 0) {
-                // if there are multiple pixels to be replaced
-                // that are horizontal neighbours,
-                // only one of them has to be inspected later
-                boolean pointsInLine = false;
-
-                int upOffset = (y - 1) * imgWidth;
-
-                for (int i = scanlineMinX; i <= scanlineMaxX; i++) {
-                    int upIndex = i + upOffset;
-                    boolean shouldBeReplaced = !checkedPixels[upIndex]
-                            && isSimilar(pixels[upIndex], rgbAtMouse, tolerance);
-
-                    if (!pointsInLine && shouldBeReplaced) {
-                        Point inspectLater = new Point(i, y - 1);
-                        stack.push(inspectLater);
-                        pointsInLine = true;
-                    } else if (pointsInLine && !shouldBeReplaced) {
-                        pointsInLine = false;
-                    }
-                }
-            }
-
-            // look downwards for new points to be inspected later
-            if (y < imgHeight - 1) {
-                boolean pointsInLine = false;
-                int downOffset = (y + 1) * imgWidth;
-
-                for (int i = scanlineMinX; i <= scanlineMaxX; i++) {
-                    int downIndex = i + downOffset;
-                    boolean shouldBeReplaced = !checkedPixels[downIndex]
-                            && isSimilar(pixels[downIndex], rgbAtMouse, tolerance);
-
-                    if (!pointsInLine && shouldBeReplaced) {
-                        Point inspectLater = new Point(i, y + 1);
-                        stack.push(inspectLater);
-                        pointsInLine = true;
-                    } else if (pointsInLine && !shouldBeReplaced) {
-                        pointsInLine = false;
-                    }
-                }
-            }
+        BufferedImage readImage = image;
+        image = dr.getImage(); // copies the image if it's shared
+        if (image != readImage) {
+            pixels = ImageUtils.getPixelsAsArray(image);
         }
 
-        // return the affected area
-        return new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
-    }
+        boolean antiAliased = antiAliasCB.isSelected();
+        Rectangle replacedArea = region.getFillBounds(antiAliased);
+        PartialImageEdit edit = History.createPartialImageEdit(
+                new Rectangle(replacedArea), image, dr, true, getName());
 
-    private static void globalReplaceColor(BufferedImage img,
-                                           int tolerance,
-                                           int rgbAtMouse, int newRGB) {
-        int[] pixels = ImageUtils.getPixelsAsArray(img);
-        for (int i = 0; i < pixels.length; i++) {
-            if (isSimilar(pixels[i], rgbAtMouse, tolerance)) {
-                pixels[i] = newRGB;
-            }
-        }
-    }
+        if (comp.hasSelection()) {
+            // fill a copy of the affected area, and then
+            // draw it back with the selection clipping
+            BufferedImage workingImage = ImageUtils.getCopyOfSubimage(image, replacedArea);
+            region.fill(ImageUtils.getPixelsAsArray(workingImage), replacedArea.width,
+                    replacedArea.x, replacedArea.y, fillRGB, antiAliased);
 
-    private static boolean isSimilar(int color1, int color2, int tolerance) {
-        if (color1 == color2) {
-            return true;
-        }
+            Graphics2D g = image.createGraphics();
 
-        int a1 = (color1 >>> 24) & 0xFF;
-        int r1 = (color1 >>> 16) & 0xFF;
-        int g1 = (color1 >>> 8) & 0xFF;
-        int b1 = color1 & 0xFF;
+            // the selection is relative to the canvas,
+            // so go to the canvas start
+            g.translate(-tx, -ty);
+            comp.applySelectionClipping(g);
+            g.translate(tx, ty); // go back
 
-        int a2 = (color2 >>> 24) & 0xFF;
-        int r2 = (color2 >>> 16) & 0xFF;
-        int g2 = (color2 >>> 8) & 0xFF;
-        int b2 = color2 & 0xFF;
+            // makes "fill with transparency" possible
+            g.setComposite(AlphaComposite.Src);
 
-        return (r2 <= r1 + tolerance) && (r2 >= r1 - tolerance) &&
-                (g2 <= g1 + tolerance) && (g2 >= g1 - tolerance) &&
-            (b2 <= b1 + tolerance) && (b2 >= b1 - tolerance) &&
-            (a2 <= a1 + tolerance) && (a2 >= a1 - tolerance);
+            g.drawImage(workingImage, replacedArea.x, replacedArea.y, null);
+            g.dispose();
+            workingImage.flush();
+        } else {
+            region.fill(pixels, imgWidth, 0, 0, fillRGB, antiAliased);
+            ImageUtils.setPixelsFromArray(image, pixels);
+        }
+
+        if (edit != null) {
+            History.add(edit);
+        }
+        dr.pixelsChanged();
+        comp.imageChanged();
+        dr.updateIconImage();
     }
 
     @Override
@@ -338,6 +208,7 @@ public class PaintBucketTool extends Tool {
         node.addInt("tolerance", toleranceParam.getValue());
         node.addQuotedString("fill with", (String) fillCB.getSelectedItem());
         node.addQuotedString("action", (String) actionCB.getSelectedItem());
+        node.addBoolean("anti-aliased", antiAliasCB.isSelected());
 
         return node;
     }
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.tools;
+
+import pixelitor.tools.brushes.Brush;
+import pixelitor.tools.util.PPoint;
+import pixelitor.utils.Messages;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Renders the mouse-dragged points of the brush strokes on a dedicated
+ * thread, so that big brushes don't delay the processing of the
+ * mouse events on the EDT. The points are processed in order, and
+ * the repaints requested by the brushes are coalesced on the EDT
+ * (see {@link #isRenderingThread()}).
+ *
+ * The start and the finish of the strokes stay on the EDT: before
+ * finishing a stroke, the EDT waits until all its points are rendered,
+ * therefore the affected area and the undo are the same as before.
+ *
+ * The tasks are scheduled only from the EDT, therefore if nothing is
+ * pending, the rendering thread can't touch the brushes until the EDT
+ * schedules something.
+ */
+public final class StrokeRenderer {
+    private static final StrokeRenderer INSTANCE = new StrokeRenderer();
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    // the number of tasks that are queued or being run
+    private final AtomicInteger pending = new AtomicInteger();
+
+    // notified when the pending count drops to zero
+    private final Object doneLock = new Object();
+
+    private final Thread thread;
+
+    // the first exception thrown by a brush since the last wait
+    private volatile Throwable error;
+
+    private StrokeRenderer() {
+        thread = new Thread(this::renderLoop, "Stroke Renderer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    static StrokeRenderer get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns true if called from the stroke rendering thread
+     */
+    public static boolean isRenderingThread() {
+        return Thread.currentThread() == INSTANCE.thread;
+    }
+
+    /**
+     * Schedules the drawing of the given brush stroke point
+     */
+    void addPoint(Brush brush, PPoint p) {
+        schedule(() -> renderPoint(brush, p));
+    }
+
+    /**
+     * Runs the given drawing task on the rendering thread,
+     * after the already scheduled points. Must be called on the EDT.
+     */
+    public static void invokeLater(Runnable task) {
+        assert !isRenderingThread();
+        INSTANCE.schedule(task);
+    }
+
+    /**
+     * Changes the state used by the rendering thread, such as the brush
+     * settings: if something is pending, then the change is scheduled
+     * between the points, otherwise it runs immediately. Must be called on the EDT.
+     */
+    public static void runInOrder(Runnable change) {
+        assert !isRenderingThread();
+        if (INSTANCE.pending.get() == 0) {
+            change.run();
+        } else {
+            INSTANCE.schedule(new StateChange(change));
+        }
+    }
+
+    private void schedule(Runnable task) {
+        pending.incrementAndGet();
+        tasks.add(task);
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Waits until all the scheduled points are drawn, and reports
+     * the exception if a brush threw one on the rendering thread.
+     */
+    void waitUntilDone() {
+        synchronized (doneLock) {
+            boolean interrupted = false;
+            while (pending.get() > 0) {
+                try {
+                    doneLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        Throwable t = error;
+        if (t != null) {
+            error = null;
+            Messages.showException(t);
+        }
+    }
+
+    private void renderLoop() {
+        while (true) {
+            Runnable task = tasks.poll();
+            if (task == null) {
+                LockSupport.park(this);
+                continue;
+            }
+            try {
+                // after an error only the state changes run
+                if (error == null || task instanceof StateChange) {
+                    task.run();
+                }
+            } catch (Throwable t) {
+                // skip the rest of the stroke, the EDT will report it
+                error = t;
+            } finally {
+                if (pending.decrementAndGet() == 0) {
+                    synchronized (doneLock) {
+                        doneLock.notifyAll();
+                    }
+                }
+            }
+        }
+    }
+
+    private static void renderPoint(Brush brush, PPoint p) {
+        if (brush.hasPrevious()) {
+            brush.continueTo(p);
+        } else {
+            // there is a graphics, but the brush has no previous
+            // TODO why does this happen sometimes in random tests?
+            brush.startAt(p);
+        }
+    }
+
+    private static class StateChange implements Runnable {
+        private final Runnable change;
+
+        StateChange(Runnable change) {
+            this.change = change;
+        }
+
+        @Override
+        public void run() {
+            change.run();
+        }
+    }
+}
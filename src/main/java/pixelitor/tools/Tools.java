@@ -114,6 +114,19 @@ public class Tools {
         // showing the message could be useful even if the tool didn't change
         Messages.showInStatusBar(newTool.getStatusBarMessage());
 
+        if (currentTool == newTool) {
+            return;
+        }
+        changeToWithoutGUI(newTool);
+        ToolSettingsPanelContainer.INSTANCE.showSettingsFor(newTool);
+    }
+
+    /**
+     * Changes the current tool without showing its settings,
+     * so that it can be used also without a main window.
+     */
+    @VisibleForTesting
+    public static void changeToWithoutGUI(Tool newTool) {
         Tool previousTool = currentTool;
         if (previousTool == newTool) {
             return;
@@ -124,7 +137,6 @@ public class Tools {
         }
         currentTool = newTool;
         newTool.toolStarted();
-        ToolSettingsPanelContainer.INSTANCE.showSettingsFor(newTool);
     }
 
     public static Tool[] getAll() {
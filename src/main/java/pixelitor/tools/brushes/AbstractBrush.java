@@ -55,6 +55,13 @@ public abstract class AbstractBrush implements Brush {
         return radius + 1.0;
     }
 
+    @Override
+    public double getMaxDrawingDistance() {
+        // the effective radius includes the randomness,
+        // one more pixel for the antialiasing
+        return getEffectiveRadius() + 1.0;
+    }
+
     @Override
     public void setTarget(Composition comp, Graphics2D g) {
         this.comp = comp;
@@ -109,6 +109,14 @@ public interface Brush {
      */
     double getEffectiveRadius();
 
+    /**
+     * Returns the maximum distance from the stroke's points (and the
+     * lines between them) at which this brush can modify pixels.
+     * The parallel symmetry brushes divide the image based on this,
+     * therefore it must not be smaller than the real extent.
+     */
+    double getMaxDrawingDistance();
+
     /**
      * Returns the space between the dabs.
      *
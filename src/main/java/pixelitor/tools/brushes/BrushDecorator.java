@@ -99,6 +99,11 @@ public abstract class BrushDecorator implements Brush {
         return delegate.getEffectiveRadius();
     }
 
+    @Override
+    public double getMaxDrawingDistance() {
+        return delegate.getMaxDrawingDistance();
+    }
+
     @Override
     public double getPreferredSpacing() {
         return delegate.getPreferredSpacing();
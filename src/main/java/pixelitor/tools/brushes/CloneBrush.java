@@ -91,14 +91,20 @@ public class CloneBrush extends CopyBrush {
      */
     @Override
     void setupBrushStamp(PPoint p) {
-        Graphics2D g = brushImage.createGraphics();
-
-        type.beforeDrawImage(g);
-
         // the current sampling coordinates relative to the source image
         double currSrcX = dx - p.getImX();
         double currSrcY = dy - p.getImY();
 
+        boolean transformed = scaleX != 1.0 || scaleY != 1.0 || rotate != 0.0;
+        if (!transformed && copySourceToBrushImage(currSrcX + radius, currSrcY + radius)) {
+            debugImage();
+            return;
+        }
+
+        Graphics2D g = brushImage.createGraphics();
+
+        type.beforeDrawImage(g);
+
         // Now calculate the transformation from the source to the brush image.
         // Concatenated transformations have a last-specified-first-applied
         // order, so start with the last transformation
@@ -106,7 +112,7 @@ public class CloneBrush extends CopyBrush {
         var transform = AffineTransform.getTranslateInstance(
                 currSrcX + radius, currSrcY + radius);
 
-        if (scaleX != 1.0 || scaleY != 1.0 || rotate != 0.0) {
+        if (transformed) {
             g.setRenderingHint(KEY_INTERPOLATION, VALUE_INTERPOLATION_BILINEAR);
             // we need to scale/rotate the image
             // around the source point, so translate first
@@ -126,11 +132,7 @@ public class CloneBrush extends CopyBrush {
 
     @Override
     public void putDab(PPoint p, double theta) {
-        var transform = AffineTransform.getTranslateInstance(
-                p.getImX() - radius,
-                p.getImY() - radius
-        );
-        targetG.drawImage(brushImage, transform, null);
+        drawBrushImage(p);
         repaintComp(p);
     }
 
@@ -17,10 +17,13 @@
 
 package pixelitor.tools.brushes;
 
+import pixelitor.tools.util.PPoint;
+import pixelitor.utils.ImageUtils;
 import pixelitor.utils.Utils;
 import pixelitor.utils.debug.DebugNode;
 
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
 
 import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
 import static pixelitor.tools.brushes.AngleSettings.NOT_ANGLE_AWARE;
@@ -34,6 +37,9 @@ public abstract class CopyBrush extends DabsBrush {
     protected BufferedImage brushImage;
     protected CopyBrushType type;
 
+    // reused for reading the source pixels
+    private int[] sourceBuffer;
+
     // can be set from the develop menu
     private static boolean debugBrushImage = false;
 
@@ -52,6 +58,72 @@ public abstract class CopyBrush extends DabsBrush {
         }
     }
 
+    /**
+     * Copies the source image into the brush image with the given
+     * translation and applies the brush type's transparency, with
+     * the same result as doing it with a Graphics2D, but without
+     * the overhead of creating one for every dab.
+     * Returns false if the source image is not supported.
+     */
+    protected boolean copySourceToBrushImage(double tx, double ty) {
+        if (sourceImage.getType() != TYPE_INT_ARGB) {
+            return false;
+        }
+        int[] mask = type.getAlphaMask();
+        int size = brushImage.getWidth();
+        if (mask == null || mask.length != size * size) {
+            return false;
+        }
+
+        // a translation is drawn by Java2D (with nearest neighbor
+        // interpolation) by rounding it to whole pixels
+        int itx = (int) Math.floor(tx + 0.5);
+        int ity = (int) Math.floor(ty + 0.5);
+
+        // the part of the brush image that is covered by the source image
+        int startX = Math.max(0, itx);
+        int startY = Math.max(0, ity);
+        int endX = Math.min(size, sourceImage.getWidth() + itx);
+        int endY = Math.min(size, sourceImage.getHeight() + ity);
+
+        int[] brushPixels = ImageUtils.getPixelsAsArray(brushImage);
+        Arrays.fill(brushPixels, 0);
+        if (startX >= endX || startY >= endY) {
+            return true;
+        }
+
+        int width = endX - startX;
+        int height = endY - startY;
+        if (sourceBuffer == null || sourceBuffer.length < width * height) {
+            sourceBuffer = new int[size * size];
+        }
+        sourceImage.getRaster().getDataElements(startX - itx, startY - ity,
+                width, height, sourceBuffer);
+
+        for (int y = 0; y < height; y++) {
+            int brushIndex = (startY + y) * size + startX;
+            int sourceIndex = y * width;
+            for (int x = 0; x < width; x++) {
+                int rgb = sourceBuffer[sourceIndex + x];
+                int a = ((rgb >>> 24) * mask[brushIndex] + 127) / 255;
+                brushPixels[brushIndex] = a == 0 ? 0 : a << 24 | rgb & 0x00_FF_FF_FF;
+                brushIndex++;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Draws the brush image centered at the given point
+     */
+    protected void drawBrushImage(PPoint p) {
+        // the same rounding as in the case of
+        // drawing with a translating AffineTransform
+        int x = (int) Math.floor(p.getImX() - radius + 0.5);
+        int y = (int) Math.floor(p.getImY() - radius + 0.5);
+        targetG.drawImage(brushImage, x, y, null);
+    }
+
     public void typeChanged(CopyBrushType type) {
         this.type = type;
         type.setSize(diameter);
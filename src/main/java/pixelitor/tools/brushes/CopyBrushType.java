@@ -24,6 +24,8 @@ import java.awt.Graphics2D;
 import java.awt.geom.Ellipse2D;
 import java.awt.image.BufferedImage;
 
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+
 /**
  * The brush type ("hard" and "soft") for the Clone Stamp and Smudge tools.
  */
@@ -35,6 +37,7 @@ public enum CopyBrushType {
         public void setSize(double size) {
             super.setSize(size);
             transparencyImage = ImageUtils.createSoftTransparencyImage((int) size);
+            alphaMask = createAlphaMask(transparencyImage);
         }
 
         @Override
@@ -55,6 +58,14 @@ public enum CopyBrushType {
         public void setSize(double size) {
             super.setSize(size);
             circleClip = new Ellipse2D.Double(0, 0, size, size);
+
+            int intSize = (int) size;
+            BufferedImage maskImage = new BufferedImage(intSize, intSize, TYPE_INT_ARGB);
+            Graphics2D g = maskImage.createGraphics();
+            g.setClip(circleClip);
+            g.fillRect(0, 0, intSize, intSize);
+            g.dispose();
+            alphaMask = createAlphaMask(maskImage);
         }
 
         @Override
@@ -85,6 +96,10 @@ public enum CopyBrushType {
     private final String guiName;
     protected double size;
 
+    // the alpha values that the brush image gets from this type,
+    // the same as the result of beforeDrawImage/afterDrawImage
+    protected int[] alphaMask;
+
     CopyBrushType(String guiName) {
         this.guiName = guiName;
     }
@@ -103,6 +118,22 @@ public enum CopyBrushType {
         this.size = size;
     }
 
+    /**
+     * Returns the alpha values (0-255) of a size x size brush image
+     */
+    public int[] getAlphaMask() {
+        return alphaMask;
+    }
+
+    private static int[] createAlphaMask(BufferedImage maskImage) {
+        int[] pixels = ImageUtils.getPixelsAsArray(maskImage);
+        int[] mask = new int[pixels.length];
+        for (int i = 0; i < pixels.length; i++) {
+            mask[i] = pixels[i] >>> 24;
+        }
+        return mask;
+    }
+
     @Override
     public String toString() {
         return guiName;
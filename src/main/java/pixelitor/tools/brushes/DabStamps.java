@@ -0,0 +1,168 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.tools.brushes;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+
+/**
+ * A cache of pre-rendered dab images ("stamps"), so that putting
+ * down a dab is a simple image copy instead of rasterizing a shape
+ * or transforming an image for every dab.
+ *
+ * The stamps are rendered only for a limited number of angles
+ * and sub-pixel offsets, which is visually indistinguishable
+ * from rendering every dab exactly.
+ */
+class DabStamps {
+    private static final int ANGLE_BUCKETS = 128;
+
+    // sub-pixel offsets are distinguished only for small dabs,
+    // for big dabs the rounding to whole pixels is not visible
+    private static final int SUB_PIXEL_STEPS = 4;
+    private static final double MAX_SUB_PIXEL_DIAMETER = 64;
+
+    private static final long MAX_BYTES = 16 * 1024 * 1024;
+
+    /**
+     * Renders a dab centered at the given stamp coordinates
+     */
+    interface StampRenderer {
+        void render(Graphics2D g, double centerX, double centerY, double theta);
+    }
+
+    private final StampRenderer renderer;
+    private final Map<Integer, BufferedImage> stamps;
+    private int maxStamps;
+
+    // the properties of the current stamps, other than the angle and position
+    private Object lastState;
+    private double radius;
+    private boolean rotated;
+    private int halfSize;
+    private int subPixelSteps;
+
+    DabStamps(StampRenderer renderer) {
+        this.renderer = renderer;
+        stamps = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, BufferedImage> eldest) {
+                return size() > maxStamps;
+            }
+        };
+    }
+
+    /**
+     * Discards the cached stamps if the given state (for example
+     * the size, shape and color of the dabs) is different from
+     * the state given in the previous call.
+     */
+    void setState(Object state, double radius) {
+        if (state.equals(lastState)) {
+            return;
+        }
+        lastState = state;
+        this.radius = radius;
+        rotated = false;
+        resize();
+    }
+
+    private void resize() {
+        stamps.clear();
+
+        // a rotated dab can extend to the corners of its bounding square
+        double maxExtent = rotated ? radius * Math.sqrt(2) : radius;
+        halfSize = (int) Math.ceil(maxExtent) + 1;
+        subPixelSteps = 2 * radius <= MAX_SUB_PIXEL_DIAMETER ? SUB_PIXEL_STEPS : 1;
+
+        int stampSize = getStampSize();
+        long stampBytes = 4L * stampSize * stampSize;
+        maxStamps = (int) Math.max(1, Math.min(MAX_BYTES / stampBytes,
+                ANGLE_BUCKETS * SUB_PIXEL_STEPS * SUB_PIXEL_STEPS));
+    }
+
+    /**
+     * Puts down a dab centered at the given image coordinates.
+     * The composite, clipping and translation of the given Graphics2D
+     * are respected, but its rendering hints are not used.
+     */
+    void putDab(Graphics2D targetG, double x, double y, double theta) {
+        assert lastState != null : "the state was not set";
+
+        int angleBucket = toAngleBucket(theta);
+        if (angleBucket != 0 && !rotated) {
+            // the unrotated stamps are smaller
+            rotated = true;
+            resize();
+        }
+
+        int startX = (int) Math.floor(x);
+        int startY = (int) Math.floor(y);
+        int phaseX = (int) Math.round((x - startX) * subPixelSteps);
+        int phaseY = (int) Math.round((y - startY) * subPixelSteps);
+        if (phaseX == subPixelSteps) {
+            startX++;
+            phaseX = 0;
+        }
+        if (phaseY == subPixelSteps) {
+            startY++;
+            phaseY = 0;
+        }
+
+        int key = (angleBucket * SUB_PIXEL_STEPS + phaseX) * SUB_PIXEL_STEPS + phaseY;
+        BufferedImage stamp = stamps.get(key);
+        if (stamp == null) {
+            stamp = renderStamp(angleBucket, phaseX, phaseY);
+            stamps.put(key, stamp);
+        }
+        targetG.drawImage(stamp, startX - halfSize, startY - halfSize, null);
+    }
+
+    private BufferedImage renderStamp(int angleBucket, int phaseX, int phaseY) {
+        int size = getStampSize();
+        BufferedImage stamp = new BufferedImage(size, size, TYPE_INT_ARGB);
+        Graphics2D g = stamp.createGraphics();
+        double centerX = halfSize + phaseX / (double) subPixelSteps;
+        double centerY = halfSize + phaseY / (double) subPixelSteps;
+        double theta = angleBucket * 2 * Math.PI / ANGLE_BUCKETS;
+        renderer.render(g, centerX, centerY, theta);
+        g.dispose();
+        return stamp;
+    }
+
+    private int getStampSize() {
+        // one more pixel for the sub-pixel offset
+        return 2 * halfSize + 1;
+    }
+
+    static int toAngleBucket(double theta) {
+        int bucket = (int) Math.round(theta * ANGLE_BUCKETS / (2 * Math.PI)) % ANGLE_BUCKETS;
+        if (bucket < 0) {
+            bucket += ANGLE_BUCKETS;
+        }
+        return bucket;
+    }
+
+    int getNumCachedStamps() {
+        return stamps.size();
+    }
+}
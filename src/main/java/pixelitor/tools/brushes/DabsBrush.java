@@ -118,6 +118,19 @@ public abstract class DabsBrush extends AbstractBrush {
         return node;
     }
 
+    @Override
+    public double getMaxDrawingDistance() {
+        AngleSettings angleSettings = settings.getAngleSettings();
+        double extent = radius;
+        if (angleSettings.isAngleAware() || angleSettings.shouldJitterAngle()) {
+            // a rotated dab can extend to the corners of its bounding square
+            extent *= Math.sqrt(2);
+        }
+        // the dab stamps are aligned to whole pixels,
+        // and they have a one pixel border for the antialiasing
+        return Math.max(Math.ceil(extent) + 2.0, super.getMaxDrawingDistance());
+    }
+
     @Override
     public double getPreferredSpacing() {
         return spacingStrategy.getSpacing(radius);
@@ -17,6 +17,8 @@
 
 package pixelitor.tools.brushes;
 
+import pixelitor.tools.StrokeRenderer;
+
 import javax.swing.*;
 
 /**
@@ -32,13 +34,17 @@ public class DabsBrushSettings extends BrushSettings {
     }
 
     public void changeSpacing(SpacingStrategy spacingStrategy) {
-        this.spacingStrategy = spacingStrategy;
-        notifyBrushes();
+        StrokeRenderer.runInOrder(() -> {
+            this.spacingStrategy = spacingStrategy;
+            notifyBrushes();
+        });
     }
 
     public void changeAngleSettings(AngleSettings angleSettings) {
-        this.angleSettings = angleSettings;
-        notifyBrushes();
+        StrokeRenderer.runInOrder(() -> {
+            this.angleSettings = angleSettings;
+            notifyBrushes();
+        });
     }
 
     public boolean isAngleAware() {
@@ -22,8 +22,10 @@ import pixelitor.utils.ImageUtils;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
 
 import static java.awt.RenderingHints.KEY_INTERPOLATION;
@@ -40,6 +42,7 @@ public class ImageDabsBrush extends DabsBrush {
     private BufferedImage coloredBrushImg;
     private BufferedImage finalScaledImg;
     private Color lastColor;
+    private final DabStamps rotatedStamps = new DabStamps(this::renderRotatedStamp);
 
     public ImageDabsBrush(double radius, ImageBrushType imageBrushType,
                           double spacingRatio, AngleSettings angleSettings) {
@@ -130,17 +133,22 @@ public class ImageDabsBrush extends DabsBrush {
 
         double x = p.getImX();
         double y = p.getImY();
-        int drawStartX = (int) (x - radius);
-        int drawStartY = (int) (y - radius);
         if (!settings.isAngleAware() || theta == 0) {
+            int drawStartX = (int) (x - radius);
+            int drawStartY = (int) (y - radius);
             targetG.drawImage(finalScaledImg, drawStartX, drawStartY, null);
         } else {
-            var oldTransform = targetG.getTransform();
-            targetG.rotate(theta, x, y);
-            targetG.setRenderingHint(KEY_INTERPOLATION, VALUE_INTERPOLATION_BILINEAR);
-            targetG.drawImage(finalScaledImg, drawStartX, drawStartY, null);
-            targetG.setTransform(oldTransform);
+            // rotated dabs are drawn from cached, pre-rotated images
+            rotatedStamps.setState(List.of(finalScaledImg, radius), radius);
+            rotatedStamps.putDab(targetG, x, y, theta);
         }
         repaintComp(p);
     }
+
+    private void renderRotatedStamp(Graphics2D g, double x, double y, double theta) {
+        g.rotate(theta, x, y);
+        g.setRenderingHint(KEY_INTERPOLATION, VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(finalScaledImg, AffineTransform.getTranslateInstance(
+                x - radius, y - radius), null);
+    }
 }
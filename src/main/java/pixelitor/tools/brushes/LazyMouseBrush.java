@@ -23,6 +23,7 @@ import pixelitor.gui.View;
 import pixelitor.tools.util.PPoint;
 
 import java.awt.Graphics2D;
+import java.awt.geom.Point2D;
 
 /**
  * A brush with the "lazy mouse" feature enabled is
@@ -41,13 +42,18 @@ public class LazyMouseBrush extends BrushDecorator {
     private double mouseY;
     private double drawX;
     private double drawY;
+
+    // the last draw point, published for the outline painting on the EDT,
+    // while the stroke is drawn on the rendering thread
+    private volatile Point2D publishedDrawPoint = new Point2D.Double();
+
     private View view;
     private double spacing;
-    private static int defaultSpacing = DEFAULT_SPACING;
+    private static volatile int defaultSpacing = DEFAULT_SPACING;
 
     // the lazy mouse distance is shared between the tools
     private static int minDist = DEFAULT_DIST;
-    private static double minDist2 = DEFAULT_DIST * DEFAULT_DIST;
+    private static volatile double minDist2 = DEFAULT_DIST * DEFAULT_DIST;
 
     public LazyMouseBrush(Brush delegate) {
         super(delegate);
@@ -59,6 +65,7 @@ public class LazyMouseBrush extends BrushDecorator {
         if (previous != null) {
             drawX = previous.getImX();
             drawY = previous.getImY();
+            publishDrawPoint();
         }
 
         calcSpacing();
@@ -96,6 +103,7 @@ public class LazyMouseBrush extends BrushDecorator {
 
         drawX = mouseX;
         drawY = mouseY;
+        publishDrawPoint();
 
         calcSpacing();
     }
@@ -138,6 +146,11 @@ public class LazyMouseBrush extends BrushDecorator {
             dy = mouseY - drawY;
             dist2 = dx * dx + dy * dy;
         }
+        publishDrawPoint();
+    }
+
+    private void publishDrawPoint() {
+        publishedDrawPoint = new Point2D.Double(drawX, drawY);
     }
 
     @Override
@@ -165,7 +178,12 @@ public class LazyMouseBrush extends BrushDecorator {
         return param;
     }
 
+    /**
+     * Returns the last draw point. It can be called on the EDT
+     * while the stroke is drawn on the rendering thread.
+     */
     public PPoint getDrawPoint() {
-        return PPoint.eagerFromIm(drawX, drawY, view);
+        Point2D p = publishedDrawPoint;
+        return PPoint.eagerFromIm(p.getX(), p.getY(), view);
     }
 }
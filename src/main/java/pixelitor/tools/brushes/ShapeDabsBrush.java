@@ -21,9 +21,12 @@ import pixelitor.Composition;
 import pixelitor.tools.shapes.ShapeType;
 import pixelitor.tools.util.PPoint;
 
+import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Paint;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
+import java.util.List;
 
 import static java.awt.RenderingHints.KEY_ANTIALIASING;
 import static java.awt.RenderingHints.VALUE_ANTIALIAS_ON;
@@ -32,6 +35,8 @@ import static java.awt.RenderingHints.VALUE_ANTIALIAS_ON;
  * A {@link DabsBrush} where the dabs are filled shapes
  */
 public class ShapeDabsBrush extends DabsBrush {
+    private final DabStamps stamps = new DabStamps(this::renderStamp);
+
     public ShapeDabsBrush(double radius, ShapeDabsBrushSettings settings) {
         super(radius, settings, false);
     }
@@ -46,19 +51,34 @@ public class ShapeDabsBrush extends DabsBrush {
     public void putDab(PPoint p, double theta) {
         double x = p.getImX();
         double y = p.getImY();
-        ShapeType shapeType = ((ShapeDabsBrushSettings)settings).getShapeType();
-        if (theta != 0) {
-            Shape shape = shapeType.createShape(x - radius, y - radius, diameter);
-            var rotTx = AffineTransform.getRotateInstance(theta, x, y);
-            Shape transformedShape = rotTx.createTransformedShape(shape);
-            targetG.fill(transformedShape);
+        ShapeType shapeType = ((ShapeDabsBrushSettings) settings).getShapeType();
+        Paint paint = targetG.getPaint();
+        if (paint instanceof Color) {
+            stamps.setState(List.of(shapeType, paint, radius), radius);
+            stamps.putDab(targetG, x, y, theta);
         } else {
-            Shape shape = shapeType.createShape(x - radius, y - radius, diameter);
-            targetG.fill(shape);
+            // the stamps can't be reused with a position-dependent paint
+            targetG.fill(createShape(shapeType, x, y, theta));
         }
         repaintComp(p);
     }
 
+    private void renderStamp(Graphics2D g, double x, double y, double theta) {
+        ShapeType shapeType = ((ShapeDabsBrushSettings) settings).getShapeType();
+        g.setRenderingHint(KEY_ANTIALIASING, VALUE_ANTIALIAS_ON);
+        g.setPaint(targetG.getPaint());
+        g.fill(createShape(shapeType, x, y, theta));
+    }
+
+    private Shape createShape(ShapeType shapeType, double x, double y, double theta) {
+        Shape shape = shapeType.createShape(x - radius, y - radius, diameter);
+        if (theta != 0) {
+            var rotTx = AffineTransform.getRotateInstance(theta, x, y);
+            return rotTx.createTransformedShape(shape);
+        }
+        return shape;
+    }
+
     @Override
     void setupBrushStamp(PPoint p) {
         // no setup is necessary for shape brushes
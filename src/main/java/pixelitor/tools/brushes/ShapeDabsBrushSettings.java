@@ -17,6 +17,7 @@
 
 package pixelitor.tools.brushes;
 
+import pixelitor.tools.StrokeRenderer;
 import pixelitor.tools.shapes.ShapeType;
 
 import javax.swing.*;
@@ -37,7 +38,7 @@ public class ShapeDabsBrushSettings extends DabsBrushSettings {
     }
 
     public void setShapeType(ShapeType shapeType) {
-        this.shapeType = shapeType;
+        StrokeRenderer.runInOrder(() -> this.shapeType = shapeType);
     }
 
     @Override
@@ -67,36 +67,35 @@ public class SmudgeBrush extends CopyBrush {
 
     @Override
     void setupBrushStamp(PPoint p) {
-        Graphics2D g = brushImage.createGraphics();
-        type.beforeDrawImage(g);
-
-        if (firstUsageInStroke && fingerPainting) {
-            // finger painting starts with the foreground color
-            g.setColor(getFGColor());
-            int size = (int) diameter;
-            g.fillRect(0, 0, size, size);
-        } else {
-            // samples the source image at lastX, lastY into the brush image
-            g.drawImage(sourceImage,
-                    AffineTransform.getTranslateInstance(
-                            -last.getImX() + radius,
-                            -last.getImY() + radius), null);
+        // samples the source image at lastX, lastY into the brush image
+        double tx = -last.getImX() + radius;
+        double ty = -last.getImY() + radius;
+
+        boolean fingerPaintingStart = firstUsageInStroke && fingerPainting;
+        if (fingerPaintingStart || !copySourceToBrushImage(tx, ty)) {
+            Graphics2D g = brushImage.createGraphics();
+            type.beforeDrawImage(g);
+
+            if (fingerPaintingStart) {
+                // finger painting starts with the foreground color
+                g.setColor(getFGColor());
+                int size = (int) diameter;
+                g.fillRect(0, 0, size, size);
+            } else {
+                g.drawImage(sourceImage,
+                        AffineTransform.getTranslateInstance(tx, ty), null);
+            }
+
+            type.afterDrawImage(g);
+            g.dispose();
         }
 
-        type.afterDrawImage(g);
-        g.dispose();
-
         firstUsageInStroke = false;
         debugImage();
     }
 
     @Override
     public void putDab(PPoint p, double theta) {
-        var transform = AffineTransform.getTranslateInstance(
-                p.getImX() - radius,
-                p.getImY() - radius
-        );
-
         // TODO SrcOver allows to smudge into transparent areas, but transparency
         // can't be smudged into non-transparent areas
         // DstOver allows only smudging into transparent
@@ -107,7 +106,7 @@ public class SmudgeBrush extends CopyBrush {
 
 //        targetG.setComposite(BlendComposite.CrossFade.derive(strength));
 
-        targetG.drawImage(brushImage, transform, null);
+        drawBrushImage(p);
 
         last = p;
 
@@ -20,6 +20,7 @@ package pixelitor.tools.brushes;
 import pixelitor.Composition;
 import pixelitor.colors.ColorUtils;
 import pixelitor.gui.View;
+import pixelitor.tools.StrokeRenderer;
 import pixelitor.tools.shapes.ShapeType;
 import pixelitor.tools.util.PPoint;
 import pixelitor.tools.util.PRectangle;
@@ -89,7 +90,9 @@ public class SprayBrush extends AbstractBrush {
 
         colorRandomness = settings.getColorRandomness();
 
-        timer = new Timer(DELAY_MILLIS, e -> sprayOnce());
+        // the mouse position is updated on the stroke rendering
+        // thread, therefore the timed spraying also runs there
+        timer = new Timer(DELAY_MILLIS, e -> StrokeRenderer.invokeLater(this::sprayOnce));
         timer.start();
 
         mouseX = previous.getImX();
@@ -18,13 +18,20 @@
 package pixelitor.tools.brushes;
 
 import pixelitor.Composition;
+import pixelitor.ThreadPool;
+import pixelitor.gui.View;
 import pixelitor.tools.BrushType;
 import pixelitor.tools.Symmetry;
 import pixelitor.tools.Tool;
 import pixelitor.tools.util.PPoint;
+import pixelitor.tools.util.PRectangle;
 import pixelitor.utils.debug.DebugNode;
 
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Delegates the work to other brushes according to
@@ -40,6 +47,29 @@ public class SymmetryBrush implements Brush {
     private Symmetry symmetry;
     private final AffectedArea affectedArea;
 
+    private Composition comp;
+    private Graphics2D targetG;
+
+    // The brushes drawing in parallel need their own Graphics2D
+    // copies, because a Graphics2D can't be shared between threads.
+    // The copies are clipped to disjoint areas, so that the threads
+    // never write the same pixels of the target image.
+    // They are created only when they are first needed in a stroke.
+    private final Graphics2D[] targetCopies = new Graphics2D[MAX_BRUSHES];
+    private boolean hasTargetCopies;
+    private Shape targetClip;
+
+    // reused between the mouse events of a parallel drawing
+    private final PPoint[] parallelPoints = new PPoint[MAX_BRUSHES];
+    private final Rectangle[] parallelAreas = new Rectangle[MAX_BRUSHES];
+    private final Runnable[] parallelTasks = new Runnable[MAX_BRUSHES];
+    private final Future<?>[] parallelFutures = new Future<?>[MAX_BRUSHES];
+
+    // true on the threads of a parallel drawing, where the
+    // brushes don't repaint, because it's done here at the end
+    private static final ThreadLocal<Boolean> drawingInParallel =
+            ThreadLocal.withInitial(() -> false);
+
     public SymmetryBrush(Tool tool, BrushType brushType,
                          Symmetry symmetry, double radius) {
         this.tool = tool;
@@ -48,6 +78,10 @@ public class SymmetryBrush implements Brush {
         affectedArea = new AffectedArea();
         numBrushes = symmetry.getNumBrushes();
         assert numBrushes <= MAX_BRUSHES;
+        for (int i = 0; i < MAX_BRUSHES; i++) {
+            int brushNo = i;
+            parallelTasks[i] = () -> continueWithoutRepaint(brushNo);
+        }
         brushTypeChanged(brushType, radius);
     }
 
@@ -57,6 +91,9 @@ public class SymmetryBrush implements Brush {
 
     @Override
     public void setTarget(Composition comp, Graphics2D g) {
+        this.comp = comp;
+        targetG = g;
+        disposeTargetCopies();
         for (int i = 0; i < numBrushes; i++) {
             brushes[i].setTarget(comp, g);
         }
@@ -79,6 +116,11 @@ public class SymmetryBrush implements Brush {
         return brushes[0].getEffectiveRadius();
     }
 
+    @Override
+    public double getMaxDrawingDistance() {
+        return brushes[0].getMaxDrawingDistance();
+    }
+
     @Override
     public PPoint getPrevious() {
         return brushes[0].getPrevious();
@@ -109,9 +151,135 @@ public class SymmetryBrush implements Brush {
 
     @Override
     public void continueTo(PPoint p) {
+        if (numBrushes > 1 && brushType.canDrawInParallel()
+                && continueInParallel(p)) {
+            return;
+        }
         symmetry.continueTo(this, p);
     }
 
+    /**
+     * Continues the strokes of all brushes in parallel, if they
+     * draw into separate areas of the image, and repaints the
+     * union of these areas at once.
+     * Returns false if the strokes can't be drawn in parallel.
+     */
+    private boolean continueInParallel(PPoint p) {
+        for (int i = 0; i < numBrushes; i++) {
+            PPoint previous = brushes[i].getPrevious();
+            if (previous == null) {
+                return false;
+            }
+            parallelPoints[i] = i == 0 ? p : symmetry.transform(p, i);
+            parallelAreas[i] = calcDrawingArea(previous, parallelPoints[i],
+                    brushes[i].getMaxDrawingDistance());
+        }
+        for (int i = 0; i < numBrushes; i++) {
+            for (int j = i + 1; j < numBrushes; j++) {
+                if (parallelAreas[i].intersects(parallelAreas[j])) {
+                    // for example close to the mirror axis
+                    return false;
+                }
+            }
+        }
+
+        createTargetCopies();
+        for (int i = 0; i < numBrushes; i++) {
+            targetCopies[i].setClip(targetClip);
+            targetCopies[i].clip(parallelAreas[i]);
+        }
+
+        for (int i = 1; i < numBrushes; i++) {
+            parallelFutures[i] = ThreadPool.submit(parallelTasks[i]);
+        }
+        try {
+            parallelTasks[0].run();
+            for (int i = 1; i < numBrushes; i++) {
+                parallelFutures[i].get();
+                parallelFutures[i] = null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            // the copies are also used when drawing sequentially
+            for (int i = 0; i < numBrushes; i++) {
+                targetCopies[i].setClip(targetClip);
+            }
+        }
+
+        Rectangle repaintArea = parallelAreas[0];
+        for (int i = 0; i < numBrushes; i++) {
+            affectedArea.updateWith(parallelPoints[i]);
+            repaintArea = repaintArea.union(parallelAreas[i]);
+            parallelPoints[i] = null;
+        }
+        View view = comp.getView();
+        if (view != null) {
+            comp.repaintRegion(PRectangle.fromIm(repaintArea, view));
+        }
+        return true;
+    }
+
+    private void continueWithoutRepaint(int brushNo) {
+        drawingInParallel.set(true);
+        try {
+            brushes[brushNo].continueTo(parallelPoints[brushNo]);
+        } finally {
+            drawingInParallel.set(false);
+        }
+    }
+
+    /**
+     * Returns true if the current thread draws as part of a
+     * parallel symmetry brush stroke, and therefore it doesn't
+     * have to repaint the composition.
+     */
+    public static boolean isDrawingInParallel() {
+        return drawingInParallel.get();
+    }
+
+    /**
+     * Returns the image-space pixels that a brush can modify when its stroke
+     * continues from the start to the end point. The dabs are placed
+     * only between the two points, so the spacing doesn't enlarge it.
+     */
+    private static Rectangle calcDrawingArea(PPoint start, PPoint end, double margin) {
+        int minX = (int) Math.floor(Math.min(start.getImX(), end.getImX()) - margin);
+        int minY = (int) Math.floor(Math.min(start.getImY(), end.getImY()) - margin);
+        int maxX = (int) Math.ceil(Math.max(start.getImX(), end.getImX()) + margin);
+        int maxY = (int) Math.ceil(Math.max(start.getImY(), end.getImY()) + margin);
+        return new Rectangle(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    private void createTargetCopies() {
+        if (hasTargetCopies) {
+            return;
+        }
+        // the clip of the original, such as the selection,
+        // is intersected with the area of each brush
+        targetClip = targetG.getClip();
+        for (int i = 0; i < numBrushes; i++) {
+            if (targetCopies[i] == null) {
+                targetCopies[i] = (Graphics2D) targetG.create();
+            }
+            brushes[i].setTarget(comp, targetCopies[i]);
+        }
+        hasTargetCopies = true;
+    }
+
+    private void disposeTargetCopies() {
+        for (int i = 0; i < MAX_BRUSHES; i++) {
+            if (targetCopies[i] != null) {
+                targetCopies[i].dispose();
+                targetCopies[i] = null;
+            }
+        }
+        hasTargetCopies = false;
+    }
+
     @Override
     public void lineConnectTo(PPoint p) {
         symmetry.lineConnectTo(this, p);
@@ -130,6 +298,8 @@ public class SymmetryBrush implements Brush {
             }
             brushes[i] = brushType.createBrush(tool, radius);
         }
+        // the new brushes get the copies when they are needed
+        hasTargetCopies = false;
         assert allBrushesAreDifferentInstances();
     }
 
@@ -160,6 +330,7 @@ public class SymmetryBrush implements Brush {
             }
         }
         numBrushes = newNumBrushes;
+        hasTargetCopies = false;
         assert allBrushesAreDifferentInstances();
     }
 
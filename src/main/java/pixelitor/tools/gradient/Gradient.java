@@ -23,6 +23,7 @@ import pixelitor.layers.BlendingMode;
 import pixelitor.layers.Drawable;
 import pixelitor.layers.LayerMask;
 import pixelitor.layers.TmpDrawingLayer;
+import pixelitor.tools.gradient.paints.ParallelPaintRenderer;
 import pixelitor.tools.util.ImDrag;
 
 import java.awt.Color;
@@ -31,11 +32,13 @@ import java.awt.Graphics2D;
 import java.awt.MultipleGradientPaint.CycleMethod;
 import java.awt.Paint;
 import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
 
 import static java.awt.RenderingHints.KEY_ANTIALIASING;
 import static java.awt.RenderingHints.VALUE_ANTIALIAS_ON;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
 import static pixelitor.colors.FgBgColors.getBGColor;
 import static pixelitor.colors.FgBgColors.getFGColor;
 
@@ -103,19 +106,49 @@ public class Gradient {
 
         g.setRenderingHint(KEY_ANTIALIASING, VALUE_ANTIALIAS_ON);
         Paint paint = type.createPaint(imDrag, colors, cycleMethod);
-        g.setPaint(paint);
+        boolean gray = dr instanceof LayerMask;
         if (smallImage) {
             Rectangle bounds = comp.getSelection().getShapeBounds(0);
-            g.fillRect(0, 0, bounds.width, bounds.height);
+            fill(g, paint, bounds.width, bounds.height, gray);
         } else {
-            g.fillRect(0, 0, canvasWidth, canvasHeight);
+            fill(g, paint, canvasWidth, canvasHeight, gray);
         }
 
         g.dispose();
         dr.mergeTmpDrawingLayerDown();
+        dr.pixelsChanged();
         dr.updateIconImage();
     }
 
+    /**
+     * Creates a low-resolution preview of this gradient for a canvas
+     * of the given size. It must be drawn scaled up by 1/scale.
+     */
+    public BufferedImage createPreview(int canvasWidth, int canvasHeight, double scale) {
+        int width = (int) Math.ceil(canvasWidth * scale);
+        int height = (int) Math.ceil(canvasHeight * scale);
+        ImDrag scaledDrag = imDrag.transform(AffineTransform.getScaleInstance(scale, scale));
+        Paint paint = type.createPaint(scaledDrag, colors, cycleMethod);
+
+        BufferedImage preview = new BufferedImage(width, height, TYPE_INT_ARGB);
+        Graphics2D g = preview.createGraphics();
+        fill(g, paint, width, height, false);
+        g.dispose();
+        return preview;
+    }
+
+    private void fill(Graphics2D g, Paint paint, int width, int height, boolean gray) {
+        if (type.hasCustomPaint() && g.getTransform().isIdentity()) {
+            // Java2D would call the paint context on this thread only
+            BufferedImage rendered = ParallelPaintRenderer.render(paint, width, height, gray);
+            g.drawImage(rendered, 0, 0, null);
+            rendered.flush();
+        } else {
+            g.setPaint(paint);
+            g.fillRect(0, 0, width, height);
+        }
+    }
+
     /**
      * Returns whether the gradient pixels fully cover the originals.
      * If true, then it should not be necessary to save the images for undo.
@@ -17,6 +17,7 @@
 
 package pixelitor.tools.gradient;
 
+import pixelitor.Canvas;
 import pixelitor.Composition;
 import pixelitor.OpenImages;
 import pixelitor.gui.BlendingModePanel;
@@ -24,6 +25,7 @@ import pixelitor.gui.View;
 import pixelitor.history.History;
 import pixelitor.layers.Drawable;
 import pixelitor.layers.Layer;
+import pixelitor.layers.LayerMask;
 import pixelitor.menus.DrawableAction;
 import pixelitor.tools.ClipStrategy;
 import pixelitor.tools.DragTool;
@@ -39,15 +41,20 @@ import pixelitor.utils.Cursors;
 import pixelitor.utils.debug.DebugNode;
 
 import javax.swing.*;
+import java.awt.AlphaComposite;
 import java.awt.Graphics2D;
 import java.awt.MultipleGradientPaint.CycleMethod;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.MouseEvent;
 import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
 
 import static java.awt.MultipleGradientPaint.CycleMethod.NO_CYCLE;
 import static java.awt.MultipleGradientPaint.CycleMethod.REFLECT;
 import static java.awt.MultipleGradientPaint.CycleMethod.REPEAT;
+import static java.awt.RenderingHints.KEY_INTERPOLATION;
+import static java.awt.RenderingHints.VALUE_INTERPOLATION_BILINEAR;
 import static pixelitor.colors.FgBgColors.setBGColor;
 import static pixelitor.colors.FgBgColors.setFGColor;
 import static pixelitor.tools.util.DraggablePoint.activePoint;
@@ -75,6 +82,12 @@ public class GradientTool extends DragTool {
     private Gradient lastGradient;
     private boolean ignoreRegenerate = false;
 
+    // the maximum number of pixels in the low-resolution
+    // preview that is shown while a handle is dragged
+    private static final int DRAG_PREVIEW_PIXELS = 256 * 1024;
+    private BufferedImage dragPreview;
+    private double dragPreviewScale;
+
     public GradientTool() {
         super("Gradient", 'G', "gradient_tool_icon.png",
                 "<b>click</b> and <b>drag</b> to draw a gradient, " +
@@ -198,6 +211,7 @@ public class GradientTool extends DragTool {
             double x = e.getCoX();
             double y = e.getCoY();
             activePoint.mouseDragged(x, y, e.isShiftDown());
+            updateDragPreview(e.getView());
         } else {
             // if we are dragging a new gradient from scratch,
             // we don't want to show the old handles
@@ -209,6 +223,7 @@ public class GradientTool extends DragTool {
 
     @Override
     public void dragFinished(PMouseEvent e) {
+        dragPreview = null;
         if (userDrag.isClick()) {
             if (activePoint == null) {
                 // clicked outside the handles
@@ -296,6 +311,7 @@ public class GradientTool extends DragTool {
     public void resetInitialState() {
         handles = null;
         activePoint = null;
+        dragPreview = null;
         OpenImages.repaintActive();
     }
 
@@ -337,6 +353,7 @@ public class GradientTool extends DragTool {
         handles = null;
         activePoint = null;
         lastGradient = null;
+        dragPreview = null;
         comp.repaint();
     }
 
@@ -378,12 +395,16 @@ public class GradientTool extends DragTool {
         return (GradientType) typeCB.getSelectedItem();
     }
 
-    private void drawGradient(Drawable dr, ImDrag imDrag, boolean addToHistory, String editName) {
-        Gradient gradient = new Gradient(imDrag,
+    private Gradient createGradient(ImDrag imDrag) {
+        return new Gradient(imDrag,
                 getType(), getCycleType(), getGradientColorType(),
                 revertCB.isSelected(),
                 blendingModePanel.getBlendingMode(),
                 blendingModePanel.getOpacity());
+    }
+
+    private void drawGradient(Drawable dr, ImDrag imDrag, boolean addToHistory, String editName) {
+        Gradient gradient = createGradient(imDrag);
 
         if (addToHistory) {
             boolean isFirst = lastGradient == null;
@@ -399,12 +420,60 @@ public class GradientTool extends DragTool {
         lastGradient = gradient;
     }
 
+    /**
+     * Renders a low-resolution preview of the gradient while a handle
+     * is dragged, because the real gradient is drawn only on release.
+     */
+    private void updateDragPreview(View view) {
+        dragPreview = null;
+
+        var comp = view.getComp();
+        Drawable dr = comp.getActiveDrawable();
+        if (dr == null || dr instanceof LayerMask) {
+            // the effect of a mask gradient can't be previewed by painting over
+            return;
+        }
+        ImDrag imDrag = handles.toImDrag(view);
+        if (imDrag.isClick()) {
+            return;
+        }
+
+        Canvas canvas = comp.getCanvas();
+        int width = canvas.getImWidth();
+        int height = canvas.getImHeight();
+        dragPreviewScale = Math.min(1.0,
+                Math.sqrt(DRAG_PREVIEW_PIXELS / ((double) width * height)));
+        dragPreview = createGradient(imDrag).createPreview(
+                width, height, dragPreviewScale);
+    }
+
+    private void paintDragPreview(Graphics2D g2, Composition comp,
+                                  AffineTransform imageTransform) {
+        Graphics2D g = (Graphics2D) g2.create();
+        g.setTransform(imageTransform);
+        Canvas canvas = comp.getCanvas();
+        g.clip(new Rectangle(0, 0, canvas.getImWidth(), canvas.getImHeight()));
+        if (comp.hasSelection()) {
+            g.clip(comp.getSelection().getShape());
+        }
+        // the blending mode is ignored in the preview
+        g.setComposite(AlphaComposite.SrcOver.derive(blendingModePanel.getOpacity()));
+        g.setRenderingHint(KEY_INTERPOLATION, VALUE_INTERPOLATION_BILINEAR);
+        g.scale(1.0 / dragPreviewScale, 1.0 / dragPreviewScale);
+        g.drawImage(dragPreview, 0, 0, null);
+        g.dispose();
+    }
+
     @Override
     public void paintOverImage(Graphics2D g2, Composition comp,
                                AffineTransform imageTransform) {
         // the superclass draws the drag display
         super.paintOverImage(g2, comp, imageTransform);
 
+        if (dragPreview != null) {
+            paintDragPreview(g2, comp, imageTransform);
+        }
+
         if (handles != null) {
             handles.paint(g2);
         } else {
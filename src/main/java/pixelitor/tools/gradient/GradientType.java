@@ -53,22 +53,22 @@ public enum GradientType {
             return new RadialGradientPaint(center, radius, center, FRACTIONS,
                     colors, cycle, SRGB, gradientTransform);
         }
-    }, ANGLE("Angle") {
+    }, ANGLE("Angle", true) {
         @Override
         public Paint createPaint(ImDrag imDrag, Color[] colors, CycleMethod cycle) {
             return new AngleGradientPaint(imDrag, colors[0], colors[1], cycle);
         }
-    }, SPIRAL_CW("CW Spiral") {
+    }, SPIRAL_CW("CW Spiral", true) {
         @Override
         public Paint createPaint(ImDrag imDrag, Color[] colors, CycleMethod cycle) {
             return new SpiralGradientPaint(true, imDrag, colors[0], colors[1], cycle);
         }
-    }, SPIRAL_CCW("CCW Spiral") {
+    }, SPIRAL_CCW("CCW Spiral", true) {
         @Override
         public Paint createPaint(ImDrag imDrag, Color[] colors, CycleMethod cycle) {
             return new SpiralGradientPaint(false, imDrag, colors[0], colors[1], cycle);
         }
-    }, DIAMOND("Diamond") {
+    }, DIAMOND("Diamond", true) {
         @Override
         public Paint createPaint(ImDrag imDrag, Color[] colors, CycleMethod cycle) {
             return new DiamondGradientPaint(imDrag, colors[0], colors[1], cycle);
@@ -80,12 +80,25 @@ public enum GradientType {
 
     private final String guiName;
 
+    // true for the paints implemented in Pixelitor, which are slow
+    // on a single thread, but can be rendered in parallel
+    private final boolean customPaint;
+
     GradientType(String guiName) {
+        this(guiName, false);
+    }
+
+    GradientType(String guiName, boolean customPaint) {
         this.guiName = guiName;
+        this.customPaint = customPaint;
     }
 
     public abstract Paint createPaint(ImDrag imDrag, Color[] colors, CycleMethod cycle);
 
+    public boolean hasCustomPaint() {
+        return customPaint;
+    }
+
     @Override
     public String toString() {
         return guiName;
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.tools.gradient.paints;
+
+import pixelitor.ThreadPool;
+
+import java.awt.Paint;
+import java.awt.PaintContext;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+
+/**
+ * Renders the custom gradient paints in parallel tiles.
+ * Java2D calls a PaintContext only from the painting thread,
+ * but the contexts of the custom paints don't have mutable
+ * state, so their tiles can be calculated on all cores.
+ */
+public class ParallelPaintRenderer {
+    private static final int TILE_SIZE = 128;
+
+    private ParallelPaintRenderer() {
+        // only static utility methods
+    }
+
+    /**
+     * Renders the given paint into a new image, where the (0, 0) pixel
+     * corresponds to the (0, 0) device coordinates of the paint.
+     * The result is grayscale if the gray variant of the paint is requested.
+     */
+    public static BufferedImage render(Paint paint, int width, int height, boolean gray) {
+        BufferedImage dest = new BufferedImage(width, height,
+                gray ? TYPE_BYTE_GRAY : TYPE_INT_ARGB);
+        ColorModel cm = dest.getColorModel();
+        Rectangle bounds = new Rectangle(0, 0, width, height);
+        PaintContext context = paint.createContext(cm, bounds, bounds, null, null);
+        WritableRaster destRaster = dest.getRaster();
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int y = 0; y < height; y += TILE_SIZE) {
+            int tileHeight = Math.min(TILE_SIZE, height - y);
+            for (int x = 0; x < width; x += TILE_SIZE) {
+                int tileWidth = Math.min(TILE_SIZE, width - x);
+                int tileX = x;
+                int tileY = y;
+                futures.add(ThreadPool.submit(() -> {
+                    // the tiles don't overlap, so they can
+                    // be written into the same raster concurrently
+                    Raster tile = context.getRaster(tileX, tileY, tileWidth, tileHeight);
+                    destRaster.setRect(tileX, tileY, tile);
+                }));
+            }
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            context.dispose();
+        }
+        return dest;
+    }
+}
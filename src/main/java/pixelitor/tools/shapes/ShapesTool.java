@@ -329,7 +329,12 @@ public class ShapesTool extends DragTool {
             styledShape.paint(g);
         } else if (state == TRANSFORM) {
             assert transformBox != null;
-            styledShape.paint(g);
+            if (transformBox.isDragging()) {
+                // a quick preview, until the mouse is released
+                styledShape.paintPreview(g, comp.getView().getScaling());
+            } else {
+                styledShape.paint(g);
+            }
         }
     }
 
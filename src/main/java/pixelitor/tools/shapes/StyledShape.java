@@ -44,11 +44,18 @@ import java.awt.Shape;
 import java.awt.Stroke;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Area;
+import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.List;
 
 import static java.awt.RenderingHints.KEY_ANTIALIASING;
+import static java.awt.RenderingHints.KEY_INTERPOLATION;
 import static java.awt.RenderingHints.VALUE_ANTIALIAS_ON;
+import static java.awt.RenderingHints.VALUE_INTERPOLATION_BILINEAR;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB_PRE;
 import static java.lang.String.format;
 import static pixelitor.colors.FgBgColors.getBGColor;
 import static pixelitor.colors.FgBgColors.getFGColor;
@@ -92,6 +99,31 @@ public class StyledShape implements Cloneable {
     private Color fgColor;
     private Color bgColor;
 
+    // A downscaled image of this shape, used as a preview while the
+    // transform box is dragged. It is rendered with the image-space
+    // transform proxyTransform, and placed at proxyBounds.
+    private BufferedImage proxy;
+    private AffineTransform proxyTransform;
+    private Rectangle2D proxyBounds;
+    private double proxyScale;
+
+    // the transform received from the transform box
+    private AffineTransform lastTransform;
+
+    // proxies and cached renderings with more pixels are not created
+    private static final long MAX_PROXY_PIXELS = 4096L * 4096L;
+
+    // The last full-quality rendering, reused by the repaints
+    // until the shape, its style or the painting colors change
+    private BufferedImage rendered;
+    private Rectangle renderedBounds;
+    private List<Object> renderedState;
+
+    // the shape that the effects are applied to,
+    // and the state that it was calculated from
+    private Shape effectsShape;
+    private List<Object> effectsShapeState;
+
     public StyledShape(ShapeSettings settings) {
         setType(settings.getSelectedType());
         setFillPaintType(settings.getSelectedFillPaint());
@@ -110,6 +142,73 @@ public class StyledShape implements Cloneable {
      * in image space.
      */
     public void paint(Graphics2D g) {
+        // the proxy is used only while the transform box is dragged
+        releaseProxy();
+
+        if (!paintFromCache(g)) {
+            paintShape(g);
+        }
+    }
+
+    /**
+     * Paints the cached rendering of this object, after rendering it
+     * again if something changed since the last call. Returns false
+     * if the cache can't be used with the given Graphics2D.
+     */
+    private boolean paintFromCache(Graphics2D g) {
+        if (transformedImDrag == null || transformedImDrag.isClick() || shape == null) {
+            return false;
+        }
+
+        // the cached pixels can be reused only if they are not resampled
+        AffineTransform gTransform = g.getTransform();
+        if ((gTransform.getType() & ~AffineTransform.TYPE_TRANSLATION) != 0
+                || gTransform.getTranslateX() != (int) gTransform.getTranslateX()
+                || gTransform.getTranslateY() != (int) gTransform.getTranslateY()) {
+            return false;
+        }
+
+        Rectangle bounds = calcPaintedBounds().getBounds();
+        Rectangle clipBounds = g.getClipBounds();
+        if (clipBounds != null) {
+            // don't render the parts outside the canvas or the selection
+            bounds = bounds.intersection(clipBounds);
+        }
+        if (bounds.isEmpty()) {
+            return true; // nothing is visible
+        }
+        if ((long) bounds.width * bounds.height > MAX_PROXY_PIXELS) {
+            return false;
+        }
+
+        // the paint types use the current global colors
+        List<Object> state = Arrays.asList(shape, shapeType, transformedImDrag,
+                fillPaintType, strokePaintType, stroke, effects,
+                getFGColor(), getBGColor(), bounds);
+        if (rendered == null || !state.equals(renderedState)) {
+            releaseRendered();
+            rendered = new BufferedImage(bounds.width, bounds.height, TYPE_INT_ARGB_PRE);
+            Graphics2D rg = rendered.createGraphics();
+            rg.translate(-bounds.x, -bounds.y);
+            paintShape(rg);
+            rg.dispose();
+
+            renderedBounds = bounds;
+            renderedState = state;
+        }
+        g.drawImage(rendered, renderedBounds.x, renderedBounds.y, null);
+        return true;
+    }
+
+    private void releaseRendered() {
+        if (rendered != null) {
+            rendered.flush();
+            rendered = null;
+            renderedState = null;
+        }
+    }
+
+    private void paintShape(Graphics2D g) {
         if (transformedImDrag == null) {
             // this object is created when the mouse is pressed, but
             // it can be painted only after the first drag events arrive
@@ -151,40 +250,147 @@ public class StyledShape implements Cloneable {
         }
 
         if (effects != null) {
-            if (hasStroke()) {
-                if (shapeType.isClosed()) {
-                    // add the outline area of the stroke to the shape area
-                    // to get the shape for the effects, but these Area operations
-                    // could be too slow for the WobbleStroke
-                    if (stroke instanceof WobbleStroke) {
-                        // give up, just draw something
-                        effects.drawOn(g, shape);
-                    } else {
-                        // do the correct thing
-                        Shape strokeOutline = stroke.createStrokedShape(shape);
-                        Area strokeOutlineArea = new Area(strokeOutline);
-                        Area combined = new Area(shape);
-                        combined.add(strokeOutlineArea);
-                        effects.drawOn(g, combined);
-                    }
+            effects.drawOn(g, getEffectsShape());
+        }
+    }
+
+    /**
+     * Returns the shape that the effects are applied to,
+     * which is recalculated only if the shape or the stroke changed.
+     */
+    private Shape getEffectsShape() {
+        List<Object> state = Arrays.asList(shape, shapeType, strokePaintType, stroke);
+        if (effectsShape == null || !state.equals(effectsShapeState)) {
+            effectsShape = calcEffectsShape();
+            effectsShapeState = state;
+        }
+        return effectsShape;
+    }
+
+    private Shape calcEffectsShape() {
+        if (hasStroke()) {
+            if (shapeType.isClosed()) {
+                // add the outline area of the stroke to the shape area
+                // to get the shape for the effects, but these Area operations
+                // could be too slow for the WobbleStroke
+                if (stroke instanceof WobbleStroke) {
+                    // give up, just draw something
+                    return shape;
                 } else {
-                    if (stroke instanceof WobbleStroke) {
-                        // be careful and consistent with the behavior above
-                        effects.drawOn(g, shape);
-                    } else {
-                        // Open shape with stroke: apply the effects on the stroke outline
-                        Shape outline = stroke.createStrokedShape(shape);
-                        effects.drawOn(g, outline);
-                    }
+                    // do the correct thing
+                    Shape strokeOutline = stroke.createStrokedShape(shape);
+                    Area strokeOutlineArea = new Area(strokeOutline);
+                    Area combined = new Area(shape);
+                    combined.add(strokeOutlineArea);
+                    return combined;
                 }
-            } else { // no stroke
-                if (shapeType.isClosed()) {
-                    effects.drawOn(g, shape); // simplest case
+            } else {
+                if (stroke instanceof WobbleStroke) {
+                    // be careful and consistent with the behavior above
+                    return shape;
                 } else {
-                    Shape defaultOutline = STROKE_FOR_OPEN_SHAPES.createStrokedShape(shape);
-                    effects.drawOn(g, defaultOutline);
+                    // Open shape with stroke: apply the effects on the stroke outline
+                    return stroke.createStrokedShape(shape);
                 }
             }
+        } else { // no stroke
+            if (shapeType.isClosed()) {
+                return shape; // simplest case
+            } else {
+                return STROKE_FOR_OPEN_SHAPES.createStrokedShape(shape);
+            }
+        }
+    }
+
+    /**
+     * Paints a quick preview of this object while the transform box is
+     * dragged. The shape is rendered only once with a resolution matched
+     * to the zoom of the view, and this downscaled proxy image
+     * is transformed along with the box. The stroke width and the effects
+     * are scaled along with the shape until the next {@link #paint(Graphics2D)}
+     * call renders the shape at full quality.
+     */
+    public void paintPreview(Graphics2D g, double viewScale) {
+        if (lastTransform == null || !ensureProxy(viewScale)) {
+            paint(g);
+            return;
+        }
+
+        AffineTransform proxyToImage;
+        try {
+            // the transform from the proxy state to the current state
+            proxyToImage = proxyTransform.createInverse();
+        } catch (NoninvertibleTransformException e) {
+            paint(g);
+            return;
+        }
+        proxyToImage.preConcatenate(lastTransform);
+        proxyToImage.translate(proxyBounds.getX(), proxyBounds.getY());
+        proxyToImage.scale(1 / proxyScale, 1 / proxyScale);
+
+        g.setRenderingHint(KEY_INTERPOLATION, VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(proxy, proxyToImage, null);
+    }
+
+    /**
+     * Renders the proxy image if necessary.
+     * Returns false if the proxy can't be used.
+     */
+    private boolean ensureProxy(double viewScale) {
+        // more than the image resolution would not be visible
+        double scale = Math.min(1.0, viewScale);
+        if (proxy != null && proxyScale == scale) {
+            return true;
+        }
+        releaseProxy();
+
+        if (shape == null || transformedImDrag == null || transformedImDrag.isClick()) {
+            return false;
+        }
+        Rectangle2D bounds = calcPaintedBounds();
+        int width = (int) Math.ceil(bounds.getWidth() * scale);
+        int height = (int) Math.ceil(bounds.getHeight() * scale);
+        if (width <= 0 || height <= 0 || (long) width * height > MAX_PROXY_PIXELS) {
+            return false;
+        }
+
+        proxy = new BufferedImage(width, height, TYPE_INT_ARGB);
+        Graphics2D pg = proxy.createGraphics();
+        pg.scale(scale, scale);
+        pg.translate(-bounds.getX(), -bounds.getY());
+        paintShape(pg);
+        pg.dispose();
+
+        proxyTransform = lastTransform;
+        proxyBounds = bounds;
+        proxyScale = scale;
+        return true;
+    }
+
+    /**
+     * Returns the image-space bounds of the pixels
+     * that can be affected by the painting
+     */
+    private Rectangle2D calcPaintedBounds() {
+        Rectangle2D bounds = shape.getBounds2D();
+        if (hasStroke() || !shapeType.isClosed()) {
+            Stroke outlineStroke = hasStroke() ? stroke : STROKE_FOR_OPEN_SHAPES;
+            bounds.add(outlineStroke.createStrokedShape(shape).getBounds2D());
+        }
+        // some more pixels for the antialiasing
+        double margin = 2;
+        if (effects != null) {
+            margin += effects.getMaxEffectThickness();
+        }
+        return new Rectangle2D.Double(
+                bounds.getX() - margin, bounds.getY() - margin,
+                bounds.getWidth() + 2 * margin, bounds.getHeight() + 2 * margin);
+    }
+
+    private void releaseProxy() {
+        if (proxy != null) {
+            proxy.flush();
+            proxy = null;
         }
     }
 
@@ -217,6 +423,7 @@ public class StyledShape implements Cloneable {
     public void transform(AffineTransform at) {
         shape = at.createTransformedShape(unTransformedShape);
         transformedImDrag = origImDrag.transform(at);
+        lastTransform = at;
     }
 
     private void setFillPaintType(TwoPointPaintType fillPaintType) {
@@ -331,7 +538,7 @@ public class StyledShape implements Cloneable {
             shapeBounds.grow(thickness, thickness);
 
             if (!shapeBounds.isEmpty()) {
-                BufferedImage originalImage = dr.getImage();
+                BufferedImage originalImage = dr.getImageForReading();
                 imageEdit = History.createPartialImageEdit(
                         shapeBounds, originalImage, dr, false, "Shape");
             }
@@ -344,6 +551,7 @@ public class StyledShape implements Cloneable {
 
         if (imageEdit != null) {
             paintOnDrawable(dr);
+            dr.pixelsChanged();
             comp.imageChanged();
             dr.updateIconImage();
         } else {
@@ -400,7 +608,12 @@ public class StyledShape implements Cloneable {
         // this is used only for undo, it should be OK to share
         // all the references
         try {
-            return (StyledShape) super.clone();
+            StyledShape copy = (StyledShape) super.clone();
+            // the cached images are not shared
+            copy.proxy = null;
+            copy.rendered = null;
+            copy.renderedState = null;
+            return copy;
         } catch (CloneNotSupportedException e) {
             throw new AssertionError(); // can't happen
         }
@@ -98,6 +98,9 @@ public class TransformBox implements ToolWidget {
     private double wholeBoxDragStartX;
     private double wholeBoxDragStartY;
 
+    // true while a handle or the whole box is dragged with the mouse
+    private boolean dragging = false;
+
     private Memento beforeMovement;
 
     public TransformBox(Rectangle2D origCoRect, View view,
@@ -353,6 +356,7 @@ public class TransformBox implements ToolWidget {
     public void handleHitWhenPressed(DraggablePoint handle, double x, double y) {
         handle.setActive(true);
         saveState();
+        dragging = true;
         handle.mousePressed(x, y);
         view.repaint();
     }
@@ -362,6 +366,7 @@ public class TransformBox implements ToolWidget {
         wholeBoxDragStartX = x;
         wholeBoxDragStartY = y;
         saveState();
+        dragging = true;
     }
 
     /**
@@ -383,6 +388,9 @@ public class TransformBox implements ToolWidget {
      * Returns true if the transform box handles the given mouse released event
      */
     public boolean processMouseReleased(PMouseEvent e) {
+        // reset before the final repaint
+        dragging = false;
+
         if (activePoint != null) {
             double x = e.getCoX();
             double y = e.getCoY();
@@ -453,6 +461,13 @@ public class TransformBox implements ToolWidget {
         return boxShape.contains(x, y);
     }
 
+    /**
+     * Returns true while a mouse drag transforms this box
+     */
+    public boolean isDragging() {
+        return dragging;
+    }
+
     private void addMovementToHistory(Composition comp, String editName) {
         assert editName != null;
         Memento afterMovement = copyState();
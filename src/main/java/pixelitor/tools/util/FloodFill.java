@@ -0,0 +1,416 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.tools.util;
+
+import pixelitor.ThreadPool;
+import pixelitor.utils.ProgressTracker;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.concurrent.Future;
+
+/**
+ * Finds the regions of similar colors in packed int pixel arrays,
+ * and fills them. Used by the paint bucket tool, but the regions
+ * can also be used for other purposes, such as magic wand selections.
+ *
+ * The working memory (a stack of pixel indices and a bitset
+ * marking the region) is reused between the calls, so
+ * an instance of this class should be used only on the EDT.
+ */
+public class FloodFill {
+    // images smaller than this are not processed in parallel
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private int[] stack = new int[256];
+    private int stackSize;
+
+    private long[] bits;
+
+    // the range of the bitset words that have to be cleared before reuse
+    private int dirtyFromWord;
+    private int dirtyToWord;
+
+    private final Region region = new Region();
+
+    /**
+     * Finds the region of similar pixels that are connected to
+     * the given start point, using a span-based scanline algorithm.
+     * The returned region is valid only until the next call.
+     */
+    public Region findContiguous(int[] pixels, int width, int height,
+                                 int startX, int startY,
+                                 int targetRGB, int tolerance) {
+        prepareBits(width, height);
+        var similarity = new Similarity(targetRGB, tolerance);
+
+        int minX = startX;
+        int maxX = startX;
+        int minY = startY;
+        int maxY = startY;
+
+        stackSize = 0;
+        push(startY * width + startX);
+
+        while (stackSize > 0) {
+            int index = stack[--stackSize];
+            if (isSet(index)) {
+                continue;
+            }
+            int y = index / width;
+            int offset = y * width;
+
+            // find the span of similar pixels around the seed
+            int left = index - offset;
+            while (left > 0 && !isSet(offset + left - 1)
+                    && similarity.test(pixels[offset + left - 1])) {
+                left--;
+            }
+            int right = index - offset;
+            while (right < width - 1 && !isSet(offset + right + 1)
+                    && similarity.test(pixels[offset + right + 1])) {
+                right++;
+            }
+            setRange(offset + left, offset + right);
+
+            if (left < minX) {
+                minX = left;
+            }
+            if (right > maxX) {
+                maxX = right;
+            }
+            if (y < minY) {
+                minY = y;
+            } else if (y > maxY) {
+                maxY = y;
+            }
+
+            if (y > 0) {
+                pushSeeds(pixels, offset - width, left, right, similarity);
+            }
+            if (y < height - 1) {
+                pushSeeds(pixels, offset + width, left, right, similarity);
+            }
+        }
+
+        return initRegion(width, height, minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Pushes only one seed for each run of similar, not yet
+     * processed pixels in the given part of the neighboring line.
+     */
+    private void pushSeeds(int[] pixels, int lineOffset, int left, int right,
+                           Similarity similarity) {
+        boolean inRun = false;
+        for (int x = left; x <= right; x++) {
+            int index = lineOffset + x;
+            boolean candidate = !isSet(index) && similarity.test(pixels[index]);
+            if (candidate && !inRun) {
+                push(index);
+                inRun = true;
+            } else if (!candidate) {
+                inRun = false;
+            }
+        }
+    }
+
+    private void push(int index) {
+        if (stackSize == stack.length) {
+            stack = Arrays.copyOf(stack, stackSize * 2);
+        }
+        stack[stackSize++] = index;
+    }
+
+    /**
+     * Finds all the similar pixels in the image, in parallel bands.
+     * The returned region is valid only until the next call.
+     */
+    public Region findGlobal(int[] pixels, int width, int height,
+                             int targetRGB, int tolerance) {
+        prepareBits(width, height);
+        var similarity = new Similarity(targetRGB, tolerance);
+
+        int numPixels = width * height;
+        int numBands = numPixels < PARALLEL_THRESHOLD ? 1
+                : Runtime.getRuntime().availableProcessors() * 2;
+
+        // the bands are aligned to the bitset words,
+        // so that the threads never write the same word
+        int numWords = (numPixels + 63) >>> 6;
+        int wordsPerBand = (numWords + numBands - 1) / numBands;
+        numBands = (numWords + wordsPerBand - 1) / wordsPerBand;
+
+        // minX, minY, maxX, maxY for each band
+        int[][] bandBounds = new int[numBands][];
+        var futures = new Future<?>[numBands];
+        for (int band = 0; band < numBands; band++) {
+            int from = band * wordsPerBand << 6;
+            int to = Math.min(numPixels, (band + 1) * wordsPerBand << 6);
+            int finalBand = band;
+            futures[band] = ThreadPool.submit(() ->
+                    bandBounds[finalBand] = markSimilar(pixels, width, from, to, similarity));
+        }
+        ThreadPool.waitFor(futures, ProgressTracker.NULL_TRACKER);
+
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = -1;
+        int maxY = -1;
+        for (int[] b : bandBounds) {
+            if (b == null) { // nothing found in this band
+                continue;
+            }
+            minX = Math.min(minX, b[0]);
+            minY = Math.min(minY, b[1]);
+            maxX = Math.max(maxX, b[2]);
+            maxY = Math.max(maxY, b[3]);
+        }
+        return initRegion(width, height, minX, minY, maxX, maxY);
+    }
+
+    private int[] markSimilar(int[] pixels, int width, int from, int to,
+                              Similarity similarity) {
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = -1;
+        int maxY = -1;
+
+        int y = from / width;
+        int x = from - y * width;
+        for (int i = from; i < to; i++) {
+            if (similarity.test(pixels[i])) {
+                bits[i >>> 6] |= 1L << i;
+                if (x < minX) {
+                    minX = x;
+                }
+                if (x > maxX) {
+                    maxX = x;
+                }
+                if (y < minY) {
+                    minY = y;
+                }
+                maxY = y;
+            }
+            x++;
+            if (x == width) {
+                x = 0;
+                y++;
+            }
+        }
+        if (maxY == -1) {
+            return null;
+        }
+        return new int[]{minX, minY, maxX, maxY};
+    }
+
+    private void prepareBits(int width, int height) {
+        int numWords = ((width * height) + 63) >>> 6;
+        if (bits == null || bits.length < numWords) {
+            bits = new long[numWords];
+        } else if (dirtyToWord > dirtyFromWord) {
+            // clear only what was used by the previous region
+            Arrays.fill(bits, dirtyFromWord, Math.min(dirtyToWord, bits.length), 0L);
+        }
+        dirtyFromWord = 0;
+        dirtyToWord = 0;
+    }
+
+    private Region initRegion(int width, int height,
+                              int minX, int minY, int maxX, int maxY) {
+        if (maxX < 0) {
+            region.init(width, height, new Rectangle());
+            return region;
+        }
+        dirtyFromWord = (minY * width) >>> 6;
+        dirtyToWord = (((maxY + 1) * width) >>> 6) + 1;
+
+        region.init(width, height,
+                new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1));
+        return region;
+    }
+
+    private boolean isSet(int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private void setRange(int from, int to) {
+        for (int i = from; i <= to; i++) {
+            bits[i >>> 6] |= 1L << i;
+        }
+    }
+
+    /**
+     * The tolerance-based color similarity test, with
+     * the channels of the target color extracted only once
+     */
+    private static class Similarity {
+        private final int target;
+        private final int tolerance;
+        private final int ta;
+        private final int tr;
+        private final int tg;
+        private final int tb;
+
+        Similarity(int target, int tolerance) {
+            this.target = target;
+            this.tolerance = tolerance;
+            ta = (target >>> 24) & 0xFF;
+            tr = (target >>> 16) & 0xFF;
+            tg = (target >>> 8) & 0xFF;
+            tb = target & 0xFF;
+        }
+
+        boolean test(int rgb) {
+            if (rgb == target) {
+                return true;
+            }
+            return Math.abs(((rgb >>> 24) & 0xFF) - ta) <= tolerance
+                    && Math.abs(((rgb >>> 16) & 0xFF) - tr) <= tolerance
+                    && Math.abs(((rgb >>> 8) & 0xFF) - tg) <= tolerance
+                    && Math.abs((rgb & 0xFF) - tb) <= tolerance;
+        }
+    }
+
+    /**
+     * A set of pixels found by a {@link FloodFill}
+     */
+    public class Region {
+        private int width;
+        private int height;
+        private Rectangle bounds;
+
+        private void init(int width, int height, Rectangle bounds) {
+            this.width = width;
+            this.height = height;
+            this.bounds = bounds;
+        }
+
+        public boolean isEmpty() {
+            return bounds.isEmpty();
+        }
+
+        public boolean contains(int x, int y) {
+            if (x < 0 || y < 0 || x >= width || y >= height) {
+                return false;
+            }
+            return isSet(y * width + x);
+        }
+
+        /**
+         * Returns the bounding box of the region
+         */
+        public Rectangle getBounds() {
+            return new Rectangle(bounds);
+        }
+
+        /**
+         * Returns the bounds of the pixels changed by
+         * {@link #fill(int[], int, int, int, int, boolean)}
+         */
+        public Rectangle getFillBounds(boolean antiAliased) {
+            Rectangle fillBounds = getBounds();
+            if (antiAliased) {
+                fillBounds.grow(1, 1);
+                fillBounds = fillBounds.intersection(new Rectangle(0, 0, width, height));
+            }
+            return fillBounds;
+        }
+
+        /**
+         * Sets the pixels of the region to the given color in the given
+         * pixel array, which corresponds to an image area starting at
+         * (originX, originY) with the given width. If anti-aliasing is
+         * requested, the pixels just outside the region are blended with
+         * the color according to the number of their neighbors in the region.
+         */
+        public void fill(int[] dest, int destWidth, int originX, int originY,
+                         int rgb, boolean antiAliased) {
+            Rectangle fillBounds = getFillBounds(antiAliased);
+            if (fillBounds.isEmpty()) {
+                return;
+            }
+            int fromY = fillBounds.y;
+            int toY = fillBounds.y + fillBounds.height;
+            int numPixels = fillBounds.width * fillBounds.height;
+            if (numPixels < PARALLEL_THRESHOLD) {
+                fillRows(dest, destWidth, originX, originY, rgb, antiAliased,
+                        fillBounds, fromY, toY);
+                return;
+            }
+
+            int numBands = Math.min(fillBounds.height,
+                    Runtime.getRuntime().availableProcessors() * 2);
+            int bandHeight = (fillBounds.height + numBands - 1) / numBands;
+            var futures = new Future<?>[(fillBounds.height + bandHeight - 1) / bandHeight];
+            for (int i = 0; i < futures.length; i++) {
+                int bandFromY = fromY + i * bandHeight;
+                int bandToY = Math.min(toY, bandFromY + bandHeight);
+                futures[i] = ThreadPool.submit(() ->
+                        fillRows(dest, destWidth, originX, originY, rgb,
+                                antiAliased, fillBounds, bandFromY, bandToY));
+            }
+            ThreadPool.waitFor(futures, ProgressTracker.NULL_TRACKER);
+        }
+
+        private void fillRows(int[] dest, int destWidth, int originX, int originY,
+                              int rgb, boolean antiAliased,
+                              Rectangle fillBounds, int fromY, int toY) {
+            int fromX = fillBounds.x;
+            int toX = fillBounds.x + fillBounds.width;
+            for (int y = fromY; y < toY; y++) {
+                int destOffset = (y - originY) * destWidth - originX;
+                for (int x = fromX; x < toX; x++) {
+                    if (contains(x, y)) {
+                        dest[destOffset + x] = rgb;
+                    } else if (antiAliased) {
+                        int numNeighbors = countNeighbors(x, y);
+                        if (numNeighbors > 0) {
+                            int index = destOffset + x;
+                            dest[index] = lerp(numNeighbors / 8.0f, dest[index], rgb);
+                        }
+                    }
+                }
+            }
+        }
+
+        private int countNeighbors(int x, int y) {
+            int count = 0;
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    if ((dx != 0 || dy != 0) && contains(x + dx, y + dy)) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+    }
+
+    private static int lerp(float t, int from, int to) {
+        int a = lerpChannel(t, from >>> 24, to >>> 24);
+        int r = lerpChannel(t, (from >>> 16) & 0xFF, (to >>> 16) & 0xFF);
+        int g = lerpChannel(t, (from >>> 8) & 0xFF, (to >>> 8) & 0xFF);
+        int b = lerpChannel(t, from & 0xFF, to & 0xFF);
+        return a << 24 | r << 16 | g << 8 | b;
+    }
+
+    private static int lerpChannel(float t, int from, int to) {
+        return (int) (from + t * (to - from) + 0.5f);
+    }
+}
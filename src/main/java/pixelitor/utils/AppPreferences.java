@@ -87,6 +87,8 @@ public final class AppPreferences {
 
     private static final String THUMB_SIZE_KEY = "thumb_size";
 
+    private static final String SCRATCH_FILES_KEY = "scratch_files";
+
     private static final String LAST_TOOL_KEY = "last_tool";
 
     private static final String GUIDE_COLOR_KEY = "guide_color";
@@ -277,6 +279,14 @@ public final class AppPreferences {
         mainNode.putInt(UNDO_LEVELS_KEY, History.getUndoLevels());
     }
 
+    public static boolean loadScratchFiles() {
+        return mainNode.getBoolean(SCRATCH_FILES_KEY, false);
+    }
+
+    private static void saveScratchFiles() {
+        mainNode.putBoolean(SCRATCH_FILES_KEY, ScratchImage.isEnabled());
+    }
+
     public static int loadThumbSize() {
         return mainNode.getInt(THUMB_SIZE_KEY, LayerButtonLayout.SMALL_THUMB_SIZE);
     }
@@ -335,6 +345,7 @@ public final class AppPreferences {
         saveFgBgColors();
         WorkSpace.saveVisibility();
         saveUndoLevels();
+        saveScratchFiles();
         saveThumbSize();
         TipsOfTheDay.saveNextTipNr();
         saveNewImageSize();
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import pixelitor.ThreadPool;
+import pixelitor.layers.Drawable;
+
+import java.awt.EventQueue;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB_PRE;
+import static java.awt.image.BufferedImage.TYPE_INT_RGB;
+
+/**
+ * The red, green, blue and luminosity histograms of an image.
+ * Only the pixels that are not fully transparent are counted.
+ *
+ * The counts can be updated incrementally: when only a region
+ * of an image changed, {@link #update(BufferedImage, BufferedImage, Rectangle)}
+ * subtracts the old pixels and adds the new pixels of that region,
+ * instead of scanning the whole image again.
+ */
+public class Histogram {
+    public static final int NUM_BINS = 256;
+
+    // below this number of pixels it is not worth to split the work
+    private static final int MIN_PARALLEL_PIXELS = 256 * 256;
+    private static final int NUM_BANDS = Runtime.getRuntime().availableProcessors();
+
+    private final int[] reds = new int[NUM_BINS];
+    private final int[] greens = new int[NUM_BINS];
+    private final int[] blues = new int[NUM_BINS];
+    private final int[] lums = new int[NUM_BINS];
+
+    // the asynchronous calculations run on this thread,
+    // but the large images are still counted in parallel bands
+    private static final ExecutorService calcExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Histogram Calculation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Histogram() {
+    }
+
+    /**
+     * Calculates the histogram of the whole image
+     */
+    public static Histogram of(BufferedImage img) {
+        return of(img, new Rectangle(0, 0, img.getWidth(), img.getHeight()));
+    }
+
+    /**
+     * Calculates the histogram of the given region of the image
+     */
+    public static Histogram of(BufferedImage img, Rectangle region) {
+        Histogram histogram = new Histogram();
+        histogram.add(img, clip(img, region), 1);
+        return histogram;
+    }
+
+    /**
+     * Calculates the histogram of the image that the filters of the
+     * given {@link Drawable} would use as their input (only the selected
+     * part) outside the EDT, and passes it to the given consumer on the EDT.
+     */
+    public static void calcAsync(Drawable dr, Consumer<Histogram> consumer) {
+        BufferedImage img = dr.getImageForFilterDialogs();
+        CompletableFuture.supplyAsync(() -> of(img), calcExecutor)
+            .thenAcceptAsync(consumer, EventQueue::invokeLater)
+            .exceptionally(Messages::showExceptionOnEDT);
+    }
+
+    /**
+     * Returns the single thread where the histograms are calculated
+     * outside the EDT. The tasks submitted to it run in order.
+     */
+    public static Executor getCalcExecutor() {
+        return calcExecutor;
+    }
+
+    /**
+     * Updates the counts after the given region of the image
+     * changed from the pixels of oldImg to the pixels of newImg.
+     * The two images must have the same size.
+     */
+    public void update(BufferedImage oldImg, BufferedImage newImg, Rectangle dirty) {
+        assert oldImg.getWidth() == newImg.getWidth();
+        assert oldImg.getHeight() == newImg.getHeight();
+
+        Rectangle region = clip(newImg, dirty);
+        add(oldImg, region, -1);
+        add(newImg, region, 1);
+    }
+
+    private static Rectangle clip(BufferedImage img, Rectangle region) {
+        return region.intersection(new Rectangle(0, 0, img.getWidth(), img.getHeight()));
+    }
+
+    /**
+     * Adds (sign = 1) or subtracts (sign = -1) the counts
+     * of the given region, splitting large regions into
+     * horizontal bands that are processed in parallel.
+     */
+    private void add(BufferedImage img, Rectangle region, int sign) {
+        if (region.isEmpty()) {
+            return;
+        }
+        long numPixels = (long) region.width * region.height;
+        if (NUM_BANDS == 1 || numPixels < MIN_PARALLEL_PIXELS || region.height < NUM_BANDS) {
+            addRows(img, region.x, region.y, region.width, region.height, sign);
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        Future<Histogram>[] futures = new Future[NUM_BANDS];
+        int bandHeight = region.height / NUM_BANDS;
+        for (int i = 0; i < NUM_BANDS; i++) {
+            int startY = region.y + i * bandHeight;
+            int height = i == NUM_BANDS - 1
+                    ? region.y + region.height - startY
+                    : bandHeight;
+            futures[i] = ThreadPool.submit2(() -> {
+                Histogram band = new Histogram();
+                band.addRows(img, region.x, startY, region.width, height, 1);
+                return band;
+            });
+        }
+
+        try {
+            for (Future<Histogram> future : futures) {
+                Histogram band = future.get();
+                for (int i = 0; i < NUM_BINS; i++) {
+                    reds[i] += sign * band.reds[i];
+                    greens[i] += sign * band.greens[i];
+                    blues[i] += sign * band.blues[i];
+                    lums[i] += sign * band.lums[i];
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void addRows(BufferedImage img, int x, int startY, int width, int height, int sign) {
+        int type = img.getType();
+        boolean packed = type == TYPE_INT_ARGB || type == TYPE_INT_ARGB_PRE || type == TYPE_INT_RGB;
+        boolean hasAlpha = type != TYPE_INT_RGB && img.getColorModel().hasAlpha();
+        Raster raster = img.getRaster();
+        int[] row = new int[width];
+
+        for (int y = startY; y < startY + height; y++) {
+            if (packed) {
+                raster.getDataElements(x, y, width, 1, row);
+            } else {
+                img.getRGB(x, y, width, 1, row, 0, width);
+            }
+            for (int rgb : row) {
+                if (hasAlpha && (rgb >>> 24) == 0) {
+                    continue;
+                }
+                int r = (rgb >>> 16) & 0xFF;
+                int g = (rgb >>> 8) & 0xFF;
+                int b = rgb & 0xFF;
+
+                reds[r] += sign;
+                greens[g] += sign;
+                blues[b] += sign;
+                lums[(77 * r + 150 * g + 29 * b) >> 8] += sign;
+            }
+        }
+    }
+
+    public Histogram copy() {
+        Histogram copy = new Histogram();
+        System.arraycopy(reds, 0, copy.reds, 0, NUM_BINS);
+        System.arraycopy(greens, 0, copy.greens, 0, NUM_BINS);
+        System.arraycopy(blues, 0, copy.blues, 0, NUM_BINS);
+        System.arraycopy(lums, 0, copy.lums, 0, NUM_BINS);
+        return copy;
+    }
+
+    public int[] getReds() {
+        return reds.clone();
+    }
+
+    public int[] getGreens() {
+        return greens.clone();
+    }
+
+    public int[] getBlues() {
+        return blues.clone();
+    }
+
+    public int[] getLuminosities() {
+        return lums.clone();
+    }
+
+    /**
+     * Returns the number of counted (not fully transparent) pixels
+     */
+    public int getNumPixels() {
+        int sum = 0;
+        for (int count : reds) {
+            sum += count;
+        }
+        return sum;
+    }
+}
@@ -40,6 +40,7 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.GraphicsConfiguration;
 import java.awt.GraphicsEnvironment;
+import java.awt.HeadlessException;
 import java.awt.Image;
 import java.awt.Point;
 import java.awt.Rectangle;
@@ -55,6 +56,7 @@ import java.awt.image.ComponentColorModel;
 import java.awt.image.DataBuffer;
 import java.awt.image.DataBufferByte;
 import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
 import java.awt.image.IndexColorModel;
 import java.awt.image.PixelGrabber;
 import java.awt.image.Raster;
@@ -62,6 +64,7 @@ import java.awt.image.VolatileImage;
 import java.awt.image.WritableRaster;
 import java.io.IOException;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.Random;
 import java.util.concurrent.CompletableFuture;
 
@@ -77,6 +80,7 @@ import static java.awt.RenderingHints.VALUE_INTERPOLATION_BICUBIC;
 import static java.awt.RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR;
 import static java.awt.Transparency.TRANSLUCENT;
 import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
+import static java.awt.image.BufferedImage.TYPE_CUSTOM;
 import static java.awt.image.BufferedImage.TYPE_BYTE_INDEXED;
 import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
 import static java.awt.image.BufferedImage.TYPE_INT_ARGB_PRE;
@@ -93,11 +97,14 @@ public class ImageUtils {
     public static final double DEG_315_IN_RADIANS = 0.7853981634;
     private static final Color CHECKERBOARD_GRAY = new Color(200, 200, 200);
 
-    private static final GraphicsConfiguration graphicsConfiguration = GraphicsEnvironment
-            .getLocalGraphicsEnvironment()
-            .getDefaultScreenDevice()
-            .getDefaultConfiguration();
-    private static final ColorModel defaultColorModel = graphicsConfiguration.getColorModel();
+    // null in headless mode (used for example by the stress tests)
+    private static final GraphicsConfiguration graphicsConfiguration =
+            GraphicsEnvironment.isHeadless() ? null : GraphicsEnvironment
+                    .getLocalGraphicsEnvironment()
+                    .getDefaultScreenDevice()
+                    .getDefaultConfiguration();
+    private static final ColorModel defaultColorModel = graphicsConfiguration == null
+            ? ColorModel.getRGBdefault() : graphicsConfiguration.getColorModel();
 
     private ImageUtils() {
     }
@@ -115,8 +122,7 @@ public class ImageUtils {
             return input;
         }
 
-        BufferedImage output = graphicsConfiguration
-                .createCompatibleImage(input.getWidth(), input.getHeight(), TRANSLUCENT);
+        BufferedImage output = createSysCompatibleImage(input.getWidth(), input.getHeight());
         Graphics2D g = output.createGraphics();
         g.drawImage(input, 0, 0, null);
         g.dispose();
@@ -131,6 +137,9 @@ public class ImageUtils {
     public static BufferedImage createSysCompatibleImage(int width, int height) {
         assert width > 0 && height > 0;
 
+        if (graphicsConfiguration == null) {
+            return new BufferedImage(width, height, TYPE_INT_ARGB);
+        }
         return graphicsConfiguration.createCompatibleImage(width, height, TRANSLUCENT);
     }
 
@@ -141,6 +150,9 @@ public class ImageUtils {
     public static VolatileImage createSysCompatibleVolatileImage(int width, int height) {
         assert width > 0 && height > 0;
 
+        if (graphicsConfiguration == null) {
+            throw new HeadlessException();
+        }
         return graphicsConfiguration.createCompatibleVolatileImage(width, height, TRANSLUCENT);
     }
 
@@ -214,7 +226,7 @@ public class ImageUtils {
 
 //        int type = (img.getTransparency() == Transparency.OPAQUE) ?
 //                BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
-        int type = img.getType();
+        int type = getStandardType(img);
 
         BufferedImage ret = img;
         BufferedImage scratchImage = null;
@@ -306,7 +318,7 @@ public class ImageUtils {
             progress = progress * step;
             int newSrcWidth = (int) (srcWidth * progress);
             int newSrcHeight = (int) (srcHeight * progress);
-            BufferedImage tmp = new BufferedImage(newSrcWidth, newSrcHeight, src.getType());
+            BufferedImage tmp = new BufferedImage(newSrcWidth, newSrcHeight, getStandardType(src));
             Graphics2D g = tmp.createGraphics();
             if (hint != null) {
                 g.setRenderingHint(KEY_INTERPOLATION, hint);
@@ -322,7 +334,7 @@ public class ImageUtils {
         }
 
         // do the last step: resize exactly to the target values
-        BufferedImage retVal = new BufferedImage(targetWidth, targetHeight, src.getType());
+        BufferedImage retVal = new BufferedImage(targetWidth, targetHeight, getStandardType(src));
         Graphics2D g = retVal.createGraphics();
         if (hint != null) {
             g.setRenderingHint(KEY_INTERPOLATION, hint);
@@ -354,7 +366,7 @@ public class ImageUtils {
                                               Object hint) {
         assert img != null;
 
-        BufferedImage ret = new BufferedImage(targetWidth, targetHeight, img.getType());
+        BufferedImage ret = new BufferedImage(targetWidth, targetHeight, getStandardType(img));
         Graphics2D g2 = ret.createGraphics();
         g2.setRenderingHint(KEY_INTERPOLATION, hint);
         g2.drawImage(img, 0, 0, targetWidth, targetHeight, null);
@@ -407,6 +419,27 @@ public class ImageUtils {
         return r;
     }
 
+    /**
+     * Returns the type of the given image, but for the packed int images
+     * with a custom raster (for example the images in scratch files),
+     * it returns the type of the equivalent standard image, so that
+     * the result can be used for creating new images.
+     */
+    public static int getStandardType(BufferedImage img) {
+        int type = img.getType();
+        if (type != TYPE_CUSTOM) {
+            return type;
+        }
+        ColorModel cm = img.getColorModel();
+        if (cm instanceof DirectColorModel && cm.getTransferType() == TYPE_INT) {
+            if (!cm.hasAlpha()) {
+                return TYPE_INT_RGB;
+            }
+            return cm.isAlphaPremultiplied() ? TYPE_INT_ARGB_PRE : TYPE_INT_ARGB;
+        }
+        return TYPE_INT_ARGB;
+    }
+
     public static boolean hasPackedIntArray(BufferedImage image) {
         assert image != null;
 
@@ -415,9 +448,35 @@ public class ImageUtils {
         return (type == TYPE_INT_ARGB_PRE || type == TYPE_INT_RGB || type == TYPE_INT_ARGB);
     }
 
+    /**
+     * Returns true if the raster owns its whole data buffer, starting
+     * at (0, 0), so that the backing array can be used directly.
+     * This is not the case for the zero-copy views created
+     * with {@link Raster#createWritableChild}.
+     */
+    public static boolean isDenseRaster(Raster raster) {
+        if (raster.getDataBuffer() instanceof MappedIntDataBuffer) {
+            // there is no backing array
+            return false;
+        }
+        return coversDataBuffer(raster);
+    }
+
+    private static boolean coversDataBuffer(Raster raster) {
+        return raster.getSampleModelTranslateX() == 0
+                && raster.getSampleModelTranslateY() == 0
+                && raster.getDataBuffer().getOffset() == 0
+                && raster.getDataBuffer().getSize() ==
+                raster.getWidth() * raster.getHeight() * raster.getNumDataElements();
+    }
+
     /**
      * This methods returns the pixel array behind the given BufferedImage
-     * If the array data is modified, the image itself is modified
+     * If the array data is modified, the image itself is modified.
+     * For zero-copy views (see {@link #isDenseRaster(Raster)}) and for the
+     * images in scratch files (see {@link ScratchImage}) the pixels are
+     * copied, therefore the callers that modify the pixels must write them
+     * back with {@link #setPixelsFromArray(BufferedImage, int[])}.
      */
     public static int[] getPixelsAsArray(BufferedImage src) {
         assert src != null;
@@ -425,12 +484,20 @@ public class ImageUtils {
         int[] pixels;
 
         boolean packedInt = hasPackedIntArray(src);
-        if (packedInt) {
-            assert src.getRaster().getTransferType() == TYPE_INT;
-            assert src.getRaster().getNumDataElements() == 1;
-
-            DataBufferInt srcDataBuffer = (DataBufferInt) src.getRaster().getDataBuffer();
-            pixels = srcDataBuffer.getData();
+        if (ScratchImage.isStored(src)) {
+            pixels = copyMappedPixels(src.getRaster());
+        } else if (packedInt) {
+            WritableRaster raster = src.getRaster();
+            assert raster.getTransferType() == TYPE_INT;
+            assert raster.getNumDataElements() == 1;
+
+            if (isDenseRaster(raster)) {
+                DataBufferInt srcDataBuffer = (DataBufferInt) raster.getDataBuffer();
+                pixels = srcDataBuffer.getData();
+            } else {
+                pixels = (int[]) raster.getDataElements(0, 0,
+                        raster.getWidth(), raster.getHeight(), null);
+            }
         } else if (src.getType() == TYPE_BYTE_GRAY) {
             // TODO this does not seem to work - why?
             int width = src.getWidth();
@@ -451,15 +518,91 @@ public class ImageUtils {
         return pixels;
     }
 
+    private static int[] copyMappedPixels(Raster raster) {
+        int width = raster.getWidth();
+        int height = raster.getHeight();
+        if (coversDataBuffer(raster)) {
+            // bulk copy instead of reading the pixels one by one
+            int[] pixels = new int[width * height];
+            ((MappedIntDataBuffer) raster.getDataBuffer())
+                    .getElems(0, pixels, 0, pixels.length);
+            return pixels;
+        }
+        return (int[]) raster.getDataElements(0, 0, width, height, null);
+    }
+
+    /**
+     * Writes back the pixels that were returned by {@link #getPixelsAsArray(BufferedImage)}
+     * and then modified. It does nothing if the array is the backing array of the image.
+     */
+    public static void setPixelsFromArray(BufferedImage dest, int[] pixels) {
+        WritableRaster raster = dest.getRaster();
+        int width = raster.getWidth();
+        int height = raster.getHeight();
+        assert pixels.length == width * height;
+
+        DataBuffer dataBuffer = raster.getDataBuffer();
+        if (dataBuffer instanceof MappedIntDataBuffer) {
+            if (coversDataBuffer(raster)) {
+                ((MappedIntDataBuffer) dataBuffer).setElems(0, pixels, 0, pixels.length);
+            } else {
+                raster.setDataElements(0, 0, width, height, pixels);
+            }
+        } else if (isDenseRaster(raster) && dataBuffer instanceof DataBufferInt) {
+            if (((DataBufferInt) dataBuffer).getData() != pixels) {
+                raster.setDataElements(0, 0, width, height, pixels);
+            }
+        } else if (hasPackedIntArray(dest)) {
+            raster.setDataElements(0, 0, width, height, pixels);
+        } else {
+            dest.setRGB(0, 0, width, height, pixels, 0, width);
+        }
+    }
+
     public static byte[] getGrayPixelsAsByteArray(BufferedImage img) {
         assert img.getType() == TYPE_BYTE_GRAY;
 
         WritableRaster raster = img.getRaster();
+        if (!isDenseRaster(raster)) {
+            return (byte[]) raster.getDataElements(0, 0,
+                    raster.getWidth(), raster.getHeight(), null);
+        }
         DataBufferByte db = (DataBufferByte) raster.getDataBuffer();
 
         return db.getData();
     }
 
+    /**
+     * Returns true if the given image can be reused as the
+     * destination of a filter that would otherwise create
+     * a new image with {@link #createImageWithSameCM(BufferedImage)}
+     */
+    public static boolean canBeReusedAsDestFor(BufferedImage dest, BufferedImage src) {
+        return dest.getWidth() == src.getWidth()
+                && dest.getHeight() == src.getHeight()
+                && dest.getColorModel().equals(src.getColorModel())
+                && dest.isAlphaPremultiplied() == src.isAlphaPremultiplied()
+                && isDenseRaster(dest.getRaster());
+    }
+
+    /**
+     * Sets all pixels of an image with a dense int or byte raster
+     * to zero, so that it looks like a newly created image.
+     */
+    public static void clearPixels(BufferedImage img) {
+        DataBuffer dataBuffer = img.getRaster().getDataBuffer();
+        if (dataBuffer instanceof DataBufferInt) {
+            Arrays.fill(((DataBufferInt) dataBuffer).getData(), 0);
+        } else if (dataBuffer instanceof DataBufferByte) {
+            Arrays.fill(((DataBufferByte) dataBuffer).getData(), (byte) 0);
+        } else {
+            Graphics2D g = img.createGraphics();
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, img.getWidth(), img.getHeight());
+            g.dispose();
+        }
+    }
+
     public static BufferedImage getGrayImageFromByteArray(byte[] pixels, int width, int height) {
         assert pixels.length == width * height;
 
@@ -770,7 +913,7 @@ public class ImageUtils {
         }
         BufferedImage output = new BufferedImage(width
                 , height
-                , input.getType());
+                , getStandardType(input));
         Graphics2D g = output.createGraphics();
         g.transform(AffineTransform.getTranslateInstance(-x, -y));
         g.drawImage(input, null, 0, 0);
@@ -1159,6 +1302,32 @@ public class ImageUtils {
     public static BufferedImage getSelectionSizedPartFrom(BufferedImage src,
                                                           Selection selection,
                                                           int tx, int ty) {
+        Rectangle bounds = getSelectionBoundsInImage(src, selection, tx, ty);
+        return getCopyOfSubimage(src, bounds);
+    }
+
+    /**
+     * Like {@link #getSelectionSizedPartFrom(BufferedImage, Selection, int, int)},
+     * but instead of copying the pixels, it returns a view that shares
+     * the pixel data with the given image. The returned image starts at (0, 0).
+     */
+    public static BufferedImage getSelectionSizedViewOf(BufferedImage src,
+                                                        Selection selection,
+                                                        int tx, int ty) {
+        Rectangle bounds = getSelectionBoundsInImage(src, selection, tx, ty);
+        WritableRaster view = src.getRaster().createWritableChild(
+                bounds.x, bounds.y, bounds.width, bounds.height, 0, 0, null);
+        return new BufferedImage(src.getColorModel(), view,
+                src.isAlphaPremultiplied(), null);
+    }
+
+    /**
+     * Returns the intersection of the selection bounds and
+     * the image bounds, relative to the image.
+     */
+    public static Rectangle getSelectionBoundsInImage(BufferedImage src,
+                                                      Selection selection,
+                                                      int tx, int ty) {
         assert selection != null;
 
         Rectangle bounds = selection.getShapeBounds(1); // relative to the canvas
@@ -1177,7 +1346,7 @@ public class ImageUtils {
                     tx, ty, selection.getShapeBounds(1)));
         }
 
-        return getCopyOfSubimage(src, bounds);
+        return bounds;
     }
 
     /**
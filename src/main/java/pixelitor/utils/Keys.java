@@ -18,6 +18,7 @@
 package pixelitor.utils;
 
 import javax.swing.*;
+import java.awt.GraphicsEnvironment;
 import java.awt.Toolkit;
 import java.awt.event.KeyEvent;
 
@@ -42,9 +43,9 @@ import static javax.swing.KeyStroke.getKeyStroke;
  * A convenience class for keeping track of keyboard shortcuts
  */
 public class Keys {
-    // Ctrl on Win/Linux, Command on Mac
-    private static final int MENU_CTRL_MASK
-            = Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx();
+    // Ctrl on Win/Linux, Command on Mac (and Ctrl in headless mode)
+    private static final int MENU_CTRL_MASK = GraphicsEnvironment.isHeadless()
+            ? CTRL_DOWN_MASK : Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx();
 
     public static final KeyStroke CTRL_MINUS = getKeyStroke(VK_MINUS, MENU_CTRL_MASK);
     public static final KeyStroke CTRL_PLUS = getKeyStroke(VK_PLUS, MENU_CTRL_MASK);
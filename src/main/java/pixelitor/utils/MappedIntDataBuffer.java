@@ -0,0 +1,183 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import java.awt.image.DataBuffer;
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * An int {@link DataBuffer} that keeps its elements outside the Java heap,
+ * in a memory-mapped temporary file. The operating system can page
+ * the data out to the disk, therefore its size is not limited by -Xmx.
+ * The mapping is released by the garbage collector, when neither
+ * this buffer nor any image or raster using it is reachable.
+ */
+public class MappedIntDataBuffer extends DataBuffer {
+    // a single mapping can't be larger than 2 GB, so the
+    // data is split into 1 GB (2^28 ints) chunks
+    private static final int CHUNK_SHIFT = 28;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // deletes the files that couldn't be deleted while they were mapped
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final IntBuffer[] chunks;
+
+    // not null if the file couldn't be deleted while it was mapped
+    private FileDeleter fileDeleter;
+
+    private volatile boolean disposed;
+
+    public MappedIntDataBuffer(int size) throws IOException {
+        super(TYPE_INT, size);
+
+        Path file = Files.createTempFile("pixelitor", ".scratch");
+        try (FileChannel channel = FileChannel.open(file, READ, WRITE)) {
+            int numChunks = (int) (((long) size + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+            chunks = new IntBuffer[numChunks];
+            for (int i = 0; i < numChunks; i++) {
+                long start = (long) i << CHUNK_SHIFT;
+                long length = Math.min(CHUNK_SIZE, size - start);
+                chunks[i] = channel.map(READ_WRITE, start * 4, length * 4)
+                        .order(ByteOrder.nativeOrder())
+                        .asIntBuffer();
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+
+        // The mappings stay valid after the file is deleted on most
+        // systems. Otherwise (on Windows) it can be deleted only
+        // after the garbage collector has released the mappings.
+        try {
+            Files.delete(file);
+        } catch (IOException e) {
+            fileDeleter = new FileDeleter(file);
+            CLEANER.register(this, fileDeleter);
+        }
+    }
+
+    @Override
+    public int getElem(int bank, int i) {
+        return chunks[i >>> CHUNK_SHIFT].get(i & CHUNK_MASK);
+    }
+
+    @Override
+    public void setElem(int bank, int i, int val) {
+        chunks[i >>> CHUNK_SHIFT].put(i & CHUNK_MASK, val);
+    }
+
+    /**
+     * Copies len elements starting at the given index into the array
+     */
+    public void getElems(int start, int[] dst, int offset, int len) {
+        while (len > 0) {
+            int inChunk = start & CHUNK_MASK;
+            int n = Math.min(len, CHUNK_SIZE - inChunk);
+            IntBuffer chunk = chunks[start >>> CHUNK_SHIFT].duplicate();
+            chunk.position(inChunk);
+            chunk.get(dst, offset, n);
+
+            start += n;
+            offset += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Copies len elements from the array starting at the given index
+     */
+    public void setElems(int start, int[] src, int offset, int len) {
+        while (len > 0) {
+            int inChunk = start & CHUNK_MASK;
+            int n = Math.min(len, CHUNK_SIZE - inChunk);
+            IntBuffer chunk = chunks[start >>> CHUNK_SHIFT].duplicate();
+            chunk.position(inChunk);
+            chunk.put(src, offset, n);
+
+            start += n;
+            offset += n;
+            len -= n;
+        }
+    }
+
+    public boolean isDisposed() {
+        return disposed;
+    }
+
+    /**
+     * Signals that the owner doesn't need the data anymore, and tries
+     * to delete the scratch file immediately. The memory itself is
+     * released only by the garbage collector, because other images,
+     * rasters or threads could still use this buffer, and it remains
+     * readable and writable for them.
+     */
+    public void dispose() {
+        disposed = true;
+        if (fileDeleter != null) {
+            fileDeleter.tryDelete();
+        }
+    }
+
+    /**
+     * Deletes a scratch file that couldn't be deleted while it was mapped.
+     * It must not reference the buffer, otherwise the buffer would never
+     * become unreachable.
+     */
+    private static final class FileDeleter implements Runnable {
+        private final Path file;
+        private volatile boolean deleted;
+
+        private FileDeleter(Path file) {
+            this.file = file;
+        }
+
+        private boolean tryDelete() {
+            if (!deleted) {
+                try {
+                    Files.deleteIfExists(file);
+                    deleted = true;
+                } catch (IOException e) {
+                    // still mapped, try again later
+                }
+            }
+            return deleted;
+        }
+
+        @Override
+        public void run() {
+            // the buffer is unreachable, but its mappings could be
+            // released by the garbage collector only later
+            if (!tryDelete()) {
+                file.toFile().deleteOnExit();
+            }
+        }
+    }
+}
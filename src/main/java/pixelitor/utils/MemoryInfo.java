@@ -17,6 +17,9 @@
 
 package pixelitor.utils;
 
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
 import static java.lang.String.format;
 
 public class MemoryInfo {
@@ -26,6 +29,8 @@ public class MemoryInfo {
     private final long totalMemoryMB;
     private final long usedMemoryMB;
     private final long maxMemoryMB;
+    private long gcCount;
+    private long gcTimeMillis;
 
     public MemoryInfo() {
         Runtime runtime = Runtime.getRuntime();
@@ -39,6 +44,12 @@ public class MemoryInfo {
         totalMemoryMB = totalMemory / ONE_MEGABYTE;
         usedMemoryMB = usedMemory / ONE_MEGABYTE;
         maxMemoryMB = maxMemory / ONE_MEGABYTE;
+
+        for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            // the values are -1 if they are not available
+            gcCount += Math.max(0, gcBean.getCollectionCount());
+            gcTimeMillis += Math.max(0, gcBean.getCollectionTime());
+        }
     }
 
     public String getFreeMemory() {
@@ -57,6 +68,28 @@ public class MemoryInfo {
         return maxMemoryMB + " megabytes";
     }
 
+    public long getUsedMemoryMB() {
+        return usedMemoryMB;
+    }
+
+    public long getMaxMemoryMB() {
+        return maxMemoryMB;
+    }
+
+    /**
+     * The total number of garbage collections since the start of the app
+     */
+    public long getGCCount() {
+        return gcCount;
+    }
+
+    /**
+     * The total time spent in garbage collection since the start of the app
+     */
+    public long getGCTimeMillis() {
+        return gcTimeMillis;
+    }
+
     public long getAvailableMemoryMB() {
         return maxMemoryMB - usedMemoryMB;
     }
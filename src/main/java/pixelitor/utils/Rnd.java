@@ -43,6 +43,13 @@ public class Rnd {
         // do not instantiate
     }
 
+    /**
+     * Makes the random sequences reproducible, for example in stress tests
+     */
+    public static void setSeed(long seed) {
+        rand.setSeed(seed);
+    }
+
     public static int chooseFrom(int[] items) {
         return items[rand.nextInt(items.length)];
     }
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB_PRE;
+import static java.awt.image.BufferedImage.TYPE_INT_RGB;
+import static java.awt.image.DataBuffer.TYPE_INT;
+
+/**
+ * Static methods for the images that are stored in memory-mapped
+ * scratch files (see {@link MappedIntDataBuffer}) instead of the Java heap.
+ * They can be drawn, read and written as any other image, but they are
+ * slower than the normal images, and their type is TYPE_CUSTOM
+ * (see {@link ImageUtils#getStandardType(BufferedImage)}).
+ */
+public final class ScratchImage {
+    // smaller images are not worth a file mapping
+    private static final int MIN_PIXELS = 1024 * 1024;
+
+    // the number of rows copied at once
+    private static final int ROWS_PER_COPY = 64;
+
+    // if true, the large layer and undo images are stored in scratch files
+    private static volatile boolean enabled;
+
+    private ScratchImage() {
+        // should not be instantiated
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        ScratchImage.enabled = enabled;
+    }
+
+    /**
+     * Returns true if the given image can be, and is worth to be
+     * stored in a scratch file, and it isn't stored in one already.
+     */
+    public static boolean canStore(BufferedImage img) {
+        int type = img.getType();
+        boolean packedInt = type == TYPE_INT_ARGB || type == TYPE_INT_ARGB_PRE || type == TYPE_INT_RGB;
+        return packedInt && (long) img.getWidth() * img.getHeight() >= MIN_PIXELS;
+    }
+
+    /**
+     * Returns true if the scratch files are enabled, and the given
+     * image should be moved into one.
+     */
+    public static boolean shouldStore(BufferedImage img) {
+        return enabled && canStore(img);
+    }
+
+    /**
+     * Copies the pixels of the given image (which must be a packed int image)
+     * into a new image, which is backed by a new scratch file.
+     */
+    public static BufferedImage copyOf(BufferedImage src) throws IOException {
+        int width = src.getWidth();
+        int height = src.getHeight();
+
+        int[] masks = ((SinglePixelPackedSampleModel) src.getSampleModel()).getBitMasks();
+        var sampleModel = new SinglePixelPackedSampleModel(TYPE_INT, width, height, masks);
+        var dataBuffer = new MappedIntDataBuffer(width * height);
+        WritableRaster raster = Raster.createWritableRaster(sampleModel, dataBuffer, null);
+        var copy = new BufferedImage(src.getColorModel(), raster, src.isAlphaPremultiplied(), null);
+
+        Raster srcRaster = src.getRaster();
+        int[] rows = new int[width * ROWS_PER_COPY];
+        for (int y = 0; y < height; y += ROWS_PER_COPY) {
+            int numRows = Math.min(ROWS_PER_COPY, height - y);
+            srcRaster.getDataElements(0, y, width, numRows, rows);
+            dataBuffer.setElems(y * width, rows, 0, width * numRows);
+        }
+        return copy;
+    }
+
+    /**
+     * Returns true if the given image (or its parent,
+     * if it's a subimage) is stored in a scratch file.
+     */
+    public static boolean isStored(BufferedImage img) {
+        return img.getRaster().getDataBuffer() instanceof MappedIntDataBuffer;
+    }
+
+    /**
+     * Deletes the scratch file of the given image as soon as possible,
+     * if it has one. The memory is released by the garbage collector,
+     * so it's safe if the image is still used by someone else.
+     */
+    public static void dispose(BufferedImage img) {
+        DataBuffer dataBuffer = img.getRaster().getDataBuffer();
+        if (dataBuffer instanceof MappedIntDataBuffer) {
+            ((MappedIntDataBuffer) dataBuffer).dispose();
+        }
+    }
+}
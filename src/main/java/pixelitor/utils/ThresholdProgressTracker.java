@@ -33,12 +33,10 @@ public abstract class ThresholdProgressTracker implements ProgressTracker {
     private int lastPercent = 0;
 
     private boolean showingProgress = false;
-    private final boolean runningOnEDT;
 
     protected ThresholdProgressTracker(int numComputationUnits) {
         this.numComputationUnits = numComputationUnits;
         startTime = System.currentTimeMillis();
-        runningOnEDT = EventQueue.isDispatchThread();
     }
 
     @Override
@@ -54,6 +52,9 @@ public abstract class ThresholdProgressTracker implements ProgressTracker {
     }
 
     private void update() {
+        // the tracker can be created on the EDT, and then
+        // updated from a background thread (or vice versa)
+        boolean runningOnEDT = EventQueue.isDispatchThread();
         if (!showingProgress) {
             double millis = System.currentTimeMillis() - startTime;
             if (millis > THRESHOLD_MILLIS) {
@@ -82,7 +83,7 @@ public abstract class ThresholdProgressTracker implements ProgressTracker {
     @Override
     public void finished() {
         if (showingProgress) {
-            if (runningOnEDT) {
+            if (EventQueue.isDispatchThread()) {
                 finishProgressTracking();
             } else {
                 EventQueue.invokeLater(this::finishProgressTracking);
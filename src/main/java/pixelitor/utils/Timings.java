@@ -0,0 +1,424 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Records the durations of the performance-sensitive operations,
+ * so that the slow operations (and the documents that make them slow)
+ * can be found. The statistics can be viewed in the
+ * "Performance Monitor" dialog, exported, or each measurement
+ * can be logged into a CSV file.
+ */
+public class Timings {
+    /**
+     * The kinds of measured operations
+     */
+    public enum Category {
+        FILTER("Filter"),
+        COMPOSITE("Composite Rebuild"),
+        VIEW_PAINT("View Paint"),
+        HISTORY("History"),
+        IO_READ("File Read"),
+        IO_WRITE("File Write");
+
+        private final String displayName;
+
+        Category(String displayName) {
+            this.displayName = displayName;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    // operations that take longer are considered to be too slow
+    public static final double SLOW_MILLIS = 100.0;
+
+    // the number of recent measurements kept for each operation
+    private static final int NUM_RECENT = 100;
+
+    // the keys are created only once for each operation,
+    // therefore they can be compared by identity
+    private static final Map<Category, Map<String, Key>> keys = new EnumMap<>(Category.class);
+    private static final Map<Key, Stats> statsMap = new HashMap<>();
+
+    // not null while the measurements are logged
+    private static volatile LogFile logFile;
+    // all the writing happens on this thread, in the order of the calls
+    private static final ExecutorService logExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Timings Log");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Timings() {
+        // should not be instantiated
+    }
+
+    /**
+     * Returns the key of the given operation. The frequently measured
+     * operations should keep their key in a constant, so that recording
+     * them doesn't have to look it up.
+     */
+    public static Key key(Category category, String name) {
+        synchronized (keys) {
+            Map<String, Key> categoryKeys = keys.get(category);
+            if (categoryKeys == null) {
+                categoryKeys = new HashMap<>();
+                keys.put(category, categoryKeys);
+            }
+            Key key = categoryKeys.get(name);
+            if (key == null) {
+                key = new Key(category, name);
+                categoryKeys.put(name, key);
+            }
+            return key;
+        }
+    }
+
+    /**
+     * Records an operation that started at the given
+     * time (obtained from {@link System#nanoTime()}) and ends now.
+     * Can be called from any thread.
+     */
+    public static void record(Category category, String name, String docName, long startNanos) {
+        record(key(category, name), docName, startNanos);
+    }
+
+    /**
+     * Records an operation identified by a precomputed key. Unless
+     * the measurements are logged, this doesn't allocate after
+     * the first call, so it can be used while painting.
+     */
+    public static void record(Key key, String docName, long startNanos) {
+        long durationNanos = System.nanoTime() - startNanos;
+        synchronized (statsMap) {
+            Stats stats = statsMap.get(key);
+            if (stats == null) {
+                stats = new Stats(key.category, key.name);
+                statsMap.put(key, stats);
+            }
+            stats.add(durationNanos, docName);
+        }
+
+        LogFile log = logFile;
+        if (log != null) {
+            logMeasurement(log, key.category, key.name, docName, durationNanos);
+        }
+    }
+
+    /**
+     * Returns copies of the current statistics, sorted by category and name.
+     */
+    public static List<Stats> getStats() {
+        List<Stats> copies = new ArrayList<>();
+        synchronized (statsMap) {
+            for (Stats stats : statsMap.values()) {
+                copies.add(stats.copy());
+            }
+        }
+        copies.sort(Comparator.comparing((Stats s) -> s.category)
+                .thenComparing(s -> s.name));
+        return copies;
+    }
+
+    public static void reset() {
+        synchronized (statsMap) {
+            statsMap.clear();
+        }
+    }
+
+    public static void exportCSV(File file) throws IOException {
+        try (var out = new PrintWriter(Files.newBufferedWriter(file.toPath(), UTF_8))) {
+            out.println("category,operation,count,last_ms,avg_ms,recent_p95_ms,max_ms,slowest_document");
+            for (Stats s : getStats()) {
+                out.println(format(Locale.ENGLISH, "%s,%s,%d,%.2f,%.2f,%.2f,%.2f,%s",
+                        csvField(s.category.toString()), csvField(s.name), s.count,
+                        s.getLastMillis(), s.getAverageMillis(), s.getRecentP95Millis(),
+                        s.getMaxMillis(), csvField(s.slowestDoc)));
+            }
+        }
+    }
+
+    public static void exportJSON(File file) throws IOException {
+        try (var out = new PrintWriter(Files.newBufferedWriter(file.toPath(), UTF_8))) {
+            MemoryInfo mi = new MemoryInfo();
+            out.println("{");
+            out.println(format("  \"usedMemoryMB\": %d,", mi.getUsedMemoryMB()));
+            out.println(format("  \"maxMemoryMB\": %d,", mi.getMaxMemoryMB()));
+            out.println(format("  \"gcCount\": %d,", mi.getGCCount()));
+            out.println(format("  \"gcTimeMillis\": %d,", mi.getGCTimeMillis()));
+            out.println("  \"operations\": [");
+            List<Stats> allStats = getStats();
+            for (int i = 0; i < allStats.size(); i++) {
+                Stats s = allStats.get(i);
+                out.print(format(Locale.ENGLISH, "    {\"category\": %s, \"operation\": %s, " +
+                                "\"count\": %d, \"lastMillis\": %.2f, \"avgMillis\": %.2f, " +
+                                "\"recentP95Millis\": %.2f, \"maxMillis\": %.2f, \"slowestDocument\": %s}",
+                        jsonString(s.category.toString()), jsonString(s.name), s.count,
+                        s.getLastMillis(), s.getAverageMillis(), s.getRecentP95Millis(),
+                        s.getMaxMillis(), jsonString(s.slowestDoc)));
+                out.println(i < allStats.size() - 1 ? "," : "");
+            }
+            out.println("  ]");
+            out.println("}");
+        }
+    }
+
+    /**
+     * Starts appending every new measurement to the given CSV file
+     */
+    public static synchronized void startLog(File file) throws IOException {
+        stopLog();
+        BufferedWriter writer = Files.newBufferedWriter(file.toPath(), UTF_8);
+        writer.write("time_ms,category,operation,document,duration_ms");
+        writer.newLine();
+        logFile = new LogFile(writer);
+    }
+
+    /**
+     * Stops the logging. Returns after the already recorded
+     * measurements are written and the file is closed.
+     */
+    public static synchronized void stopLog() {
+        LogFile log = logFile;
+        if (log == null) {
+            return;
+        }
+        // the close runs after the queued lines are written
+        Future<?> closed = logExecutor.submit(log::close);
+        try {
+            closed.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Messages.showException(e.getCause());
+        } finally {
+            logFile = null;
+        }
+    }
+
+    public static boolean isLogging() {
+        return logFile != null;
+    }
+
+    private static void logMeasurement(LogFile log, Category category, String name,
+                                       String docName, long durationNanos) {
+        long now = System.currentTimeMillis();
+        String line = format(Locale.ENGLISH, "%d,%s,%s,%s,%.3f%n",
+                now, csvField(category.toString()), csvField(name),
+                csvField(docName), durationNanos / 1_000_000.0);
+
+        // the writing happens on a separate thread,
+        // so that the measured operations are not slowed down
+        logExecutor.execute(() -> log.write(line));
+    }
+
+    private static String csvField(String s) {
+        if (s == null) {
+            return "";
+        }
+        if (s.contains(",") || s.contains("\"")) {
+            return '"' + s.replace("\"", "\"\"") + '"';
+        }
+        return s;
+    }
+
+    private static String jsonString(String s) {
+        if (s == null) {
+            return "null";
+        }
+        return '"' + s.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+    /**
+     * Identifies a measured operation
+     */
+    public static final class Key {
+        private final Category category;
+        private final String name;
+
+        private Key(Category category, String name) {
+            this.category = category;
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return category + "/" + name;
+        }
+    }
+
+    /**
+     * A log file, which is written and closed only on the log thread
+     */
+    private static class LogFile {
+        private final Writer writer;
+        private boolean closed;
+
+        private LogFile(Writer writer) {
+            this.writer = writer;
+        }
+
+        private void write(String line) {
+            // a measurement recorded while the log was stopped
+            if (closed) {
+                return;
+            }
+            try {
+                writer.write(line);
+                writer.flush();
+            } catch (IOException e) {
+                closed = true;
+                // stop the logging without waiting for this thread
+                if (logFile == this) {
+                    logFile = null;
+                }
+                Messages.showExceptionOnEDT(e);
+            }
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                writer.flush();
+                writer.close();
+            } catch (IOException e) {
+                Messages.showExceptionOnEDT(e);
+            }
+        }
+    }
+
+    /**
+     * The statistics of a single operation
+     */
+    public static class Stats {
+        private final Category category;
+        private final String name;
+
+        private int count;
+        private long totalNanos;
+        private long maxNanos;
+        private long lastNanos;
+        private String slowestDoc;
+
+        // a ring buffer of the recent durations
+        private final long[] recent;
+
+        private Stats(Category category, String name) {
+            this.category = category;
+            this.name = name;
+            recent = new long[NUM_RECENT];
+        }
+
+        private Stats(Stats other) {
+            category = other.category;
+            name = other.name;
+            count = other.count;
+            totalNanos = other.totalNanos;
+            maxNanos = other.maxNanos;
+            lastNanos = other.lastNanos;
+            slowestDoc = other.slowestDoc;
+            recent = other.recent.clone();
+        }
+
+        private void add(long durationNanos, String docName) {
+            recent[count % NUM_RECENT] = durationNanos;
+            count++;
+            totalNanos += durationNanos;
+            lastNanos = durationNanos;
+            if (durationNanos > maxNanos) {
+                maxNanos = durationNanos;
+                slowestDoc = docName;
+            }
+        }
+
+        private Stats copy() {
+            return new Stats(this);
+        }
+
+        public Category getCategory() {
+            return category;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public double getLastMillis() {
+            return lastNanos / 1_000_000.0;
+        }
+
+        public double getAverageMillis() {
+            return count == 0 ? 0 : totalNanos / (count * 1_000_000.0);
+        }
+
+        public double getMaxMillis() {
+            return maxNanos / 1_000_000.0;
+        }
+
+        /**
+         * The 95th percentile of the recent durations
+         */
+        public double getRecentP95Millis() {
+            int numRecent = Math.min(count, NUM_RECENT);
+            if (numRecent == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(recent, numRecent);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(0.95 * numRecent) - 1;
+            return sorted[index] / 1_000_000.0;
+        }
+
+        public String getSlowestDoc() {
+            return slowestDoc;
+        }
+    }
+}
@@ -33,7 +33,7 @@ public class ImageLayerNode extends ContentLayerNode {
 
         addString("state", layer.getState().toString());
 
-        BufferedImage image = layer.getImage();
+        BufferedImage image = layer.getImageForReading();
         add(DebugNodes.createBufferedImageNode("image", image));
     }
 }
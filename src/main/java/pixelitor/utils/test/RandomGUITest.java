@@ -515,7 +515,7 @@ public class RandomGUITest {
             }
 
             if (Math.random() > 0.3) {
-                dr.onFilterDialogAccepted(filterName);
+                ((FilterWithGUI) f).acceptDialog(dr);
             } else {
                 dr.onFilterDialogCanceled();
             }
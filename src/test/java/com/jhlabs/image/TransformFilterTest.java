@@ -0,0 +1,354 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jhlabs.image;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import pixelitor.utils.ProgressTracker;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@DisplayName("TransformFilter tests")
+class TransformFilterTest {
+    // not multiples of the approximation grid size
+    private static final int WIDTH = 157;
+    private static final int HEIGHT = 93;
+
+    @Test
+    void mappingIsReusedForEdgeAndInterpolationChanges() {
+        var filter = new CountingFilter();
+        BufferedImage src = createSrc();
+
+        filter.filter(src, createDst());
+        assertThat(filter.calls.get()).isEqualTo(WIDTH * HEIGHT);
+
+        filter.setEdgeAction(TransformFilter.WRAP_AROUND);
+        filter.setInterpolation(TransformFilter.NEAREST_NEIGHBOUR);
+        filter.filter(src, createDst());
+        assertThat(filter.calls.get()).isEqualTo(WIDTH * HEIGHT);
+
+        // a geometry change must recalculate the mapping
+        filter.shift = 3.5f;
+        filter.filter(src, createDst());
+        assertThat(filter.calls.get()).isEqualTo(2 * WIDTH * HEIGHT);
+    }
+
+    @Test
+    void cachedMappingGivesSameResult() {
+        BufferedImage src = createSrc();
+        var cachingFilter = new CountingFilter();
+        cachingFilter.shift = 2.25f;
+        cachingFilter.filter(src, createDst());
+
+        for (int edgeAction : new int[]{TransformFilter.TRANSPARENT, TransformFilter.REFLECT}) {
+            cachingFilter.setEdgeAction(edgeAction);
+            BufferedImage cached = cachingFilter.filter(src, createDst());
+
+            var freshFilter = new CountingFilter();
+            freshFilter.shift = 2.25f;
+            freshFilter.setEdgeAction(edgeAction);
+            BufferedImage expected = freshFilter.filter(src, createDst());
+
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    assertThat(cached.getRGB(x, y))
+                            .as("x = %d, y = %d", x, y)
+                            .isEqualTo(expected.getRGB(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    void smoothMappingIsApproximatedOnlyIfAllowed() {
+        BufferedImage src = createSrc();
+        var wave = new WaveFilter(false);
+
+        TransformFilter.allowApproximation(false);
+        BufferedImage exact = wave.filter(src, createDst());
+        assertThat(TransformFilter.wasApproximated()).isFalse();
+        assertThat(wave.calls.get()).isEqualTo(WIDTH * HEIGHT);
+
+        wave.calls.set(0);
+        TransformFilter.allowApproximation(true);
+        try {
+            BufferedImage approximated = wave.filter(src, createDst());
+            assertThat(TransformFilter.wasApproximated()).isTrue();
+            assertThat(wave.calls.get()).isLessThan(WIDTH * HEIGHT / 2);
+            assertSameImage(approximated, exact, 1);
+        } finally {
+            TransformFilter.allowApproximation(false);
+        }
+    }
+
+    @Test
+    void inaccurateCellsAreSubdivided() {
+        BufferedImage src = createSrc();
+        var steps = new WaveFilter(true);
+        BufferedImage exact = steps.filter(src, createDst());
+
+        TransformFilter.allowApproximation(true);
+        try {
+            BufferedImage approximated = steps.filter(src, createDst());
+            assertThat(TransformFilter.wasApproximated()).isTrue();
+            // the cells crossed by the step are calculated exactly,
+            // interpolating over it would cause much bigger differences
+            assertSameImage(approximated, exact, 1);
+        } finally {
+            TransformFilter.allowApproximation(false);
+        }
+    }
+
+    @Test
+    void discontinuousCellsAreCalculatedExactly() {
+        BufferedImage src = createSrc();
+        var magnify = new MagnifyingFilter();
+        BufferedImage exact = magnify.filter(src, createDst());
+
+        magnify.calls.set(0);
+        TransformFilter.allowApproximation(true);
+        try {
+            BufferedImage approximated = magnify.filter(src, createDst());
+            assertThat(TransformFilter.wasApproximated()).isTrue();
+            assertThat(magnify.calls.get()).isLessThan(WIDTH * HEIGHT);
+            // the mapping jumps at the edge of the circle, which
+            // would be blurred if it was interpolated over
+            assertSameImage(approximated, exact, 1);
+        } finally {
+            TransformFilter.allowApproximation(false);
+        }
+    }
+
+    @Test
+    void bicubicReproducesTheSource() {
+        BufferedImage src = createSrc();
+        var identity = new ScaleFilter(1.0f, 0.0f, TransformFilter.BICUBIC);
+
+        assertSameImage(identity.filter(src, createDst()), src, 0);
+    }
+
+    @Test
+    void bicubicInterpolatesLinearGradients() {
+        BufferedImage src = createSrc();
+        var halfShift = new ScaleFilter(1.0f, 0.5f, TransformFilter.BICUBIC);
+        BufferedImage bicubic = halfShift.filter(src, createDst());
+        halfShift.setInterpolation(TransformFilter.BILINEAR);
+        BufferedImage bilinear = halfShift.filter(src, createDst());
+
+        // the source is linear in the red and green channels, except
+        // at the edges (the bilinear interpolation rounds down)
+        for (int y = 2; y < HEIGHT - 3; y++) {
+            for (int x = 2; x < WIDTH - 3; x++) {
+                for (int shift = 8; shift <= 16; shift += 8) {
+                    assertThat((bicubic.getRGB(x, y) >>> shift) & 0xFF)
+                            .as("x = %d, y = %d", x, y)
+                            .isCloseTo((bilinear.getRGB(x, y) >>> shift) & 0xFF, within(1));
+                }
+            }
+        }
+    }
+
+    @Test
+    void ewaAveragesShrunkDetails() {
+        // one pixel wide black and white stripes
+        BufferedImage stripes = createDst();
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                stripes.setRGB(x, y, x % 2 == 0 ? 0xFF_00_00_00 : 0xFF_FF_FF_FF);
+            }
+        }
+
+        var shrink = new ScaleFilter(4.0f, 0.0f, TransformFilter.BILINEAR);
+        shrink.setEdgeAction(TransformFilter.WRAP_AROUND);
+        BufferedImage aliased = shrink.filter(stripes, createDst());
+        shrink.setInterpolation(TransformFilter.EWA);
+        BufferedImage antiAliased = shrink.filter(stripes, createDst());
+
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                // the bilinear interpolation hits single stripes
+                assertThat(aliased.getRGB(x, y)).isIn(0xFF_00_00_00, 0xFF_FF_FF_FF);
+                // the EWA filtering results in gray
+                assertThat(antiAliased.getRGB(x, y) & 0xFF)
+                        .as("x = %d, y = %d", x, y)
+                        .isBetween(80, 175);
+            }
+        }
+    }
+
+    @Test
+    void ewaIsBilinearWhenEnlarging() {
+        BufferedImage src = createSrc();
+        var enlarge = new ScaleFilter(0.5f, 0.25f, TransformFilter.BILINEAR);
+        BufferedImage bilinear = enlarge.filter(src, createDst());
+        enlarge.setInterpolation(TransformFilter.EWA);
+
+        assertSameImage(enlarge.filter(src, createDst()), bilinear, 0);
+    }
+
+    private static void assertSameImage(BufferedImage found, BufferedImage expected, int tolerance) {
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int foundRGB = found.getRGB(x, y);
+                int expectedRGB = expected.getRGB(x, y);
+                for (int shift = 0; shift < 32; shift += 8) {
+                    assertThat((foundRGB >>> shift) & 0xFF)
+                            .as("x = %d, y = %d", x, y)
+                            .isCloseTo((expectedRGB >>> shift) & 0xFF, within(tolerance));
+                }
+            }
+        }
+    }
+
+    private static BufferedImage createSrc() {
+        BufferedImage src = new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                src.setRGB(x, y, 0xFF_00_00_00 | x << 16 | (y * 2) << 8 | (x + y) / 2);
+            }
+        }
+        return src;
+    }
+
+    private static BufferedImage createDst() {
+        return new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB);
+    }
+
+    /**
+     * A simple diagonal shift that counts the inverse mappings
+     */
+    private static class CountingFilter extends TransformFilter {
+        private final AtomicInteger calls = new AtomicInteger();
+        private float shift = 1.5f;
+
+        CountingFilter() {
+            super("Counting");
+            setProgressTracker(ProgressTracker.NULL_TRACKER);
+        }
+
+        @Override
+        protected void transformInverse(int x, int y, float[] out) {
+            calls.incrementAndGet();
+            out[0] = x + shift;
+            out[1] = y - shift;
+        }
+
+        @Override
+        protected Object getGeometryState() {
+            return List.of(shift);
+        }
+    }
+
+    /**
+     * A smooth wave distortion, optionally with horizontal steps
+     */
+    private static class WaveFilter extends TransformFilter {
+        private final AtomicInteger calls = new AtomicInteger();
+        private final boolean steps;
+
+        WaveFilter(boolean steps) {
+            super("Wave");
+            this.steps = steps;
+            setProgressTracker(ProgressTracker.NULL_TRACKER);
+            // with a transparent edge an error of a fraction
+            // of a pixel could change the alpha a lot
+            setEdgeAction(REPEAT_EDGE_PIXELS);
+        }
+
+        @Override
+        protected void transformInverse(int x, int y, float[] out) {
+            calls.incrementAndGet();
+            out[0] = x + 5 * (float) Math.sin(y / 20.0);
+            out[1] = y + 5 * (float) Math.cos(x / 25.0);
+            if (steps && x >= 41) {
+                out[0] += 10;
+            }
+        }
+
+        @Override
+        protected boolean hasSmoothMapping() {
+            return true;
+        }
+    }
+
+    /**
+     * Magnifies a circle without a transition, so
+     * the mapping is discontinuous at its edge
+     */
+    private static class MagnifyingFilter extends TransformFilter {
+        private static final float CX = 80;
+        private static final float CY = 45;
+        private static final float RADIUS = 30;
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        MagnifyingFilter() {
+            super("Magnifying");
+            setProgressTracker(ProgressTracker.NULL_TRACKER);
+            setEdgeAction(REPEAT_EDGE_PIXELS);
+        }
+
+        @Override
+        protected void transformInverse(int x, int y, float[] out) {
+            calls.incrementAndGet();
+            float dx = x - CX;
+            float dy = y - CY;
+            if (dx * dx + dy * dy < RADIUS * RADIUS) {
+                out[0] = CX + dx / 2;
+                out[1] = CY + dy / 2;
+            } else {
+                out[0] = x;
+                out[1] = y;
+            }
+        }
+
+        @Override
+        protected boolean hasSmoothMapping() {
+            return true;
+        }
+    }
+
+    /**
+     * Scales the image from the top left corner and shifts it
+     */
+    private static class ScaleFilter extends TransformFilter {
+        private final float scale;
+        private final float shift;
+
+        ScaleFilter(float scale, float shift, int interpolation) {
+            super("Scale");
+            this.scale = scale;
+            this.shift = shift;
+            setInterpolation(interpolation);
+            setEdgeAction(REPEAT_EDGE_PIXELS);
+            setProgressTracker(ProgressTracker.NULL_TRACKER);
+        }
+
+        @Override
+        protected void transformInverse(int x, int y, float[] out) {
+            out[0] = x * scale + shift;
+            out[1] = y * scale + shift;
+        }
+    }
+}
@@ -24,11 +24,18 @@ import org.junit.jupiter.api.Test;
 import pixelitor.Composition.LayerAdder;
 import pixelitor.compactions.Crop;
 import pixelitor.history.History;
+import pixelitor.layers.BlendingMode;
+import pixelitor.layers.ImageLayer;
 import pixelitor.layers.Layer;
 import pixelitor.tools.Tools;
+import pixelitor.tools.move.MoveMode;
+import pixelitor.utils.ImageUtils;
 
 import java.awt.Rectangle;
 import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
 
 import static pixelitor.Composition.LayerAdder.Position.ABOVE_ACTIVE;
 import static pixelitor.Composition.LayerAdder.Position.BELLOW_ACTIVE;
@@ -574,6 +581,57 @@ public class CompositionTest {
                 .thirdLayerIsActive();
     }
 
+    @Test
+    void moveLayerWithPartialCompositeUpdates() {
+        // the moved layer is below the other one, therefore
+        // the upper layer also has to be blended again
+        ImageLayer layer1 = (ImageLayer) comp.getLayer(0);
+        ImageLayer layer2 = (ImageLayer) comp.getLayer(1);
+        fillWithPattern(layer1.getImage(), 1);
+        fillWithPattern(layer2.getImage(), 2);
+        layer2.setOpacity(0.6f, false, false, false);
+        layer2.setBlendingMode(BlendingMode.MULTIPLY, false, false, false);
+        comp.setActiveLayer(layer1);
+
+        comp.startMovement(MoveMode.MOVE_LAYER_ONLY, false);
+        BufferedImage initialComposite = comp.getCompositeImage();
+        BufferedImage initialCopy = ImageUtils.copyImage(initialComposite);
+        List<BufferedImage> composites = new ArrayList<>();
+        double[][] moves = {{3, 2}, {5, -1}, {-30, 0}, {4, 4}, {1, 0}};
+        for (double[] move : moves) {
+            comp.moveActiveContentRelative(MoveMode.MOVE_LAYER_ONLY, move[0], move[1]);
+
+            BufferedImage composite = comp.getCompositeImage();
+            assertThat(comp.isCompositeImageReused()).isTrue();
+            assertThat(ImageUtils.compareSmallImages(composite,
+                    comp.calculateCompositeImage())).isTrue();
+            composites.add(composite);
+        }
+
+        // the initial composite might be still used in other threads
+        assertThat(ImageUtils.compareSmallImages(initialComposite, initialCopy)).isTrue();
+        assertThat(composites.get(0)).isNotSameAs(initialComposite);
+        // two buffers are used alternately
+        assertThat(composites.get(2)).isSameAs(composites.get(0));
+        assertThat(composites.get(3)).isSameAs(composites.get(1));
+        assertThat(composites.get(1)).isNotSameAs(composites.get(0));
+
+        comp.endMovement(MoveMode.MOVE_LAYER_ONLY);
+
+        assertThat(ImageUtils.compareSmallImages(comp.getCompositeImage(),
+                comp.calculateCompositeImage())).isTrue();
+    }
+
+    private static void fillWithPattern(BufferedImage image, int seed) {
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int a = 100 + (x * 7 + y * seed) % 156;
+                int rgb = (x * 13 * seed) % 256 << 16 | (y * 23) % 256 << 8 | (x + y) * seed % 256;
+                image.setRGB(x, y, a << 24 | rgb);
+            }
+        }
+    }
+
     @Test
     void isActive() {
         Layer layer1 = comp.getLayer(0);
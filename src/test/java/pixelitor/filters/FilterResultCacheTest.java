@@ -0,0 +1,179 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import pixelitor.Build;
+import pixelitor.TestHelper;
+import pixelitor.filters.FilterResultCache.Key;
+import pixelitor.filters.gui.RangeParam;
+import pixelitor.filters.gui.ShowOriginal;
+import pixelitor.layers.SharedImages;
+
+import javax.swing.*;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.assertj.core.api.Assertions.assertThat;
+import static pixelitor.ChangeReason.PREVIEWING;
+
+@DisplayName("FilterResultCache tests")
+class FilterResultCacheTest {
+    private final Filter filter = new NoOpFilter();
+    private final BufferedImage src = new BufferedImage(20, 10, TYPE_INT_ARGB);
+
+    @BeforeAll
+    static void beforeAllTests() {
+        Build.setUnitTestingMode();
+        TestHelper.setupMockFgBgSelector();
+    }
+
+    @BeforeEach
+    void beforeEachTest() {
+        FilterResultCache.clear();
+    }
+
+    @AfterEach
+    void afterEachTest() {
+        FilterResultCache.setMaxBytes(Runtime.getRuntime().maxMemory() / 8);
+        FilterResultCache.clear();
+    }
+
+    @Test
+    void sameKeyHits() {
+        BufferedImage result = createResult();
+        FilterResultCache.put(new Key(filter, List.of(1, "a"), 7, src), result);
+
+        assertThat(FilterResultCache.get(new Key(filter, List.of(1, "a"), 7, src)))
+                .isSameAs(result);
+        // the cached result must be copied before it's modified
+        assertThat(SharedImages.hasOtherOwner(result, null)).isTrue();
+    }
+
+    @Test
+    void differentKeysMiss() {
+        FilterResultCache.put(new Key(filter, List.of(1), 7, src), createResult());
+
+        assertThat(FilterResultCache.get(new Key(filter, List.of(2), 7, src))).isNull();
+        assertThat(FilterResultCache.get(new Key(filter, List.of(1), 8, src))).isNull();
+        assertThat(FilterResultCache.get(new Key(new NoOpFilter(), List.of(1), 7, src))).isNull();
+
+        // a selection-sized view of the same image
+        BufferedImage subImage = src.getSubimage(2, 2, 5, 5);
+        assertThat(FilterResultCache.get(new Key(filter, List.of(1), 7, subImage))).isNull();
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        // enough for two results, but not for three
+        FilterResultCache.setMaxBytes(2 * 20 * 10 * 4 + 100);
+
+        Key first = new Key(filter, List.of(1), 7, src);
+        Key second = new Key(filter, List.of(2), 7, src);
+        Key third = new Key(filter, List.of(3), 7, src);
+        FilterResultCache.put(first, createResult());
+        FilterResultCache.put(second, createResult());
+        FilterResultCache.get(first); // now the second is the least recently used
+        FilterResultCache.put(third, createResult());
+
+        assertThat(FilterResultCache.size()).isEqualTo(2);
+        assertThat(FilterResultCache.get(first)).isNotNull();
+        assertThat(FilterResultCache.get(second)).isNull();
+        assertThat(FilterResultCache.get(third)).isNotNull();
+    }
+
+    @Test
+    void tooBigResultsAreNotCached() {
+        FilterResultCache.setMaxBytes(1000);
+
+        FilterResultCache.put(new Key(filter, List.of(1), 7, src), createResult());
+
+        assertThat(FilterResultCache.size()).isZero();
+    }
+
+    @Test
+    void previewCopiesAreCached() {
+        BufferedImage result = createResult();
+        Key key = new Key(filter, List.of(1), 7, src);
+        FilterResultCache.putCopy(key, result);
+
+        BufferedImage cached = FilterResultCache.get(key);
+        assertThat(cached).isNotNull().isNotSameAs(result);
+        // the original still belongs only to the caller
+        assertThat(SharedImages.hasOtherOwner(result, null)).isFalse();
+    }
+
+    @Test
+    void consecutivePreviewsReuseTheBuffer() {
+        var comp = TestHelper.createEmptyComposition();
+        var layer = TestHelper.createImageLayer("layer", comp);
+        comp.addLayerInInitMode(layer);
+        var grayFilter = new GrayFilter();
+        layer.startPreviewing();
+
+        grayFilter.level.setValue(10);
+        grayFilter.run(layer, PREVIEWING, new JPanel());
+        BufferedImage preview = layer.getPreviewImage();
+        assertThat(preview).isNotSameAs(layer.getImageForReading());
+
+        grayFilter.level.setValue(20);
+        grayFilter.run(layer, PREVIEWING, new JPanel());
+        assertThat(layer.getPreviewImage()).isSameAs(preview);
+        assertThat(preview.getRGB(0, 0)).isEqualTo(new Color(20, 20, 20).getRGB());
+        assertThat(FilterResultCache.size()).isEqualTo(2);
+
+        // the cached result is copied into the same buffer
+        grayFilter.level.setValue(10);
+        grayFilter.run(layer, PREVIEWING, new JPanel());
+        assertThat(layer.getPreviewImage()).isSameAs(preview);
+        assertThat(preview.getRGB(0, 0)).isEqualTo(new Color(10, 10, 10).getRGB());
+    }
+
+    private BufferedImage createResult() {
+        return new BufferedImage(src.getWidth(), src.getHeight(), TYPE_INT_ARGB);
+    }
+
+    /**
+     * Fills the image with a gray level
+     */
+    private static class GrayFilter extends ParametrizedFilter {
+        private final RangeParam level = new RangeParam("Level", 0, 0, 255);
+
+        GrayFilter() {
+            super(ShowOriginal.NO);
+            setParams(level);
+        }
+
+        @Override
+        public BufferedImage doTransform(BufferedImage src, BufferedImage dest) {
+            int value = level.getValue();
+            Graphics2D g = dest.createGraphics();
+            g.setColor(new Color(value, value, value));
+            g.fillRect(0, 0, dest.getWidth(), dest.getHeight());
+            g.dispose();
+            return dest;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters.graph;
+
+import com.jhlabs.composite.MultiplyComposite;
+import com.jhlabs.image.BoxBlurFilter;
+import com.jhlabs.image.GlowFilter;
+import com.jhlabs.image.UnsharpFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import pixelitor.filters.Orton;
+import pixelitor.filters.ParametrizedFilter;
+import pixelitor.filters.gui.RangeParam;
+import pixelitor.filters.jhlabsproxies.JHGlow;
+import pixelitor.filters.jhlabsproxies.JHUnsharpMask;
+import pixelitor.filters.lookup.FastLookupOp;
+import pixelitor.utils.ImageUtils;
+
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.ShortLookupTable;
+import java.util.Random;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.assertj.core.api.Assertions.assertThat;
+import static pixelitor.layers.BlendingMode.MULTIPLY;
+import static pixelitor.layers.BlendingMode.SCREEN;
+
+@DisplayName("ImageGraph tests")
+class ImageGraphTest {
+    private static final int WIDTH = 67;
+    private static final int HEIGHT = 101;
+
+    private BufferedImage src;
+
+    @BeforeEach
+    void beforeEachTest() {
+        src = new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB);
+        Random random = new Random(42);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                src.setRGB(x, y, random.nextInt());
+            }
+        }
+    }
+
+    @Test
+    void areaNodeIsCachedWhenOnlyTheBlendingChanges() {
+        ImageGraph graph = new ImageGraph();
+        CountingBlurNode blurred = new CountingBlurNode(graph.getSource());
+        BlendNode blended = new BlendNode(blurred, graph.getSource());
+        blended.setBlendingMode(MULTIPLY);
+
+        blended.setOpacity(0.5f);
+        BufferedImage first = graph.evaluate(blended, src, 1, null);
+        blended.setOpacity(0.7f);
+        BufferedImage second = graph.evaluate(blended, src, 1, null);
+        assertThat(blurred.runCount).isEqualTo(1);
+        assertThat(second).isNotSameAs(first);
+
+        // changing the blur's settings
+        blurred.setRadius(3);
+        graph.evaluate(blended, src, 1, null);
+        assertThat(blurred.runCount).isEqualTo(2);
+
+        // changing the source's content
+        graph.evaluate(blended, src, 2, null);
+        assertThat(blurred.runCount).isEqualTo(3);
+
+        // an unknown source is never cached
+        graph.evaluate(blended, src, 0, null);
+        graph.evaluate(blended, src, 0, null);
+        assertThat(blurred.runCount).isEqualTo(5);
+    }
+
+    @Test
+    void blendNodeIsSameAsComposite() {
+        BufferedImage top = ImageUtils.copyImage(src);
+        BoxBlurFilter blur = new BoxBlurFilter(4, 4, 3, "test");
+        top = blur.filter(top, null);
+
+        BufferedImage expected = ImageUtils.copyImage(src);
+        Graphics2D g = expected.createGraphics();
+        g.setComposite(new MultiplyComposite(0.6f));
+        g.drawImage(top, 0, 0, null);
+        g.dispose();
+
+        ImageGraph graph = new ImageGraph();
+        BoxBlurNode blurred = new BoxBlurNode(graph.getSource(), "test");
+        blurred.setRadius(4);
+        BlendNode blended = new BlendNode(blurred, graph.getSource());
+        blended.setBlendingMode(MULTIPLY);
+        blended.setOpacity(0.6f);
+
+        assertSamePixels(graph.evaluate(blended, src, 1, null), expected);
+    }
+
+    @Test
+    void ortonIsSameAsDirectCalculation() {
+        BufferedImage expected = ImageUtils.copyImage(src);
+        ImageUtils.screenWithItself(expected, 0.8f);
+        BufferedImage blurred = new BoxBlurFilter(3, 3, 3, "test")
+                .filter(ImageUtils.copyImage(expected), null);
+        Graphics2D g = expected.createGraphics();
+        g.setComposite(new MultiplyComposite(0.8f));
+        g.drawImage(blurred, 0, 0, null);
+        g.dispose();
+
+        Orton orton = new Orton();
+        setParam(orton, "Amount (%)", 80);
+        setParam(orton, "Blur Radius", 3);
+
+        assertSamePixels(orton.doTransform(src, null), expected);
+    }
+
+    @Test
+    void glowIsSameAsJHLabsFilter() {
+        GlowFilter glowFilter = new GlowFilter("test");
+        glowFilter.setAmount(0.3f);
+        glowFilter.setRadius(5);
+        BufferedImage expected = glowFilter.filter(src,
+                new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB));
+
+        JHGlow glow = new JHGlow();
+        setParam(glow, "Amount", 30);
+        setParam(glow, "Softness Radius", 5);
+
+        assertSamePixels(glow.doTransform(src, null), expected);
+
+        // without a content version the blur is calculated again
+        setParam(glow, "Amount", 20);
+        glowFilter.setAmount(0.2f);
+        expected = glowFilter.filter(src, new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB));
+        assertSamePixels(glow.doTransform(src, null), expected);
+    }
+
+    @Test
+    void blurIsReusedForTheSameContentVersion() {
+        JHGlow glow = new JHGlow();
+        setParam(glow, "Amount", 30);
+        setParam(glow, "Softness Radius", 5);
+
+        long calcsBefore = AreaNode.getCalcCount();
+        glow.transformImage(src, null, 7);
+        assertThat(AreaNode.getCalcCount()).isEqualTo(calcsBefore + 1);
+
+        // only the blending changes, the same source is not blurred again
+        setParam(glow, "Amount", 20);
+        BufferedImage second = glow.transformImage(src, null, 7);
+        assertThat(AreaNode.getCalcCount()).isEqualTo(calcsBefore + 1);
+
+        GlowFilter glowFilter = new GlowFilter("test");
+        glowFilter.setAmount(0.2f);
+        glowFilter.setRadius(5);
+        assertSamePixels(second, glowFilter.filter(src,
+                new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB)));
+
+        // a new content version means that the source pixels changed
+        glow.transformImage(src, null, 8);
+        assertThat(AreaNode.getCalcCount()).isEqualTo(calcsBefore + 2);
+    }
+
+    @Test
+    void unsharpMaskIsSameAsJHLabsFilter() {
+        UnsharpFilter unsharpFilter = new UnsharpFilter("test");
+        unsharpFilter.setAmount(0.7f);
+        unsharpFilter.setRadius(3);
+        unsharpFilter.setThreshold(5);
+        BufferedImage expected = unsharpFilter.filter(src, null);
+
+        JHUnsharpMask unsharpMask = new JHUnsharpMask();
+        setParam(unsharpMask, "Amount", 70);
+        setParam(unsharpMask, "Radius", 3);
+        setParam(unsharpMask, "Threshold", 5);
+
+        assertSamePixels(unsharpMask.doTransform(src, null), expected);
+    }
+
+    @Test
+    void lutNodeIsSameAsLookupOp() {
+        short[] invert = new short[256];
+        short[] half = new short[256];
+        for (int i = 0; i < 256; i++) {
+            invert[i] = (short) (255 - i);
+            half[i] = (short) (i / 2);
+        }
+        var lut = new ShortLookupTable(0, new short[][]{invert, half, invert});
+        BufferedImage expected = new FastLookupOp(lut).filter(src,
+                new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB));
+
+        ImageGraph graph = new ImageGraph();
+        LutNode lutNode = new LutNode(graph.getSource());
+        lutNode.setLookupTable(lut);
+
+        assertSamePixels(graph.evaluate(lutNode, src, 1, null), expected);
+    }
+
+    @Test
+    void maskNodeMultipliesTheAlpha() {
+        BufferedImage mask = new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int gray = (x * 255) / (WIDTH - 1);
+                mask.setRGB(x, y, 0xFF_00_00_00 | gray << 16 | gray << 8 | gray);
+            }
+        }
+
+        ImageGraph graph = new ImageGraph();
+        // the mask is the source, and the masked image is its inverted version
+        LutNode inverted = new LutNode(graph.getSource());
+        short[] invert = new short[256];
+        for (int i = 0; i < 256; i++) {
+            invert[i] = (short) (255 - i);
+        }
+        inverted.setLookupTable(new ShortLookupTable(0, invert));
+        MaskNode masked = new MaskNode(inverted, graph.getSource());
+
+        BufferedImage result = graph.evaluate(masked, mask, 1, null);
+        assertThat(result.getRGB(0, 0)).isEqualTo(0x00_FF_FF_FF);
+        assertThat(result.getRGB(WIDTH - 1, 0)).isEqualTo(0xFF_00_00_00);
+        int middle = (WIDTH - 1) / 2;
+        int gray = (middle * 255) / (WIDTH - 1);
+        assertThat(result.getRGB(middle, 5) >>> 24).isEqualTo(gray);
+
+        masked.setInverted(true);
+        result = graph.evaluate(masked, mask, 1, null);
+        assertThat(result.getRGB(0, 0)).isEqualTo(0xFF_FF_FF_FF);
+        assertThat(result.getRGB(WIDTH - 1, 0)).isEqualTo(0x00_00_00_00);
+    }
+
+    @Test
+    void transformNodeMovesThePixels() {
+        ImageGraph graph = new ImageGraph();
+        TransformNode moved = new TransformNode(graph.getSource());
+        moved.setTransform(AffineTransform.getTranslateInstance(10, 5));
+
+        BufferedImage result = graph.evaluate(moved, src, 1, null);
+        assertThat(result.getRGB(3, 2)).isZero();
+        assertThat(result.getRGB(13, 7)).isEqualTo(src.getRGB(3, 2));
+        assertThat(result.getRGB(WIDTH - 1, HEIGHT - 1))
+                .isEqualTo(src.getRGB(WIDTH - 11, HEIGHT - 6));
+
+        // the point operations after the transform are
+        // recalculated without transforming again
+        long calcsBefore = AreaNode.getCalcCount();
+        LutNode lutNode = new LutNode(moved);
+        lutNode.setLookupTable(new ShortLookupTable(0, new short[256]));
+        result = graph.evaluate(lutNode, src, 1, null);
+        assertThat(AreaNode.getCalcCount()).isEqualTo(calcsBefore);
+        assertThat(result.getRGB(13, 7)).isEqualTo(src.getRGB(3, 2) & 0xFF_00_00_00);
+    }
+
+    private static void setParam(ParametrizedFilter filter, String name, int value) {
+        filter.getParamSet().getParams().stream()
+                .filter(p -> p.getName().equals(name))
+                .map(p -> (RangeParam) p)
+                .findFirst()
+                .orElseThrow()
+                .setValue(value);
+    }
+
+    private static void assertSamePixels(BufferedImage actual, BufferedImage expected) {
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertThat(actual.getRGB(x, y))
+                        .as("x = %d, y = %d", x, y)
+                        .isEqualTo(expected.getRGB(x, y));
+            }
+        }
+    }
+
+    private static class CountingBlurNode extends AreaNode {
+        private int runCount = 0;
+        private float radius = 2;
+
+        CountingBlurNode(Node input) {
+            super(input);
+        }
+
+        void setRadius(float radius) {
+            this.radius = radius;
+            settingsChanged();
+        }
+
+        @Override
+        protected BufferedImage calc(BufferedImage[] inputs, BufferedImage reusable) {
+            runCount++;
+            return new BoxBlurFilter(radius, radius, 3, "test")
+                    .filter(inputs[0], checkReusable(reusable, inputs[0]));
+        }
+    }
+}
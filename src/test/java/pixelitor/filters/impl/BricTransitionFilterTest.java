@@ -0,0 +1,146 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters.impl;
+
+import com.bric.image.transition.CircleTransition2D;
+import com.bric.image.transition.ReversedTransition;
+import com.bric.image.transition.TossTransition2D;
+import com.bric.image.transition.Transition;
+import com.bric.image.transition.WaveTransition2D;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.stream.IntStream;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.assertj.core.api.Assertions.assertThat;
+import static pixelitor.filters.impl.BricTransitionFilter.*;
+
+@DisplayName("BricTransitionFilter tests")
+class BricTransitionFilterTest {
+    // big enough to be painted in bands, with a height
+    // that is not a multiple of the number of bands
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 303;
+
+    private static BufferedImage src;
+
+    @BeforeAll
+    static void beforeAllTests() {
+        src = new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB);
+        Graphics2D g = src.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, Color.RED, WIDTH, HEIGHT, new Color(0, 0, 255, 128)));
+        g.fillRect(0, 0, WIDTH, HEIGHT);
+        g.setColor(Color.YELLOW);
+        g.fillOval(50, 40, 200, 150);
+        g.dispose();
+    }
+
+    static IntStream types() {
+        // 13 (documentary) is not used
+        return IntStream.rangeClosed(BARS_HORIZONTAL, WAVE)
+                .filter(type -> type != 13);
+    }
+
+    @ParameterizedTest
+    @MethodSource("types")
+    void bandsMatchSingleThreadedPainting(int type) {
+        var filter = new BricTransitionFilter("test");
+        filter.setType(type);
+
+        for (float progress : new float[]{0.0f, 0.3f, 0.75f}) {
+            filter.setNumBands(1);
+            filter.setProgress(progress);
+            BufferedImage expected = filter.filter(src, newDest());
+
+            filter.setNumBands(5);
+            filter.setProgress(progress);
+            BufferedImage banded = filter.filter(src, newDest());
+
+            assertSamePixels(banded, expected, "type = " + type + ", progress = " + progress);
+        }
+    }
+
+    @Test
+    void repeatedRunsAreTheSame() {
+        // the toss-in filter used to invert its progress setting at each run
+        var filter = new BricTransitionFilter("test");
+        filter.setType(TOSS_IN);
+        filter.setProgress(0.3f);
+
+        BufferedImage first = filter.filter(src, newDest());
+        BufferedImage second = filter.filter(src, newDest());
+
+        assertSamePixels(second, first, "second run");
+    }
+
+    @Test
+    void matchesTheTransitionPainting() {
+        var transparent = new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB);
+
+        assertMatchesTransition(CIRCLE_IN, 0.4f,
+                new CircleTransition2D(Transition.IN), transparent);
+        assertMatchesTransition(WAVE, 0.4f,
+                new ReversedTransition(new WaveTransition2D(Transition.LEFT)), transparent);
+        // the toss-in filter paints the reversed transition backwards
+        assertMatchesTransition(TOSS_IN, 0.4f,
+                new ReversedTransition(new TossTransition2D()), transparent);
+    }
+
+    private static void assertMatchesTransition(int type, float progress,
+                                                Transition transition,
+                                                BufferedImage transparent) {
+        BufferedImage expected = newDest();
+        Graphics2D g = expected.createGraphics();
+        float paintedProgress = type == TOSS_IN ? 1 - progress : progress;
+        transition.paint(g, src, transparent, paintedProgress);
+        g.dispose();
+
+        var filter = new BricTransitionFilter("test");
+        filter.setType(type);
+        filter.setNumBands(4);
+        filter.setProgress(progress);
+        BufferedImage filtered = filter.filter(src, newDest());
+
+        assertSamePixels(filtered, expected, "type = " + type);
+    }
+
+    private static BufferedImage newDest() {
+        return new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB);
+    }
+
+    private static void assertSamePixels(BufferedImage actual, BufferedImage expected, String desc) {
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int rgb = actual.getRGB(x, y);
+                if (rgb != expected.getRGB(x, y)) {
+                    assertThat(rgb)
+                            .as("%s, x = %d, y = %d", desc, x, y)
+                            .isEqualTo(expected.getRGB(x, y));
+                }
+            }
+        }
+    }
+}
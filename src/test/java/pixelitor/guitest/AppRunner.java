@@ -36,7 +36,7 @@ import org.assertj.swing.fixture.JPopupMenuFixture;
 import org.assertj.swing.launcher.ApplicationLauncher;
 import pixelitor.filters.gui.ShowOriginal;
 import pixelitor.gui.PixelitorWindow;
-import pixelitor.io.IOThread;
+import pixelitor.io.IOTasks;
 import pixelitor.selection.SelectionModifyType;
 import pixelitor.tools.Tool;
 import pixelitor.utils.Utils;
@@ -47,8 +47,6 @@ import java.awt.EventQueue;
 import java.io.File;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
 import java.util.stream.Stream;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
@@ -195,11 +193,11 @@ public class AppRunner {
 
         // even if the dialog is not visible, the
         // async saving of the last file might be still running
-        boolean stillWriting = EDT.call(IOThread::isBusyWriting);
+        boolean stillWriting = EDT.call(IOTasks::isBusyWriting);
         while(stillWriting) {
             System.out.println("waiting 1s for the IO thread...");
             Utils.sleep(1, SECONDS);
-            stillWriting = EDT.call(IOThread::isBusyWriting);
+            stillWriting = EDT.call(IOTasks::isBusyWriting);
         }
     }
 
@@ -454,18 +452,14 @@ public class AppRunner {
         return buttonFixture;
     }
 
-    // waits until the IO thread not busy
+    // waits until the IO threads are not busy
     public static void waitForIO() {
         // make sure that the task started executing
         Utils.sleep(500, MILLISECONDS);
 
-        // waiting until an empty task finishes works
-        // because the IO thread pool has a single thread
-        var executor = (ExecutorService) IOThread.getExecutor();
-        var future = executor.submit(() -> {});
         try {
-            future.get();
-        } catch (InterruptedException | ExecutionException e) {
+            IOTasks.waitForIdle();
+        } catch (InterruptedException e) {
             throw new RuntimeException(e);
         }
     }
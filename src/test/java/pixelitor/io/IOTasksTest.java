@@ -0,0 +1,123 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.io;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("IOTasks tests")
+class IOTasksTest {
+    @Test
+    void tasksOfTheSameFileRunInSubmissionOrder() throws Exception {
+        File file = new File("io_tasks_test_1.png");
+        List<String> events = new CopyOnWriteArrayList<>();
+        CountDownLatch writeCanFinish = new CountDownLatch(1);
+
+        var write = IOTasks.submitWrite(file, () -> {
+            await(writeCanFinish);
+            events.add("write");
+        });
+        var read1 = IOTasks.submitRead(file, () -> events.add("read"));
+        var read2 = IOTasks.submitRead(file, () -> events.add("read"));
+
+        assertThat(IOTasks.isProcessing(file.getAbsolutePath())).isTrue();
+        assertThat(IOTasks.getCurrentWritePaths()).containsExactly(file.getAbsolutePath());
+
+        writeCanFinish.countDown();
+        write.get(5, TimeUnit.SECONDS);
+        read1.get(5, TimeUnit.SECONDS);
+        read2.get(5, TimeUnit.SECONDS);
+        IOTasks.waitForIdle();
+
+        assertThat(events).containsExactly("write", "read", "read");
+        assertThat(IOTasks.isProcessing(file.getAbsolutePath())).isFalse();
+        assertThat(IOTasks.isBusyWriting()).isFalse();
+    }
+
+    @Test
+    void differentFilesAreNotBlocked() throws Exception {
+        File blockedFile = new File("io_tasks_test_2.png");
+        File otherFile = new File("io_tasks_test_3.png");
+        CountDownLatch writeCanFinish = new CountDownLatch(1);
+
+        var write = IOTasks.submitWrite(blockedFile, () -> await(writeCanFinish));
+        var read = IOTasks.submitRead(otherFile, () -> "done");
+
+        // the read can finish while the other file's write is still running
+        assertThat(read.get(5, TimeUnit.SECONDS)).isEqualTo("done");
+        assertThat(write).isNotDone();
+
+        writeCanFinish.countDown();
+        write.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void failedWriteKeepsThePreviousFile(@TempDir Path dir) throws Exception {
+        File file = dir.resolve("io_tasks_test_4.png").toFile();
+        IOTasks.writeViaTempFile(file, tmp -> Files.writeString(tmp.toPath(), "first"));
+        assertThat(file).hasContent("first");
+
+        assertThatThrownBy(() -> IOTasks.writeViaTempFile(file, tmp -> {
+            Files.writeString(tmp.toPath(), "partial");
+            throw new IOException("disk full");
+        })).isInstanceOf(IOException.class);
+
+        // the previous version is intact, and the temporary file is deleted
+        assertThat(file).hasContent("first");
+        assertThat(dir.toFile().list()).containsExactly(file.getName());
+
+        IOTasks.writeViaTempFile(file, tmp -> Files.writeString(tmp.toPath(), "second"));
+        assertThat(file).hasContent("second");
+        assertThat(dir.toFile().list()).containsExactly(file.getName());
+    }
+
+    @Test
+    void tempFileIsNotWrittenNextToTheTarget(@TempDir Path dir) throws Exception {
+        File file = dir.resolve("io_tasks_test_5.png").toFile();
+        File[] tmpFile = new File[1];
+        IOTasks.writeViaTempFile(file, tmp -> {
+            tmpFile[0] = tmp;
+            Files.writeString(tmp.toPath(), "content");
+        });
+
+        assertThat(tmpFile[0].getParentFile()).isNotEqualTo(dir.toFile());
+        assertThat(tmpFile[0]).doesNotExist();
+        assertThat(file).hasContent("content");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
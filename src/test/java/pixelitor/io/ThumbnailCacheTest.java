@@ -0,0 +1,93 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.io;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pixelitor.gui.utils.ThumbInfo;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.awt.image.BufferedImage.TYPE_INT_RGB;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("ThumbnailCache tests")
+class ThumbnailCacheTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void entryRoundTrip() throws IOException {
+        var thumb = new BufferedImage(20, 10, TYPE_INT_ARGB);
+        thumb.setRGB(3, 4, 0xFF_12_34_56);
+
+        var out = new ByteArrayOutputStream();
+        ThumbnailCache.writeEntry(out, new ThumbInfo(thumb, 2000, 1000));
+        ThumbInfo read = ThumbnailCache.readEntry(new ByteArrayInputStream(out.toByteArray()));
+
+        assertThat(read.getOrigWidth()).isEqualTo(2000);
+        assertThat(read.getOrigHeight()).isEqualTo(1000);
+        assertThat(read.getThumb().getWidth()).isEqualTo(20);
+        assertThat(read.getThumb().getRGB(3, 4)).isEqualTo(0xFF_12_34_56);
+    }
+
+    @Test
+    void entriesAreReusedUntilTheFileChanges() throws IOException {
+        Path cacheDir = tempDir.resolve("cache");
+        File imageFile = tempDir.resolve("image.png").toFile();
+        writeImage(imageFile, 600, 550);
+
+        ThumbInfo thumbInfo = new ThumbnailCache(cacheDir).get(imageFile, null);
+        assertThat(thumbInfo.getOrigWidth()).isEqualTo(600);
+        assertThat(thumbInfo.getOrigHeight()).isEqualTo(550);
+        assertThat(thumbInfo.getThumb().getWidth()).isLessThanOrEqualTo(ThumbnailCache.MAX_THUMB_SIZE);
+        assertThat(countEntries(cacheDir)).isEqualTo(1);
+
+        // a new cache instance finds the persisted entry
+        thumbInfo = new ThumbnailCache(cacheDir).get(imageFile, null);
+        assertThat(thumbInfo.getOrigWidth()).isEqualTo(600);
+        assertThat(countEntries(cacheDir)).isEqualTo(1);
+
+        // a modified file gets a new entry
+        writeImage(imageFile, 700, 550);
+        imageFile.setLastModified(imageFile.lastModified() + 2000);
+        thumbInfo = new ThumbnailCache(cacheDir).get(imageFile, null);
+        assertThat(thumbInfo.getOrigWidth()).isEqualTo(700);
+        assertThat(countEntries(cacheDir)).isEqualTo(2);
+    }
+
+    private static void writeImage(File file, int width, int height) throws IOException {
+        ImageIO.write(new BufferedImage(width, height, TYPE_INT_RGB), "png", file);
+    }
+
+    private static long countEntries(Path cacheDir) throws IOException {
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            return files.count();
+        }
+    }
+}
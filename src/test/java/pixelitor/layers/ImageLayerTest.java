@@ -37,11 +37,15 @@ import pixelitor.testutils.WithTranslation;
 import pixelitor.utils.ImageUtils;
 
 import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.util.Arrays;
 import java.util.Collection;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.times;
@@ -166,6 +170,65 @@ public class ImageLayerTest {
         iconUpdates.check(0, 0);
     }
 
+    @Test
+    public void onDialogAcceptedWithChangedPreview() {
+        // with the default small selection the backup is a copy
+        checkAcceptedPreviewUndoRedo();
+    }
+
+    @Test
+    public void onDialogAcceptedWithChangedPreviewInLargeSelection() {
+        if (withSelection.isYes()) {
+            // the backup is a view of the replaced image if the
+            // selection covers at least half of the image
+            TestHelper.addSelectionRectTo(comp, 1, 1, 18, 8);
+        }
+        checkAcceptedPreviewUndoRedo();
+    }
+
+    private void checkAcceptedPreviewUndoRedo() {
+        History.clear();
+        fill(layer.getImage(), Color.RED);
+        BufferedImage imageBefore = layer.getImage();
+        int[] pixelsBefore = copyPixels(imageBefore);
+
+        layer.startPreviewing();
+        BufferedImage filtered = ImageUtils.createImageWithSameCM(
+                layer.getFilterSourceImage());
+        fill(filtered, Color.BLUE);
+        layer.changePreviewImage(filtered, "filterName", PREVIEWING);
+
+        layer.onFilterDialogAccepted("filterName");
+
+        assertThat(layer)
+                .stateIs(NORMAL)
+                .previewImageIs(null);
+        assertNotSame(imageBefore, layer.getImage());
+        History.assertNumEditsIs(1);
+        int[] pixelsAfter = copyPixels(layer.getImage());
+        assertFalse(Arrays.equals(pixelsBefore, pixelsAfter));
+
+        History.undo("filterName");
+        if (!withSelection.isYes()) {
+            assertThat(layer).imageIs(imageBefore);
+        }
+        assertArrayEquals(pixelsBefore, copyPixels(layer.getImage()));
+
+        History.redo("filterName");
+        assertArrayEquals(pixelsAfter, copyPixels(layer.getImage()));
+    }
+
+    private static void fill(BufferedImage img, Color color) {
+        Graphics2D g = img.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, img.getWidth(), img.getHeight());
+        g.dispose();
+    }
+
+    private static int[] copyPixels(BufferedImage img) {
+        return ImageUtils.getPixelsAsArray(img).clone();
+    }
+
     @Test
     public void onDialogCanceled_Fail() {
         assertThrows(AssertionError.class, () ->
@@ -547,6 +610,51 @@ public class ImageLayerTest {
         iconUpdates.check(0, 0);
     }
 
+    @Test
+    public void duplicateSharesImageUntilModified() {
+        BufferedImage image = layer.getImageForReading();
+        int origRGB = image.getRGB(0, 0);
+
+        ImageLayer duplicate = layer.duplicate(false);
+        assertThat(duplicate.getImageForReading()).isSameAs(image);
+
+        // writing into the duplicate must not change the original
+        BufferedImage duplicateImage = duplicate.getImage();
+        assertNotSame(image, duplicateImage);
+        duplicateImage.setRGB(0, 0, ~origRGB);
+
+        assertThat(layer.getImageForReading().getRGB(0, 0)).isEqualTo(origRGB);
+        // the original layer is now the only owner, so it writes in place
+        assertThat(layer.getImage()).isSameAs(image);
+        assertThat(layer.getImage().getRGB(0, 0)).isEqualTo(origRGB);
+    }
+
+    @Test
+    public void accessorsDoNotChangeContentVersion() {
+        long version = layer.getContentVersion();
+
+        layer.getImageForReading();
+        layer.getImage();
+        layer.getCanvasSizedSubImage();
+        assertThat(layer.getContentVersion()).isEqualTo(version);
+    }
+
+    @Test
+    public void contentVersion() {
+        long version = layer.getContentVersion();
+        layer.getImageForReading();
+        assertThat(layer.getContentVersion()).isEqualTo(version);
+
+        // the pixels are modified in place
+        layer.getImage().setRGB(0, 0, 0xFF_00_00_FF);
+        layer.pixelsChanged();
+        long newVersion = layer.getContentVersion();
+        assertThat(newVersion).isNotEqualTo(version);
+
+        layer.setImage(TestHelper.createImage());
+        assertThat(layer.getContentVersion()).isNotEqualTo(newVersion);
+    }
+
     @Test
     public void applyLayerMask() {
         if (withMask.isYes()) {
@@ -0,0 +1,409 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.manual;
+
+import pixelitor.Build;
+import pixelitor.Composition;
+import pixelitor.TestHelper;
+import pixelitor.filters.BrightnessContrast;
+import pixelitor.filters.Clouds;
+import pixelitor.filters.Filter;
+import pixelitor.filters.HueSat;
+import pixelitor.filters.Invert;
+import pixelitor.filters.gui.FilterWithGUI;
+import pixelitor.filters.jhlabsproxies.JHGaussianBlur;
+import pixelitor.filters.jhlabsproxies.JHMotionBlur;
+import pixelitor.filters.jhlabsproxies.JHSwirlPinchBulge;
+import pixelitor.filters.jhlabsproxies.JHUnsharpMask;
+import pixelitor.gui.View;
+import pixelitor.history.History;
+import pixelitor.layers.Drawable;
+import pixelitor.layers.ImageLayer;
+import pixelitor.tools.Tool;
+import pixelitor.tools.Tools;
+import pixelitor.tools.gui.ToolSettingsPanel;
+import pixelitor.utils.Rnd;
+import pixelitor.utils.test.RandomGUITest;
+
+import javax.swing.*;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static pixelitor.ChangeReason.FILTER_WITHOUT_DIALOG;
+import static pixelitor.ChangeReason.PREVIEWING;
+import static pixelitor.filters.jhlabsproxies.JHMotionBlur.Mode.MOTION_BLUR;
+
+/**
+ * A standalone program which replays a seeded random sequence of
+ * operations (filters, brush strokes, history and layer operations)
+ * on a generated composition, and measures their latency,
+ * allocation rate and the peak heap usage. Not a unit test.
+ *
+ * It uses the same mock views as the unit tests, therefore it can
+ * run without a window, also with -Djava.awt.headless=true.
+ * It must be run with assertions enabled (-ea).
+ *
+ * Configuration (system properties, with defaults):
+ * stress.seed (1), stress.width (1920), stress.height (1080),
+ * stress.layers (4), stress.ops (300), stress.warmup (30),
+ * stress.filters (comma-separated class names), stress.verbose (false).
+ *
+ * Budgets (the exit code is 1 if any is exceeded):
+ * stress.budget.OPERATION.p95 (ms), for example stress.budget.FILTER.p95=500,
+ * stress.budget.allocMBPerSec and stress.budget.peakHeapMB.
+ */
+public class StressTest {
+    private enum Operation {
+        FILTER(3), BRUSH_STROKE(4), ERASER_STROKE(2), SMUDGE_STROKE(1),
+        COMPOSITE(2), UNDO(2), REDO(1), ADD_LAYER(1), DUPLICATE_LAYER(1),
+        DELETE_LAYER(1);
+
+        private final int weight;
+
+        Operation(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    private final long seed = Long.getLong("stress.seed", 1);
+    private final int width = Integer.getInteger("stress.width", 1920);
+    private final int height = Integer.getInteger("stress.height", 1080);
+    private final int numLayers = Integer.getInteger("stress.layers", 4);
+    private final int numOps = Integer.getInteger("stress.ops", 300);
+    private final int numWarmupOps = Integer.getInteger("stress.warmup", 30);
+    private final boolean verbose = Boolean.getBoolean("stress.verbose");
+
+    private final Random random = new Random(seed);
+    private final List<Operation> weightedOps = new ArrayList<>();
+    private final Map<Operation, List<Long>> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, Long> allocations = new EnumMap<>(Operation.class);
+    private final List<Filter> filters;
+
+    // the busy cursor of the filters is set on this invisible component
+    private final JComponent busyCursorParent = new JPanel();
+
+    private final com.sun.management.ThreadMXBean threadBean;
+
+    private Composition comp;
+    private View view;
+    private long peakUsedHeap;
+
+    public static void main(String[] args) throws Exception {
+        Build.setUnitTestingMode();
+        RandomGUITest.setRunning(true); // avoid dialogs
+        TestHelper.setupMockFgBgSelector();
+
+        int exitCode = 2;
+        try {
+            exitCode = new StressTest().run() ? 0 : 1;
+        } catch (Throwable e) {
+            e.printStackTrace();
+        } finally {
+            // the thread pool threads would keep the JVM alive
+            System.exit(exitCode);
+        }
+    }
+
+    private StressTest() throws ReflectiveOperationException {
+        for (Operation op : Operation.values()) {
+            for (int i = 0; i < op.weight; i++) {
+                weightedOps.add(op);
+            }
+            latencies.put(op, new ArrayList<>());
+            allocations.put(op, 0L);
+        }
+        filters = createFilters();
+
+        var bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            threadBean = (com.sun.management.ThreadMXBean) bean;
+        } else {
+            threadBean = null;
+        }
+    }
+
+    private static List<Filter> createFilters() throws ReflectiveOperationException {
+        String classNames = System.getProperty("stress.filters");
+        if (classNames == null) {
+            return List.of(new JHGaussianBlur(), new JHUnsharpMask(),
+                    new JHMotionBlur(MOTION_BLUR), new JHSwirlPinchBulge(),
+                    new HueSat(), new BrightnessContrast(), new Invert(), new Clouds());
+        }
+        List<Filter> list = new ArrayList<>();
+        for (String className : classNames.split(",")) {
+            list.add((Filter) Class.forName(className.trim())
+                    .getDeclaredConstructor().newInstance());
+        }
+        return list;
+    }
+
+    private boolean run() throws InterruptedException, InvocationTargetException {
+        System.out.printf("StressTest: seed = %d, size = %dx%d, layers = %d, ops = %d%n",
+                seed, width, height, numLayers, numOps);
+
+        // the random choices of the app (for example the filter settings)
+        // are also reproducible
+        Rnd.setSeed(seed);
+        initTools();
+        createComposition();
+
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool);
+            }
+        }
+
+        for (int i = 0; i < numWarmupOps; i++) {
+            runOperation(nextOperation(), false);
+        }
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        long startTime = System.nanoTime();
+        long allocatedBefore = getAllocatedBytes();
+        for (int i = 0; i < numOps; i++) {
+            runOperation(nextOperation(), true);
+        }
+        double seconds = (System.nanoTime() - startTime) / 1.0e9;
+        double allocMB = (getAllocatedBytes() - allocatedBefore) / (1024.0 * 1024.0);
+
+        // the sum of the pool peaks can be larger than the real
+        // peak, because the pools might have peaked at different times
+        long poolPeaks = heapPools.stream()
+                .mapToLong(pool -> pool.getPeakUsage().getUsed())
+                .sum();
+        double peakHeapMB = Math.max(peakUsedHeap, poolPeaks) / (1024.0 * 1024.0);
+
+        return report(seconds, allocMB / seconds, peakHeapMB);
+    }
+
+    private static void initTools() throws InterruptedException, InvocationTargetException {
+        for (Tool tool : new Tool[]{Tools.BRUSH, Tools.ERASER, Tools.SMUDGE}) {
+            tool.setSettingsPanel(new ToolSettingsPanel());
+            SwingUtilities.invokeAndWait(tool::initSettingsPanel);
+        }
+    }
+
+    private void createComposition() {
+        comp = TestHelper.createEmptyComposition(width, height);
+        view = comp.getView();
+
+        for (int i = 0; i < numLayers; i++) {
+            comp.addLayerInInitMode(new ImageLayer(comp, createLayerImage(), "layer " + (i + 1)));
+        }
+    }
+
+    private BufferedImage createLayerImage() {
+        var img = new BufferedImage(width, height, TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, randomColor(),
+                width, height, randomColor()));
+        g.fillRect(0, 0, width, height);
+        for (int i = 0; i < 50; i++) {
+            g.setColor(randomColor());
+            int size = 1 + random.nextInt(Math.max(width, height) / 4);
+            g.fillOval(random.nextInt(width), random.nextInt(height), size, size);
+        }
+        g.dispose();
+        return img;
+    }
+
+    private Color randomColor() {
+        return new Color(random.nextInt(), true);
+    }
+
+    private Operation nextOperation() {
+        return weightedOps.get(random.nextInt(weightedOps.size()));
+    }
+
+    private void runOperation(Operation op, boolean measure) {
+        if (verbose) {
+            System.out.println("StressTest: " + op);
+        }
+        long allocatedBefore = getAllocatedBytes();
+        long startTime = System.nanoTime();
+
+        execute(op);
+
+        long duration = System.nanoTime() - startTime;
+        long allocated = getAllocatedBytes() - allocatedBefore;
+
+        Runtime runtime = Runtime.getRuntime();
+        peakUsedHeap = Math.max(peakUsedHeap, runtime.totalMemory() - runtime.freeMemory());
+
+        if (measure) {
+            latencies.get(op).add(duration);
+            allocations.merge(op, allocated, Long::sum);
+        }
+    }
+
+    private void execute(Operation op) {
+        switch (op) {
+            case FILTER:
+                runFilter(filters.get(random.nextInt(filters.size())));
+                break;
+            case BRUSH_STROKE:
+                stroke(Tools.BRUSH);
+                break;
+            case ERASER_STROKE:
+                stroke(Tools.ERASER);
+                break;
+            case SMUDGE_STROKE:
+                stroke(Tools.SMUDGE);
+                break;
+            case COMPOSITE:
+                comp.imageChanged();
+                comp.getCompositeImage();
+                break;
+            case UNDO:
+                if (History.canUndo()) {
+                    History.undo();
+                }
+                break;
+            case REDO:
+                if (History.canRedo()) {
+                    History.redo();
+                }
+                break;
+            case ADD_LAYER:
+                comp.addNewEmptyLayer("new layer", false);
+                break;
+            case DUPLICATE_LAYER:
+                comp.duplicateActiveLayer();
+                break;
+            case DELETE_LAYER:
+                if (comp.getNumLayers() > 1) {
+                    comp.deleteActiveLayer(false, true);
+                }
+                break;
+            default:
+                throw new IllegalStateException("op = " + op);
+        }
+    }
+
+    private void runFilter(Filter filter) {
+        Drawable dr = comp.getActiveDrawableOrThrow();
+        if (filter instanceof FilterWithGUI) {
+            // simulate a filter dialog with random settings
+            ((FilterWithGUI) filter).randomizeSettings();
+            dr.startPreviewing();
+            filter.run(dr, PREVIEWING, busyCursorParent);
+            dr.onFilterDialogAccepted(filter.getName());
+        } else {
+            filter.run(dr, FILTER_WITHOUT_DIALOG, busyCursorParent);
+        }
+    }
+
+    private void stroke(Tool tool) {
+        Tools.changeToWithoutGUI(tool);
+
+        int x = random.nextInt(width);
+        int y = random.nextInt(height);
+        TestHelper.press(x, y, view);
+        int numSegments = 10 + random.nextInt(20);
+        for (int i = 0; i < numSegments; i++) {
+            x = clamp(x + random.nextInt(61) - 30, width);
+            y = clamp(y + random.nextInt(61) - 30, height);
+            TestHelper.drag(x, y, view);
+        }
+        TestHelper.release(x, y, view);
+    }
+
+    private static int clamp(int value, int max) {
+        return Math.max(0, Math.min(max - 1, value));
+    }
+
+    /**
+     * Returns the number of bytes allocated so far by the live threads,
+     * or 0 if this is not supported by the JVM. The allocations of
+     * the threads that already finished are not counted.
+     */
+    private long getAllocatedBytes() {
+        if (threadBean == null || !threadBean.isThreadAllocatedMemoryEnabled()) {
+            return 0;
+        }
+        long[] ids = threadBean.getAllThreadIds();
+        return Arrays.stream(threadBean.getThreadAllocatedBytes(ids))
+                .filter(bytes -> bytes > 0)
+                .sum();
+    }
+
+    private boolean report(double seconds, double allocMBPerSec, double peakHeapMB) {
+        List<String> violations = new ArrayList<>();
+
+        System.out.printf("%-16s %6s %9s %9s %9s %9s %12s%n",
+                "operation", "count", "p50 ms", "p95 ms", "p99 ms", "max ms", "alloc MB/op");
+        for (Operation op : Operation.values()) {
+            List<Long> times = latencies.get(op);
+            if (times.isEmpty()) {
+                continue;
+            }
+            long[] sorted = times.stream().mapToLong(Long::longValue).sorted().toArray();
+            double p95 = percentileMillis(sorted, 0.95);
+            double allocPerOp = allocations.get(op) / (1024.0 * 1024.0) / sorted.length;
+            System.out.printf("%-16s %6d %9.1f %9.1f %9.1f %9.1f %12.1f%n",
+                    op, sorted.length, percentileMillis(sorted, 0.5), p95,
+                    percentileMillis(sorted, 0.99), sorted[sorted.length - 1] / 1.0e6,
+                    allocPerOp);
+
+            checkBudget("stress.budget." + op + ".p95", op + " p95 latency (ms)",
+                    p95, violations);
+        }
+        System.out.printf("total time = %.1f s, allocation rate = %.1f MB/s, peak heap = %.1f MB%n",
+                seconds, allocMBPerSec, peakHeapMB);
+
+        checkBudget("stress.budget.allocMBPerSec", "allocation rate (MB/s)",
+                allocMBPerSec, violations);
+        checkBudget("stress.budget.peakHeapMB", "peak heap (MB)",
+                peakHeapMB, violations);
+
+        if (violations.isEmpty()) {
+            System.out.println("StressTest: all budgets are met.");
+            return true;
+        }
+        System.out.println("StressTest: budgets exceeded:");
+        violations.forEach(v -> System.out.println("    " + v));
+        return false;
+    }
+
+    private static double percentileMillis(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1.0e6;
+    }
+
+    private static void checkBudget(String property, String description,
+                                    double value, List<String> violations) {
+        String budget = System.getProperty(property);
+        if (budget != null && value > Double.parseDouble(budget)) {
+            violations.add(String.format("%s = %.1f, budget = %s", description, value, budget));
+        }
+    }
+}
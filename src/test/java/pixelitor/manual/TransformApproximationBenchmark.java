@@ -0,0 +1,157 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.manual;
+
+import com.jhlabs.image.PerspectiveFilter;
+import com.jhlabs.image.TransformFilter;
+import pixelitor.filters.impl.CircleToSquareFilter;
+import pixelitor.filters.impl.MagnifyFilter;
+import pixelitor.filters.impl.SliceFilter;
+import pixelitor.utils.BlurredShape;
+import pixelitor.utils.ProgressTracker;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+
+/**
+ * A standalone program which compares the speed and the accuracy of
+ * the exact and the grid-approximated mappings of the smooth
+ * distortion filters. Not a unit test.
+ *
+ * Configuration (system properties, with defaults):
+ * bench.width (1920), bench.height (1080), bench.runs (10).
+ */
+public class TransformApproximationBenchmark {
+    private static final int width = Integer.getInteger("bench.width", 1920);
+    private static final int height = Integer.getInteger("bench.height", 1080);
+    private static final int numRuns = Integer.getInteger("bench.runs", 10);
+
+    private TransformApproximationBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        BufferedImage src = createSource();
+
+        System.out.printf("%-22s %10s %10s %8s %10s %10s%n", "filter",
+                "exact ms", "approx ms", "speedup", "max diff", "mean diff");
+        for (TransformFilter filter : createFilters(src)) {
+            filter.setProgressTracker(ProgressTracker.NULL_TRACKER);
+
+            BufferedImage exact = new BufferedImage(width, height, TYPE_INT_ARGB);
+            double exactMillis = measure(filter, src, exact, false);
+
+            BufferedImage approx = new BufferedImage(width, height, TYPE_INT_ARGB);
+            double approxMillis = measure(filter, src, approx, true);
+
+            int[] exactPixels = exact.getRGB(0, 0, width, height, null, 0, width);
+            int[] approxPixels = approx.getRGB(0, 0, width, height, null, 0, width);
+            int maxDiff = 0;
+            long sumDiff = 0;
+            for (int i = 0; i < exactPixels.length; i++) {
+                for (int shift = 0; shift < 32; shift += 8) {
+                    int diff = Math.abs(((exactPixels[i] >>> shift) & 0xFF)
+                            - ((approxPixels[i] >>> shift) & 0xFF));
+                    maxDiff = Math.max(maxDiff, diff);
+                    sumDiff += diff;
+                }
+            }
+            double meanDiff = sumDiff / (4.0 * exactPixels.length);
+
+            System.out.printf("%-22s %10.1f %10.1f %8.2f %10d %10.3f%n",
+                    filter.getClass().getSimpleName(), exactMillis, approxMillis,
+                    exactMillis / approxMillis, maxDiff, meanDiff);
+        }
+        System.exit(0);
+    }
+
+    private static List<TransformFilter> createFilters(BufferedImage src) {
+        var perspective = new PerspectiveFilter(0.1f, 0.05f, 0.85f, 0.2f,
+                0.95f, 0.9f, 0.0f, 0.8f, "Perspective");
+
+        var circleToSquare = new CircleToSquareFilter();
+        circleToSquare.setRelCenter(0.5f, 0.5f);
+        circleToSquare.setRadiusX(height / 2.5f);
+        circleToSquare.setRadiusY(height / 2.5f);
+        circleToSquare.setAmount(1.0f);
+
+        var magnify = new MagnifyFilter("Magnify");
+        magnify.setRelCenter(0.5f, 0.5f);
+        magnify.setInnerRadiusX(height / 4.0f);
+        magnify.setInnerRadiusY(height / 4.0f);
+        magnify.setOuterRadiusX(height / 3.0f);
+        magnify.setOuterRadiusY(height / 3.0f);
+        magnify.setMagnification(2.0f);
+        magnify.calcAbsoluteCenter(src);
+        magnify.setShape(BlurredShape.TYPE_ELLIPSE);
+
+        // a rotated effect with discontinuities along the slice edges
+        var slice = new SliceFilter("Slice");
+        slice.setSize(60);
+        slice.setOffset(10);
+        slice.setShiftHorizontal(0.3);
+        slice.setShiftVertical(0.6);
+        slice.setAngle(0.4);
+
+        return List.of(perspective, circleToSquare, magnify, slice);
+    }
+
+    /**
+     * Returns the average time of the runs in milliseconds
+     */
+    private static double measure(TransformFilter filter, BufferedImage src,
+                                  BufferedImage dest, boolean approximate) {
+        // warmup
+        TransformFilter.allowApproximation(approximate);
+        filter.filter(src, dest);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < numRuns; i++) {
+            // the approximated mapping of unchanged settings
+            // could be cached, so start each run anew
+            TransformFilter.allowApproximation(approximate);
+            filter.filter(src, dest);
+        }
+        long totalNanos = System.nanoTime() - start;
+        TransformFilter.allowApproximation(false);
+
+        return totalNanos / (numRuns * 1_000_000.0);
+    }
+
+    private static BufferedImage createSource() {
+        BufferedImage src = new BufferedImage(width, height, TYPE_INT_ARGB);
+        Graphics2D g = src.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, Color.RED, width, height, Color.BLUE));
+        g.fillRect(0, 0, width, height);
+
+        // some sharp edges where the errors are the most visible
+        g.setColor(Color.WHITE);
+        for (int x = 0; x < width; x += 40) {
+            g.fillRect(x, 0, 2, height);
+        }
+        for (int y = 0; y < height; y += 40) {
+            g.fillRect(0, y, width, 2);
+        }
+        g.dispose();
+        return src;
+    }
+}
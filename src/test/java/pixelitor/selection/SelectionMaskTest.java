@@ -0,0 +1,177 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.selection;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@DisplayName("SelectionMask tests")
+class SelectionMaskTest {
+    private static final Rectangle BOUNDS = new Rectangle(-10, -10, 200, 150);
+
+    @Test
+    void booleanOperations() {
+        var r1 = new Rectangle(0, 0, 100, 100);
+        var r2 = new Rectangle(50, 50, 100, 80);
+
+        var added = SelectionMask.fromShape(r1, BOUNDS);
+        added.add(SelectionMask.fromShape(r2, BOUNDS));
+        assertThat(added.getCoverage(10, 10)).isEqualTo(255);
+        assertThat(added.getCoverage(120, 120)).isEqualTo(255);
+        assertThat(added.getCoverage(120, 10)).isZero();
+        assertThat(added.getOutline()).matches(s -> sameCoverage(s, unionOf(r1, r2)));
+
+        var subtracted = SelectionMask.fromShape(r1, BOUNDS);
+        subtracted.subtract(SelectionMask.fromShape(r2, BOUNDS));
+        assertThat(subtracted.getCoverage(10, 10)).isEqualTo(255);
+        assertThat(subtracted.getCoverage(60, 60)).isZero();
+
+        var intersected = SelectionMask.fromShape(r1, BOUNDS);
+        intersected.intersect(SelectionMask.fromShape(r2, BOUNDS));
+        assertThat(intersected.getCoverage(10, 10)).isZero();
+        assertThat(intersected.getCoverage(60, 60)).isEqualTo(255);
+        assertThat(intersected.getOutline().getBounds())
+                .isEqualTo(new Rectangle(50, 50, 50, 50));
+    }
+
+    @Test
+    void emptyMask() {
+        var mask = SelectionMask.fromShape(new Rectangle(0, 0, 10, 10), BOUNDS);
+        mask.subtract(SelectionMask.fromShape(BOUNDS, BOUNDS));
+        assertThat(mask.isEmpty()).isTrue();
+        assertThat(mask.getOutline().getBounds().isEmpty()).isTrue();
+    }
+
+    @Test
+    void outlineWithHoleAndDiagonalPixels() {
+        Area area = new Area(new Rectangle(10, 10, 50, 50));
+        area.subtract(new Area(new Rectangle(20, 20, 10, 10)));
+        // two pixels touching only at a corner
+        area.add(new Area(new Rectangle(60, 60, 1, 1)));
+
+        var mask = SelectionMask.fromShape(area, BOUNDS);
+        assertThat(mask.getOutline()).matches(s -> sameCoverage(s, area));
+    }
+
+    @Test
+    void subPixelOutline() {
+        // the first column is half covered
+        var rect = new Rectangle2D.Double(20.5, 20, 40, 40);
+        var mask = SelectionMask.fromShape(rect, BOUNDS);
+        assertThat(mask.getCoverage(20, 30)).isBetween(120, 135);
+
+        Rectangle2D outlineBounds = mask.getOutline().getBounds2D();
+        assertThat(outlineBounds.getMinX()).isCloseTo(20.5, within(0.1));
+        assertThat(outlineBounds.getMinY()).isCloseTo(20, within(0.01));
+        assertThat(outlineBounds.getMaxX()).isCloseTo(60.5, within(0.1));
+
+        // the straight edges are not split into pixel-sized pieces
+        assertThat(countSegments(mask.getOutline())).isLessThan(20);
+    }
+
+    @Test
+    void modify() {
+        var rect = new Rectangle(40, 40, 60, 60);
+        var mask = SelectionMask.fromShape(rect, BOUNDS);
+
+        var expanded = mask.modify(SelectionModifyType.EXPAND, 5);
+        assertThat(expanded.getCoverage(36, 70)).isEqualTo(255);
+        assertThat(expanded.getCoverage(30, 70)).isZero();
+
+        var contracted = mask.modify(SelectionModifyType.CONTRACT, 5);
+        assertThat(contracted.getCoverage(42, 70)).isZero();
+        assertThat(contracted.getCoverage(50, 70)).isEqualTo(255);
+
+        var border = mask.modify(SelectionModifyType.BORDER, 5);
+        assertThat(border.getCoverage(37, 70)).isEqualTo(255);
+        assertThat(border.getCoverage(42, 70)).isEqualTo(255);
+        assertThat(border.getCoverage(70, 70)).isZero();
+
+        var borderOut = mask.modify(SelectionModifyType.BORDER_OUT, 5);
+        assertThat(borderOut.getCoverage(37, 70)).isEqualTo(255);
+        assertThat(borderOut.getCoverage(42, 70)).isZero();
+
+        var borderIn = mask.modify(SelectionModifyType.BORDER_IN, 5);
+        assertThat(borderIn.getCoverage(37, 70)).isZero();
+        assertThat(borderIn.getCoverage(42, 70)).isEqualTo(255);
+    }
+
+    @Test
+    void modifyWithBigRadius() {
+        // the calculation blocks are bigger than the tiles
+        var rect = new Rectangle(40, 40, 60, 60);
+        var mask = SelectionMask.fromShape(rect, BOUNDS);
+
+        var expanded = mask.modify(SelectionModifyType.EXPAND, 100);
+        assertThat(expanded.getBounds()).isEqualTo(new Rectangle(-112, -112, 404, 354));
+        assertThat(expanded.getCoverage(-55, 70)).isEqualTo(255);
+        assertThat(expanded.getCoverage(-65, 70)).isZero();
+        // the corners are rounded
+        assertThat(expanded.getCoverage(-40, -40)).isZero();
+    }
+
+    @Test
+    void complexity() {
+        assertThat(SelectionMask.isComplex(new Rectangle(0, 0, 10, 10))).isFalse();
+
+        Path2D zigZag = new Path2D.Double();
+        zigZag.moveTo(0, 0);
+        for (int i = 0; i < 3000; i++) {
+            zigZag.lineTo(i, i % 2);
+        }
+        assertThat(SelectionMask.isComplex(zigZag)).isTrue();
+    }
+
+    private static Shape unionOf(Shape s1, Shape s2) {
+        Area area = new Area(s1);
+        area.add(new Area(s2));
+        return area;
+    }
+
+    /**
+     * Checks that the shapes contain the same pixel centers
+     */
+    private static boolean sameCoverage(Shape s1, Shape s2) {
+        for (int y = BOUNDS.y; y < BOUNDS.y + BOUNDS.height; y++) {
+            for (int x = BOUNDS.x; x < BOUNDS.x + BOUNDS.width; x++) {
+                if (s1.contains(x + 0.5, y + 0.5) != s2.contains(x + 0.5, y + 0.5)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static int countSegments(Shape shape) {
+        int count = 0;
+        for (PathIterator it = shape.getPathIterator(null); !it.isDone(); it.next()) {
+            count++;
+        }
+        return count;
+    }
+}
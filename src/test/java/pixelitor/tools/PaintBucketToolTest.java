@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.tools;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import pixelitor.Build;
+import pixelitor.TestHelper;
+import pixelitor.history.History;
+import pixelitor.layers.ImageLayer;
+import pixelitor.tools.gui.ToolSettingsPanel;
+import pixelitor.tools.util.PMouseEvent;
+import pixelitor.utils.ScratchImage;
+
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.InvocationTargetException;
+
+import static java.awt.event.MouseEvent.MOUSE_RELEASED;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("PaintBucketTool tests")
+class PaintBucketToolTest {
+    private static final int SIZE = 1024;
+
+    @BeforeAll
+    static void beforeAllTests() {
+        Build.setUnitTestingMode();
+        TestHelper.setupMockFgBgSelector();
+    }
+
+    @AfterEach
+    void afterEachTest() {
+        ScratchImage.setEnabled(false);
+    }
+
+    @Test
+    void fillsALayerInAScratchFile() throws InterruptedException, InvocationTargetException {
+        ScratchImage.setEnabled(true);
+
+        var comp = TestHelper.createEmptyComposition(SIZE, SIZE);
+        var layer = new ImageLayer(comp, new BufferedImage(SIZE, SIZE, TYPE_INT_ARGB), "big");
+        comp.addLayerInInitMode(layer);
+        assertThat(ScratchImage.isStored(layer.getImageForReading())).isTrue();
+
+        var tool = new PaintBucketTool();
+        tool.setSettingsPanel(new ToolSettingsPanel());
+        SwingUtilities.invokeAndWait(tool::initSettingsPanel);
+
+        PMouseEvent e = TestHelper.createPEvent(5, 5, MOUSE_RELEASED,
+                KeyModifiers.NONE, MouseButton.LEFT, comp.getView());
+        tool.mouseReleased(e);
+
+        // the whole transparent image is filled with the foreground color
+        BufferedImage image = layer.getImageForReading();
+        assertThat(image.getRGB(5, 5)).isEqualTo(0xFF_00_00_00);
+        assertThat(image.getRGB(SIZE - 1, SIZE - 1)).isEqualTo(0xFF_00_00_00);
+
+        // and the fill can be undone
+        History.undo("Paint Bucket");
+        assertThat(layer.getImageForReading().getRGB(5, 5)).isZero();
+    }
+}
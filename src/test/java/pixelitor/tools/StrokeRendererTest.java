@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.tools;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import pixelitor.tools.brushes.Brush;
+import pixelitor.tools.util.PPoint;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@DisplayName("StrokeRenderer tests")
+class StrokeRendererTest {
+    @Test
+    void rendersAllPointsInOrderOnTheRenderingThread() {
+        List<PPoint> rendered = new ArrayList<>();
+        List<Boolean> onRenderingThread = new ArrayList<>();
+
+        Brush brush = mock(Brush.class);
+        when(brush.hasPrevious()).thenReturn(true);
+        doAnswer(invocation -> {
+            // simulate a slow, big brush
+            Thread.sleep(1);
+            rendered.add(invocation.getArgument(0));
+            onRenderingThread.add(StrokeRenderer.isRenderingThread());
+            return null;
+        }).when(brush).continueTo(any());
+
+        List<PPoint> points = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            PPoint p = mock(PPoint.class);
+            points.add(p);
+            StrokeRenderer.get().addPoint(brush, p);
+        }
+        StrokeRenderer.get().waitUntilDone();
+
+        assertThat(rendered).containsExactlyElementsOf(points);
+        assertThat(onRenderingThread).containsOnly(true);
+        assertThat(StrokeRenderer.isRenderingThread()).isFalse();
+    }
+
+    @Test
+    void stateChangesRunBetweenThePoints() {
+        List<String> events = new ArrayList<>();
+
+        Brush brush = mock(Brush.class);
+        when(brush.hasPrevious()).thenReturn(true);
+        doAnswer(invocation -> {
+            Thread.sleep(1);
+            events.add("point");
+            return null;
+        }).when(brush).continueTo(any());
+
+        // nothing is pending, the change runs immediately
+        StrokeRenderer.runInOrder(() -> events.add("immediate change"));
+        assertThat(events).containsExactly("immediate change");
+
+        StrokeRenderer.get().addPoint(brush, mock(PPoint.class));
+        StrokeRenderer.runInOrder(() -> events.add("change"));
+        StrokeRenderer.invokeLater(() -> events.add("task"));
+        StrokeRenderer.get().addPoint(brush, mock(PPoint.class));
+        StrokeRenderer.get().waitUntilDone();
+
+        assertThat(events).containsExactly(
+                "immediate change", "point", "change", "task", "point");
+    }
+}
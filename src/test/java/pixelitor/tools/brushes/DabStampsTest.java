@@ -0,0 +1,182 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.tools.brushes;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import pixelitor.tools.shapes.ShapeType;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import static java.awt.RenderingHints.KEY_ANTIALIASING;
+import static java.awt.RenderingHints.VALUE_ANTIALIAS_ON;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@DisplayName("DabStamps tests")
+class DabStampsTest {
+    private static final int SIZE = 80;
+    private static final double RADIUS = 7.5;
+    private static final Color COLOR = new Color(200, 30, 90, 220);
+
+    @Test
+    void unrotatedDabsSameAsFilledShapes() {
+        assertSameAsFilledShapes(0);
+    }
+
+    @Test
+    void rotatedDabsSameAsFilledShapes() {
+        // an angle that doesn't have to be rounded
+        assertSameAsFilledShapes(2 * Math.PI * 5 / 128);
+    }
+
+    @Test
+    void stampsAreReused() {
+        DabStamps stamps = new DabStamps(DabStampsTest::renderHeart);
+        BufferedImage image = new BufferedImage(SIZE, SIZE, TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+
+        stamps.setState(List.of(COLOR, RADIUS), RADIUS);
+        stamps.putDab(g, 20.25, 20.5, 0);
+        stamps.putDab(g, 40.25, 30.5, 0);
+        assertThat(stamps.getNumCachedStamps()).isEqualTo(1);
+
+        // a different sub-pixel offset
+        stamps.putDab(g, 40.5, 30.5, 0);
+        assertThat(stamps.getNumCachedStamps()).isEqualTo(2);
+
+        // the same state doesn't discard the stamps
+        stamps.setState(List.of(COLOR, RADIUS), RADIUS);
+        assertThat(stamps.getNumCachedStamps()).isEqualTo(2);
+
+        stamps.setState(List.of(Color.BLUE, RADIUS), RADIUS);
+        assertThat(stamps.getNumCachedStamps()).isZero();
+        g.dispose();
+    }
+
+    @Test
+    void angleBuckets() {
+        assertThat(DabStamps.toAngleBucket(0)).isZero();
+        assertThat(DabStamps.toAngleBucket(2 * Math.PI)).isZero();
+        assertThat(DabStamps.toAngleBucket(Math.PI)).isEqualTo(64);
+        assertThat(DabStamps.toAngleBucket(-Math.PI / 2)).isEqualTo(96);
+    }
+
+    @ParameterizedTest
+    @EnumSource(CopyBrushType.class)
+    void copyBrushSamplingSameAsJava2D(CopyBrushType type) {
+        BufferedImage source = createSourceImage();
+        CloneBrush brush = new CloneBrush(RADIUS, type);
+        brush.setRadius(RADIUS);
+        brush.setSource(source, 0, 0);
+
+        // partially outside of the source image
+        double[][] translations = {{-20.3, -30.7}, {4.5, -3.2}, {-72.6, -75.1}};
+        for (double[] translation : translations) {
+            double tx = translation[0];
+            double ty = translation[1];
+            assertThat(brush.copySourceToBrushImage(tx, ty)).isTrue();
+
+            BufferedImage expected = new BufferedImage(
+                    brush.brushImage.getWidth(), brush.brushImage.getHeight(), TYPE_INT_ARGB);
+            Graphics2D g = expected.createGraphics();
+            type.beforeDrawImage(g);
+            g.drawImage(source, AffineTransform.getTranslateInstance(tx, ty), null);
+            type.afterDrawImage(g);
+            g.dispose();
+
+            assertSimilar(brush.brushImage, expected, 2);
+        }
+    }
+
+    private static void assertSameAsFilledShapes(double theta) {
+        BufferedImage expected = new BufferedImage(SIZE, SIZE, TYPE_INT_ARGB);
+        BufferedImage stamped = new BufferedImage(SIZE, SIZE, TYPE_INT_ARGB);
+        Graphics2D expectedG = expected.createGraphics();
+        expectedG.setRenderingHint(KEY_ANTIALIASING, VALUE_ANTIALIAS_ON);
+        expectedG.setColor(COLOR);
+        Graphics2D stampedG = stamped.createGraphics();
+
+        DabStamps stamps = new DabStamps(DabStampsTest::renderHeart);
+        stamps.setState(List.of(COLOR, RADIUS), RADIUS);
+
+        // overlapping dabs at sub-pixel offsets that don't have to be rounded
+        double[][] points = {{20, 20}, {25.25, 22.5}, {30.75, 31}, {50.5, 60.25}};
+        for (double[] p : points) {
+            renderHeart(expectedG, p[0], p[1], theta);
+            stamps.putDab(stampedG, p[0], p[1], theta);
+        }
+        expectedG.dispose();
+        stampedG.dispose();
+
+        assertSimilar(stamped, expected, 2);
+    }
+
+    private static void renderHeart(Graphics2D g, double x, double y, double theta) {
+        g.setRenderingHint(KEY_ANTIALIASING, VALUE_ANTIALIAS_ON);
+        g.setColor(COLOR);
+        Shape shape = ShapeType.HEART.createShape(x - RADIUS, y - RADIUS, 2 * RADIUS);
+        if (theta != 0) {
+            shape = AffineTransform.getRotateInstance(theta, x, y).createTransformedShape(shape);
+        }
+        g.fill(shape);
+    }
+
+    private static BufferedImage createSourceImage() {
+        BufferedImage image = new BufferedImage(SIZE, SIZE, TYPE_INT_ARGB);
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                int a = 128 + (x + y) % 128;
+                image.setRGB(x, y, a << 24 | (x * 3) << 16 | (y * 3) << 8 | (x + y));
+            }
+        }
+        return image;
+    }
+
+    private static void assertSimilar(BufferedImage actual, BufferedImage expected, int tolerance) {
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                int actualRGB = actual.getRGB(x, y);
+                int expectedRGB = expected.getRGB(x, y);
+                int actualAlpha = actualRGB >>> 24;
+                int expectedAlpha = expectedRGB >>> 24;
+                assertThat(actualAlpha)
+                        .as("alpha at x = %d, y = %d", x, y)
+                        .isCloseTo(expectedAlpha, within(tolerance));
+
+                // the colors are compared premultiplied, because the
+                // colors of the almost transparent pixels are not precise
+                for (int shift = 0; shift < 24; shift += 8) {
+                    int actualChannel = ((actualRGB >>> shift) & 0xFF) * actualAlpha / 255;
+                    int expectedChannel = ((expectedRGB >>> shift) & 0xFF) * expectedAlpha / 255;
+                    assertThat(actualChannel)
+                            .as("x = %d, y = %d, shift = %d", x, y, shift)
+                            .isCloseTo(expectedChannel, within(tolerance));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.tools.brushes;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import pixelitor.Canvas;
+import pixelitor.Composition;
+import pixelitor.TestHelper;
+import pixelitor.gui.View;
+import pixelitor.tools.BrushType;
+import pixelitor.tools.Symmetry;
+import pixelitor.tools.Tool;
+import pixelitor.tools.util.PPoint;
+import pixelitor.tools.util.PRectangle;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.image.BufferedImage;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DisplayName("SymmetryBrush tests")
+class SymmetryBrushTest {
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 100;
+    private static final double RADIUS = 5;
+
+    private Composition comp;
+    private View view;
+
+    // the clip of the target, such as a selection
+    private Shape targetClip;
+
+    @BeforeEach
+    void beforeEachTest() {
+        view = TestHelper.createMockViewWithoutComp();
+        comp = mock(Composition.class);
+        when(comp.getView()).thenReturn(view);
+        Symmetry.setCanvasImSize(new Canvas(WIDTH, HEIGHT));
+    }
+
+    @Test
+    void separateStrokesAreDrawnInParallel() {
+        double[][] stroke = {{20, 20}, {40, 60}, {60, 30}};
+
+        BufferedImage drawn = drawWithSymmetryBrush(stroke);
+        BufferedImage expected = drawSequentially(stroke);
+
+        // the union of the mirrored areas is repainted at once
+        verify(comp, times(2)).repaintRegion(any(PRectangle.class));
+        assertThat(drawn.getRGB(40, 60)).isNotZero();
+        assertThat(drawn.getRGB(WIDTH - 40, 60)).isNotZero();
+        assertSameImages(drawn, expected);
+    }
+
+    @Test
+    void parallelStrokesKeepTheTargetClip() {
+        double[][] stroke = {{20, 20}, {40, 60}, {60, 30}};
+        targetClip = new Rectangle(30, 0, 150, 50);
+
+        BufferedImage drawn = drawWithSymmetryBrush(stroke);
+        BufferedImage expected = drawSequentially(stroke);
+
+        verify(comp, times(2)).repaintRegion(any(PRectangle.class));
+        assertThat(drawn.getRGB(40, 60)).isZero();
+        assertSameImages(drawn, expected);
+    }
+
+    @Test
+    void nearbyStrokesAreDrawnInParallel() {
+        // closer to the mirror axis than twice the radius,
+        // but farther than the brush's real extent
+        double[][] stroke = {{70, 20}, {91, 60}, {80, 30}};
+
+        BufferedImage drawn = drawWithSymmetryBrush(stroke);
+        BufferedImage expected = drawSequentially(stroke);
+
+        verify(comp, times(2)).repaintRegion(any(PRectangle.class));
+        assertSameImages(drawn, expected);
+    }
+
+    @Test
+    void overlappingStrokesAreDrawnSequentially() {
+        // close to the mirror axis
+        double[][] stroke = {{95, 20}, {97, 60}, {92, 30}};
+
+        BufferedImage drawn = drawWithSymmetryBrush(stroke);
+        BufferedImage expected = drawSequentially(stroke);
+
+        verify(comp, never()).repaintRegion(any(PRectangle.class));
+        assertSameImages(drawn, expected);
+    }
+
+    private BufferedImage drawWithSymmetryBrush(double[][] stroke) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB);
+        Graphics2D g = createGraphics(image);
+        var brush = new SymmetryBrush(mock(Tool.class), BrushType.HARD,
+                Symmetry.VERTICAL_MIRROR, RADIUS);
+        brush.setTarget(comp, g);
+
+        brush.startAt(point(stroke[0][0], stroke[0][1]));
+        for (int i = 1; i < stroke.length; i++) {
+            brush.continueTo(point(stroke[i][0], stroke[i][1]));
+        }
+        brush.finishBrushStroke();
+        g.dispose();
+        return image;
+    }
+
+    private BufferedImage drawSequentially(double[][] stroke) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB);
+        Graphics2D g = createGraphics(image);
+        for (int mirrored = 0; mirrored < 2; mirrored++) {
+            var brush = new HardBrush(RADIUS);
+            brush.setTarget(comp, g);
+            for (int i = 0; i < stroke.length; i++) {
+                PPoint p = point(stroke[i][0], stroke[i][1]);
+                if (mirrored == 1) {
+                    p = p.mirrorVertically(WIDTH);
+                }
+                if (i == 0) {
+                    brush.startAt(p);
+                } else {
+                    brush.continueTo(p);
+                }
+            }
+            brush.finishBrushStroke();
+        }
+        g.dispose();
+        return image;
+    }
+
+    private Graphics2D createGraphics(BufferedImage image) {
+        Graphics2D g = image.createGraphics();
+        g.setColor(new Color(20, 100, 200, 180));
+        if (targetClip != null) {
+            g.setClip(targetClip);
+        }
+        return g;
+    }
+
+    private PPoint point(double x, double y) {
+        return PPoint.eagerFromIm(x, y, view);
+    }
+
+    private static void assertSameImages(BufferedImage actual, BufferedImage expected) {
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertThat(actual.getRGB(x, y))
+                        .as("x = %d, y = %d", x, y)
+                        .isEqualTo(expected.getRGB(x, y));
+            }
+        }
+    }
+}
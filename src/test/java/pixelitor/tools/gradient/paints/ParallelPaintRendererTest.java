@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.tools.gradient.paints;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import pixelitor.tools.gradient.GradientType;
+import pixelitor.tools.util.ImDrag;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.image.BufferedImage;
+
+import static java.awt.MultipleGradientPaint.CycleMethod.REPEAT;
+import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("ParallelPaintRenderer tests")
+class ParallelPaintRendererTest {
+    // not a multiple of the tile size
+    private static final int WIDTH = 301;
+    private static final int HEIGHT = 157;
+
+    @ParameterizedTest
+    @EnumSource(value = GradientType.class, names = {"ANGLE", "SPIRAL_CW", "SPIRAL_CCW", "DIAMOND"})
+    void sameAsJava2D(GradientType type) {
+        ImDrag drag = new ImDrag(120, 70, 190, 20);
+        Color[] colors = {new Color(255, 0, 0, 200), Color.BLUE};
+        Paint paint = type.createPaint(drag, colors, REPEAT);
+
+        assertThat(type.hasCustomPaint()).isTrue();
+        assertSameAsJava2D(paint, false);
+        assertSameAsJava2D(paint, true);
+    }
+
+    private static void assertSameAsJava2D(Paint paint, boolean gray) {
+        BufferedImage expected = new BufferedImage(WIDTH, HEIGHT,
+                gray ? TYPE_BYTE_GRAY : TYPE_INT_ARGB);
+        Graphics2D g = expected.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.setPaint(paint);
+        g.fillRect(0, 0, WIDTH, HEIGHT);
+        g.dispose();
+
+        BufferedImage rendered = ParallelPaintRenderer.render(paint, WIDTH, HEIGHT, gray);
+
+        assertThat(rendered.getType()).isEqualTo(expected.getType());
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertThat(rendered.getRGB(x, y))
+                        .as("x = %d, y = %d", x, y)
+                        .isEqualTo(expected.getRGB(x, y));
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.tools.shapes;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import pixelitor.TestHelper;
+import pixelitor.colors.FgBgColorSelector;
+import pixelitor.colors.FgBgColors;
+import pixelitor.gui.View;
+import pixelitor.tools.util.PPoint;
+import pixelitor.tools.util.UserDrag;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+import static java.awt.RenderingHints.KEY_ANTIALIASING;
+import static java.awt.RenderingHints.VALUE_ANTIALIAS_ON;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@DisplayName("StyledShape tests")
+class StyledShapeTest {
+    private static final int WIDTH = 80;
+    private static final int HEIGHT = 60;
+
+    private FgBgColorSelector colors;
+    private StyledShape styledShape;
+
+    @BeforeEach
+    void beforeEachTest() {
+        colors = mock(FgBgColorSelector.class);
+        when(colors.getFgColor()).thenReturn(Color.BLACK);
+        when(colors.getBgColor()).thenReturn(Color.WHITE);
+        FgBgColors.setUI(colors);
+
+        View view = TestHelper.createMockComposition().getView();
+        UserDrag drag = new UserDrag();
+        drag.setStart(PPoint.eagerFromIm(10, 10, view));
+        drag.setEnd(PPoint.eagerFromIm(60, 40, view));
+
+        // a rectangle filled with the foreground color
+        styledShape = new StyledShape(new ShapeSettings(null));
+        styledShape.updateFromDrag(drag);
+    }
+
+    @Test
+    void cachedPaintMatchesDirectFill() {
+        BufferedImage expected = createImage();
+        Graphics2D g = expected.createGraphics();
+        g.setRenderingHint(KEY_ANTIALIASING, VALUE_ANTIALIAS_ON);
+        g.setColor(Color.BLACK);
+        g.fill(new Rectangle(10, 10, 50, 30));
+        g.dispose();
+
+        // the second paint comes from the cache
+        assertSameImage(paint(0, 0), expected);
+        assertSameImage(paint(0, 0), expected);
+    }
+
+    @Test
+    void translatedPaint() {
+        BufferedImage translated = paint(5, 7);
+
+        assertThat(translated.getRGB(14, 16)).isEqualTo(0);
+        assertThat(translated.getRGB(15, 17)).isEqualTo(Color.BLACK.getRGB());
+        assertThat(translated.getRGB(65, 47)).isEqualTo(0);
+    }
+
+    @Test
+    void colorChangeInvalidatesCache() {
+        assertThat(paint(0, 0).getRGB(30, 30)).isEqualTo(Color.BLACK.getRGB());
+
+        when(colors.getFgColor()).thenReturn(Color.RED);
+
+        assertThat(paint(0, 0).getRGB(30, 30)).isEqualTo(Color.RED.getRGB());
+    }
+
+    private BufferedImage paint(int tx, int ty) {
+        BufferedImage img = createImage();
+        Graphics2D g = img.createGraphics();
+        g.translate(tx, ty);
+        styledShape.paint(g);
+        g.dispose();
+        return img;
+    }
+
+    private static BufferedImage createImage() {
+        return new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB);
+    }
+
+    private static void assertSameImage(BufferedImage found, BufferedImage expected) {
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertThat(found.getRGB(x, y))
+                        .as("x = %d, y = %d", x, y)
+                        .isEqualTo(expected.getRGB(x, y));
+            }
+        }
+    }
+}
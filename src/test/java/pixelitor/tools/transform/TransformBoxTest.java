@@ -384,6 +384,27 @@ public class TransformBoxTest {
         assertThat(box).angleDegreesIs(0);
     }
 
+    @Test
+    void draggingState() {
+        var box = new TransformBox(originalRect, view, at -> {});
+        Assertions.assertFalse(box.isDragging());
+
+        // drag a handle
+        press(box, 400, 200);
+        Assertions.assertTrue(box.isDragging());
+        drag(box, 420, 220);
+        Assertions.assertTrue(box.isDragging());
+        release(box, 420, 220);
+        Assertions.assertFalse(box.isDragging());
+
+        // drag the whole box
+        press(box, 300, 150);
+        Assertions.assertTrue(box.isDragging());
+        drag(box, 310, 160);
+        release(box, 310, 160);
+        Assertions.assertFalse(box.isDragging());
+    }
+
     @Test
     void calcAngleCursorOffset() {
         checkOffset(0, 0);
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.tools.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("FloodFill tests")
+class FloodFillTest {
+    private static final int WHITE = 0xFF_FF_FF_FF;
+    private static final int BLACK = 0xFF_00_00_00;
+    private static final int RED = 0xFF_FF_00_00;
+    private static final int ALMOST_WHITE = 0xFF_FA_FA_FA;
+
+    private static final int WIDTH = 20;
+    private static final int HEIGHT = 10;
+
+    /**
+     * A white image divided by a vertical black line at x = 10
+     */
+    private static int[] createPixels() {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        Arrays.fill(pixels, WHITE);
+        for (int y = 0; y < HEIGHT; y++) {
+            pixels[y * WIDTH + 10] = BLACK;
+        }
+        pixels[5 * WIDTH + 15] = ALMOST_WHITE;
+        return pixels;
+    }
+
+    @Test
+    void contiguous() {
+        int[] pixels = createPixels();
+        var floodFill = new FloodFill();
+
+        var region = floodFill.findContiguous(pixels, WIDTH, HEIGHT, 2, 2, WHITE, 0);
+        assertThat(region.getBounds()).isEqualTo(new Rectangle(0, 0, 10, 10));
+        assertThat(region.contains(9, 9)).isTrue();
+        assertThat(region.contains(10, 0)).isFalse();
+        assertThat(region.contains(11, 0)).isFalse();
+
+        region.fill(pixels, WIDTH, 0, 0, RED, false);
+        assertThat(pixels[0]).isEqualTo(RED);
+        assertThat(pixels[10]).isEqualTo(BLACK);
+        assertThat(pixels[11]).isEqualTo(WHITE);
+
+        // the bitset is reused, the previous region must not remain
+        region = floodFill.findContiguous(pixels, WIDTH, HEIGHT, 15, 2, WHITE, 0);
+        assertThat(region.contains(2, 2)).isFalse();
+        assertThat(region.contains(15, 5)).isFalse();
+        assertThat(region.getBounds()).isEqualTo(new Rectangle(11, 0, 9, 10));
+    }
+
+    @Test
+    void tolerance() {
+        int[] pixels = createPixels();
+        var region = new FloodFill().findContiguous(pixels, WIDTH, HEIGHT, 15, 2, WHITE, 10);
+        assertThat(region.contains(15, 5)).isTrue();
+    }
+
+    @Test
+    void global() {
+        int[] pixels = createPixels();
+        var region = new FloodFill().findGlobal(pixels, WIDTH, HEIGHT, WHITE, 0);
+        assertThat(region.getBounds()).isEqualTo(new Rectangle(0, 0, WIDTH, HEIGHT));
+        assertThat(region.contains(10, 3)).isFalse();
+        assertThat(region.contains(15, 5)).isFalse();
+        assertThat(region.contains(19, 9)).isTrue();
+
+        var blackRegion = new FloodFill().findGlobal(pixels, WIDTH, HEIGHT, BLACK, 0);
+        assertThat(blackRegion.getBounds()).isEqualTo(new Rectangle(10, 0, 1, HEIGHT));
+    }
+
+    @Test
+    void globalInLargeImage() {
+        int width = 1000;
+        int height = 500;
+        int[] pixels = new int[width * height];
+        Arrays.fill(pixels, WHITE);
+        pixels[123 * width + 456] = BLACK;
+        pixels[321 * width + 654] = BLACK;
+
+        var region = new FloodFill().findGlobal(pixels, width, height, BLACK, 0);
+        assertThat(region.getBounds()).isEqualTo(new Rectangle(456, 123, 199, 199));
+
+        region.fill(pixels, width, 0, 0, RED, false);
+        assertThat(pixels[123 * width + 456]).isEqualTo(RED);
+        assertThat(pixels[321 * width + 654]).isEqualTo(RED);
+        assertThat(pixels[0]).isEqualTo(WHITE);
+    }
+
+    @Test
+    void antiAliasedFill() {
+        int[] pixels = createPixels();
+        var region = new FloodFill().findContiguous(pixels, WIDTH, HEIGHT, 2, 2, WHITE, 0);
+        assertThat(region.getFillBounds(true)).isEqualTo(new Rectangle(0, 0, 11, 10));
+
+        region.fill(pixels, WIDTH, 0, 0, RED, true);
+        int edgePixel = pixels[5 * WIDTH + 10];
+        assertThat(edgePixel).isNotEqualTo(BLACK).isNotEqualTo(RED);
+        assertThat(pixels[5 * WIDTH + 11]).isEqualTo(WHITE);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Histogram tests")
+class HistogramTest {
+    @Test
+    void simpleCounts() {
+        var img = new BufferedImage(10, 10, TYPE_INT_ARGB);
+        var g = img.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, 5, 10);
+        g.setColor(Color.WHITE);
+        g.fillRect(5, 0, 2, 10);
+        g.dispose();
+
+        var histogram = Histogram.of(img);
+
+        // the transparent pixels are not counted
+        assertThat(histogram.getNumPixels()).isEqualTo(70);
+        assertThat(histogram.getReds()[255]).isEqualTo(70);
+        assertThat(histogram.getGreens()[0]).isEqualTo(50);
+        assertThat(histogram.getGreens()[255]).isEqualTo(20);
+        assertThat(histogram.getLuminosities()[255]).isEqualTo(20);
+        assertThat(histogram.getLuminosities()[76]).isEqualTo(50);
+    }
+
+    @Test
+    void incrementalUpdateMatchesFullCalculation() {
+        // big enough to be calculated in parallel
+        var oldImg = createRandomImage(600, 500, 1);
+        var newImg = createRandomImage(600, 500, 1);
+        var dirty = new Rectangle(100, 50, 300, 400);
+
+        var g = newImg.createGraphics();
+        g.setColor(Color.BLUE);
+        g.fill(dirty);
+        g.dispose();
+
+        var histogram = Histogram.of(oldImg);
+        histogram.update(oldImg, newImg, dirty);
+        var expected = Histogram.of(newImg);
+
+        assertThat(histogram.getReds()).isEqualTo(expected.getReds());
+        assertThat(histogram.getGreens()).isEqualTo(expected.getGreens());
+        assertThat(histogram.getBlues()).isEqualTo(expected.getBlues());
+        assertThat(histogram.getLuminosities()).isEqualTo(expected.getLuminosities());
+    }
+
+    @Test
+    void region() {
+        var img = createRandomImage(50, 40, 2);
+        var region = new Rectangle(40, 30, 30, 30);
+
+        // the region is clipped to the image
+        assertThat(Histogram.of(img, region).getNumPixels()).isEqualTo(100);
+    }
+
+    private static BufferedImage createRandomImage(int width, int height, long seed) {
+        var img = new BufferedImage(width, height, TYPE_INT_ARGB);
+        Random random = new Random(seed);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                img.setRGB(x, y, 0xFF_00_00_00 | random.nextInt(0x1_00_00_00));
+            }
+        }
+        return img;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Random;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.awt.image.BufferedImage.TYPE_INT_RGB;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("ScratchImage tests")
+class ScratchImageTest {
+    @Test
+    void canStore() {
+        assertThat(ScratchImage.canStore(new BufferedImage(1024, 1024, TYPE_INT_ARGB))).isTrue();
+        assertThat(ScratchImage.canStore(new BufferedImage(100, 100, TYPE_INT_ARGB))).isFalse();
+        assertThat(ScratchImage.canStore(new BufferedImage(1024, 1024, BufferedImage.TYPE_BYTE_GRAY))).isFalse();
+    }
+
+    @Test
+    void roundTrip() throws IOException {
+        // the height isn't a multiple of the copied rows
+        BufferedImage img = new BufferedImage(1031, 1027, TYPE_INT_ARGB);
+        Random rand = new Random(42);
+        for (int y = 0; y < img.getHeight(); y += 7) {
+            for (int x = 0; x < img.getWidth(); x += 3) {
+                img.setRGB(x, y, rand.nextInt());
+            }
+        }
+
+        BufferedImage scratch = ScratchImage.copyOf(img);
+        assertThat(ScratchImage.isStored(scratch)).isTrue();
+        assertThat(scratch.getWidth()).isEqualTo(img.getWidth());
+        assertThat(scratch.getHeight()).isEqualTo(img.getHeight());
+
+        // a heap copy has a standard type again
+        BufferedImage heapImage = ImageUtils.copyImage(scratch);
+        assertThat(ScratchImage.isStored(heapImage)).isFalse();
+        assertThat(heapImage.getType()).isEqualTo(TYPE_INT_ARGB);
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                int expected = img.getRGB(x, y);
+                if (scratch.getRGB(x, y) != expected || heapImage.getRGB(x, y) != expected) {
+                    throw new AssertionError("difference at x = " + x + ", y = " + y);
+                }
+            }
+        }
+        ScratchImage.dispose(scratch);
+    }
+
+    @Test
+    void isWritable() throws IOException {
+        BufferedImage scratch = ScratchImage.copyOf(new BufferedImage(1024, 1024, TYPE_INT_RGB));
+        scratch.setRGB(10, 20, 0xFF_AA_BB_CC);
+
+        assertThat(scratch.getRGB(10, 20)).isEqualTo(0xFF_AA_BB_CC);
+        assertThat(ImageUtils.getStandardType(scratch)).isEqualTo(TYPE_INT_RGB);
+        ScratchImage.dispose(scratch);
+    }
+
+    @Test
+    void canBeUsedAfterDispose() throws IOException {
+        BufferedImage scratch = ScratchImage.copyOf(new BufferedImage(1024, 1024, TYPE_INT_ARGB));
+        var buffer = (MappedIntDataBuffer) scratch.getRaster().getDataBuffer();
+        assertThat(buffer.isDisposed()).isFalse();
+
+        ScratchImage.dispose(scratch);
+        assertThat(buffer.isDisposed()).isTrue();
+
+        // someone who wasn't registered as an owner can still use it
+        scratch.setRGB(10, 20, 0xFF_AA_BB_CC);
+        assertThat(scratch.getRGB(10, 20)).isEqualTo(0xFF_AA_BB_CC);
+
+        // disposing it again does nothing
+        ScratchImage.dispose(scratch);
+    }
+
+    @Test
+    void bulkAccess() throws IOException {
+        var buffer = new MappedIntDataBuffer(1000);
+        int[] src = new int[100];
+        for (int i = 0; i < src.length; i++) {
+            src[i] = i * 31;
+        }
+        buffer.setElems(500, src, 10, 50);
+
+        assertThat(buffer.getElem(500)).isEqualTo(310);
+        assertThat(buffer.getElem(549)).isEqualTo(59 * 31);
+        assertThat(buffer.getElem(550)).isZero();
+
+        int[] dst = new int[60];
+        buffer.getElems(495, dst, 0, 60);
+        assertThat(dst[4]).isZero();
+        assertThat(dst[5]).isEqualTo(310);
+        buffer.dispose();
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pixelitor.utils.Timings.Stats;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static pixelitor.utils.Timings.Category.COMPOSITE;
+import static pixelitor.utils.Timings.Category.FILTER;
+
+@DisplayName("Timings tests")
+class TimingsTest {
+    @BeforeEach
+    void beforeEachTest() {
+        Timings.reset();
+    }
+
+    @Test
+    void statsAreCollectedPerOperation() {
+        long now = System.nanoTime();
+        Timings.record(FILTER, "Blur", "a.png", now - 30_000_000);
+        Timings.record(FILTER, "Blur", "b.png", now - 10_000_000);
+        Timings.record(FILTER, "Sharpen", "a.png", now - 5_000_000);
+        Timings.record(COMPOSITE, "Composite Image", "a.png", now - 1_000_000);
+
+        List<Stats> stats = Timings.getStats();
+        assertThat(stats).extracting(Stats::getName)
+                .containsExactly("Blur", "Sharpen", "Composite Image");
+
+        Stats blur = stats.get(0);
+        assertThat(blur.getCount()).isEqualTo(2);
+        assertThat(blur.getMaxMillis()).isGreaterThanOrEqualTo(30.0);
+        assertThat(blur.getLastMillis()).isBetween(10.0, blur.getMaxMillis());
+        assertThat(blur.getSlowestDoc()).isEqualTo("a.png");
+        assertThat(blur.getRecentP95Millis()).isEqualTo(blur.getMaxMillis());
+    }
+
+    @Test
+    void keysAreShared() {
+        Timings.Key key = Timings.key(FILTER, "Blur");
+        assertThat(Timings.key(FILTER, "Blur")).isSameAs(key);
+        assertThat(Timings.key(COMPOSITE, "Blur")).isNotSameAs(key);
+
+        long now = System.nanoTime();
+        Timings.record(key, "a.png", now);
+        Timings.record(FILTER, "Blur", "b.png", now);
+
+        List<Stats> stats = Timings.getStats();
+        assertThat(stats).hasSize(1);
+        assertThat(stats.get(0).getCount()).isEqualTo(2);
+    }
+
+    @Test
+    void exportCSV(@TempDir Path tempDir) throws IOException {
+        Timings.record(FILTER, "Blur, Gaussian", "a.png", System.nanoTime());
+
+        Path file = tempDir.resolve("timings.csv");
+        Timings.exportCSV(file.toFile());
+
+        List<String> lines = Files.readAllLines(file);
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(1)).startsWith("Filter,\"Blur, Gaussian\",1,");
+        assertThat(lines.get(1)).endsWith(",a.png");
+    }
+
+    @Test
+    void stoppedLogContainsAllRecordedMeasurements(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("log.csv");
+        Timings.startLog(file.toFile());
+        for (int i = 0; i < 100; i++) {
+            Timings.record(FILTER, "Blur", "a.png", System.nanoTime());
+        }
+        Timings.stopLog();
+        assertThat(Timings.isLogging()).isFalse();
+
+        // measurements after the stop are not logged
+        Timings.record(FILTER, "Blur", "a.png", System.nanoTime());
+
+        List<String> lines = Files.readAllLines(file);
+        assertThat(lines).hasSize(101);
+        assertThat(lines.get(100)).contains(",Filter,Blur,a.png,");
+    }
+}
@@ -17,20 +17,100 @@
 
 package pixelitor.utils;
 
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import pixelitor.Build;
 import pixelitor.io.TrackedIO;
 
+import javax.imageio.ImageIO;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static java.awt.image.BufferedImage.TYPE_INT_RGB;
 import static org.assertj.core.api.Assertions.assertThat;
 
 /**
  * Tests for {@link TrackedIO}
  */
 public class TrackedIOTest {
+    @BeforeAll
+    static void beforeAllTests() {
+        Build.setUnitTestingMode();
+    }
+
     @ParameterizedTest(name = "{0}x{1} image => {2} cols")
     @CsvSource({"5000, 2000, 50", "2000, 5000, 50", "250, 250, 3"})
     void calcSubsamplingCols(int imgWidth, int imgHeight, int expected) {
         int cols = TrackedIO.calcSubsamplingCols(imgWidth, imgHeight, 100, 100);
         assertThat(cols).isEqualTo(expected);
     }
-}
\ No newline at end of file
+
+    @ParameterizedTest(name = "{0}x{1} image into 300x300 => subsampling {2}")
+    @CsvSource({"30000, 20000, 50", "20000, 30000, 50", "6000, 4000, 10", "700, 500, 1", "400, 400, 1"})
+    void calcFitInBoxSubsampling(int imgWidth, int imgHeight, int expected) {
+        int subsampling = TrackedIO.calcFitInBoxSubsampling(imgWidth, imgHeight, 300, 300);
+        assertThat(subsampling).isEqualTo(expected);
+
+        // the subsampled image is at least twice the size of the final image
+        double scale = Math.min(300.0 / imgWidth, 300.0 / imgHeight);
+        assertThat(imgWidth / subsampling).isGreaterThanOrEqualTo((int) Math.min(imgWidth, 2 * scale * imgWidth));
+    }
+
+    @Test
+    void readToFitInBoxFiltersTheSubsampledPixels(@TempDir Path tempDir) throws IOException {
+        // black and white noise
+        var noise = new BufferedImage(1500, 900, TYPE_INT_RGB);
+        var random = new Random(42);
+        for (int y = 0; y < noise.getHeight(); y++) {
+            for (int x = 0; x < noise.getWidth(); x++) {
+                noise.setRGB(x, y, random.nextBoolean() ? 0xFF_FF_FF : 0);
+            }
+        }
+        File file = tempDir.resolve("noise.png").toFile();
+        ImageIO.write(noise, "png", file);
+
+        BufferedImage img = TrackedIO.readToFitInBox(file, 100, 100);
+        assertThat(img.getWidth()).isEqualTo(100);
+        assertThat(img.getHeight()).isEqualTo(60);
+
+        // point subsampling alone would keep only black and white
+        // pixels, the scaling mixes several decoded pixels
+        int numMixed = 0;
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                int gray = img.getRGB(x, y) & 0xFF;
+                if (gray > 32 && gray < 224) {
+                    numMixed++;
+                }
+            }
+        }
+        assertThat(numMixed).isGreaterThan(img.getWidth() * img.getHeight() / 2);
+    }
+
+    @Test
+    void readRegionDecodesOnlyTheRegion(@TempDir Path tempDir) throws IOException {
+        var img = new BufferedImage(400, 300, TYPE_INT_RGB);
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                img.setRGB(x, y, x << 8 | y);
+            }
+        }
+        File file = tempDir.resolve("gradient.png").toFile();
+        ImageIO.write(img, "png", file);
+
+        // the region is calculated from the bounds in the header
+        BufferedImage region = TrackedIO.readRegion(file,
+            imgBounds -> new Rectangle(imgBounds.width / 2 - 50, imgBounds.height / 2 - 25, 100, 50));
+        assertThat(region.getWidth()).isEqualTo(100);
+        assertThat(region.getHeight()).isEqualTo(50);
+        assertThat(region.getRGB(0, 0) & 0xFF_FF_FF).isEqualTo(150 << 8 | 125);
+        assertThat(region.getRGB(99, 49) & 0xFF_FF_FF).isEqualTo(249 << 8 | 174);
+    }
+}